@@ -17,6 +17,7 @@ import retrofit.http.DELETE;
 import retrofit.http.Field;
 import retrofit.http.FormUrlEncoded;
 import retrofit.http.GET;
+import retrofit.http.Headers;
 import retrofit.http.Multipart;
 import retrofit.http.POST;
 import retrofit.http.PUT;
@@ -27,6 +28,12 @@ import retrofit.mime.TypedOutput;
 
 /**
  * Particle cloud REST APIs, modelled for the Retrofit library
+ * <p>
+ * Responses which change rarely but are fetched often (e.g.: the device list) are cached, and
+ * always revalidated with the cloud before use ("max-age=0"; for OkHttp, a request "no-cache"
+ * skips the cache altogether), so an unchanged response costs a 304 instead of a full body.
+ * Responses which are out of date as soon as they arrive (e.g.: variable values) are never
+ * cached ("no-store").  See {@link ApiResponseCache}.
  */
 public class ApiDefs {
 
@@ -35,12 +42,15 @@ public class ApiDefs {
      */
     public interface CloudApi {
 
+        @Headers("Cache-Control: no-store")
         @GET("/v1/sims/{lastIccid}/data_usage")
         Response getCurrentDataUsage(@Path("lastIccid") String lastIccid);
 
+        @Headers("Cache-Control: max-age=0")
         @GET("/v1/devices")
         List<Models.SimpleDevice> getDevices();
 
+        @Headers("Cache-Control: max-age=0")
         @GET("/v1/devices/{deviceID}")
         Models.CompleteDevice getDevice(@Path("deviceID") String deviceID);
 
@@ -65,18 +75,22 @@ public class ApiDefs {
                                           @Path("function") String function,
                                           @Body FunctionArgs args);
 
+        @Headers("Cache-Control: no-store")
         @GET("/v1/devices/{deviceID}/{variable}")
         ReadObjectVariableResponse getVariable(@Path("deviceID") String deviceID,
                                                @Path("variable") String variable);
 
+        @Headers("Cache-Control: no-store")
         @GET("/v1/devices/{deviceID}/{variable}")
         ReadIntVariableResponse getIntVariable(@Path("deviceID") String deviceID,
                                                @Path("variable") String variable);
 
+        @Headers("Cache-Control: no-store")
         @GET("/v1/devices/{deviceID}/{variable}")
         ReadStringVariableResponse getStringVariable(@Path("deviceID") String deviceID,
                                                      @Path("variable") String variable);
 
+        @Headers("Cache-Control: no-store")
         @GET("/v1/devices/{deviceID}/{variable}")
         ReadDoubleVariableResponse getDoubleVariable(@Path("deviceID") String deviceID,
                                                      @Path("variable") String variable);
@@ -8,6 +8,7 @@ import android.util.Base64;
 import com.google.gson.Gson;
 import com.squareup.okhttp.OkHttpClient;
 
+import java.io.File;
 import java.util.concurrent.TimeUnit;
 
 import javax.annotation.ParametersAreNonnullByDefault;
@@ -23,10 +24,9 @@ import retrofit.converter.GsonConverter;
 @ParametersAreNonnullByDefault
 public class ApiFactory {
 
-    // both values are in seconds
+    // in seconds
     private static final int REGULAR_TIMEOUT = 35;
-    // FIXME: find a less cheesy solution to the "rapid timeout" problem
-    private static final int PER_DEVICE_FAST_TIMEOUT = 5;
+    private static final String RESPONSE_CACHE_DIR_NAME = "particle-api-responses";
 
 
     // FIXME: this feels kind of lame... but maybe it's OK in practice. Need to think more about it.
@@ -47,8 +47,8 @@ public class ApiFactory {
 
     private final Context ctx;
     private final TokenGetterDelegate tokenDelegate;
+    private final ApiResponseCache responseCache;
     private final OkHttpClient normalTimeoutClient;
-    private final OkHttpClient fastTimeoutClient;
     private final OauthBasicAuthCredentialsProvider basicAuthCredentialsProvider;
     private final Gson gson;
 
@@ -59,15 +59,20 @@ public class ApiFactory {
         this.basicAuthCredentialsProvider = basicAuthProvider;
         this.gson = new Gson();
 
-        normalTimeoutClient = buildClientWithTimeout(REGULAR_TIMEOUT);
-        fastTimeoutClient = buildClientWithTimeout(PER_DEVICE_FAST_TIMEOUT);
+        responseCache = new ApiResponseCache(
+                new File(this.ctx.getCacheDir(), RESPONSE_CACHE_DIR_NAME));
+        normalTimeoutClient = buildClientWithTimeout(REGULAR_TIMEOUT, responseCache);
     }
 
-    private static OkHttpClient buildClientWithTimeout(int timeoutInSeconds) {
-        OkHttpClient client = new OkHttpClient();
+    private static OkHttpClient buildClientWithTimeout(int timeoutInSeconds,
+                                                       ApiResponseCache responseCache) {
+        // see ParallelDeviceFetcher for why the calls need to be cancellable
+        OkHttpClient client = new CancellableOkHttpClient();
         client.setConnectTimeout(timeoutInSeconds, TimeUnit.SECONDS);
         client.setReadTimeout(timeoutInSeconds, TimeUnit.SECONDS);
         client.setWriteTimeout(timeoutInSeconds, TimeUnit.SECONDS);
+        client.setCache(responseCache.getCache());
+        client.networkInterceptors().add(responseCache.getNetworkInterceptor());
         return client;
     }
 
@@ -79,15 +84,6 @@ public class ApiFactory {
         return restAdapter.create(ApiDefs.CloudApi.class);
     }
 
-    // FIXME: fix this ugliness
-    ApiDefs.CloudApi buildNewFastTimeoutCloudApi() {
-        RestAdapter restAdapter = buildCommonRestAdapterBuilder(gson, fastTimeoutClient)
-                .setRequestInterceptor(request -> request.addHeader("Authorization", "Bearer " +
-                        tokenDelegate.getTokenValue()))
-                .build();
-        return restAdapter.create(ApiDefs.CloudApi.class);
-    }
-
     ApiDefs.IdentityApi buildNewIdentityApi() {
         final String basicAuthValue = getBasicAuthValue();
 
@@ -105,6 +101,10 @@ public class ApiFactory {
         return gson;
     }
 
+    ApiResponseCache getResponseCache() {
+        return responseCache;
+    }
+
     private String getBasicAuthValue() {
         String authString = String.format("%s:%s",
                 basicAuthCredentialsProvider.getClientId(),
@@ -0,0 +1,93 @@
+package io.particle.android.sdk.cloud;
+
+import com.squareup.okhttp.Cache;
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import io.particle.android.sdk.utils.TLog;
+
+
+/**
+ * The HTTP response cache shared by the API clients, plus counters of how well it's working.
+ * <p>
+ * OkHttp does the actual caching and revalidation: when a cached response has an ETag or a
+ * Last-Modified date, requests for it are sent with If-None-Match or If-Modified-Since, and a
+ * 304 from the cloud is answered with the cached body.  Which responses get cached, and whether
+ * they're always revalidated, is set per endpoint in {@link ApiDefs.CloudApi}.
+ */
+@ParametersAreNonnullByDefault
+class ApiResponseCache {
+
+    private static final TLog log = TLog.get(ApiResponseCache.class);
+
+    private static final long MAX_SIZE_BYTES = 2 * 1024 * 1024;
+
+    private final Cache cache;
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong revalidationCount = new AtomicLong();
+    private final AtomicLong notModifiedCount = new AtomicLong();
+
+    ApiResponseCache(File directory) {
+        this.cache = new Cache(directory, MAX_SIZE_BYTES);
+    }
+
+    Cache getCache() {
+        return cache;
+    }
+
+    /**
+     * For {@link com.squareup.okhttp.OkHttpClient#networkInterceptors()}, where the conditional
+     * headers added by the cache are visible.
+     */
+    Interceptor getNetworkInterceptor() {
+        return chain -> {
+            Request request = chain.request();
+            boolean conditional = request.header("If-None-Match") != null
+                    || request.header("If-Modified-Since") != null;
+            if (conditional) {
+                revalidationCount.incrementAndGet();
+            }
+            Response response = chain.proceed(request);
+            if (conditional && response.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                notModifiedCount.incrementAndGet();
+            } else if (isCacheable(request)) {
+                // POSTs, function calls, "no-store" reads and the like are never hits either,
+                // so they don't count as misses
+                missCount.incrementAndGet();
+            }
+            return response;
+        };
+    }
+
+    ParticleHttpCacheMetrics getMetrics() {
+        return new ParticleHttpCacheMetrics(
+                cache.getRequestCount(),
+                cache.getHitCount(),
+                missCount.get(),
+                revalidationCount.get(),
+                notModifiedCount.get());
+    }
+
+    private static boolean isCacheable(Request request) {
+        return "GET".equals(request.method()) && !request.cacheControl().noStore();
+    }
+
+    /**
+     * Discard every cached response, e.g.: on logging out.  Does disk I/O.
+     */
+    void clear() {
+        try {
+            cache.evictAll();
+        } catch (IOException e) {
+            log.w("Unable to clear HTTP response cache", e);
+        }
+    }
+}
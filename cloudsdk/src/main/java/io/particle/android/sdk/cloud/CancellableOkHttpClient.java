@@ -0,0 +1,73 @@
+package io.particle.android.sdk.cloud;
+
+import android.support.annotation.Nullable;
+
+import com.squareup.okhttp.Call;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Request;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+
+/**
+ * An OkHttpClient whose calls can be cancelled from another thread, even though Retrofit's
+ * synchronous API never hands them out.
+ * <p>
+ * Interrupting a thread doesn't interrupt a blocking socket read, so a thread blocked in a
+ * Retrofit call can't otherwise be stopped before the read timeout.  Instead, a thread which
+ * may need its calls cancelled attaches a {@link CallSlot} first; any call it makes while the
+ * slot is attached is recorded there, and {@link CallSlot#cancel()} cancels it, which fails the
+ * call (and so the Retrofit method) with an IOException straight away.
+ */
+@ParametersAreNonnullByDefault
+class CancellableOkHttpClient extends OkHttpClient {
+
+    private static final ThreadLocal<CallSlot> currentSlot = new ThreadLocal<>();
+
+
+    static class CallSlot {
+
+        // guarded by "this"
+        @Nullable private Call call;
+        private boolean cancelled = false;
+
+        /**
+         * Cancel the slot's current call, if any, and any it makes after this.
+         */
+        synchronized void cancel() {
+            cancelled = true;
+            if (call != null) {
+                call.cancel();
+            }
+        }
+
+        synchronized void setCall(Call newCall) {
+            call = newCall;
+            if (cancelled) {
+                newCall.cancel();
+            }
+        }
+
+        /**
+         * Make this the current thread's slot, until {@link #detach()}.
+         */
+        void attach() {
+            currentSlot.set(this);
+        }
+
+        void detach() {
+            currentSlot.remove();
+        }
+    }
+
+
+    @Override
+    public Call newCall(Request request) {
+        Call call = super.newCall(request);
+        CallSlot slot = currentSlot.get();
+        if (slot != null) {
+            slot.setCall(call);
+        }
+        return call;
+    }
+}
@@ -0,0 +1,237 @@
+package io.particle.android.sdk.cloud;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.annotation.Nullable;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import io.particle.android.sdk.utils.Preconditions;
+import io.particle.android.sdk.utils.TLog;
+
+import static io.particle.android.sdk.utils.Py.map;
+
+
+/**
+ * Keeps only the most recent event for each (device ID, event name) pair, for UIs such as live
+ * dashboards which only ever show the latest value.
+ * <p>
+ * Pass the view as the handler when subscribing to events.  Incoming events just replace the
+ * previous value for their key and bump the view's version; instead of a callback per event,
+ * the {@link Listener} is called at most once per frame interval, on the listener's
+ * {@link Handler} (the main thread by default).  The UI then pulls whatever it needs, e.g.:
+ * with {@link #getLatest(String, String)} or {@link #snapshot()}, and can use
+ * {@link #getVersion()} to tell whether anything has changed since it last looked.
+ * <p>
+ * For best results, subscribe with {@link ParticleEventQueuePolicy#conflateLatest(int)}, so
+ * that events which are superseded while still queued don't reach the view at all.
+ * <p>
+ * Errors are logged, and don't otherwise affect the view.
+ */
+@ParametersAreNonnullByDefault
+public class ConflatedEventView implements ParticleEventHandler {
+
+    public interface Listener {
+
+        /**
+         * Called when the view has changed since the last call.
+         *
+         * @param version the view's version at the time of the call; newer events may already
+         *                have arrived by the time the listener reads the view
+         */
+        void onViewChanged(ConflatedEventView view, long version);
+    }
+
+
+    /**
+     * Identifies a series of events in the view.
+     */
+    public static final class Key {
+
+        public final String deviceId;
+        public final String eventName;
+
+        public Key(String deviceId, String eventName) {
+            this.deviceId = deviceId;
+            this.eventName = eventName;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key other = (Key) o;
+            return deviceId.equals(other.deviceId) && eventName.equals(other.eventName);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * deviceId.hashCode() + eventName.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return "Key{" +
+                    "deviceId=" + deviceId +
+                    ", eventName=" + eventName +
+                    '}';
+        }
+    }
+
+
+    /**
+     * Roughly one frame at 60 FPS.
+     */
+    public static final long DEFAULT_FRAME_INTERVAL_MILLIS = 16;
+
+    private static final TLog log = TLog.get(ConflatedEventView.class);
+
+    private final ConcurrentMap<Key, ParticleEvent> latestEvents = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
+
+    @Nullable private final Listener listener;
+    @Nullable private final Handler listenerHandler;
+    private final long frameIntervalMillis;
+
+    private final AtomicBoolean notificationScheduled = new AtomicBoolean(false);
+    // only accessed on the listener handler's thread
+    private long lastNotificationUptimeMillis = 0;
+    private long lastNotifiedVersion = 0;
+
+    private final Runnable notifyTask = this::notifyListener;
+
+    /**
+     * Create a view which is only ever read on demand, without change notifications.
+     */
+    public ConflatedEventView() {
+        this(null, DEFAULT_FRAME_INTERVAL_MILLIS, null);
+    }
+
+    /**
+     * Create a view which notifies the listener on the main thread, at most once per frame
+     * interval.
+     */
+    public ConflatedEventView(Listener listener, long frameIntervalMillis) {
+        this(listener, frameIntervalMillis, new Handler(Looper.getMainLooper()));
+    }
+
+    /**
+     * Create a view which notifies the listener on the given handler's thread, at most once per
+     * frame interval.
+     *
+     * @param listenerHandler the handler to call the listener on; only optional when there's no
+     *                        listener
+     */
+    public ConflatedEventView(@Nullable Listener listener, long frameIntervalMillis,
+                              @Nullable Handler listenerHandler) {
+        Preconditions.checkArgument(frameIntervalMillis >= 0,
+                "Frame interval must not be negative");
+        Preconditions.checkArgument(listener == null || listenerHandler != null,
+                "A listener requires a handler");
+        this.listener = listener;
+        this.frameIntervalMillis = frameIntervalMillis;
+        this.listenerHandler = listenerHandler;
+    }
+
+    @Override
+    public void onEvent(String eventName, ParticleEvent particleEvent) {
+        if (particleEvent.deviceId == null) {
+            return;
+        }
+        latestEvents.put(new Key(particleEvent.deviceId, eventName), particleEvent);
+        version.incrementAndGet();
+        scheduleNotification();
+    }
+
+    @Override
+    public void onEventError(Exception e) {
+        log.w("Event error in conflated event view", e);
+    }
+
+    /**
+     * @return the most recent event with the given name from the given device, or null if
+     * there hasn't been one
+     */
+    @Nullable
+    public ParticleEvent getLatest(String deviceId, String eventName) {
+        return latestEvents.get(new Key(deviceId, eventName));
+    }
+
+    /**
+     * @return a copy of the latest event for every key
+     */
+    public Map<Key, ParticleEvent> snapshot() {
+        Map<Key, ParticleEvent> snapshot = map();
+        snapshot.putAll(latestEvents);
+        return snapshot;
+    }
+
+    /**
+     * @return the latest event with each event name from the given device, by event name
+     */
+    public Map<String, ParticleEvent> snapshotForDevice(String deviceId) {
+        Map<String, ParticleEvent> snapshot = map();
+        for (Map.Entry<Key, ParticleEvent> entry : latestEvents.entrySet()) {
+            if (entry.getKey().deviceId.equals(deviceId)) {
+                snapshot.put(entry.getKey().eventName, entry.getValue());
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return a counter which goes up every time the view changes
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    public int size() {
+        return latestEvents.size();
+    }
+
+    public void clear() {
+        latestEvents.clear();
+        version.incrementAndGet();
+        scheduleNotification();
+    }
+
+    private void scheduleNotification() {
+        if (listener == null || !notificationScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        // the delay is worked out on the handler's thread, which owns the timing state
+        listenerHandler.post(notifyTask);
+    }
+
+    // called on the listener handler's thread
+    private void notifyListener() {
+        long now = SystemClock.uptimeMillis();
+        long nextAllowed = lastNotificationUptimeMillis + frameIntervalMillis;
+        if (now < nextAllowed) {
+            listenerHandler.postAtTime(notifyTask, nextAllowed);
+            return;
+        }
+
+        // clear the flag before reading the version, so that no change can be missed
+        notificationScheduled.set(false);
+        long currentVersion = version.get();
+        if (currentVersion == lastNotifiedVersion) {
+            return;
+        }
+        lastNotificationUptimeMillis = now;
+        lastNotifiedVersion = currentVersion;
+        listener.onViewChanged(this, currentVersion);
+    }
+}
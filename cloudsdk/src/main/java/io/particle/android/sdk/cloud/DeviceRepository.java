@@ -0,0 +1,168 @@
+package io.particle.android.sdk.cloud;
+
+import android.support.annotation.WorkerThread;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import io.particle.android.sdk.cloud.Responses.Models.CompleteDevice;
+import io.particle.android.sdk.cloud.exceptions.ParticleCloudException;
+import io.particle.android.sdk.utils.TLog;
+
+
+/**
+ * Decides when a device already known to {@link ParticleCloud} can be returned by
+ * {@link ParticleCloud#getDevice(String)} without fetching it again: stale-while-revalidate.
+ * <p>
+ * A device fetched less than the TTL ago is fresh, and used as is.  A device fetched longer ago
+ * than that is stale: it's still used, so that the caller doesn't wait, but a refresh is started
+ * in the background, and anyone listening for
+ * {@link BroadcastContract#BROADCAST_DEVICES_UPDATED} hears when it's done.  Only one refresh
+ * per device is ever pending.
+ * <p>
+ * Only full fetches of a device count; e.g.: being listed by
+ * {@link ParticleCloud#getDevices()} with lazy hydration doesn't make a device fresh.
+ * <p>
+ * {@link #clear()} forgets everything, e.g.: on logging out; refreshes started before that
+ * are ignored, even if they're already in progress.
+ */
+@ParametersAreNonnullByDefault
+class DeviceRepository {
+
+    interface DeviceFetcher {
+
+        @WorkerThread
+        CompleteDevice fetchDevice(String deviceId) throws ParticleCloudException;
+
+        /**
+         * Store the result of a background refresh.  Called while holding the repository's
+         * lock, so that it can't race with {@link #clear()}.
+         */
+        void onDeviceRefreshed(CompleteDevice device);
+    }
+
+
+    private static final TLog log = TLog.get(DeviceRepository.class);
+
+    private final Executor executor;
+    private final DeviceFetcher fetcher;
+
+    // by device ID, from System.nanoTime()
+    private final ConcurrentMap<String, Long> fetchedAtNanos = new ConcurrentHashMap<>();
+    private final Set<String> pendingRefreshes =
+            Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private volatile long ttlMillis = 0;
+
+    private final Object lock = new Object();
+    // guarded by "lock"; incremented by clear(), so that older refreshes can tell they're stale
+    private int generation = 0;
+
+    DeviceRepository(Executor executor, DeviceFetcher fetcher) {
+        this.executor = executor;
+        this.fetcher = fetcher;
+    }
+
+    /**
+     * @param millis how long a fetched device stays fresh; 0 turns caching off
+     */
+    void setTtlMillis(long millis) {
+        ttlMillis = millis;
+    }
+
+    long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    void onDeviceFetched(String deviceId) {
+        fetchedAtNanos.put(deviceId, System.nanoTime());
+    }
+
+    void forget(String deviceId) {
+        fetchedAtNanos.remove(deviceId);
+    }
+
+    /**
+     * Forget every device, and ignore the results of any refresh already scheduled or running.
+     */
+    void clear() {
+        synchronized (lock) {
+            generation++;
+            fetchedAtNanos.clear();
+            pendingRefreshes.clear();
+        }
+    }
+
+    /**
+     * @return true if the known copy of the device may be returned as it is, in which case a
+     * background refresh is started if it's stale; false if it must be fetched
+     */
+    boolean useKnownDevice(String deviceId) {
+        long ttl = ttlMillis;
+        Long fetchedAt = fetchedAtNanos.get(deviceId);
+        if (ttl <= 0 || fetchedAt == null) {
+            return false;
+        }
+        if (System.nanoTime() - fetchedAt >= TimeUnit.MILLISECONDS.toNanos(ttl)) {
+            scheduleRefresh(deviceId);
+        }
+        return true;
+    }
+
+    private void scheduleRefresh(String deviceId) {
+        int scheduledIn;
+        synchronized (lock) {
+            if (!pendingRefreshes.add(deviceId)) {
+                return;
+            }
+            scheduledIn = generation;
+        }
+        try {
+            executor.execute(() -> refresh(deviceId, scheduledIn));
+        } catch (RejectedExecutionException e) {
+            endRefresh(deviceId, scheduledIn);
+            log.w("Unable to schedule refresh of device " + deviceId, e);
+        }
+    }
+
+    @WorkerThread
+    private void refresh(String deviceId, int scheduledIn) {
+        try {
+            if (isStale(scheduledIn)) {
+                return;
+            }
+            CompleteDevice device = fetcher.fetchDevice(deviceId);
+            synchronized (lock) {
+                if (!isStale(scheduledIn)) {
+                    fetcher.onDeviceRefreshed(device);
+                }
+            }
+        } catch (ParticleCloudException e) {
+            log.w("Unable to refresh device " + deviceId, e);
+        } finally {
+            endRefresh(deviceId, scheduledIn);
+        }
+    }
+
+    private boolean isStale(int scheduledIn) {
+        synchronized (lock) {
+            return scheduledIn != generation;
+        }
+    }
+
+    private void endRefresh(String deviceId, int scheduledIn) {
+        synchronized (lock) {
+            // after a clear(), the device may have a newer refresh pending
+            if (!isStale(scheduledIn)) {
+                pendingRefreshes.remove(deviceId);
+            }
+        }
+    }
+}
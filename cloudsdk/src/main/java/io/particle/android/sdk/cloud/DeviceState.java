@@ -43,6 +43,8 @@ class DeviceState implements Parcelable {
     @Nullable final ParticleDevice.ParticleDeviceType deviceType;
     @Nullable final Boolean requiresUpdate;
     @Nullable final Date lastHeard;
+    // false if the functions and variables haven't been fetched yet, and so are empty
+    final boolean hydrated;
 
     DeviceState(DeviceStateBuilder deviceStateBuilder) {
         this.deviceId = deviceStateBuilder.deviceId;
@@ -64,6 +66,7 @@ class DeviceState implements Parcelable {
         this.status = deviceStateBuilder.status;
         this.requiresUpdate = deviceStateBuilder.requiresUpdate;
         this.lastHeard = deviceStateBuilder.lastHeard;
+        this.hydrated = deviceStateBuilder.hydrated;
     }
 
     //region ImmutabilityPhun
@@ -88,6 +91,7 @@ class DeviceState implements Parcelable {
                 .status(other.status)
                 .requiresUpdate(other.requiresUpdate)
                 .lastHeard(other.lastHeard)
+                .hydrated(other.hydrated)
                 .build();
     }
 
@@ -110,6 +114,31 @@ class DeviceState implements Parcelable {
                 .status(other.status)
                 .requiresUpdate(other.requiresUpdate)
                 .lastHeard(other.lastHeard)
+                .hydrated(other.hydrated)
+                .build();
+    }
+
+
+    static DeviceState withNewLiveState(DeviceState other, @Nullable Boolean newConnectedState,
+                                        @Nullable Date newLastHeard) {
+        return new DeviceStateBuilder(other.deviceId, other.functions, other.variables)
+                .name(other.name)
+                .cellular(other.cellular)
+                .connected(newConnectedState)
+                .version(other.version)
+                .deviceType(other.deviceType)
+                .platformId(other.platformId)
+                .productId(other.productId)
+                .imei(other.imei)
+                .iccid(other.lastIccid)
+                .currentBuild(other.currentBuild)
+                .defaultBuild(other.defaultBuild)
+                .ipAddress(other.ipAddress)
+                .lastAppName(other.lastAppName)
+                .status(other.status)
+                .requiresUpdate(other.requiresUpdate)
+                .lastHeard(newLastHeard)
+                .hydrated(other.hydrated)
                 .build();
     }
     //endregion
@@ -135,6 +164,7 @@ class DeviceState implements Parcelable {
         status = (String) in.readValue(String.class.getClassLoader());
         requiresUpdate = (Boolean) in.readValue(Boolean.class.getClassLoader());
         lastHeard = new Date((Long) in.readValue(Long.class.getClassLoader()));
+        hydrated = (Boolean) in.readValue(Boolean.class.getClassLoader());
     }
 
     @Override
@@ -158,6 +188,7 @@ class DeviceState implements Parcelable {
         dest.writeValue(status);
         dest.writeValue(requiresUpdate);
         dest.writeValue(lastHeard != null ? lastHeard.getTime() : 0);
+        dest.writeValue(hydrated);
     }
 
     public static final Creator<DeviceState> CREATOR = new Creator<DeviceState>() {
@@ -198,6 +229,7 @@ class DeviceState implements Parcelable {
         @Nullable ParticleDevice.ParticleDeviceType deviceType;
         @Nullable Boolean requiresUpdate;
         @Nullable Date lastHeard;
+        boolean hydrated = true;
 
 
         DeviceStateBuilder(String deviceId, Set<String> functions, Map<String, ParticleDevice.VariableType> variables) {
@@ -287,6 +319,11 @@ class DeviceState implements Parcelable {
             return this;
         }
 
+        public DeviceStateBuilder hydrated(boolean hydrated) {
+            this.hydrated = hydrated;
+            return this;
+        }
+
         public DeviceState build() {
             return new DeviceState(this);
         }
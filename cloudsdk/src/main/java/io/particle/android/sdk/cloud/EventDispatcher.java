@@ -0,0 +1,476 @@
+package io.particle.android.sdk.cloud;
+
+import android.support.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import io.particle.android.sdk.utils.Preconditions;
+import io.particle.android.sdk.utils.TLog;
+
+import static io.particle.android.sdk.utils.Py.list;
+import static io.particle.android.sdk.utils.Py.map;
+
+
+/**
+ * Hands events off from the SSE transport threads to subscriber handlers.
+ * <p>
+ * Each subscription gets its own {@link Channel}, which queues events for that subscription and
+ * delivers them to its handler one at a time, in order.  Channels only occupy a dispatcher
+ * thread while they have events to deliver, so any number of subscriptions can share the same
+ * small pool of threads.
+ * <p>
+ * Channels for a {@link ParticleBatchEventHandler} deliver everything waiting in the queue at
+ * once, up to a maximum batch size, and may hold back the start of a batch for a short while to
+ * let more events accumulate.
+ */
+@ParametersAreNonnullByDefault
+class EventDispatcher {
+
+    private static final TLog log = TLog.get(EventDispatcher.class);
+
+    // how many events a channel may deliver before giving up its thread to other channels
+    private static final int MAX_EVENTS_PER_DRAIN = 16;
+
+    private static final int CPU_COUNT = Runtime.getRuntime().availableProcessors();
+    private static final int THREAD_COUNT = Math.max(2, Math.min(CPU_COUNT, 4));
+    private static final int KEEP_ALIVE_SECONDS = 30;
+
+    private final ScheduledExecutorService executor;
+
+    EventDispatcher() {
+        this(buildExecutor());
+    }
+
+    EventDispatcher(ScheduledExecutorService executor) {
+        this.executor = executor;
+    }
+
+    Channel newChannel(ParticleEventHandler handler, ParticleEventQueuePolicy policy) {
+        return new Channel(handler, null, 1, 0, policy);
+    }
+
+    Channel newBatchChannel(ParticleBatchEventHandler handler, int maxBatchSize,
+                            long maxBatchDelayMillis, ParticleEventQueuePolicy policy) {
+        Preconditions.checkArgument(maxBatchSize > 0, "Max batch size must be greater than 0");
+        return new Channel(null, handler, maxBatchSize, maxBatchDelayMillis, policy);
+    }
+
+    ScheduledFuture<?> scheduleAtFixedRate(Runnable task, long periodMillis) {
+        return executor.scheduleAtFixedRate(task, periodMillis, periodMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+
+    private static ScheduledExecutorService buildExecutor() {
+        AtomicInteger threadCount = new AtomicInteger(1);
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable,
+                    "Particle event dispatch #" + threadCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+        // Only one drain task is ever pending per channel, so the work queue is bounded by the
+        // number of subscriptions.
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(THREAD_COUNT,
+                threadFactory);
+        executor.setKeepAliveTime(KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+
+    /**
+     * Per-subscription queue, fed from the transport thread and drained on the dispatcher.
+     * <p>
+     * What happens when the queue is full depends on the subscription's
+     * {@link ParticleEventQueuePolicy}.  Errors are never blocked on, dropped, or counted
+     * against the capacity.
+     */
+    class Channel implements ParticleEventHandler {
+
+        // exactly one of these is set
+        @Nullable private final ParticleEventHandler handler;
+        @Nullable private final ParticleBatchEventHandler batchHandler;
+        private final int maxBatchSize;
+        private final long maxBatchDelayMillis;
+
+        private final ParticleEventQueuePolicy policy;
+        private final int capacity;
+        // a batch this big is started without waiting; the queue can't hold more than capacity
+        private final int fullBatchSize;
+        // elements are either PendingEvents or Exceptions
+        private final ArrayDeque<Object> queue = new ArrayDeque<>();
+        // waiting events by conflation key; only used with CONFLATE_LATEST
+        private final Map<String, PendingEvent> conflatableEvents = map();
+
+        private int pendingEventCount = 0;
+        private boolean drainScheduled = false;
+        // set while the start of a batch is being held back
+        @Nullable private ScheduledFuture<?> delayedDrain;
+        private boolean closed = false;
+
+        private final Runnable drainTask = this::drain;
+
+        final ChannelCounters counters = new ChannelCounters();
+
+        Channel(@Nullable ParticleEventHandler handler,
+                @Nullable ParticleBatchEventHandler batchHandler,
+                int maxBatchSize, long maxBatchDelayMillis, ParticleEventQueuePolicy policy) {
+            this.handler = handler;
+            this.batchHandler = batchHandler;
+            this.maxBatchSize = maxBatchSize;
+            this.maxBatchDelayMillis = maxBatchDelayMillis;
+            this.policy = policy;
+            this.capacity = policy.getCapacity();
+            this.fullBatchSize = Math.min(maxBatchSize, capacity);
+        }
+
+        /**
+         * @return the handler events are delivered to, i.e.: a ParticleEventHandler or a
+         * ParticleBatchEventHandler
+         */
+        Object getHandler() {
+            return (handler != null) ? handler : batchHandler;
+        }
+
+        int getQueueDepth() {
+            synchronized (queue) {
+                return pendingEventCount;
+            }
+        }
+
+        int getCapacity() {
+            return capacity;
+        }
+
+        @Override
+        public void onEvent(String eventName, ParticleEvent particleEvent) {
+            synchronized (queue) {
+                if (closed) {
+                    return;
+                }
+                counters.eventCount.incrementAndGet();
+
+                String conflationKey = null;
+                switch (policy.getOverflowStrategy()) {
+                    case BLOCK:
+                        if (!waitForSpace()) {
+                            return;
+                        }
+                        break;
+
+                    case DROP_OLDEST:
+                        if (pendingEventCount >= capacity) {
+                            dropOldestEvent();
+                        }
+                        break;
+
+                    case DROP_NEWEST:
+                        if (pendingEventCount >= capacity) {
+                            onEventDropped();
+                            return;
+                        }
+                        break;
+
+                    case CONFLATE_LATEST:
+                        conflationKey = eventName + "\n" + particleEvent.deviceId;
+                        PendingEvent waiting = conflatableEvents.get(conflationKey);
+                        if (waiting != null) {
+                            waiting.event = particleEvent;
+                            policy.onEventConflated();
+                            counters.conflatedEventCount.incrementAndGet();
+                            return;
+                        }
+                        if (pendingEventCount >= capacity) {
+                            dropOldestEvent();
+                        }
+                        break;
+                }
+
+                PendingEvent pending = new PendingEvent(eventName, particleEvent, conflationKey);
+                if (conflationKey != null) {
+                    conflatableEvents.put(conflationKey, pending);
+                }
+                queue.add(pending);
+                pendingEventCount++;
+                // otherwise a full queue would sit out the batch delay, blocking the transport
+                // thread or dropping events meanwhile
+                scheduleDrainIfNeeded(pendingEventCount >= fullBatchSize);
+            }
+        }
+
+        @Override
+        public void onEventError(Exception e) {
+            synchronized (queue) {
+                if (closed) {
+                    return;
+                }
+                queue.add(e);
+                scheduleDrainIfNeeded(true);
+            }
+        }
+
+        /**
+         * Stop delivering events, and discard any which are still queued.  An event which is
+         * already being handled is allowed to finish.
+         */
+        void close() {
+            synchronized (queue) {
+                closed = true;
+                queue.clear();
+                conflatableEvents.clear();
+                pendingEventCount = 0;
+                queue.notifyAll();
+            }
+        }
+
+        // Must be called while holding the lock on "queue".  Returns false if the channel was
+        // closed or the thread interrupted while waiting.
+        private boolean waitForSpace() {
+            while (pendingEventCount >= capacity && !closed) {
+                try {
+                    queue.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return !closed;
+        }
+
+        // must be called while holding the lock on "queue"
+        private void dropOldestEvent() {
+            for (Iterator<Object> iter = queue.iterator(); iter.hasNext(); ) {
+                Object item = iter.next();
+                if (item instanceof PendingEvent) {
+                    iter.remove();
+                    forget((PendingEvent) item);
+                    onEventDropped();
+                    return;
+                }
+            }
+        }
+
+        private void onEventDropped() {
+            policy.onEventDropped();
+            counters.droppedEventCount.incrementAndGet();
+        }
+
+        // must be called while holding the lock on "queue"
+        private void forget(PendingEvent pending) {
+            pendingEventCount--;
+            if (pending.conflationKey != null) {
+                conflatableEvents.remove(pending.conflationKey);
+            }
+        }
+
+        // Must be called while holding the lock on "queue".  When "readyNow" is false, i.e.: a
+        // batch channel doesn't have a full batch yet, the drain is held back to let the batch
+        // fill up.
+        private void scheduleDrainIfNeeded(boolean readyNow) {
+            if (drainScheduled) {
+                // a full batch shouldn't wait for the rest of the delay
+                if (readyNow && delayedDrain != null && delayedDrain.cancel(false)) {
+                    delayedDrain = null;
+                    executor.execute(drainTask);
+                }
+                return;
+            }
+            drainScheduled = true;
+            if (readyNow || maxBatchDelayMillis <= 0) {
+                executor.execute(drainTask);
+            } else {
+                delayedDrain = executor.schedule(drainTask, maxBatchDelayMillis,
+                        TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private void drain() {
+            boolean moreWaiting = (batchHandler != null) ? drainBatch() : drainSingleEvents();
+
+            // more events may be waiting, but let other channels have a turn first
+            synchronized (queue) {
+                if (!moreWaiting || queue.isEmpty()) {
+                    drainScheduled = false;
+                    return;
+                }
+            }
+            executor.execute(drainTask);
+        }
+
+        // returns true if the queue may still have events in it
+        private boolean drainSingleEvents() {
+            for (int i = 0; i < MAX_EVENTS_PER_DRAIN; i++) {
+                Object next;
+                synchronized (queue) {
+                    delayedDrain = null;
+                    next = queue.poll();
+                    if (next == null) {
+                        return false;
+                    }
+                    if (next instanceof PendingEvent) {
+                        forget((PendingEvent) next);
+                        queue.notifyAll();
+                    }
+                }
+                deliver(next);
+            }
+            return true;
+        }
+
+        // returns true if the queue may still have events in it
+        private boolean drainBatch() {
+            List<String> eventNames = list();
+            List<ParticleEvent> events = list();
+            Exception error = null;
+
+            synchronized (queue) {
+                delayedDrain = null;
+                // stop at errors, so that events and errors are still delivered in order
+                while (events.size() < maxBatchSize) {
+                    Object next = queue.peek();
+                    if (next == null) {
+                        break;
+                    }
+                    if (next instanceof Exception) {
+                        if (events.isEmpty()) {
+                            queue.poll();
+                            error = (Exception) next;
+                        }
+                        break;
+                    }
+                    queue.poll();
+                    PendingEvent pending = (PendingEvent) next;
+                    forget(pending);
+                    eventNames.add(pending.eventName);
+                    events.add(pending.event);
+                }
+                if (error == null && events.isEmpty()) {
+                    return false;
+                }
+                queue.notifyAll();
+            }
+
+            if (error != null) {
+                deliverError(error);
+            } else {
+                long now = System.currentTimeMillis();
+                for (ParticleEvent event : events) {
+                    counters.recordLag(event, now);
+                }
+                long startNanos = System.nanoTime();
+                try {
+                    batchHandler.onEvents(eventNames, events);
+                } catch (Exception ex) {
+                    deliverError(ex);
+                }
+                counters.recordHandlerCall(events.size(), System.nanoTime() - startNanos);
+            }
+            return true;
+        }
+
+        private void deliver(Object item) {
+            if (item instanceof PendingEvent) {
+                PendingEvent pending = (PendingEvent) item;
+                counters.recordLag(pending.event, System.currentTimeMillis());
+                long startNanos = System.nanoTime();
+                try {
+                    handler.onEvent(pending.eventName, pending.event);
+                } catch (Exception ex) {
+                    deliverError(ex);
+                }
+                counters.recordHandlerCall(1, System.nanoTime() - startNanos);
+            } else {
+                deliverError((Exception) item);
+            }
+        }
+
+        private void deliverError(Exception error) {
+            // an exception escaping here would leave the channel stuck with a drain scheduled
+            try {
+                if (handler != null) {
+                    handler.onEventError(error);
+                } else {
+                    batchHandler.onEventError(error);
+                }
+            } catch (Exception ex) {
+                log.e("Error thrown from onEventError()", ex);
+            }
+        }
+    }
+
+
+    /**
+     * Running totals for one channel.  The "max" maximums are since they were last reset, by the
+     * periodic metrics listener; the "peak" ones are since the channel was created.
+     */
+    static class ChannelCounters {
+
+        final AtomicLong eventCount = new AtomicLong();
+        final AtomicLong deliveredEventCount = new AtomicLong();
+        final AtomicLong droppedEventCount = new AtomicLong();
+        final AtomicLong conflatedEventCount = new AtomicLong();
+        final AtomicLong handlerCallCount = new AtomicLong();
+        final AtomicLong handlerNanos = new AtomicLong();
+        final AtomicLong maxHandlerNanos = new AtomicLong();
+        final AtomicLong peakHandlerNanos = new AtomicLong();
+        final AtomicLong lagCount = new AtomicLong();
+        final AtomicLong lagMillis = new AtomicLong();
+        final AtomicLong maxLagMillis = new AtomicLong();
+        final AtomicLong peakLagMillis = new AtomicLong();
+
+        void recordLag(ParticleEvent event, long nowMillis) {
+            if (event.publishedAt == null) {
+                return;
+            }
+            long lag = nowMillis - event.publishedAt.getTime();
+            lagCount.incrementAndGet();
+            lagMillis.addAndGet(lag);
+            updateMax(maxLagMillis, lag);
+            updateMax(peakLagMillis, lag);
+        }
+
+        void recordHandlerCall(int eventCount, long nanos) {
+            deliveredEventCount.addAndGet(eventCount);
+            handlerCallCount.incrementAndGet();
+            handlerNanos.addAndGet(nanos);
+            updateMax(maxHandlerNanos, nanos);
+            updateMax(peakHandlerNanos, nanos);
+        }
+
+        private static void updateMax(AtomicLong max, long value) {
+            long current = max.get();
+            while (value > current && !max.compareAndSet(current, value)) {
+                current = max.get();
+            }
+        }
+    }
+
+
+    private static class PendingEvent {
+
+        final String eventName;
+        @Nullable final String conflationKey;
+        // replaced by newer events while waiting, when conflating
+        ParticleEvent event;
+
+        PendingEvent(String eventName, ParticleEvent event, @Nullable String conflationKey) {
+            this.eventName = eventName;
+            this.event = event;
+            this.conflationKey = conflationKey;
+        }
+    }
+
+}
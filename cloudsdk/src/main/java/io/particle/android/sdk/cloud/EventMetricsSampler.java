@@ -0,0 +1,115 @@
+package io.particle.android.sdk.cloud;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import io.particle.android.sdk.cloud.EventDispatcher.ChannelCounters;
+
+
+/**
+ * Turns the running totals of one subscription's stream and channel into
+ * {@link ParticleEventStreamMetrics}, working out rates and averages from what has changed
+ * over some interval.
+ * <p>
+ * Snapshots taken on demand ({@link #snapshot(long)}) don't change anything, and cover the
+ * whole life of the subscription.  Only the periodic metrics listener's reports
+ * ({@link #sampleInterval(long)}) cover the interval since its previous report, and reset the
+ * interval maximums; so however often snapshots are taken, the listener's reports are complete.
+ */
+@ParametersAreNonnullByDefault
+class EventMetricsSampler {
+
+    private final String streamUri;
+    private final EventStreamCounters streamCounters;
+    private final EventDispatcher.Channel channel;
+
+    // totals when the subscription was created
+    private final Totals start;
+    // totals as of the listener's previous report; guarded by "this"
+    private Totals lastReport;
+
+    EventMetricsSampler(String streamUri, EventStreamCounters streamCounters,
+                        EventDispatcher.Channel channel) {
+        this.streamUri = streamUri;
+        this.streamCounters = streamCounters;
+        this.channel = channel;
+        this.start = readTotals();
+        this.lastReport = start;
+    }
+
+    ParticleEventStreamMetrics snapshot(long subscriptionId) {
+        ChannelCounters counters = channel.counters;
+        return build(subscriptionId, start, readTotals(), counters.peakHandlerNanos.get(),
+                counters.peakLagMillis.get());
+    }
+
+    synchronized ParticleEventStreamMetrics sampleInterval(long subscriptionId) {
+        ChannelCounters counters = channel.counters;
+        Totals now = readTotals();
+        ParticleEventStreamMetrics metrics = build(subscriptionId, lastReport, now,
+                counters.maxHandlerNanos.getAndSet(0), counters.maxLagMillis.getAndSet(0));
+        lastReport = now;
+        return metrics;
+    }
+
+    private ParticleEventStreamMetrics build(long subscriptionId, Totals since, Totals now,
+                                             long maxHandlerNanos, long maxLagMillis) {
+        ChannelCounters counters = channel.counters;
+        double seconds = Math.max(1, now.nanos - since.nanos) / 1e9;
+        return new ParticleEventStreamMetrics(
+                subscriptionId,
+                streamUri,
+                (now.nanos - since.nanos) / 1000000,
+                now.eventCount,
+                counters.deliveredEventCount.get(),
+                (now.eventCount - since.eventCount) / seconds,
+                now.byteCount,
+                (now.byteCount - since.byteCount) / seconds,
+                mean(now.parseNanos - since.parseNanos,
+                        now.streamEventCount - since.streamEventCount) / 1000,
+                streamCounters.filteredEventCount.get(),
+                channel.getQueueDepth(),
+                channel.getCapacity(),
+                counters.droppedEventCount.get(),
+                counters.conflatedEventCount.get(),
+                mean(now.handlerNanos - since.handlerNanos,
+                        now.handlerCallCount - since.handlerCallCount) / 1000,
+                maxHandlerNanos / 1000.0,
+                mean(now.lagMillis - since.lagMillis, now.lagCount - since.lagCount),
+                maxLagMillis,
+                streamCounters.reconnectCount.get(),
+                streamCounters.stallCount.get());
+    }
+
+    private Totals readTotals() {
+        ChannelCounters counters = channel.counters;
+        Totals totals = new Totals();
+        totals.nanos = System.nanoTime();
+        totals.eventCount = counters.eventCount.get();
+        totals.byteCount = streamCounters.byteCount.get();
+        totals.streamEventCount = streamCounters.eventCount.get();
+        totals.parseNanos = streamCounters.parseNanos.get();
+        totals.handlerCallCount = counters.handlerCallCount.get();
+        totals.handlerNanos = counters.handlerNanos.get();
+        totals.lagCount = counters.lagCount.get();
+        totals.lagMillis = counters.lagMillis.get();
+        return totals;
+    }
+
+    private static double mean(long total, long count) {
+        return (count == 0) ? 0 : (double) total / count;
+    }
+
+
+    private static class Totals {
+
+        long nanos;
+        long eventCount;
+        long byteCount;
+        long streamEventCount;
+        long parseNanos;
+        long handlerCallCount;
+        long handlerNanos;
+        long lagCount;
+        long lagMillis;
+    }
+}
@@ -0,0 +1,188 @@
+package io.particle.android.sdk.cloud;
+
+import android.support.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import static io.particle.android.sdk.utils.Py.list;
+
+
+/**
+ * Prefix trie keyed on event names, used to route events from a single SSE stream to every
+ * subscriber whose event name prefix matches.
+ * <p>
+ * A value registered under a null or empty prefix matches every event name, the same way the
+ * cloud treats a subscription without a prefix.
+ */
+@ParametersAreNonnullByDefault
+class EventNameTrie<T> {
+
+    private final Node<T> root = new Node<>();
+    private int size = 0;
+
+    synchronized void put(@Nullable String prefix, T value) {
+        Node<T> node = root;
+        if (prefix != null) {
+            for (int i = 0; i < prefix.length(); i++) {
+                node = node.getOrAddChild(prefix.charAt(i));
+            }
+        }
+        if (node.values == null) {
+            node.values = list();
+        }
+        node.values.add(value);
+        size++;
+    }
+
+    /**
+     * @return true if the value was found (by identity) and removed
+     */
+    synchronized boolean remove(@Nullable String prefix, T value) {
+        String key = (prefix == null) ? "" : prefix;
+        boolean removed = remove(root, key, 0, value);
+        if (removed) {
+            size--;
+        }
+        return removed;
+    }
+
+    /**
+     * Find every value registered under a prefix of <code>eventName</code>, from the shortest
+     * prefix to the longest.
+     */
+    synchronized List<T> findMatches(String eventName) {
+        List<T> matches = null;
+        Node<T> node = root;
+        int i = 0;
+        while (node != null) {
+            if (node.values != null) {
+                if (matches == null) {
+                    matches = list();
+                }
+                matches.addAll(node.values);
+            }
+            if (i == eventName.length()) {
+                break;
+            }
+            node = node.getChild(eventName.charAt(i++));
+        }
+        return (matches == null) ? Collections.emptyList() : matches;
+    }
+
+    synchronized List<T> values() {
+        List<T> all = list();
+        collect(root, all);
+        return all;
+    }
+
+    synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+
+    private boolean remove(Node<T> node, String key, int depth, T value) {
+        if (depth == key.length()) {
+            if (node.values == null) {
+                return false;
+            }
+            for (int i = 0; i < node.values.size(); i++) {
+                if (node.values.get(i) == value) {
+                    node.values.remove(i);
+                    if (node.values.isEmpty()) {
+                        node.values = null;
+                    }
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        char c = key.charAt(depth);
+        Node<T> child = node.getChild(c);
+        if (child == null || !remove(child, key, depth + 1, value)) {
+            return false;
+        }
+        // prune branches which no longer lead anywhere
+        if (child.isEmpty()) {
+            node.removeChild(c);
+        }
+        return true;
+    }
+
+    private void collect(Node<T> node, List<T> into) {
+        if (node.values != null) {
+            into.addAll(node.values);
+        }
+        for (int i = 0; i < node.childCount; i++) {
+            collect(node.children[i], into);
+        }
+    }
+
+
+    // Children are kept in small parallel arrays sorted by char; event names are short and the
+    // fan-out at any given node is low, so this is cheaper than a map of boxed Characters.
+    private static class Node<T> {
+
+        private static final char[] NO_KEYS = new char[0];
+
+        char[] keys = NO_KEYS;
+        Node<T>[] children;
+        int childCount = 0;
+        @Nullable List<T> values;
+
+        @Nullable
+        Node<T> getChild(char c) {
+            int idx = Arrays.binarySearch(keys, 0, childCount, c);
+            return (idx < 0) ? null : children[idx];
+        }
+
+        @SuppressWarnings("unchecked")
+        Node<T> getOrAddChild(char c) {
+            int idx = Arrays.binarySearch(keys, 0, childCount, c);
+            if (idx >= 0) {
+                return children[idx];
+            }
+
+            int insertAt = -(idx + 1);
+            if (childCount == keys.length) {
+                int newCapacity = Math.max(2, childCount * 2);
+                keys = Arrays.copyOf(keys, newCapacity);
+                children = (children == null)
+                        ? (Node<T>[]) new Node<?>[newCapacity]
+                        : Arrays.copyOf(children, newCapacity);
+            }
+            System.arraycopy(keys, insertAt, keys, insertAt + 1, childCount - insertAt);
+            System.arraycopy(children, insertAt, children, insertAt + 1, childCount - insertAt);
+
+            Node<T> child = new Node<>();
+            keys[insertAt] = c;
+            children[insertAt] = child;
+            childCount++;
+            return child;
+        }
+
+        void removeChild(char c) {
+            int idx = Arrays.binarySearch(keys, 0, childCount, c);
+            if (idx < 0) {
+                return;
+            }
+            System.arraycopy(keys, idx + 1, keys, idx, childCount - idx - 1);
+            System.arraycopy(children, idx + 1, children, idx, childCount - idx - 1);
+            childCount--;
+            children[childCount] = null;
+        }
+
+        boolean isEmpty() {
+            return values == null && childCount == 0;
+        }
+    }
+
+}
@@ -0,0 +1,263 @@
+package io.particle.android.sdk.cloud;
+
+import android.support.annotation.Nullable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import io.particle.android.sdk.cloud.ApiDefs.CloudApi;
+import io.particle.android.sdk.cloud.exceptions.ParticleCloudException;
+import retrofit.RetrofitError;
+
+
+/**
+ * Publishes events in the background, so that callers don't wait on a round trip per event.
+ * <p>
+ * Events wait in a bounded queue, in the order they were published, and are sent by a small
+ * pool of threads, with up to {@link ParticleEventPublishPolicy#getMaxInFlight()} requests in
+ * progress at once over the HTTP client's keep-alive connections.  A token bucket keeps the
+ * send rate within the policy's limits, so that a burst of publishes is spread out instead of
+ * being rejected by the cloud.
+ * <p>
+ * An event identical to one which is still waiting to be sent (same name, data, visibility, and
+ * TTL) isn't queued again: it shares the waiting event's future.
+ */
+@ParametersAreNonnullByDefault
+class EventPublisher {
+
+    private static final int KEEP_ALIVE_SECONDS = 30;
+
+    private final CloudApi cloudApi;
+    private final ScheduledThreadPoolExecutor executor;
+
+    private final Object lock = new Object();
+    // guarded by lock
+    private ParticleEventPublishPolicy policy;
+    private TokenBucket rateLimiter;
+    private final Map<PublishKey, FutureTask<Void>> queue = new LinkedHashMap<>();
+    private int inFlightCount = 0;
+    private boolean drainScheduled = false;
+
+    private final AtomicLong publishedEventCount = new AtomicLong();
+    private final AtomicLong failedEventCount = new AtomicLong();
+    private final AtomicLong rejectedEventCount = new AtomicLong();
+    private final AtomicLong coalescedEventCount = new AtomicLong();
+
+    EventPublisher(CloudApi cloudApi, ParticleEventPublishPolicy policy) {
+        this.cloudApi = cloudApi;
+        this.policy = policy;
+        this.rateLimiter = new TokenBucket(policy);
+        this.executor = buildExecutor(policy.getMaxInFlight());
+    }
+
+    Future<Void> publish(String eventName, @Nullable String eventData, boolean isPrivate,
+                         int timeToLive) {
+        PublishKey key = new PublishKey(eventName, eventData, isPrivate, timeToLive);
+        synchronized (lock) {
+            FutureTask<Void> waiting = queue.get(key);
+            if (waiting != null && !waiting.isCancelled()) {
+                coalescedEventCount.incrementAndGet();
+                return waiting;
+            }
+            if (queue.size() >= policy.getCapacity()) {
+                rejectedEventCount.incrementAndGet();
+                return rejected(policy.getCapacity());
+            }
+
+            FutureTask<Void> task = new FutureTask<>(() -> {
+                send(key);
+                return null;
+            });
+            queue.put(key, task);
+            drainLocked();
+            return task;
+        }
+    }
+
+    void setPolicy(ParticleEventPublishPolicy newPolicy) {
+        synchronized (lock) {
+            policy = newPolicy;
+            rateLimiter = new TokenBucket(newPolicy);
+            executor.setCorePoolSize(newPolicy.getMaxInFlight());
+            drainLocked();
+        }
+    }
+
+    ParticleEventPublishPolicy getPolicy() {
+        synchronized (lock) {
+            return policy;
+        }
+    }
+
+    ParticleEventPublishMetrics getMetrics() {
+        synchronized (lock) {
+            return new ParticleEventPublishMetrics(
+                    queue.size(),
+                    inFlightCount,
+                    publishedEventCount.get(),
+                    failedEventCount.get(),
+                    rejectedEventCount.get(),
+                    coalescedEventCount.get());
+        }
+    }
+
+    // Start sending as many waiting events as the in-flight limit and the rate limit allow.  If
+    // the rate limit is what's holding things up, come back when the next token is due.
+    private void drainLocked() {
+        Iterator<FutureTask<Void>> waiting = queue.values().iterator();
+        while (inFlightCount < policy.getMaxInFlight() && waiting.hasNext()) {
+            FutureTask<Void> task = waiting.next();
+            if (task.isCancelled()) {
+                waiting.remove();
+                continue;
+            }
+
+            long waitNanos = rateLimiter.nanosUntilAvailable(System.nanoTime());
+            if (waitNanos > 0) {
+                if (!drainScheduled) {
+                    drainScheduled = true;
+                    executor.schedule(this::scheduledDrain, waitNanos, TimeUnit.NANOSECONDS);
+                }
+                return;
+            }
+
+            rateLimiter.take();
+            waiting.remove();
+            inFlightCount++;
+            executor.execute(() -> sendNow(task));
+        }
+    }
+
+    private void scheduledDrain() {
+        synchronized (lock) {
+            drainScheduled = false;
+            drainLocked();
+        }
+    }
+
+    private void sendNow(FutureTask<Void> task) {
+        try {
+            // any failure is captured by the task, for its future
+            task.run();
+        } finally {
+            synchronized (lock) {
+                inFlightCount--;
+                drainLocked();
+            }
+        }
+    }
+
+    private void send(PublishKey key) throws ParticleCloudException {
+        try {
+            cloudApi.publishEvent(key.eventName, key.eventData, key.isPrivate, key.timeToLive);
+            publishedEventCount.incrementAndGet();
+        } catch (RetrofitError error) {
+            failedEventCount.incrementAndGet();
+            throw new ParticleCloudException(error);
+        }
+    }
+
+    private static Future<Void> rejected(int capacity) {
+        FutureTask<Void> task = new FutureTask<>(() -> {
+            throw new ParticleCloudException(new RejectedExecutionException(
+                    "Event not published: " + capacity + " events already waiting to be sent"));
+        });
+        task.run();
+        return task;
+    }
+
+    private static ScheduledThreadPoolExecutor buildExecutor(int threadCount) {
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable,
+                    "Particle event publish #" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(threadCount,
+                threadFactory);
+        executor.setKeepAliveTime(KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+
+    // Not thread safe; guarded by the publisher's lock
+    private static class TokenBucket {
+
+        private final int burstSize;
+        private final double tokensPerNano;
+        private double tokens;
+        private long lastRefillNanos = System.nanoTime();
+
+        TokenBucket(ParticleEventPublishPolicy policy) {
+            this.burstSize = policy.getBurstSize();
+            this.tokensPerNano = policy.getEventsPerSecond() / TimeUnit.SECONDS.toNanos(1);
+            this.tokens = burstSize;
+        }
+
+        long nanosUntilAvailable(long nowNanos) {
+            tokens = Math.min(burstSize, tokens + (nowNanos - lastRefillNanos) * tokensPerNano);
+            lastRefillNanos = nowNanos;
+            return (tokens >= 1) ? 0 : (long) Math.ceil((1 - tokens) / tokensPerNano);
+        }
+
+        void take() {
+            tokens -= 1;
+        }
+    }
+
+
+    private static final class PublishKey {
+
+        final String eventName;
+        @Nullable final String eventData;
+        final boolean isPrivate;
+        final int timeToLive;
+
+        PublishKey(String eventName, @Nullable String eventData, boolean isPrivate,
+                   int timeToLive) {
+            this.eventName = eventName;
+            this.eventData = eventData;
+            this.isPrivate = isPrivate;
+            this.timeToLive = timeToLive;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            PublishKey other = (PublishKey) o;
+            return isPrivate == other.isPrivate
+                    && timeToLive == other.timeToLive
+                    && eventName.equals(other.eventName)
+                    && (eventData == null
+                            ? other.eventData == null
+                            : eventData.equals(other.eventData));
+        }
+
+        @Override
+        public int hashCode() {
+            int result = eventName.hashCode();
+            result = 31 * result + (eventData == null ? 0 : eventData.hashCode());
+            result = 31 * result + (isPrivate ? 1 : 0);
+            result = 31 * result + timeToLive;
+            return result;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package io.particle.android.sdk.cloud;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Running totals for one SSE stream, updated on its transport thread.  With multiplexing, one
+ * stream (and so one set of counters) is shared by every subscription on its scope.
+ */
+class EventStreamCounters {
+
+    // events decoded successfully
+    final AtomicLong eventCount = new AtomicLong();
+    // size of the event data received, UTF-8 encoded, as it was sent
+    final AtomicLong byteCount = new AtomicLong();
+    // time spent decoding events
+    final AtomicLong parseNanos = new AtomicLong();
+    final AtomicLong reconnectCount = new AtomicLong();
+    // events skipped before decoding, since no subscription's filter matched
+    final AtomicLong filteredEventCount = new AtomicLong();
+    // connections dropped for going quiet
+    final AtomicLong stallCount = new AtomicLong();
+
+    /**
+     * @return the length of the string in UTF-8, without encoding it
+     */
+    static int utf8Length(String s) {
+        int length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length()
+                    && Character.isLowSurrogate(s.charAt(i + 1))) {
+                // a supplementary character, from a surrogate pair
+                length += 4;
+                i++;
+            } else {
+                // including unpaired surrogates, which are encoded as '?'; close enough
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,268 @@
+package io.particle.android.sdk.cloud;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import io.particle.android.sdk.utils.Preconditions;
+import io.particle.android.sdk.utils.TLog;
+
+import static io.particle.android.sdk.utils.Py.list;
+import static io.particle.android.sdk.utils.Py.map;
+
+
+/**
+ * Computes count, min, max, mean and percentiles of numeric event payloads over time windows,
+ * per (device ID, event name), incrementally as events arrive.
+ * <p>
+ * Pass the aggregator as the handler when subscribing to events.  Instead of a callback per
+ * event, the {@link Listener} receives one {@link WindowAggregate} per window which has seen at
+ * least one event.  Both tumbling windows (back to back) and sliding windows (overlapping, one
+ * starting every "slide") are supported.
+ * <p>
+ * Windows are based on each event's <code>published_at</code> time.  Sliding windows are made
+ * up of panes as long as the slide; each event only updates its pane, which takes constant
+ * time, and each series holds a fixed number of panes, so memory use doesn't grow with the
+ * number of events.  A window is closed (and emitted) when an event for the same series arrives
+ * after its end, or when {@link #advanceTo(long)} is called with a time after its end, e.g.:
+ * from a timer, so that results are still emitted for series which have gone quiet.  Events
+ * which arrive too late for any open window are dropped.
+ * <p>
+ * Payloads which aren't plain decimal numbers are skipped.  The listener is called on the
+ * thread which delivered the event (or called {@link #advanceTo(long)}), and should return
+ * quickly.
+ */
+@ParametersAreNonnullByDefault
+public class EventWindowAggregator implements ParticleEventHandler {
+
+    public interface Listener {
+
+        void onWindowClosed(WindowAggregate aggregate);
+    }
+
+
+    private static final TLog log = TLog.get(EventWindowAggregator.class);
+
+    private final long windowMillis;
+    private final long slideMillis;
+    private final int panesPerWindow;
+    private final Listener listener;
+
+    // guarded by "this"
+    private final Map<String, Series> seriesByKey = map();
+    private final AtomicLong droppedEventCount = new AtomicLong();
+
+    /**
+     * Aggregate over back-to-back windows of the given length.
+     */
+    public static EventWindowAggregator tumbling(long windowMillis, Listener listener) {
+        return new EventWindowAggregator(windowMillis, windowMillis, listener);
+    }
+
+    /**
+     * Aggregate over windows of the given length, starting one every <code>slideMillis</code>.
+     * The window length must be a multiple of the slide.
+     */
+    public static EventWindowAggregator sliding(long windowMillis, long slideMillis,
+                                                Listener listener) {
+        return new EventWindowAggregator(windowMillis, slideMillis, listener);
+    }
+
+    private EventWindowAggregator(long windowMillis, long slideMillis, Listener listener) {
+        Preconditions.checkArgument(slideMillis > 0, "Slide must be greater than 0");
+        Preconditions.checkArgument(windowMillis >= slideMillis && windowMillis % slideMillis == 0,
+                "Window length must be a multiple of the slide");
+        this.windowMillis = windowMillis;
+        this.slideMillis = slideMillis;
+        this.panesPerWindow = (int) (windowMillis / slideMillis);
+        this.listener = listener;
+    }
+
+    @Override
+    public void onEvent(String eventName, ParticleEvent particleEvent) {
+        if (particleEvent.deviceId == null || particleEvent.dataPayload == null
+                || particleEvent.publishedAt == null) {
+            droppedEventCount.incrementAndGet();
+            return;
+        }
+        double value = NumericEventStore.parseNumber(particleEvent.dataPayload);
+        if (Double.isNaN(value)) {
+            droppedEventCount.incrementAndGet();
+            return;
+        }
+
+        List<WindowAggregate> closed = list();
+        synchronized (this) {
+            String key = eventName + "\n" + particleEvent.deviceId;
+            Series series = seriesByKey.get(key);
+            if (series == null) {
+                series = new Series(particleEvent.deviceId, eventName);
+                seriesByKey.put(key, series);
+            }
+            if (!series.add(particleEvent.publishedAt.getTime(), value, closed)) {
+                droppedEventCount.incrementAndGet();
+            }
+        }
+        emit(closed);
+    }
+
+    @Override
+    public void onEventError(Exception e) {
+        log.w("Event error in window aggregator", e);
+    }
+
+    /**
+     * Close and emit every window which ends at or before the given time.
+     */
+    public void advanceTo(long timeMillis) {
+        List<WindowAggregate> closed = list();
+        synchronized (this) {
+            long paneStart = paneStartFor(timeMillis);
+            for (Series series : seriesByKey.values()) {
+                series.advanceTo(paneStart, closed);
+            }
+        }
+        emit(closed);
+    }
+
+    /**
+     * @return the number of events which were skipped because their data wasn't a number, or
+     * which arrived too late for any open window
+     */
+    public long getDroppedEventCount() {
+        return droppedEventCount.get();
+    }
+
+    private void emit(List<WindowAggregate> closed) {
+        for (WindowAggregate aggregate : closed) {
+            try {
+                listener.onWindowClosed(aggregate);
+            } catch (Exception ex) {
+                log.e("Error thrown from onWindowClosed()", ex);
+            }
+        }
+    }
+
+    private long paneStartFor(long timeMillis) {
+        long remainder = timeMillis % slideMillis;
+        if (remainder < 0) {
+            remainder += slideMillis;
+        }
+        return timeMillis - remainder;
+    }
+
+
+    // Partial aggregate for one pane (one slide's worth of time)
+    private static class Pane {
+
+        long count;
+        double min;
+        double max;
+        double sum;
+        final QuantileSketch sketch = new QuantileSketch();
+
+        Pane() {
+            clear();
+        }
+
+        void add(double value) {
+            count++;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            sum += value;
+            sketch.add(value);
+        }
+
+        void clear() {
+            count = 0;
+            min = Double.POSITIVE_INFINITY;
+            max = Double.NEGATIVE_INFINITY;
+            sum = 0;
+            sketch.clear();
+        }
+    }
+
+
+    // Ring of the panes making up the window which ends with the newest pane
+    private class Series {
+
+        final String deviceId;
+        final String eventName;
+        final Pane[] panes = new Pane[panesPerWindow];
+        // start time of the newest pane, and its position in "panes"
+        long newestPaneStart = Long.MIN_VALUE;
+        int newestPane = 0;
+
+        Series(String deviceId, String eventName) {
+            this.deviceId = deviceId;
+            this.eventName = eventName;
+            for (int i = 0; i < panes.length; i++) {
+                panes[i] = new Pane();
+            }
+        }
+
+        // returns false if the event was too late to count
+        boolean add(long timestamp, double value, List<WindowAggregate> closed) {
+            long paneStart = paneStartFor(timestamp);
+            if (newestPaneStart == Long.MIN_VALUE) {
+                newestPaneStart = paneStart;
+            } else if (paneStart > newestPaneStart) {
+                advanceTo(paneStart, closed);
+            }
+
+            long panesBack = (newestPaneStart - paneStart) / slideMillis;
+            if (panesBack >= panesPerWindow) {
+                return false;
+            }
+            int position = (int) ((newestPane - panesBack + panesPerWindow) % panesPerWindow);
+            panes[position].add(value);
+            return true;
+        }
+
+        // close every window ending at or before paneStart, making it the newest pane
+        void advanceTo(long paneStart, List<WindowAggregate> closed) {
+            if (newestPaneStart == Long.MIN_VALUE || paneStart <= newestPaneStart) {
+                return;
+            }
+            long steps = (paneStart - newestPaneStart) / slideMillis;
+            // once every pane has rolled over, the remaining windows are all empty
+            long stepsToEmit = Math.min(steps, panesPerWindow);
+            for (long i = 0; i < stepsToEmit; i++) {
+                emitWindow(closed);
+                newestPaneStart += slideMillis;
+                newestPane = (newestPane + 1) % panesPerWindow;
+                panes[newestPane].clear();
+            }
+            newestPaneStart = paneStart;
+        }
+
+        private void emitWindow(List<WindowAggregate> closed) {
+            long count = 0;
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            double sum = 0;
+            QuantileSketch sketch = null;
+            for (Pane pane : panes) {
+                if (pane.count == 0) {
+                    continue;
+                }
+                if (sketch == null) {
+                    sketch = new QuantileSketch();
+                }
+                count += pane.count;
+                min = Math.min(min, pane.min);
+                max = Math.max(max, pane.max);
+                sum += pane.sum;
+                sketch.mergeFrom(pane.sketch);
+            }
+            if (count == 0) {
+                return;
+            }
+            long windowEnd = newestPaneStart + slideMillis;
+            closed.add(new WindowAggregate(deviceId, eventName, windowEnd - windowMillis,
+                    windowEnd, count, min, max, sum, sketch));
+        }
+    }
+}
@@ -5,22 +5,29 @@ import android.net.Uri;
 import android.net.Uri.Builder;
 import android.support.annotation.Nullable;
 import android.support.annotation.WorkerThread;
-import android.support.v4.util.LongSparseArray;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
 
-import org.kaazing.net.sse.SseEventReader;
-import org.kaazing.net.sse.SseEventSource;
-import org.kaazing.net.sse.SseEventSourceFactory;
-import org.kaazing.net.sse.SseEventType;
 import org.kaazing.net.sse.impl.AuthenticatedEventSourceFactory;
+import org.kaazing.net.sse.impl.AuthenticatedSseEventSourceImpl;
+import org.kaazing.net.sse.impl.AuthenticatedSseEventStream;
+import org.kaazing.net.sse.impl.SseEventStreamListener;
+import org.kaazing.net.sse.impl.SseReconnectListener;
 
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.concurrent.ExecutorService;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.annotation.ParametersAreNonnullByDefault;
 
@@ -29,6 +36,7 @@ import io.particle.android.sdk.cloud.exceptions.ParticleCloudException;
 import io.particle.android.sdk.utils.TLog;
 import retrofit.RetrofitError;
 
+import static io.particle.android.sdk.utils.Py.list;
 import static io.particle.android.sdk.utils.Py.truthy;
 
 
@@ -40,18 +48,43 @@ class EventsDelegate {
 
     private final CloudApi cloudApi;
     private final EventApiUris uris;
-    private final Gson gson;
-    private final ExecutorService executor;
-    private final SseEventSourceFactory eventSourceFactory;
-
+    private final ParticleEventDecoder decoder;
+    private final AuthenticatedEventSourceFactory eventSourceFactory;
+    private final EventDispatcher dispatcher = new EventDispatcher();
+    private final EventPublisher publisher;
+
+    // Subscribing and unsubscribing involve network I/O (opening or closing a stream), which
+    // must never happen while holding a lock shared by all subscriptions, or one slow connection
+    // would hold up every other subscribe/unsubscribe call in the app.  Subscriptions are
+    // registered before their stream is connected, and whoever removes a subscription from
+    // "subscriptions" first gets to stop it.
     private final AtomicLong subscriptionIdGenerator = new AtomicLong(1);
-    private final LongSparseArray<EventReader> eventReaders = new LongSparseArray<>();
-
-    EventsDelegate(CloudApi cloudApi, Uri baseApiUri, Gson gson, ExecutorService executor,
-                   ParticleCloud cloud) {
+    private final ConcurrentMap<Long, Subscription> subscriptions = new ConcurrentHashMap<>();
+    // the IDs of each handler's subscriptions, oldest first, keyed on the handler's identity;
+    // guarded by its own lock, which is only ever held briefly
+    private final Map<Object, List<Long>> subscriptionIdsByHandler = new IdentityHashMap<>();
+    // keyed on the scope URI, i.e.: the events URI for the scope, without any event name prefix
+    // (except for the all events scope, which is keyed per prefix)
+    private final ConcurrentMap<String, MultiplexedEventReader> multiplexedReaders =
+            new ConcurrentHashMap<>();
+
+    private volatile boolean multiplexingEnabled = false;
+    private volatile long stallTimeoutMillis =
+            AuthenticatedSseEventStream.DEFAULT_STALL_TIMEOUT_MILLIS;
+    // shared with every EventReader, so that changes apply to existing streams too
+    private final AtomicReference<ParticleEventStreamReconnectListener> reconnectListener =
+            new AtomicReference<>();
+    // likewise
+    private final AtomicReference<ParticleEventJournal> journal = new AtomicReference<>();
+
+    private final Object metricsListenerLock = new Object();
+    // guarded by metricsListenerLock
+    @Nullable private ScheduledFuture<?> metricsReporting;
+
+    EventsDelegate(CloudApi cloudApi, Uri baseApiUri, Gson gson, ParticleCloud cloud) {
         this.cloudApi = cloudApi;
-        this.gson = gson;
-        this.executor = executor;
+        this.publisher = new EventPublisher(cloudApi, ParticleEventPublishPolicy.defaultPolicy());
+        this.decoder = new ParticleEventDecoder(gson);
         this.eventSourceFactory = new AuthenticatedEventSourceFactory(cloud);
         this.uris = new EventApiUris(baseApiUri);
     }
@@ -69,98 +102,389 @@ class EventsDelegate {
         }
     }
 
+    Future<Void> publishEventAsync(String eventName, String event,
+                                   @ParticleEventVisibility int eventVisibility, int timeToLive) {
+        boolean isPrivate = eventVisibility != ParticleEventVisibility.PUBLIC;
+        return publisher.publish(eventName, event, isPrivate, timeToLive);
+    }
+
+    void setPublishPolicy(ParticleEventPublishPolicy policy) {
+        publisher.setPolicy(policy);
+    }
+
+    ParticleEventPublishPolicy getPublishPolicy() {
+        return publisher.getPolicy();
+    }
+
+    ParticleEventPublishMetrics getPublishMetrics() {
+        return publisher.getMetrics();
+    }
+
+    void setMultiplexingEnabled(boolean enabled) {
+        multiplexingEnabled = enabled;
+    }
+
+    boolean isMultiplexingEnabled() {
+        return multiplexingEnabled;
+    }
+
+    void setReconnectListener(@Nullable ParticleEventStreamReconnectListener listener) {
+        reconnectListener.set(listener);
+    }
+
+    void setStallTimeoutMillis(long millis) {
+        stallTimeoutMillis = millis;
+    }
+
+    long getStallTimeoutMillis() {
+        return stallTimeoutMillis;
+    }
+
+    void setJournal(@Nullable ParticleEventJournal eventJournal) {
+        journal.set(eventJournal);
+    }
+
+    @Nullable
+    ParticleEventJournal getJournal() {
+        return journal.get();
+    }
+
+    List<ParticleEventStreamMetrics> getMetrics() {
+        List<ParticleEventStreamMetrics> metrics = list();
+        for (Map.Entry<Long, Subscription> entry : subscriptions.entrySet()) {
+            metrics.add(entry.getValue().getMetricsSampler().snapshot(entry.getKey()));
+        }
+        return metrics;
+    }
+
+    // for the periodic metrics listener only: each subscription's interval since the last report
+    private List<ParticleEventStreamMetrics> getIntervalMetrics() {
+        List<ParticleEventStreamMetrics> metrics = list();
+        for (Map.Entry<Long, Subscription> entry : subscriptions.entrySet()) {
+            metrics.add(entry.getValue().getMetricsSampler().sampleInterval(entry.getKey()));
+        }
+        return metrics;
+    }
+
+    @Nullable
+    ParticleEventStreamMetrics getMetrics(long subscriptionId) {
+        Subscription subscription = subscriptions.get(subscriptionId);
+        return (subscription == null)
+                ? null
+                : subscription.getMetricsSampler().snapshot(subscriptionId);
+    }
+
+    void setMetricsListener(@Nullable ParticleEventStreamMetricsListener listener,
+                            long intervalMillis) {
+        synchronized (metricsListenerLock) {
+            if (metricsReporting != null) {
+                metricsReporting.cancel(false);
+                metricsReporting = null;
+            }
+            if (listener == null) {
+                return;
+            }
+            metricsReporting = dispatcher.scheduleAtFixedRate(() -> {
+                // an exception escaping here would cancel all further reports
+                try {
+                    listener.onMetrics(getIntervalMetrics());
+                } catch (Exception ex) {
+                    log.e("Error thrown from onMetrics()", ex);
+                }
+            }, intervalMillis);
+        }
+    }
+
+    @WorkerThread
+    long subscribeToAllEvents(@Nullable String eventNamePrefix, ParticleEventHandler handler,
+                              ParticleEventQueuePolicy queuePolicy) throws IOException {
+        return subscribe(uris.allEventsUri, eventNamePrefix, null,
+                dispatcher.newChannel(handler, queuePolicy));
+    }
+
     @WorkerThread
-    long subscribeToAllEvents(@Nullable String eventNamePrefix,
-                              ParticleEventHandler handler) throws IOException {
-        return subscribeToEventWithUri(uris.buildAllEventsUri(eventNamePrefix), handler);
+    long subscribeToAllEvents(@Nullable String eventNamePrefix, ParticleBatchEventHandler handler,
+                              int maxBatchSize, long maxBatchDelayMillis,
+                              ParticleEventQueuePolicy queuePolicy) throws IOException {
+        return subscribe(uris.allEventsUri, eventNamePrefix, null, dispatcher.newBatchChannel(
+                handler, maxBatchSize, maxBatchDelayMillis, queuePolicy));
     }
 
     @WorkerThread
     long subscribeToMyDevicesEvents(@Nullable String eventNamePrefix,
-                                    ParticleEventHandler handler) throws IOException {
-        return subscribeToEventWithUri(uris.buildMyDevicesEventUri(eventNamePrefix), handler);
+                                    @Nullable ParticleEventFilter filter,
+                                    ParticleEventHandler handler,
+                                    ParticleEventQueuePolicy queuePolicy) throws IOException {
+        return subscribe(uris.myDevicesEventsUri, eventNamePrefix, filter,
+                dispatcher.newChannel(handler, queuePolicy));
+    }
+
+    @WorkerThread
+    long subscribeToMyDevicesEvents(@Nullable String eventNamePrefix,
+                                    @Nullable ParticleEventFilter filter,
+                                    ParticleBatchEventHandler handler,
+                                    int maxBatchSize, long maxBatchDelayMillis,
+                                    ParticleEventQueuePolicy queuePolicy) throws IOException {
+        return subscribe(uris.myDevicesEventsUri, eventNamePrefix, filter,
+                dispatcher.newBatchChannel(handler, maxBatchSize, maxBatchDelayMillis,
+                        queuePolicy));
+    }
+
+    @WorkerThread
+    long subscribeToDeviceEvents(@Nullable String eventNamePrefix, String deviceID,
+                                 @Nullable ParticleEventFilter filter,
+                                 ParticleEventHandler eventHandler,
+                                 ParticleEventQueuePolicy queuePolicy) throws IOException {
+        return subscribe(uris.buildSingleDeviceEventsUri(deviceID), eventNamePrefix, filter,
+                dispatcher.newChannel(eventHandler, queuePolicy));
     }
 
     @WorkerThread
     long subscribeToDeviceEvents(@Nullable String eventNamePrefix, String deviceID,
-                                 ParticleEventHandler eventHandler) throws IOException {
-        return subscribeToEventWithUri(
-                uris.buildSingleDeviceEventUri(eventNamePrefix, deviceID),
-                eventHandler);
+                                 @Nullable ParticleEventFilter filter,
+                                 ParticleBatchEventHandler eventHandler,
+                                 int maxBatchSize, long maxBatchDelayMillis,
+                                 ParticleEventQueuePolicy queuePolicy) throws IOException {
+        return subscribe(uris.buildSingleDeviceEventsUri(deviceID), eventNamePrefix, filter,
+                dispatcher.newBatchChannel(eventHandler, maxBatchSize, maxBatchDelayMillis,
+                        queuePolicy));
     }
 
     @WorkerThread
     void unsubscribeFromEventWithID(long eventListenerID) throws ParticleCloudException {
-        synchronized (eventReaders) {
-            EventReader reader = eventReaders.get(eventListenerID);
-            if (reader == null) {
-                log.w("No event listener subscription found for ID '" + eventListenerID + "'!");
-                return;
-            }
-            eventReaders.remove(eventListenerID);
-            try {
-                reader.stopListening();
-            } catch (IOException e) {
-                // handling the exception here instead of putting it in the method signature
-                // is inconsistent, but SDK consumers aren't going to care about receiving
-                // this exception, so just swallow it here.
-                log.w("Error while trying to stop event listener", e);
-            }
+        Subscription subscription = subscriptions.remove(eventListenerID);
+        if (subscription == null) {
+            log.w("No event listener subscription found for ID '" + eventListenerID + "'!");
+            return;
         }
+        removeFromHandlerIndex(subscription.getHandler(), eventListenerID);
+        stopSubscription(subscription);
     }
 
     @WorkerThread
     void unsubscribeFromEventWithHandler(SimpleParticleEventHandler handler) throws ParticleCloudException {
-        synchronized (eventReaders) {
-            for (int i = 0; i < eventReaders.size(); i++) {
-                EventReader reader = eventReaders.valueAt(i);
-
-                if (reader.handler == handler) {
-                    eventReaders.remove(i);
-                    try {
-                        reader.stopListening();
-                    } catch (IOException e) {
-                        // handling the exception here instead of putting it in the method signature
-                        // is inconsistent, but SDK consumers aren't going to care about receiving
-                        // this exception, so just swallow it here.
-                        log.w("Error while trying to stop event listener", e);
-                    }
+        while (true) {
+            Long subscriptionId;
+            synchronized (subscriptionIdsByHandler) {
+                List<Long> ids = subscriptionIdsByHandler.get(handler);
+                if (ids == null) {
                     return;
                 }
+                subscriptionId = ids.remove(0);
+                if (ids.isEmpty()) {
+                    subscriptionIdsByHandler.remove(handler);
+                }
             }
+            // unless it's being unsubscribed by ID at the same time, in which case try the next
+            Subscription subscription = subscriptions.remove(subscriptionId);
+            if (subscription != null) {
+                stopSubscription(subscription);
+                return;
+            }
+        }
+    }
+
+    private long subscribe(Uri scopeUri, @Nullable String eventNamePrefix,
+                           @Nullable ParticleEventFilter filter,
+                           EventDispatcher.Channel channel) throws IOException {
+        if (multiplexingEnabled && scopeUri.equals(uris.allEventsUri)) {
+            // Without a prefix, the all events scope is every public event in the cloud, far
+            // too much to filter locally; only subscriptions with the same prefix share a stream
+            return subscribeMultiplexed(EventApiUris.withPrefix(scopeUri, eventNamePrefix),
+                    eventNamePrefix, filter, channel);
+        } else if (multiplexingEnabled) {
+            return subscribeMultiplexed(scopeUri, eventNamePrefix, filter, channel);
+        } else {
+            return subscribeToEventWithUri(EventApiUris.withPrefix(scopeUri, eventNamePrefix),
+                    filter, channel);
         }
     }
 
-    private long subscribeToEventWithUri(Uri uri, ParticleEventHandler handler) throws IOException {
-        synchronized (eventReaders) {
+    private long subscribeToEventWithUri(Uri uri, @Nullable ParticleEventFilter filter,
+                                         EventDispatcher.Channel channel) throws IOException {
+        EventReader reader = new EventReader(new ChannelSink(channel, filter), decoder, uri,
+                eventSourceFactory,
+                reconnectListener, journal, new EventStreamCounters());
+        long subscriptionId = register(new SingleStreamSubscription(channel, reader));
+
+        // If it's unsubscribed while connecting, stopping the stream waits for the connection
+        // attempt to finish, then closes it.
+        try {
+            reader.startListening(stallTimeoutMillis);
+        } catch (IOException e) {
+            unregister(subscriptionId);
+            channel.close();
+            throw e;
+        }
+
+        log.d("Created event subscription with ID " + subscriptionId + " for URI " + uri);
 
-            long subscriptionId = subscriptionIdGenerator.getAndIncrement();
-            EventReader reader = new EventReader(handler, executor, gson, uri, eventSourceFactory);
-            eventReaders.put(subscriptionId, reader);
+        return subscriptionId;
+    }
 
-            log.d("Created event subscription with ID " + subscriptionId + " for URI " + uri);
+    private long subscribeMultiplexed(Uri scopeUri, @Nullable String eventNamePrefix,
+                                      @Nullable ParticleEventFilter filter,
+                                      EventDispatcher.Channel channel) throws IOException {
+        String scopeKey = scopeUri.toString();
+        while (true) {
+            MultiplexedEventReader muxReader = multiplexedReaders.get(scopeKey);
+            if (muxReader == null) {
+                MultiplexedEventReader newReader = new MultiplexedEventReader(scopeKey, scopeUri);
+                muxReader = multiplexedReaders.putIfAbsent(scopeKey, newReader);
+                if (muxReader == null) {
+                    muxReader = newReader;
+                }
+            }
 
-            reader.startListening();
+            MultiplexedSubscription subscription = new MultiplexedSubscription(
+                    muxReader, eventNamePrefix, filter, channel);
+            long subscriptionId = register(subscription);
+            boolean added;
+            try {
+                added = muxReader.add(subscription);
+            } catch (IOException e) {
+                unregister(subscriptionId);
+                channel.close();
+                throw e;
+            }
+            if (!added) {
+                // the last subscriber left this reader just before we got to it; start over
+                unregister(subscriptionId);
+                continue;
+            }
+
+            log.d("Created multiplexed event subscription with ID " + subscriptionId
+                    + " for prefix '" + eventNamePrefix + "' on " + scopeKey);
 
             return subscriptionId;
         }
     }
 
+    private long register(Subscription subscription) {
+        long subscriptionId = subscriptionIdGenerator.getAndIncrement();
+        subscriptions.put(subscriptionId, subscription);
+        synchronized (subscriptionIdsByHandler) {
+            List<Long> ids = subscriptionIdsByHandler.get(subscription.getHandler());
+            if (ids == null) {
+                ids = list();
+                subscriptionIdsByHandler.put(subscription.getHandler(), ids);
+            }
+            ids.add(subscriptionId);
+        }
+        return subscriptionId;
+    }
+
+    private void unregister(long subscriptionId) {
+        Subscription subscription = subscriptions.remove(subscriptionId);
+        if (subscription != null) {
+            removeFromHandlerIndex(subscription.getHandler(), subscriptionId);
+        }
+    }
+
+    private void removeFromHandlerIndex(Object handler, long subscriptionId) {
+        synchronized (subscriptionIdsByHandler) {
+            List<Long> ids = subscriptionIdsByHandler.get(handler);
+            if (ids != null && ids.remove(Long.valueOf(subscriptionId)) && ids.isEmpty()) {
+                subscriptionIdsByHandler.remove(handler);
+            }
+        }
+    }
+
+    private void stopSubscription(Subscription subscription) {
+        try {
+            subscription.stop();
+        } catch (IOException e) {
+            // handling the exception here instead of putting it in the method signature
+            // is inconsistent, but SDK consumers aren't going to care about receiving
+            // this exception, so just swallow it here.
+            log.w("Error while trying to stop event listener", e);
+        }
+    }
+
+
+    // A live subscription, as tracked by its subscription ID
+    private interface Subscription {
+
+        // the handler given when subscribing
+        Object getHandler();
+
+        EventMetricsSampler getMetricsSampler();
+
+        void stop() throws IOException;
+    }
+
+
+    // Where an EventReader sends the events it reads
+    private interface EventSink {
+
+        // Called with each event before it's decoded, to find the channels of the subscriptions
+        // which want it; each subscription's filter is run once per event, and an exception
+        // thrown by it is reported to that subscription alone.  If nobody wants the event, it
+        // isn't decoded.
+        List<EventDispatcher.Channel> getRecipients(String eventName, String data);
+
+        // for errors affecting the whole stream
+        void onEventError(Exception e);
+    }
+
+
+    // The sink for a stream which serves a single subscription
+    private static class ChannelSink implements EventSink {
+
+        final EventDispatcher.Channel channel;
+        @Nullable final ParticleEventFilter filter;
+        final List<EventDispatcher.Channel> recipients;
 
-    private static class EventReader {
+        ChannelSink(EventDispatcher.Channel channel, @Nullable ParticleEventFilter filter) {
+            this.channel = channel;
+            this.filter = filter;
+            this.recipients = Collections.singletonList(channel);
+        }
 
-        final ParticleEventHandler handler;
-        final SseEventSource sseEventSource;
-        final ExecutorService executor;
-        final Gson gson;
+        @Override
+        public List<EventDispatcher.Channel> getRecipients(String eventName, String data) {
+            try {
+                if (filter == null || filter.matches(eventName, data)) {
+                    return recipients;
+                }
+            } catch (Exception ex) {
+                // from a filter's data predicate
+                channel.onEventError(ex);
+            }
+            return Collections.emptyList();
+        }
 
-        volatile Future<?> future;
+        @Override
+        public void onEventError(Exception e) {
+            channel.onEventError(e);
+        }
+    }
 
-        private EventReader(ParticleEventHandler handler, ExecutorService executor, Gson gson,
-                            Uri uri, SseEventSourceFactory factory) {
-            this.handler = handler;
-            this.executor = executor;
-            this.gson = gson;
+
+    // Reads a single SSE stream.  Events are decoded on the transport thread as they arrive and
+    // passed straight on to the channels the sink picks, which hand them off without doing any
+    // real work (see EventDispatcher.Channel), so no thread is tied up waiting for events.
+    private static class EventReader implements SseEventStreamListener, SseReconnectListener {
+
+        final EventSink sink;
+        final AuthenticatedSseEventSourceImpl sseEventSource;
+        final ParticleEventDecoder decoder;
+        final String uriString;
+        final AtomicReference<ParticleEventStreamReconnectListener> reconnectListener;
+        final AtomicReference<ParticleEventJournal> journal;
+        final EventStreamCounters counters;
+
+        private EventReader(EventSink sink, ParticleEventDecoder decoder, Uri uri,
+                            AuthenticatedEventSourceFactory factory,
+                            AtomicReference<ParticleEventStreamReconnectListener> reconnectListener,
+                            AtomicReference<ParticleEventJournal> journal,
+                            EventStreamCounters counters) {
+            this.sink = sink;
+            this.decoder = decoder;
+            this.uriString = uri.toString();
+            this.reconnectListener = reconnectListener;
+            this.journal = journal;
+            this.counters = counters;
             try {
                 sseEventSource = factory.createEventSource(URI.create(uri.toString()));
             } catch (URISyntaxException e) {
@@ -170,53 +494,284 @@ class EventsDelegate {
             }
         }
 
-        void startListening() throws IOException {
+        void startListening(long stallTimeoutMillis) throws IOException {
+            sseEventSource.setPushListener(this);
+            sseEventSource.setReconnectListener(this);
+            sseEventSource.setStallTimeout(stallTimeoutMillis);
             sseEventSource.connect();
-            final SseEventReader sseEventReader = sseEventSource.getEventReader();
-            future = executor.submit(() -> startHandlingEvents(sseEventReader));
         }
 
         void stopListening() throws IOException {
-            future.cancel(false);
             sseEventSource.close();
         }
 
+        @Override
+        public void streamOpened() {
+            // nothing to do here; connect() doesn't return until the stream is open
+        }
+
+        @Override
+        public void messageReceived(String eventName, String data) {
+            counters.byteCount.addAndGet(EventStreamCounters.utf8Length(data));
+            List<EventDispatcher.Channel> recipients = sink.getRecipients(eventName, data);
+            if (recipients.isEmpty()) {
+                counters.filteredEventCount.incrementAndGet();
+                return;
+            }
 
-        private void startHandlingEvents(SseEventReader sseEventReader) {
-            SseEventType type;
+            long startNanos = System.nanoTime();
+            ParticleEvent event;
             try {
-                type = sseEventReader.next();
-                while (type != SseEventType.EOS) {
-
-                    if (type != null && type.equals(SseEventType.DATA)) {
-                        CharSequence data = sseEventReader.getData();
-                        String asStr = data.toString();
-
-                        ParticleEvent event = gson.fromJson(asStr, ParticleEvent.class);
-
-                        try {
-                            handler.onEvent(sseEventReader.getName(), event);
-                        } catch (Exception ex) {
-                            handler.onEventError(ex);
-                        }
-                    } else {
-                        log.w("type null or not data: " + type);
-                    }
-                    type = sseEventReader.next();
+                event = decoder.decode(data);
+            } catch (JsonParseException ex) {
+                for (EventDispatcher.Channel channel : recipients) {
+                    channel.onEventError(ex);
                 }
+                return;
+            }
+            counters.parseNanos.addAndGet(System.nanoTime() - startNanos);
+            counters.eventCount.incrementAndGet();
+
+            // before it's queued, so that it's kept even if the handler can't keep up
+            ParticleEventJournal eventJournal = journal.get();
+            if (eventJournal != null) {
+                try {
+                    eventJournal.append(eventName, event);
+                } catch (IOException ex) {
+                    log.w("Unable to append event to journal", ex);
+                }
+            }
+            for (EventDispatcher.Channel channel : recipients) {
+                channel.onEvent(eventName, event);
+            }
+        }
+
+        @Override
+        public void streamErrored(Exception exception) {
+            sink.onEventError(exception);
+        }
+
+        @Override
+        public void reconnectScheduled(int attempt, long delayMillis, Exception cause) {
+            counters.reconnectCount.incrementAndGet();
+            log.i("Event stream " + uriString + " lost, reconnect attempt " + attempt
+                    + " in " + delayMillis + "ms");
+            ParticleEventStreamReconnectListener listener = reconnectListener.get();
+            if (listener != null) {
+                listener.onReconnectScheduled(uriString, attempt, delayMillis, cause);
+            }
+        }
+
+        @Override
+        public void reconnected(int attempts) {
+            log.i("Event stream " + uriString + " reconnected after " + attempts + " attempt(s)");
+            ParticleEventStreamReconnectListener listener = reconnectListener.get();
+            if (listener != null) {
+                listener.onReconnected(uriString, attempts);
+            }
+        }
+
+        @Override
+        public void streamStalled(long quietMillis) {
+            counters.stallCount.incrementAndGet();
+            log.w("Nothing received on event stream " + uriString + " for " + quietMillis
+                    + "ms, reconnecting");
+        }
+
+        @Override
+        public void reconnectAbandoned(int attempts, Exception cause) {
+            log.w("Giving up on event stream " + uriString + " after " + attempts
+                    + " reconnect attempts");
+            ParticleEventStreamReconnectListener listener = reconnectListener.get();
+            if (listener != null) {
+                listener.onReconnectAbandoned(uriString, attempts, cause);
+            }
+        }
+    }
+
+
+    private static class SingleStreamSubscription implements Subscription {
+
+        final EventDispatcher.Channel channel;
+        final EventReader reader;
+        final EventMetricsSampler metricsSampler;
+
+        SingleStreamSubscription(EventDispatcher.Channel channel, EventReader reader) {
+            this.channel = channel;
+            this.reader = reader;
+            this.metricsSampler = new EventMetricsSampler(reader.uriString, reader.counters,
+                    channel);
+        }
+
+        @Override
+        public Object getHandler() {
+            return channel.getHandler();
+        }
+
+        @Override
+        public EventMetricsSampler getMetricsSampler() {
+            return metricsSampler;
+        }
+
+        @Override
+        public void stop() throws IOException {
+            channel.close();
+            reader.stopListening();
+        }
+    }
+
+
+    // One SSE stream for a whole scope (all events, my devices, or one device), which routes
+    // each event to every subscription with a matching event name prefix.  The underlying
+    // stream is only open while there is at least one subscription.  Adding and removing
+    // subscriptions is serialized per scope, so connecting one scope's stream doesn't hold up
+    // any other scope.  Once its last subscription is gone, a reader is retired and removed
+    // from "multiplexedReaders" for good; later subscribers get a new one.
+    private class MultiplexedEventReader implements EventSink {
+
+        final String scopeKey;
+        final Uri scopeUri;
+        final EventNameTrie<MultiplexedSubscription> routes = new EventNameTrie<>();
+        final EventStreamCounters counters = new EventStreamCounters();
+
+        @Nullable EventReader reader;
+        private boolean retired = false;
+
+        MultiplexedEventReader(String scopeKey, Uri scopeUri) {
+            this.scopeKey = scopeKey;
+            this.scopeUri = scopeUri;
+        }
+
+        /**
+         * @return false if this reader has been retired, and the subscription wasn't added
+         */
+        synchronized boolean add(MultiplexedSubscription subscription) throws IOException {
+            if (retired) {
+                return false;
+            }
+            routes.put(subscription.eventNamePrefix, subscription);
+            if (reader != null) {
+                return true;
+            }
+
+            // first subscriber for this scope, open the stream
+            EventReader newReader = new EventReader(this, decoder, scopeUri, eventSourceFactory,
+                    reconnectListener, journal, counters);
+            try {
+                newReader.startListening(stallTimeoutMillis);
             } catch (IOException e) {
-                handler.onEventError(e);
+                routes.remove(subscription.eventNamePrefix, subscription);
+                retire();
+                throw e;
+            }
+            reader = newReader;
+            log.d("Opened multiplexed event stream for " + scopeKey);
+            return true;
+        }
+
+        synchronized void remove(MultiplexedSubscription subscription) throws IOException {
+            routes.remove(subscription.eventNamePrefix, subscription);
+            if (!routes.isEmpty()) {
+                return;
+            }
+
+            // last subscriber for this scope has left, close the stream
+            retire();
+            EventReader oldReader = reader;
+            reader = null;
+            if (oldReader != null) {
+                log.d("Closing multiplexed event stream for " + scopeKey);
+                oldReader.stopListening();
+            }
+        }
+
+        // must be called while holding the lock on this reader, once it has no subscriptions
+        private void retire() {
+            retired = true;
+            multiplexedReaders.remove(scopeKey, this);
+        }
+
+        // called on the transport thread, as is onEventError()
+        @Override
+        public List<EventDispatcher.Channel> getRecipients(String eventName, String data) {
+            List<EventDispatcher.Channel> recipients = null;
+            for (MultiplexedSubscription subscription : routes.findMatches(eventName)) {
+                try {
+                    if (!subscription.wants(eventName, data)) {
+                        continue;
+                    }
+                } catch (Exception ex) {
+                    // from a filter's data predicate; the other subscriptions aren't affected
+                    subscription.channel.onEventError(ex);
+                    continue;
+                }
+                if (recipients == null) {
+                    recipients = list();
+                }
+                recipients.add(subscription.channel);
+            }
+            return (recipients == null)
+                    ? Collections.<EventDispatcher.Channel>emptyList()
+                    : recipients;
+        }
+
+        @Override
+        public void onEventError(Exception e) {
+            for (MultiplexedSubscription subscription : routes.values()) {
+                subscription.channel.onEventError(e);
             }
         }
     }
 
+
+    private static class MultiplexedSubscription implements Subscription {
+
+        final MultiplexedEventReader parent;
+        @Nullable final String eventNamePrefix;
+        @Nullable final ParticleEventFilter filter;
+        final EventDispatcher.Channel channel;
+        final EventMetricsSampler metricsSampler;
+
+        MultiplexedSubscription(MultiplexedEventReader parent, @Nullable String eventNamePrefix,
+                                @Nullable ParticleEventFilter filter,
+                                EventDispatcher.Channel channel) {
+            this.parent = parent;
+            this.eventNamePrefix = eventNamePrefix;
+            this.filter = filter;
+            this.channel = channel;
+            this.metricsSampler = new EventMetricsSampler(parent.scopeKey, parent.counters,
+                    channel);
+        }
+
+        @Override
+        public Object getHandler() {
+            return channel.getHandler();
+        }
+
+        @Override
+        public EventMetricsSampler getMetricsSampler() {
+            return metricsSampler;
+        }
+
+        boolean wants(String eventName, String data) {
+            return filter == null || filter.matches(eventName, data);
+        }
+
+        @Override
+        public void stop() throws IOException {
+            channel.close();
+            parent.remove(this);
+        }
+    }
+
+
     private static class EventApiUris {
 
         private final String EVENTS = "events";
 
-        private final Uri allEventsUri;
+        final Uri allEventsUri;
+        final Uri myDevicesEventsUri;
         private final Uri devicesBaseUri;
-        private final Uri myDevicesEventsUri;
 
         EventApiUris(Uri baseUri) {
             allEventsUri = baseUri.buildUpon().path("/v1/" + EVENTS).build();
@@ -224,30 +779,19 @@ class EventsDelegate {
             myDevicesEventsUri = devicesBaseUri.buildUpon().appendPath(EVENTS).build();
         }
 
-        Uri buildAllEventsUri(@Nullable String eventNamePrefix) {
-            if (truthy(eventNamePrefix)) {
-                return allEventsUri.buildUpon().appendPath(eventNamePrefix).build();
-            } else {
-                return allEventsUri;
-            }
-        }
-
-        Uri buildMyDevicesEventUri(@Nullable String eventNamePrefix) {
-            if (truthy(eventNamePrefix)) {
-                return myDevicesEventsUri.buildUpon().appendPath(eventNamePrefix).build();
-            } else {
-                return myDevicesEventsUri;
-            }
-        }
-
-        Uri buildSingleDeviceEventUri(@Nullable String eventNamePrefix, String deviceId) {
+        Uri buildSingleDeviceEventsUri(String deviceId) {
             Builder builder = devicesBaseUri.buildUpon()
                     .appendPath(deviceId)
                     .appendPath(EVENTS);
+            return builder.build();
+        }
+
+        static Uri withPrefix(Uri scopeUri, @Nullable String eventNamePrefix) {
             if (truthy(eventNamePrefix)) {
-                builder.appendPath(eventNamePrefix);
+                return scopeUri.buildUpon().appendPath(eventNamePrefix).build();
+            } else {
+                return scopeUri;
             }
-            return builder.build();
         }
     }
 
@@ -0,0 +1,166 @@
+package io.particle.android.sdk.cloud;
+
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import io.particle.android.sdk.cloud.exceptions.ParticleCloudException;
+import io.particle.android.sdk.utils.TLog;
+
+
+/**
+ * Keeps the cached {@link DeviceState} of the user's devices up to date from their events, so
+ * that apps don't have to keep polling the cloud just to find out which devices are online.
+ * <p>
+ * Every event from a known device updates its <code>lastHeard</code> time, and
+ * <code>spark/status</code> events update whether it's connected.  Only when a device's
+ * functions and variables may have changed (it came online after being offline, or it has new
+ * firmware) is the device re-fetched from the cloud.
+ * <p>
+ * Events are applied in batches, with at most one devices-updated broadcast per batch, and
+ * repeats of the same event from the same device are conflated while waiting.
+ */
+@ParametersAreNonnullByDefault
+class LiveDeviceStateUpdater implements ParticleBatchEventHandler {
+
+    private static final TLog log = TLog.get(LiveDeviceStateUpdater.class);
+
+    private static final int MAX_BATCH_SIZE = 256;
+    private static final long MAX_BATCH_DELAY_MILLIS = 1000;
+
+    private static final long NOT_SUBSCRIBED = -1;
+
+    private final ParticleCloud cloud;
+    private final ExecutorService executor;
+    // devices which have a refresh from the cloud queued up
+    private final Set<String> pendingRefreshes = Collections.newSetFromMap(
+            new ConcurrentHashMap<>());
+
+    // guarded by "this"
+    private long subscriptionId = NOT_SUBSCRIBED;
+
+    LiveDeviceStateUpdater(ParticleCloud cloud, ExecutorService executor) {
+        this.cloud = cloud;
+        this.executor = executor;
+    }
+
+    @WorkerThread
+    synchronized void start() throws ParticleCloudException {
+        if (subscriptionId != NOT_SUBSCRIBED) {
+            return;
+        }
+        try {
+            subscriptionId = cloud.subscribeToMyDevicesEvents(null, this, MAX_BATCH_SIZE,
+                    MAX_BATCH_DELAY_MILLIS,
+                    ParticleEventQueuePolicy.conflateLatest(MAX_BATCH_SIZE));
+        } catch (IOException e) {
+            throw new ParticleCloudException(e);
+        }
+    }
+
+    @WorkerThread
+    synchronized void stop() throws ParticleCloudException {
+        if (subscriptionId == NOT_SUBSCRIBED) {
+            return;
+        }
+        long oldSubscriptionId = subscriptionId;
+        subscriptionId = NOT_SUBSCRIBED;
+        cloud.unsubscribeFromEventWithID(oldSubscriptionId);
+    }
+
+    synchronized boolean isRunning() {
+        return subscriptionId != NOT_SUBSCRIBED;
+    }
+
+    @Override
+    public void onEvents(List<String> eventNames, List<ParticleEvent> events) {
+        boolean changed = false;
+        for (int i = 0; i < events.size(); i++) {
+            changed |= apply(eventNames.get(i), events.get(i));
+        }
+        if (changed) {
+            cloud.notifyDeviceChanged();
+        }
+    }
+
+    @Override
+    public void onEventError(Exception e) {
+        log.d("Event error while updating device state", e);
+    }
+
+    // returns true if the cached state of the device changed
+    private boolean apply(String eventName, ParticleEvent event) {
+        if (event.deviceId == null) {
+            return false;
+        }
+
+        Boolean connected = null;
+        boolean newFirmware = false;
+        switch (eventName) {
+            case "spark/status":
+                if ("online".equals(event.dataPayload)) {
+                    connected = true;
+                } else if ("offline".equals(event.dataPayload)) {
+                    connected = false;
+                }
+                break;
+            case "spark/device/app-hash":
+                newFirmware = true;
+                break;
+            case "spark/flash/status":
+                newFirmware = "success".equals(event.dataPayload);
+                break;
+        }
+
+        DeviceState previous = cloud.applyLiveDeviceState(event.deviceId, connected,
+                event.publishedAt);
+        if (previous == null) {
+            // not a device we know about (yet); it'll show up on the next full fetch
+            return false;
+        }
+
+        boolean cameOnline = Boolean.TRUE.equals(connected)
+                && !Boolean.TRUE.equals(previous.isConnected);
+        if (cameOnline || newFirmware) {
+            // functions and variables are only known for devices fetched while online
+            scheduleRefresh(event.deviceId);
+        }
+
+        boolean connectionChanged = connected != null && !connected.equals(previous.isConnected);
+        return connectionChanged || isNewer(event.publishedAt, previous.lastHeard);
+    }
+
+    private void scheduleRefresh(final String deviceId) {
+        if (!pendingRefreshes.add(deviceId)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                // anything invalidating the device from here on needs another refresh
+                pendingRefreshes.remove(deviceId);
+                try {
+                    cloud.getDevice(deviceId, true);
+                } catch (ParticleCloudException e) {
+                    log.w("Unable to refresh device " + deviceId, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pendingRefreshes.remove(deviceId);
+            log.w("Unable to schedule refresh of device " + deviceId, e);
+        }
+    }
+
+    static boolean isNewer(@Nullable Date date, @Nullable Date than) {
+        return date != null && (than == null || date.after(than));
+    }
+}
@@ -0,0 +1,396 @@
+package io.particle.android.sdk.cloud;
+
+import android.support.annotation.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import io.particle.android.sdk.utils.Preconditions;
+import io.particle.android.sdk.utils.TLog;
+
+
+/**
+ * In-memory time series of numeric event payloads (temperatures, currents, RSSI, etc.), e.g.:
+ * for drawing charts, without holding on to a {@link ParticleEvent} per sample.
+ * <p>
+ * Pass the store as the handler when subscribing to events.  Each (device ID, event name) pair
+ * gets its own fixed-capacity ring buffer of primitive <code>long</code> timestamps (from
+ * <code>published_at</code>) and <code>double</code> values, so each sample costs 16 bytes, and
+ * no objects are kept per sample.  When a series is full, its oldest samples are overwritten.
+ * <p>
+ * The number of series is limited by a memory budget; when a new series wouldn't fit, the
+ * series which was least recently updated or queried is evicted.
+ * <p>
+ * Events whose data isn't a plain decimal number, and events older than the newest sample of
+ * their series, are skipped (see {@link #getSkippedEventCount()}).
+ */
+@ParametersAreNonnullByDefault
+public class NumericEventStore implements ParticleEventHandler {
+
+    /**
+     * Samples copied out of a series, oldest first.
+     */
+    public static final class Samples {
+
+        public final long[] timestamps;
+        public final double[] values;
+
+        Samples(long[] timestamps, double[] values) {
+            this.timestamps = timestamps;
+            this.values = values;
+        }
+
+        public int size() {
+            return timestamps.length;
+        }
+    }
+
+
+    // two arrays of 8-byte primitives
+    private static final int BYTES_PER_SAMPLE = 16;
+
+    private static final long[] NO_TIMESTAMPS = new long[0];
+    private static final double[] NO_VALUES = new double[0];
+
+    private static final TLog log = TLog.get(NumericEventStore.class);
+
+    private final int capacityPerSeries;
+    private final int maxSeriesCount;
+    // in least-recently-used order; guarded by itself
+    private final LinkedHashMap<String, Series> seriesByKey;
+
+    private final AtomicLong skippedEventCount = new AtomicLong();
+
+    /**
+     * @param capacityPerSeries  the maximum number of samples kept for each (device ID, event
+     *                           name) pair
+     * @param memoryBudgetBytes  the maximum amount of memory used by samples, across all series
+     */
+    public NumericEventStore(int capacityPerSeries, long memoryBudgetBytes) {
+        Preconditions.checkArgument(capacityPerSeries > 0,
+                "Capacity per series must be greater than 0");
+        long seriesBytes = (long) capacityPerSeries * BYTES_PER_SAMPLE;
+        Preconditions.checkArgument(memoryBudgetBytes >= seriesBytes,
+                "Memory budget must fit at least one series");
+
+        this.capacityPerSeries = capacityPerSeries;
+        this.maxSeriesCount = (int) Math.min(Integer.MAX_VALUE, memoryBudgetBytes / seriesBytes);
+        this.seriesByKey = new LinkedHashMap<String, Series>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Series> eldest) {
+                return size() > maxSeriesCount;
+            }
+        };
+    }
+
+    @Override
+    public void onEvent(String eventName, ParticleEvent particleEvent) {
+        if (particleEvent.deviceId == null || particleEvent.dataPayload == null) {
+            skippedEventCount.incrementAndGet();
+            return;
+        }
+        double value = parseNumber(particleEvent.dataPayload);
+        if (Double.isNaN(value)) {
+            skippedEventCount.incrementAndGet();
+            return;
+        }
+        long timestamp = (particleEvent.publishedAt != null)
+                ? particleEvent.publishedAt.getTime()
+                : System.currentTimeMillis();
+
+        Series series;
+        String key = toKey(particleEvent.deviceId, eventName);
+        synchronized (seriesByKey) {
+            series = seriesByKey.get(key);
+            if (series == null) {
+                series = new Series(capacityPerSeries);
+                seriesByKey.put(key, series);
+            }
+        }
+        if (!series.append(timestamp, value)) {
+            skippedEventCount.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void onEventError(Exception e) {
+        log.w("Event error in numeric event store", e);
+    }
+
+    /**
+     * @return the samples from the given series with <code>fromMillis &lt;= timestamp &lt;
+     * toMillis</code>, oldest first
+     */
+    public Samples query(String deviceId, String eventName, long fromMillis, long toMillis) {
+        Series series = getSeries(deviceId, eventName);
+        if (series == null) {
+            return new Samples(NO_TIMESTAMPS, NO_VALUES);
+        }
+        return series.query(fromMillis, toMillis);
+    }
+
+    /**
+     * Like {@link #query(String, String, long, long)}, but copies the samples into the given
+     * arrays instead of allocating new ones, e.g.: to redraw a chart without creating garbage.
+     * If there are more samples in the range than fit in the arrays, the newest ones are kept.
+     *
+     * @return the number of samples copied
+     */
+    public int query(String deviceId, String eventName, long fromMillis, long toMillis,
+                     long[] timestampsOut, double[] valuesOut) {
+        Preconditions.checkArgument(timestampsOut.length == valuesOut.length,
+                "Output arrays must be the same length");
+        Series series = getSeries(deviceId, eventName);
+        if (series == null) {
+            return 0;
+        }
+        return series.copyRange(fromMillis, toMillis, timestampsOut, valuesOut);
+    }
+
+    /**
+     * @return the number of samples currently held for the given series
+     */
+    public int size(String deviceId, String eventName) {
+        Series series = getSeries(deviceId, eventName);
+        return (series == null) ? 0 : series.size();
+    }
+
+    public int getSeriesCount() {
+        synchronized (seriesByKey) {
+            return seriesByKey.size();
+        }
+    }
+
+    /**
+     * @return the memory used by samples, in bytes; never more than the memory budget
+     */
+    public long getMemoryUsageBytes() {
+        return (long) getSeriesCount() * capacityPerSeries * BYTES_PER_SAMPLE;
+    }
+
+    /**
+     * @return the number of events which were skipped because their data wasn't a number, or
+     * they were older than the newest sample of their series
+     */
+    public long getSkippedEventCount() {
+        return skippedEventCount.get();
+    }
+
+    public void clear() {
+        synchronized (seriesByKey) {
+            seriesByKey.clear();
+        }
+    }
+
+    @Nullable
+    private Series getSeries(String deviceId, String eventName) {
+        synchronized (seriesByKey) {
+            return seriesByKey.get(toKey(deviceId, eventName));
+        }
+    }
+
+    private static String toKey(String deviceId, String eventName) {
+        return eventName + "\n" + deviceId;
+    }
+
+
+    /**
+     * Parse a plain decimal number, e.g.: "-12", "23.5", or "1.5e3", ignoring surrounding
+     * whitespace.  Numbers which fit in a double exactly (up to 15 significant digits, and an
+     * exponent up to 22 in either direction) are worked out directly from the characters,
+     * without allocating anything; others go through {@link Double#parseDouble(String)}.
+     *
+     * @return the value, or NaN if the text isn't a number
+     */
+    static double parseNumber(String text) {
+        int end = text.length();
+        int i = 0;
+        while (i < end && text.charAt(i) <= ' ') {
+            i++;
+        }
+        while (end > i && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (i == end) {
+            return Double.NaN;
+        }
+
+        int start = i;
+        boolean negative = false;
+        char c = text.charAt(i);
+        if (c == '-' || c == '+') {
+            negative = (c == '-');
+            i++;
+        }
+
+        long mantissa = 0;
+        int significantDigits = 0;
+        int digitCount = 0;
+        int decimalShift = 0;
+        boolean seenPoint = false;
+        for (; i < end; i++) {
+            c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digitCount++;
+                // leading zeros aren't significant
+                if (mantissa != 0 || c != '0') {
+                    significantDigits++;
+                }
+                // past 15 significant digits, Double.parseDouble() takes over below
+                if (significantDigits <= 15) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (seenPoint) {
+                        decimalShift++;
+                    }
+                }
+            } else if (c == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                break;
+            }
+        }
+        if (digitCount == 0) {
+            return Double.NaN;
+        }
+
+        int exponent = 0;
+        if (i < end && (text.charAt(i) == 'e' || text.charAt(i) == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+                negativeExponent = (text.charAt(i) == '-');
+                i++;
+            }
+            int exponentStart = i;
+            while (i < end && text.charAt(i) >= '0' && text.charAt(i) <= '9') {
+                if (exponent < 10000) {
+                    exponent = exponent * 10 + (text.charAt(i) - '0');
+                }
+                i++;
+            }
+            if (i == exponentStart) {
+                return Double.NaN;
+            }
+            if (negativeExponent) {
+                exponent = -exponent;
+            }
+        }
+        if (i != end) {
+            return Double.NaN;
+        }
+
+        int power = exponent - decimalShift;
+        if (significantDigits <= 15 && power >= -22 && power <= 22) {
+            // both the mantissa and the power of ten are exact doubles, so this is correctly
+            // rounded
+            double value = (power >= 0)
+                    ? mantissa * POWERS_OF_TEN[power]
+                    : mantissa / POWERS_OF_TEN[-power];
+            return negative ? -value : value;
+        }
+
+        try {
+            return Double.parseDouble(text.substring(start, end));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+
+    // A ring buffer of samples with non-decreasing timestamps
+    private static class Series {
+
+        private final long[] timestamps;
+        private final double[] values;
+        // index of the oldest sample
+        private int head = 0;
+        private int size = 0;
+
+        Series(int capacity) {
+            timestamps = new long[capacity];
+            values = new double[capacity];
+        }
+
+        // returns false if the sample is older than the newest one, and was skipped
+        synchronized boolean append(long timestamp, double value) {
+            int capacity = timestamps.length;
+            if (size > 0 && timestamp < timestamps[physicalIndex(size - 1)]) {
+                return false;
+            }
+            int index;
+            if (size < capacity) {
+                index = physicalIndex(size);
+                size++;
+            } else {
+                index = head;
+                head = (head + 1) % capacity;
+            }
+            timestamps[index] = timestamp;
+            values[index] = value;
+            return true;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized Samples query(long fromMillis, long toMillis) {
+            int first = lowerBound(fromMillis);
+            int count = Math.max(0, lowerBound(toMillis) - first);
+            long[] timestampsOut = new long[count];
+            double[] valuesOut = new double[count];
+            copy(first, count, timestampsOut, valuesOut);
+            return new Samples(timestampsOut, valuesOut);
+        }
+
+        synchronized int copyRange(long fromMillis, long toMillis,
+                                   long[] timestampsOut, double[] valuesOut) {
+            int first = lowerBound(fromMillis);
+            int last = lowerBound(toMillis);
+            int count = Math.max(0, Math.min(last - first, timestampsOut.length));
+            copy(last - count, count, timestampsOut, valuesOut);
+            return count;
+        }
+
+        // copies "count" samples starting at logical index "first", in at most two chunks
+        private void copy(int first, int count, long[] timestampsOut, double[] valuesOut) {
+            int capacity = timestamps.length;
+            int copied = 0;
+            while (copied < count) {
+                int from = physicalIndex(first + copied);
+                int chunk = Math.min(count - copied, capacity - from);
+                System.arraycopy(timestamps, from, timestampsOut, copied, chunk);
+                System.arraycopy(values, from, valuesOut, copied, chunk);
+                copied += chunk;
+            }
+        }
+
+        // the logical index of the first sample with a timestamp >= the given one
+        private int lowerBound(long timestamp) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (timestamps[physicalIndex(mid)] < timestamp) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private int physicalIndex(int logicalIndex) {
+            int index = head + logicalIndex;
+            return (index >= timestamps.length) ? index - timestamps.length : index;
+        }
+    }
+}
@@ -1,29 +1,36 @@
 package io.particle.android.sdk.cloud;
 
-import android.support.annotation.CheckResult;
 import android.support.annotation.Nullable;
 
 import java.util.Collection;
-import java.util.List;
-import java.util.concurrent.Callable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import javax.annotation.ParametersAreNonnullByDefault;
 
 import io.particle.android.sdk.cloud.ApiDefs.CloudApi;
+import io.particle.android.sdk.cloud.CancellableOkHttpClient.CallSlot;
 import io.particle.android.sdk.cloud.Responses.Models;
 import io.particle.android.sdk.cloud.Responses.Models.CompleteDevice;
-import io.particle.android.sdk.cloud.Responses.Models.SimpleDevice;
-
-import static io.particle.android.sdk.utils.Py.list;
 
 /**
  * Does parallel fetching of {@link Models.CompleteDevice}
- *
- * FIXME: review this solution
+ * <p>
+ * Fetches run on the shared executor, but no more than the given number at once, so fetching a
+ * long list of devices doesn't crowd out everything else using the executor.  Each result is
+ * handed to a callback as soon as it arrives, and each device gets its own deadline, counted from
+ * when its fetch starts running rather than when it's queued: a fetch which runs past it is
+ * cancelled, HTTP call and all (see {@link CancellableOkHttpClient}), and reported as failed with
+ * a {@link TimeoutException}, without holding up the others.
  */
 @ParametersAreNonnullByDefault
 class ParallelDeviceFetcher {
@@ -36,15 +43,32 @@ class ParallelDeviceFetcher {
          */
         @Nullable
         final CompleteDevice fetchedDevice;
+        /**
+         * Why the device couldn't be fetched, if it couldn't.
+         */
+        @Nullable
+        final Exception error;
 
-        DeviceFetchResult(String deviceId, @Nullable CompleteDevice fetchedDevice) {
+        DeviceFetchResult(String deviceId, @Nullable CompleteDevice fetchedDevice,
+                          @Nullable Exception error) {
             this.deviceId = deviceId;
             this.fetchedDevice = fetchedDevice;
+            this.error = error;
         }
     }
 
 
-    // FIXME: insert slower API here
+    interface DeviceFetchCallback {
+
+        /**
+         * Called on the thread which called
+         * {@link #fetchDevices(Collection, CloudApi, int, long, DeviceFetchCallback)}, once for
+         * each device, in the order the results arrive.
+         */
+        void onDeviceFetched(DeviceFetchResult result);
+    }
+
+
     static ParallelDeviceFetcher newFetcherUsingExecutor(ExecutorService executor) {
         return new ParallelDeviceFetcher(executor);
     }
@@ -56,62 +80,128 @@ class ParallelDeviceFetcher {
         this.executor = executor;
     }
 
-    // FIXME: ugh, so lame.  Figure out the smarter way to do per-device fetch timeouts
-    // without having to resort to two Retrofit API instances.  look into jsr166 ForkJoinPool
-    // or similar (since we can't use the Java 7 one until API 21...)
     /**
-     * Fetch the devices in parallel.  Ordering of results not guaranteed to be preserved or
-     * respected in any way.
+     * Fetch the devices, with no more than <code>maxConcurrency</code> fetches in progress at
+     * once, and pass each result to the callback as it arrives.  Blocks until every device has
+     * been fetched, has failed to be, or has run out of time.
+     * <p>
+     * If the calling thread is interrupted, any fetches still in progress are cancelled, and the
+     * InterruptedException is thrown; likewise for anything thrown by the callback.
      */
-    @CheckResult
-    Collection<DeviceFetchResult> fetchDevicesInParallel(Collection<SimpleDevice> simpleDevices,
-                                                         final CloudApi cloudApi,
-                                                         int perDeviceTimeoutInSeconds) {
-        // Assemble the list of Callables
-        List<Callable<DeviceFetchResult>> callables = list();
-        for (final SimpleDevice device : simpleDevices) {
-            callables.add(() -> getDevice(cloudApi, device.id));
-        }
+    void fetchDevices(Collection<String> deviceIds, CloudApi cloudApi, int maxConcurrency,
+                      long perDeviceTimeoutMillis, DeviceFetchCallback callback)
+            throws InterruptedException {
+        CompletionService<DeviceFetchResult> completionService =
+                new ExecutorCompletionService<>(executor);
+        Iterator<String> remaining = deviceIds.iterator();
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(perDeviceTimeoutMillis);
+        Map<Future<DeviceFetchResult>, InFlightFetch> inFlight = new LinkedHashMap<>();
 
-
-        // Submit callables, receive list of Futures.  invokeAll() will block until they finish.
-        List<Future<DeviceFetchResult>> futures = list();
         try {
-            long timeout = perDeviceTimeoutInSeconds * simpleDevices.size();
-            futures = executor.invokeAll(callables, timeout, TimeUnit.SECONDS);
-        } catch (InterruptedException e) {
-            // FIXME: think about what to do in this implausible(?) scenario, or how to avoid it.
-            e.printStackTrace();
-        }
-
+            while (true) {
+                while (inFlight.size() < maxConcurrency && remaining.hasNext()) {
+                    InFlightFetch fetch = new InFlightFetch(remaining.next());
+                    inFlight.put(completionService.submit(
+                            () -> getDevice(cloudApi, fetch, timeoutNanos)), fetch);
+                }
+                if (inFlight.isEmpty()) {
+                    return;
+                }
 
-        // turn the results into something usable.
-        List<DeviceFetchResult> results = list();
-        for (Future<DeviceFetchResult> future : futures) {
-            try {
-                DeviceFetchResult result = future.get();
-                if (result != null) {
-                    results.add(result);
+                // The shared executor may not have got round to some of the fetches yet, and
+                // their clocks haven't started.  Any which start from now on can't run out of
+                // time any sooner than a full timeout from now, so that's the longest wait.
+                Entry<Future<DeviceFetchResult>, InFlightFetch> nextToExpire = null;
+                long waitNanos = timeoutNanos;
+                for (Entry<Future<DeviceFetchResult>, InFlightFetch> entry : inFlight.entrySet()) {
+                    if (entry.getValue().started) {
+                        long remainingNanos = entry.getValue().deadlineNanos - System.nanoTime();
+                        if (nextToExpire == null || remainingNanos < waitNanos) {
+                            nextToExpire = entry;
+                            waitNanos = remainingNanos;
+                        }
+                    }
+                }
+                Future<DeviceFetchResult> done = completionService.poll(Math.max(0, waitNanos),
+                        TimeUnit.NANOSECONDS);
+
+                if (done != null) {
+                    InFlightFetch fetch = inFlight.remove(done);
+                    // if it's not there, it ran out of time, and has already been reported
+                    if (fetch != null) {
+                        callback.onDeviceFetched(getResult(done, fetch.deviceId));
+                    }
+                } else if (nextToExpire != null && !nextToExpire.getKey().isDone()
+                        && nextToExpire.getValue().deadlineNanos - System.nanoTime() <= 0) {
+                    inFlight.remove(nextToExpire.getKey());
+                    cancel(nextToExpire.getKey(), nextToExpire.getValue());
+                    callback.onDeviceFetched(new DeviceFetchResult(nextToExpire.getValue().deviceId,
+                            null, new TimeoutException("No response for device "
+                            + nextToExpire.getValue().deviceId + " within "
+                            + perDeviceTimeoutMillis + "ms")));
                 }
-            } catch (InterruptedException | ExecutionException e) {
-                // FIXME: see above; think more about what to do in this scenario, or how to avoid it.
-                e.printStackTrace();
+                // else it finished just as its time ran out, and it'll be polled next time
+                // around, or nothing had started yet when the wait began
             }
-        }
 
-        return results;
+        } finally {
+            // only if interrupted, or the callback threw
+            for (Entry<Future<DeviceFetchResult>, InFlightFetch> entry : inFlight.entrySet()) {
+                cancel(entry.getKey(), entry.getValue());
+            }
+        }
     }
 
 
-    private DeviceFetchResult getDevice(CloudApi cloudApi, String deviceID) {
+    private static DeviceFetchResult getDevice(CloudApi cloudApi, InFlightFetch fetch,
+                                               long timeoutNanos) {
+        fetch.start(System.nanoTime() + timeoutNanos);
         CompleteDevice device = null;
+        Exception error = null;
+        fetch.callSlot.attach();
         try {
-            device = cloudApi.getDevice(deviceID);
+            device = cloudApi.getDevice(fetch.deviceId);
         } catch (Exception e) {
             // doesn't matter why it fails, just don't abort the whole operation because of it
+            error = e;
+        } finally {
+            fetch.callSlot.detach();
         }
-        return new DeviceFetchResult(deviceID, device);
+        return new DeviceFetchResult(fetch.deviceId, device, error);
+    }
+
+    private static DeviceFetchResult getResult(Future<DeviceFetchResult> done, String deviceId)
+            throws InterruptedException {
+        try {
+            return done.get();
+        } catch (ExecutionException e) {
+            // getDevice() catches everything but Errors
+            return new DeviceFetchResult(deviceId, null, e);
+        }
+    }
+
+    private static void cancel(Future<DeviceFetchResult> future, InFlightFetch fetch) {
+        // interrupting the thread isn't enough to stop a blocking socket read
+        fetch.callSlot.cancel();
+        future.cancel(true);
     }
 
 
+    private static class InFlightFetch {
+
+        final String deviceId;
+        final CallSlot callSlot = new CallSlot();
+        // written by the executor's thread when the fetch starts, only then is started set
+        volatile long deadlineNanos;
+        volatile boolean started;
+
+        InFlightFetch(String deviceId) {
+            this.deviceId = deviceId;
+        }
+
+        void start(long deadlineNanos) {
+            this.deadlineNanos = deadlineNanos;
+            this.started = true;
+        }
+    }
 }
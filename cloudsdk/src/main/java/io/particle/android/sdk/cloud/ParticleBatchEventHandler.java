@@ -0,0 +1,25 @@
+package io.particle.android.sdk.cloud;
+
+import java.util.List;
+
+
+/**
+ * Alternative to {@link ParticleEventHandler} for high-volume subscriptions, which receives
+ * events in batches instead of one at a time, e.g.: so that each batch can be written in a
+ * single database transaction, or shown with a single UI update.
+ * <p>
+ * A batch holds the events which were waiting to be handled, up to the subscription's maximum
+ * batch size.  When events trickle in, the first event of a batch waits up to the
+ * subscription's maximum batch delay for more events to arrive before the batch is delivered.
+ */
+public interface ParticleBatchEventHandler {
+
+    /**
+     * @param eventNames the name of each event, i.e.: <code>eventNames.get(i)</code> is the name
+     *                   of <code>events.get(i)</code>
+     * @param events     the events, oldest first; never empty
+     */
+    void onEvents(List<String> eventNames, List<ParticleEvent> events);
+
+    void onEventError(Exception e);
+}
@@ -15,6 +15,7 @@ import com.google.gson.Gson;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.kaazing.net.impl.util.SharedScheduler;
 
 import java.io.IOException;
 import java.util.Calendar;
@@ -27,11 +28,11 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.ParametersAreNonnullByDefault;
 
-import io.particle.android.sdk.cloud.ApiDefs.CloudApi;
-import io.particle.android.sdk.cloud.ParallelDeviceFetcher.DeviceFetchResult;
 import io.particle.android.sdk.cloud.ParticleDevice.ParticleDeviceType;
 import io.particle.android.sdk.cloud.ParticleDevice.VariableType;
 import io.particle.android.sdk.cloud.Responses.Models;
@@ -46,6 +47,7 @@ import io.particle.android.sdk.persistance.AppDataStorage;
 import io.particle.android.sdk.utils.Funcy;
 import io.particle.android.sdk.utils.Funcy.Func;
 import io.particle.android.sdk.utils.Funcy.Predicate;
+import io.particle.android.sdk.utils.Preconditions;
 import io.particle.android.sdk.utils.Py.PySet;
 import io.particle.android.sdk.utils.TLog;
 import retrofit.RetrofitError;
@@ -68,6 +70,19 @@ public class ParticleCloud {
 
     private static final TLog log = TLog.get(ParticleCloud.class);
 
+    /**
+     * How many devices {@link #hydrate(Collection)} fetches at once, by default
+     */
+    public static final int DEFAULT_HYDRATION_CONCURRENCY = 4;
+
+    // How many devices getDevicesParallel() fetches at once: as many as the SDK executor runs
+    // without queueing (see SDKProvider), which is how many it always effectively fetched
+    private static final int PARALLEL_DEVICE_FETCH_CONCURRENCY =
+            Runtime.getRuntime().availableProcessors() + 1;
+    // per-device deadlines when fetching devices in parallel
+    private static final long DEVICE_FETCH_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(35);
+    private static final long SHORT_DEVICE_FETCH_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
     /**
      * Singleton instance of ParticleCloud class
      *
@@ -87,16 +102,22 @@ public class ParticleCloud {
 
     private final ApiDefs.CloudApi mainApi;
     private final ApiDefs.IdentityApi identityApi;
-    // FIXME: document why this exists (and try to make it not exist...)
-    private final ApiDefs.CloudApi deviceFastTimeoutApi;
     private final AppDataStorage appDataStorage;
     private final TokenDelegate tokenDelegate = new TokenDelegate();
     private final LocalBroadcastManager broadcastManager;
     private final EventsDelegate eventsDelegate;
+    private final SystemEventRouter systemEventRouter;
+    private final LiveDeviceStateUpdater liveDeviceStateUpdater;
     private final ParallelDeviceFetcher parallelDeviceFetcher;
+    private final ApiResponseCache responseCache;
+    private final ExecutorService executor;
+    private final DeviceRepository deviceRepository;
+    private final RequestCoalescer requestCoalescer = new RequestCoalescer();
 
     private final Map<String, ParticleDevice> devices = new ArrayMap<>();
 
+    private volatile boolean lazyDeviceHydrationEnabled = false;
+
     // We should be able to mark these both @Nullable, but Android Studio has been incorrectly
     // inferring that these could be null in code blocks which _directly follow a null check_.
     // Try again later after a few more releases, I guess...
@@ -108,12 +129,10 @@ public class ParticleCloud {
     ParticleCloud(Uri schemeAndHostname,
                   ApiDefs.CloudApi mainApi,
                   ApiDefs.IdentityApi identityApi,
-                  ApiDefs.CloudApi perDeviceFastTimeoutApi,
                   AppDataStorage appDataStorage, LocalBroadcastManager broadcastManager,
-                  Gson gson, ExecutorService executor) {
+                  Gson gson, ApiResponseCache responseCache, ExecutorService executor) {
         this.mainApi = mainApi;
         this.identityApi = identityApi;
-        this.deviceFastTimeoutApi = perDeviceFastTimeoutApi;
         this.appDataStorage = appDataStorage;
         this.broadcastManager = broadcastManager;
         this.user = ParticleUser.fromSavedSession();
@@ -121,8 +140,25 @@ public class ParticleCloud {
         if (this.token != null) {
             this.token.setDelegate(new TokenDelegate());
         }
-        this.eventsDelegate = new EventsDelegate(mainApi, schemeAndHostname, gson, executor, this);
+        this.eventsDelegate = new EventsDelegate(mainApi, schemeAndHostname, gson, this);
+        this.systemEventRouter = new SystemEventRouter(this);
+        this.liveDeviceStateUpdater = new LiveDeviceStateUpdater(this, executor);
         this.parallelDeviceFetcher = ParallelDeviceFetcher.newFetcherUsingExecutor(executor);
+        this.responseCache = responseCache;
+        this.executor = executor;
+        this.deviceRepository = new DeviceRepository(executor,
+                new DeviceRepository.DeviceFetcher() {
+                    @Override
+                    public CompleteDevice fetchDevice(String deviceId)
+                            throws ParticleCloudException {
+                        return fetchDeviceModel(deviceId);
+                    }
+
+                    @Override
+                    public void onDeviceRefreshed(CompleteDevice device) {
+                        getDevice(device, true);
+                    }
+                });
     }
 
     //region general public API
@@ -337,25 +373,55 @@ public class ParticleCloud {
         ParticleAccessToken.removeSession();
         token = null;
         user = null;
+        // don't keep the previous user's devices or responses around
+        deviceRepository.clear();
+        synchronized (devices) {
+            devices.clear();
+        }
+        executor.execute(responseCache::clear);
+    }
+
+    /**
+     * @return how often API responses have been served from the HTTP response cache, and how
+     * often the cloud has confirmed that a cached response was still current
+     */
+    public ParticleHttpCacheMetrics getHttpCacheMetrics() {
+        return responseCache.getMetrics();
+    }
+
+    /**
+     * @return how many concurrent, identical calls to {@link #getDevice(String)},
+     * {@link #getDevices()}, or the {@link ParticleDevice} variable getters shared a single
+     * request to the cloud
+     */
+    public ParticleRequestCoalescingMetrics getRequestCoalescingMetrics() {
+        return requestCoalescer.getMetrics();
     }
 
     /**
      * Get an array of instances of all user's claimed devices
+     * <p>
+     * Normally each online device is fetched individually, one after another, to get its
+     * functions and variables.  With {@link #setLazyDeviceHydrationEnabled(boolean) lazy
+     * hydration}, only the device list is fetched.
      */
     @WorkerThread
     public List<ParticleDevice> getDevices() throws ParticleCloudException {
         List<Models.SimpleDevice> simpleDevices;
         try {
-            simpleDevices = mainApi.getDevices();
+            simpleDevices = fetchDeviceList();
 
             appDataStorage.saveUserHasClaimedDevices(truthy(simpleDevices));
 
             List<ParticleDevice> result = list();
 
+            boolean lazy = lazyDeviceHydrationEnabled;
             for (Models.SimpleDevice simpleDevice : simpleDevices) {
                 ParticleDevice device;
-                if (simpleDevice.isConnected) {
-                    device = getDevice(simpleDevice.id, false);
+                if (simpleDevice.isConnected && lazy) {
+                    device = getListedDevice(simpleDevice);
+                } else if (simpleDevice.isConnected) {
+                    device = fetchDevice(simpleDevice.id, false);
                 } else {
                     device = getOfflineDevice(simpleDevice);
                 }
@@ -375,7 +441,7 @@ public class ParticleCloud {
     public boolean userOwnsDevice(@NonNull String deviceId) throws ParticleCloudException {
         String idLower = deviceId.toLowerCase();
         try {
-            List<SimpleDevice> devices = mainApi.getDevices();
+            List<SimpleDevice> devices = fetchDeviceList();
             SimpleDevice firstMatch = Funcy.findFirstMatch(devices,
                     testTarget -> idLower.equals(testTarget.id.toLowerCase())
             );
@@ -395,7 +461,7 @@ public class ParticleCloud {
             throws PartialDeviceListResultException, ParticleCloudException {
         List<Models.SimpleDevice> simpleDevices;
         try {
-            simpleDevices = mainApi.getDevices();
+            simpleDevices = fetchDeviceList();
             appDataStorage.saveUserHasClaimedDevices(truthy(simpleDevices));
 
 
@@ -420,30 +486,28 @@ public class ParticleCloud {
 
 
             // handle the online devices
-            CloudApi apiToUse = (useShortTimeout)
-                    ? deviceFastTimeoutApi
-                    : mainApi;
-            // FIXME: don't hardcode this here
-            int timeoutInSecs = useShortTimeout ? 5 : 35;
-            Collection<DeviceFetchResult> results = parallelDeviceFetcher.fetchDevicesInParallel(
-                    onlineDevices, apiToUse, timeoutInSecs);
-
-            // FIXME: make this logic more elegant
-            boolean shouldThrowIncompleteException = false;
-            for (DeviceFetchResult fetchResult : results) {
-                // fetchResult shouldn't be null, but...
-                // FIXME: eliminate this ambiguity ^^^, it's either possible that it's null, or it isn't.
-                if (fetchResult == null || fetchResult.fetchedDevice == null) {
-                    shouldThrowIncompleteException = true;
-                } else {
-                    result.add(getDevice(fetchResult.fetchedDevice, false));
-                }
+            long timeoutMillis = (useShortTimeout)
+                    ? SHORT_DEVICE_FETCH_TIMEOUT_MILLIS
+                    : DEVICE_FETCH_TIMEOUT_MILLIS;
+            Exception[] firstError = new Exception[1];
+            try {
+                parallelDeviceFetcher.fetchDevices(Funcy.transformList(onlineDevices, toDeviceId),
+                        mainApi, PARALLEL_DEVICE_FETCH_CONCURRENCY, timeoutMillis, fetchResult -> {
+                            if (fetchResult.fetchedDevice != null) {
+                                result.add(getDevice(fetchResult.fetchedDevice, false));
+                            } else if (firstError[0] == null) {
+                                firstError[0] = fetchResult.error;
+                            }
+                        });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                firstError[0] = e;
             }
 
             pruneDeviceMap(simpleDevices);
 
-            if (shouldThrowIncompleteException) {
-                throw new PartialDeviceListResultException(result);
+            if (firstError[0] != null) {
+                throw new PartialDeviceListResultException(result, firstError[0]);
             }
 
             return result;
@@ -453,15 +517,107 @@ public class ParticleCloud {
         }
     }
 
+    /**
+     * Fetch the functions and variables of any of the devices which don't have them yet (see
+     * {@link #setLazyDeviceHydrationEnabled(boolean)}), with up to
+     * {@link #DEFAULT_HYDRATION_CONCURRENCY} requests in progress at once.
+     */
+    @WorkerThread
+    public void hydrate(Collection<ParticleDevice> devicesToHydrate)
+            throws ParticleCloudException {
+        hydrate(devicesToHydrate, DEFAULT_HYDRATION_CONCURRENCY);
+    }
+
+    /**
+     * Like {@link #hydrate(Collection)}, with up to <code>maxConcurrency</code> requests in
+     * progress at once.
+     * <p>
+     * If any device can't be fetched, the rest are still hydrated, and then the first failure is
+     * thrown; the devices which failed are left as they were.
+     */
+    @WorkerThread
+    public void hydrate(Collection<ParticleDevice> devicesToHydrate, int maxConcurrency)
+            throws ParticleCloudException {
+        Preconditions.checkArgument(maxConcurrency > 0,
+                "Max concurrency must be greater than 0");
+        List<String> deviceIds = list();
+        for (ParticleDevice device : devicesToHydrate) {
+            if (!device.isHydrated()) {
+                deviceIds.add(device.getID());
+            }
+        }
+        if (deviceIds.isEmpty()) {
+            return;
+        }
+
+        Exception[] firstError = new Exception[1];
+        try {
+            parallelDeviceFetcher.fetchDevices(deviceIds, mainApi, maxConcurrency,
+                    DEVICE_FETCH_TIMEOUT_MILLIS, fetchResult -> {
+                        if (fetchResult.fetchedDevice != null) {
+                            getDevice(fetchResult.fetchedDevice, false);
+                        } else if (firstError[0] == null) {
+                            firstError[0] = fetchResult.error;
+                        }
+                    });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            firstError[0] = e;
+        }
+        sendUpdateBroadcast();
+
+        if (firstError[0] != null) {
+            throw new ParticleCloudException(firstError[0]);
+        }
+    }
+
     /**
      * Get a specific device instance by its deviceID
+     * <p>
+     * If a {@link #setDeviceCacheTtl(long) device cache TTL} is set, and the device has been
+     * fetched before, this returns straight away, without fetching it again.  If it was last
+     * fetched more than the TTL ago, it's refreshed in the background, and a
+     * {@link BroadcastContract#BROADCAST_DEVICES_UPDATED} broadcast is sent when that's done.
      *
      * @param deviceID required deviceID
      * @return the device instance on success
      */
     @WorkerThread
     public ParticleDevice getDevice(String deviceID) throws ParticleCloudException {
-        return getDevice(deviceID, true);
+        return getDevice(deviceID, false);
+    }
+
+    /**
+     * Like {@link #getDevice(String)}, but if <code>mustBeFresh</code> is true, the device is
+     * always fetched from the cloud, whatever the {@link #setDeviceCacheTtl(long) TTL}.
+     */
+    @WorkerThread
+    public ParticleDevice getDevice(String deviceID, boolean mustBeFresh)
+            throws ParticleCloudException {
+        if (!mustBeFresh) {
+            ParticleDevice known;
+            synchronized (devices) {
+                known = devices.get(deviceID);
+            }
+            if (known != null && deviceRepository.useKnownDevice(deviceID)) {
+                return known;
+            }
+        }
+        return fetchDevice(deviceID, true);
+    }
+
+    /**
+     * Set how long a device fetched from the cloud may be returned by
+     * {@link #getDevice(String)} without being fetched again.  0, the default, means it's
+     * always fetched.
+     */
+    public void setDeviceCacheTtl(long ttlMillis) {
+        Preconditions.checkArgument(ttlMillis >= 0, "TTL must not be negative");
+        deviceRepository.setTtlMillis(ttlMillis);
+    }
+
+    public long getDeviceCacheTtl() {
+        return deviceRepository.getTtlMillis();
     }
 
     /**
@@ -581,6 +737,46 @@ public class ParticleCloud {
         eventsDelegate.publishEvent(eventName, event, eventVisibility, timeToLive);
     }
 
+    /**
+     * Like {@link #publishEvent(String, String, int, int)}, but returns immediately: the event is
+     * queued, and sent in the background, subject to the
+     * {@link #setEventPublishPolicy(ParticleEventPublishPolicy) publish policy}.
+     * <p>
+     * Publishing an event identical to one which is still waiting to be sent doesn't send it
+     * twice; both calls return the same future, so cancelling it cancels both.
+     *
+     * @return a future which completes when the event has been sent.  If sending it fails, or it
+     * was rejected because too many events were already waiting, <code>get()</code> throws an
+     * {@link java.util.concurrent.ExecutionException} caused by a
+     * {@link ParticleCloudException}.
+     */
+    public Future<Void> publishEventAsync(String eventName, String event,
+                                          @ParticleEventVisibility int eventVisibility,
+                                          int timeToLive) {
+        return eventsDelegate.publishEventAsync(eventName, event, eventVisibility, timeToLive);
+    }
+
+    /**
+     * Set how events published with {@link #publishEventAsync(String, String, int, int)} are
+     * queued and rate limited; defaults to {@link ParticleEventPublishPolicy#defaultPolicy()}.
+     * Events already waiting are sent under the new policy.
+     */
+    public void setEventPublishPolicy(ParticleEventPublishPolicy policy) {
+        eventsDelegate.setPublishPolicy(policy);
+    }
+
+    public ParticleEventPublishPolicy getEventPublishPolicy() {
+        return eventsDelegate.getPublishPolicy();
+    }
+
+    /**
+     * @return counts of the events published with
+     * {@link #publishEventAsync(String, String, int, int)}
+     */
+    public ParticleEventPublishMetrics getEventPublishMetrics() {
+        return eventsDelegate.getPublishMetrics();
+    }
+
     /**
      * NOTE: This method will be deprecated in the future. Please use
      * {@link #subscribeToMyDevicesEvents(String, ParticleEventHandler)} instead.
@@ -596,9 +792,46 @@ public class ParticleCloud {
     @WorkerThread
     public long subscribeToAllEvents(@Nullable String eventNamePrefix, ParticleEventHandler handler)
             throws IOException {
+        return subscribeToAllEvents(eventNamePrefix, handler,
+                ParticleEventQueuePolicy.defaultPolicy());
+    }
+
+    /**
+     * Like {@link #subscribeToAllEvents(String, ParticleEventHandler)}, but with control over
+     * how events are queued up for the handler when they arrive faster than it handles them.
+     *
+     * @param queuePolicy capacity and overflow behavior of this subscription's event queue
+     */
+    @WorkerThread
+    public long subscribeToAllEvents(@Nullable String eventNamePrefix, ParticleEventHandler handler,
+                                     ParticleEventQueuePolicy queuePolicy)
+            throws IOException {
         Log.w("ParticleCloud", "This method will be deprecated in the future. " +
                 "Please use subscribeToMyDevicesEvents() instead.");
-        return eventsDelegate.subscribeToAllEvents(eventNamePrefix, handler);
+        return eventsDelegate.subscribeToAllEvents(eventNamePrefix, handler, queuePolicy);
+    }
+
+    /**
+     * Like {@link #subscribeToAllEvents(String, ParticleEventHandler, ParticleEventQueuePolicy)},
+     * but events are delivered to the handler in batches.
+     *
+     * @param maxBatchSize        the most events to deliver in one batch.  Batches can't be
+     *                            larger than the queue policy's capacity either.
+     * @param maxBatchDelayMillis how long the first event of a batch may wait for more events
+     *                            before the batch is delivered; 0 to deliver whatever is waiting
+     *                            right away.  A full batch, or a full queue, is delivered
+     *                            without waiting.
+     */
+    @WorkerThread
+    public long subscribeToAllEvents(@Nullable String eventNamePrefix,
+                                     ParticleBatchEventHandler handler,
+                                     int maxBatchSize, long maxBatchDelayMillis,
+                                     ParticleEventQueuePolicy queuePolicy)
+            throws IOException {
+        Log.w("ParticleCloud", "This method will be deprecated in the future. " +
+                "Please use subscribeToMyDevicesEvents() instead.");
+        return eventsDelegate.subscribeToAllEvents(eventNamePrefix, handler, maxBatchSize,
+                maxBatchDelayMillis, queuePolicy);
     }
 
     /**
@@ -611,7 +844,68 @@ public class ParticleCloud {
     public long subscribeToMyDevicesEvents(@Nullable String eventNamePrefix,
                                            ParticleEventHandler handler)
             throws IOException {
-        return eventsDelegate.subscribeToMyDevicesEvents(eventNamePrefix, handler);
+        return subscribeToMyDevicesEvents(eventNamePrefix, handler,
+                ParticleEventQueuePolicy.defaultPolicy());
+    }
+
+    /**
+     * Like {@link #subscribeToMyDevicesEvents(String, ParticleEventHandler)}, with the given
+     * queue policy; see
+     * {@link #subscribeToAllEvents(String, ParticleEventHandler, ParticleEventQueuePolicy)}
+     */
+    @WorkerThread
+    public long subscribeToMyDevicesEvents(@Nullable String eventNamePrefix,
+                                           ParticleEventHandler handler,
+                                           ParticleEventQueuePolicy queuePolicy)
+            throws IOException {
+        return eventsDelegate.subscribeToMyDevicesEvents(eventNamePrefix, null, handler,
+                queuePolicy);
+    }
+
+    /**
+     * Like {@link #subscribeToMyDevicesEvents(String, ParticleEventHandler,
+     * ParticleEventQueuePolicy)}, with only the events matching the filter delivered; the rest
+     * are dropped as they arrive, without being decoded.
+     */
+    @WorkerThread
+    public long subscribeToMyDevicesEvents(@Nullable String eventNamePrefix,
+                                           ParticleEventFilter filter,
+                                           ParticleEventHandler handler,
+                                           ParticleEventQueuePolicy queuePolicy)
+            throws IOException {
+        return eventsDelegate.subscribeToMyDevicesEvents(eventNamePrefix, filter, handler,
+                queuePolicy);
+    }
+
+    /**
+     * Like {@link #subscribeToMyDevicesEvents(String, ParticleEventHandler)}, with events
+     * delivered in batches; see
+     * {@link #subscribeToAllEvents(String, ParticleBatchEventHandler, int, long, ParticleEventQueuePolicy)}
+     */
+    @WorkerThread
+    public long subscribeToMyDevicesEvents(@Nullable String eventNamePrefix,
+                                           ParticleBatchEventHandler handler,
+                                           int maxBatchSize, long maxBatchDelayMillis,
+                                           ParticleEventQueuePolicy queuePolicy)
+            throws IOException {
+        return eventsDelegate.subscribeToMyDevicesEvents(eventNamePrefix, null, handler,
+                maxBatchSize, maxBatchDelayMillis, queuePolicy);
+    }
+
+    /**
+     * Like {@link #subscribeToMyDevicesEvents(String, ParticleBatchEventHandler, int, long,
+     * ParticleEventQueuePolicy)}, with only the events matching the filter delivered; the rest
+     * are dropped as they arrive, without being decoded.
+     */
+    @WorkerThread
+    public long subscribeToMyDevicesEvents(@Nullable String eventNamePrefix,
+                                           ParticleEventFilter filter,
+                                           ParticleBatchEventHandler handler,
+                                           int maxBatchSize, long maxBatchDelayMillis,
+                                           ParticleEventQueuePolicy queuePolicy)
+            throws IOException {
+        return eventsDelegate.subscribeToMyDevicesEvents(eventNamePrefix, filter, handler,
+                maxBatchSize, maxBatchDelayMillis, queuePolicy);
     }
 
     /**
@@ -630,7 +924,68 @@ public class ParticleCloud {
     public long subscribeToDeviceEvents(@Nullable String eventNamePrefix, String deviceID,
                                         ParticleEventHandler eventHandler)
             throws IOException {
-        return eventsDelegate.subscribeToDeviceEvents(eventNamePrefix, deviceID, eventHandler);
+        return subscribeToDeviceEvents(eventNamePrefix, deviceID, eventHandler,
+                ParticleEventQueuePolicy.defaultPolicy());
+    }
+
+    /**
+     * Like {@link #subscribeToDeviceEvents(String, String, ParticleEventHandler)}, with the
+     * given queue policy; see
+     * {@link #subscribeToAllEvents(String, ParticleEventHandler, ParticleEventQueuePolicy)}
+     */
+    @WorkerThread
+    public long subscribeToDeviceEvents(@Nullable String eventNamePrefix, String deviceID,
+                                        ParticleEventHandler eventHandler,
+                                        ParticleEventQueuePolicy queuePolicy)
+            throws IOException {
+        return eventsDelegate.subscribeToDeviceEvents(eventNamePrefix, deviceID, null,
+                eventHandler, queuePolicy);
+    }
+
+    /**
+     * Like {@link #subscribeToDeviceEvents(String, String, ParticleEventHandler,
+     * ParticleEventQueuePolicy)}, with only the events matching the filter delivered; the rest
+     * are dropped as they arrive, without being decoded.
+     */
+    @WorkerThread
+    public long subscribeToDeviceEvents(@Nullable String eventNamePrefix, String deviceID,
+                                        ParticleEventFilter filter,
+                                        ParticleEventHandler eventHandler,
+                                        ParticleEventQueuePolicy queuePolicy)
+            throws IOException {
+        return eventsDelegate.subscribeToDeviceEvents(eventNamePrefix, deviceID, filter,
+                eventHandler, queuePolicy);
+    }
+
+    /**
+     * Like {@link #subscribeToDeviceEvents(String, String, ParticleEventHandler)}, with events
+     * delivered in batches; see
+     * {@link #subscribeToAllEvents(String, ParticleBatchEventHandler, int, long, ParticleEventQueuePolicy)}
+     */
+    @WorkerThread
+    public long subscribeToDeviceEvents(@Nullable String eventNamePrefix, String deviceID,
+                                        ParticleBatchEventHandler eventHandler,
+                                        int maxBatchSize, long maxBatchDelayMillis,
+                                        ParticleEventQueuePolicy queuePolicy)
+            throws IOException {
+        return eventsDelegate.subscribeToDeviceEvents(eventNamePrefix, deviceID, null,
+                eventHandler, maxBatchSize, maxBatchDelayMillis, queuePolicy);
+    }
+
+    /**
+     * Like {@link #subscribeToDeviceEvents(String, String, ParticleBatchEventHandler, int, long,
+     * ParticleEventQueuePolicy)}, with only the events matching the filter delivered; the rest
+     * are dropped as they arrive, without being decoded.
+     */
+    @WorkerThread
+    public long subscribeToDeviceEvents(@Nullable String eventNamePrefix, String deviceID,
+                                        ParticleEventFilter filter,
+                                        ParticleBatchEventHandler eventHandler,
+                                        int maxBatchSize, long maxBatchDelayMillis,
+                                        ParticleEventQueuePolicy queuePolicy)
+            throws IOException {
+        return eventsDelegate.subscribeToDeviceEvents(eventNamePrefix, deviceID, filter,
+                eventHandler, maxBatchSize, maxBatchDelayMillis, queuePolicy);
     }
 
     /**
@@ -652,6 +1007,182 @@ public class ParticleCloud {
     void unsubscribeFromEventWithHandler(SimpleParticleEventHandler handler) throws ParticleCloudException {
         eventsDelegate.unsubscribeFromEventWithHandler(handler);
     }
+
+    /**
+     * Enable or disable lazy device hydration.
+     * <p>
+     * When enabled, {@link #getDevices()} makes a single request for the device list, instead of
+     * one more request per online device to fetch its functions and variables.  Devices listed
+     * this way are "hydrated" (i.e.: their functions and variables are fetched) the first time
+     * they're needed by a call which is made on a worker thread anyway, e.g.:
+     * {@link ParticleDevice#callFunction(String)} or
+     * {@link ParticleDevice#getVariable(String)}, or explicitly by
+     * {@link ParticleDevice#hydrate()}, or all at once by {@link #hydrate(Collection)}.  Until
+     * then, {@link ParticleDevice#getFunctions()} and {@link ParticleDevice#getVariables()}
+     * are empty.
+     * Devices which had already been hydrated keep their functions and variables until they're
+     * {@link ParticleDevice#refresh() refreshed}.
+     * <p>
+     * Disabled by default.
+     */
+    public void setLazyDeviceHydrationEnabled(boolean enabled) {
+        lazyDeviceHydrationEnabled = enabled;
+    }
+
+    public boolean isLazyDeviceHydrationEnabled() {
+        return lazyDeviceHydrationEnabled;
+    }
+
+    /**
+     * Enable or disable multiplexed event subscriptions.
+     * <p>
+     * When enabled, all subscriptions on the same scope ("my devices" events, or the events of
+     * one specific device) share a single connection to the cloud, and events are routed locally
+     * to each handler based on its event name prefix.  The shared connection is opened when the
+     * first handler subscribes to the scope, and closed when the last one unsubscribes.
+     * Subscriptions to all public events only share a connection with others which have the
+     * same event name prefix, since that scope is far too busy to filter locally.
+     * <p>
+     * Each handler still has its own queue, so a slow handler doesn't delay the others while
+     * its queue has room.  Once the queue of a subscription with a
+     * {@link ParticleEventQueuePolicy.OverflowStrategy#BLOCK BLOCK} policy (the default) is
+     * full, though, nothing more is read from the shared connection until it has room again,
+     * which holds up every subscription on it.  Subscriptions with handlers which may fall
+     * behind should use one of the other policies when multiplexing.
+     * <p>
+     * This only applies to subscriptions created after the call; existing subscriptions keep
+     * their own connections until they are unsubscribed.  Disabled by default.
+     */
+    public void setEventMultiplexingEnabled(boolean enabled) {
+        eventsDelegate.setMultiplexingEnabled(enabled);
+    }
+
+    public boolean isEventMultiplexingEnabled() {
+        return eventsDelegate.isMultiplexingEnabled();
+    }
+
+    /**
+     * Set a listener to be notified when event streams reconnect after losing their connection,
+     * e.g.: to keep track of how often this happens.  Applies to existing subscriptions too.
+     * <p>
+     * Streams reconnect automatically, backing off exponentially (with random jitter) between
+     * attempts, and resume from the last event received.
+     *
+     * @param listener the listener, or null to remove the current one
+     */
+    public void setEventStreamReconnectListener(
+            @Nullable ParticleEventStreamReconnectListener listener) {
+        eventsDelegate.setReconnectListener(listener);
+    }
+
+    /**
+     * Set how long an event stream may go without receiving anything from the cloud before
+     * its connection is assumed to be dead (e.g.: a half-open TCP connection), dropped, and
+     * re-established.  The cloud sends keep-alives regularly, so a healthy stream is never
+     * quiet for long, even when there are no events.  Stalls are counted in
+     * {@link ParticleEventStreamMetrics#stallCount}.
+     * <p>
+     * Applies to streams opened after the call.  Defaults to 60 seconds.
+     *
+     * @param millis the timeout, or 0 to never drop quiet streams
+     */
+    public void setEventStreamStallTimeout(long millis) {
+        Preconditions.checkArgument(millis >= 0, "Stall timeout must not be negative");
+        eventsDelegate.setStallTimeoutMillis(millis);
+    }
+
+    public long getEventStreamStallTimeout() {
+        return eventsDelegate.getStallTimeoutMillis();
+    }
+
+    /**
+     * Set a journal to record every event received, as it arrives and before it's queued for
+     * its handler, e.g.: so that events aren't lost when a handler falls behind, and can be read
+     * back later.  Applies to existing subscriptions too.
+     * <p>
+     * The journal isn't closed by the SDK; to stop using it, set the journal to null, then close
+     * it.
+     *
+     * @param journal the journal, or null to stop recording events
+     */
+    public void setEventJournal(@Nullable ParticleEventJournal journal) {
+        eventsDelegate.setJournal(journal);
+    }
+
+    @Nullable
+    public ParticleEventJournal getEventJournal() {
+        return eventsDelegate.getJournal();
+    }
+
+    /**
+     * @return a snapshot of the metrics of every live event subscription, i.e.: event and byte
+     * rates, parse and handler times, queue depth, drops, reconnects, and delivery lag.  Rates,
+     * averages, and maximums cover the whole life of each subscription.
+     */
+    public List<ParticleEventStreamMetrics> getEventStreamMetrics() {
+        return eventsDelegate.getMetrics();
+    }
+
+    /**
+     * @return a snapshot of the metrics of the given event subscription, or null if there's no
+     * such subscription
+     */
+    @Nullable
+    public ParticleEventStreamMetrics getEventStreamMetrics(long eventListenerID) {
+        return eventsDelegate.getMetrics(eventListenerID);
+    }
+
+    /**
+     * @return the number of reconnect and timeout timers which the event stream transport has
+     * scheduled, but which have neither run nor been cancelled yet.  These all share a single
+     * timer thread, so this should stay roughly proportional to the number of live event
+     * subscriptions; steady growth means timers are being leaked.
+     */
+    public int getEventStreamPendingTimerCount() {
+        return SharedScheduler.getPendingTimerCount();
+    }
+
+    /**
+     * Set a listener to receive the metrics of every live event subscription at a fixed
+     * interval.  Unlike {@link #getEventStreamMetrics()}, rates, averages, and maximums cover
+     * the time since the previous report.
+     *
+     * @param listener       the listener, or null to stop reporting metrics
+     * @param intervalMillis how often to report
+     */
+    public void setEventStreamMetricsListener(@Nullable ParticleEventStreamMetricsListener listener,
+                                              long intervalMillis) {
+        Preconditions.checkArgument(listener == null || intervalMillis > 0,
+                "Interval must be greater than 0");
+        eventsDelegate.setMetricsListener(listener, intervalMillis);
+    }
+
+    /**
+     * Enable or disable keeping devices up to date from their events.
+     * <p>
+     * When enabled, the SDK subscribes to the events of all the user's devices, and uses them
+     * to update the devices it already knows about (e.g.: from {@link #getDevices()}):
+     * <code>spark/status</code> events update {@link ParticleDevice#isConnected()}, and any
+     * event updates {@link ParticleDevice#getLastHeard()}.  A device is only re-fetched from
+     * the cloud when its functions and variables may have changed, i.e.: when it comes online
+     * or gets new firmware.  Changes are announced with the usual
+     * {@link BroadcastContract#BROADCAST_DEVICES_UPDATED} broadcast, at most once a second.
+     * <p>
+     * This removes the need to keep polling {@link #getDevices()} to find out which devices
+     * are online.  Disabled by default.
+     */
+    @WorkerThread
+    public void setLiveDeviceStateUpdatesEnabled(boolean enabled) throws ParticleCloudException {
+        if (enabled) {
+            liveDeviceStateUpdater.start();
+        } else {
+            liveDeviceStateUpdater.stop();
+        }
+    }
+
+    public boolean isLiveDeviceStateUpdatesEnabled() {
+        return liveDeviceStateUpdater.isRunning();
+    }
     //endregion
 
 
@@ -702,6 +1233,38 @@ public class ParticleCloud {
         sendUpdateBroadcast();
     }
 
+    /**
+     * Apply a change of connection state and/or last heard time, as reported by an event, to
+     * the cached state of a known device.  An older last heard time than the current one is
+     * ignored.
+     *
+     * @return the device's state before the change, or null if the device isn't known
+     */
+    @Nullable
+    DeviceState applyLiveDeviceState(String deviceId, @Nullable Boolean connected,
+                                     @Nullable Date lastHeard) {
+        synchronized (devices) {
+            ParticleDevice device = devices.get(deviceId);
+            if (device == null) {
+                return null;
+            }
+            DeviceState current = device.deviceState;
+            boolean connectionChanged = connected != null
+                    && !connected.equals(current.isConnected);
+            boolean heardFromSince = LiveDeviceStateUpdater.isNewer(lastHeard, current.lastHeard);
+            if (connectionChanged || heardFromSince) {
+                device.deviceState = DeviceState.withNewLiveState(current,
+                        connectionChanged ? connected : current.isConnected,
+                        heardFromSince ? lastHeard : current.lastHeard);
+            }
+            return current;
+        }
+    }
+
+    SystemEventRouter getSystemEventRouter() {
+        return systemEventRouter;
+    }
+
     void sendSystemEventBroadcast(DeviceStateChange stateChange) {
         Intent intent = new Intent(BroadcastContract.BROADCAST_SYSTEM_EVENT);
         intent.putExtra("event", stateChange);
@@ -720,30 +1283,57 @@ public class ParticleCloud {
             }
         }
     }
+
+    RequestCoalescer getRequestCoalescer() {
+        return requestCoalescer;
+    }
     //endregion
 
 
     //region private API
     @WorkerThread
-    private ParticleDevice getDevice(String deviceID, boolean sendUpdate)
+    private ParticleDevice fetchDevice(String deviceID, boolean sendUpdate)
             throws ParticleCloudException {
-        CompleteDevice deviceCloudModel;
+        return getDevice(fetchDeviceModel(deviceID), sendUpdate);
+    }
+
+    @WorkerThread
+    private CompleteDevice fetchDeviceModel(String deviceID) throws ParticleCloudException {
         try {
-            deviceCloudModel = mainApi.getDevice(deviceID);
+            return requestCoalescer.execute("GET /v1/devices/" + deviceID,
+                    () -> mainApi.getDevice(deviceID));
         } catch (RetrofitError error) {
             throw new ParticleCloudException(error);
         }
+    }
 
-        return getDevice(deviceCloudModel, sendUpdate);
+    // concurrent callers share one request, and so the same list; don't modify it
+    @WorkerThread
+    private List<SimpleDevice> fetchDeviceList() {
+        return requestCoalescer.execute("GET /v1/devices", mainApi::getDevices);
     }
 
     private ParticleDevice getDevice(CompleteDevice deviceModel, boolean sendUpdate) {
         DeviceState newDeviceState = fromCompleteDevice(deviceModel);
         ParticleDevice device = getDeviceFromState(newDeviceState);
         updateDeviceState(newDeviceState, sendUpdate);
+        deviceRepository.onDeviceFetched(newDeviceState.deviceId);
         return device;
     }
 
+    // for online devices when listing lazily
+    private ParticleDevice getListedDevice(Models.SimpleDevice listedDevice) {
+        // hold the lock from reading the known state until the merged state is stored, so that
+        // a concurrent hydration can't be lost
+        synchronized (devices) {
+            ParticleDevice known = devices.get(listedDevice.id);
+            DeviceState knownState = (known == null) ? null : known.deviceState;
+            DeviceState newDeviceState = fromListedDeviceModel(listedDevice, knownState);
+            updateDeviceState(newDeviceState, false);
+            return getDeviceFromState(newDeviceState);
+        }
+    }
+
     private ParticleDevice getOfflineDevice(Models.SimpleDevice offlineDevice) {
         DeviceState newDeviceState = fromSimpleDeviceModel(offlineDevice);
         ParticleDevice device = getDeviceFromState(newDeviceState);
@@ -751,9 +1341,20 @@ public class ParticleCloud {
         return device;
     }
 
+    // Stores a state fetched over REST.  A live state update (see applyLiveDeviceState()) may
+    // have landed since the request was made, so if the current state was heard from more
+    // recently, its last heard time and connection state are kept.
     private void updateDeviceState(DeviceState newState, boolean sendUpdateBroadcast) {
-        ParticleDevice device = getDeviceFromState(newState);
-        device.deviceState = newState;
+        synchronized (devices) {
+            ParticleDevice device = getDeviceFromState(newState);
+            DeviceState current = device.deviceState;
+            if (current != newState
+                    && LiveDeviceStateUpdater.isNewer(current.lastHeard, newState.lastHeard)) {
+                newState = DeviceState.withNewLiveState(newState, current.isConnected,
+                        current.lastHeard);
+            }
+            device.deviceState = newState;
+        }
         if (sendUpdateBroadcast) {
             sendUpdateBroadcast();
         }
@@ -823,6 +1424,37 @@ public class ParticleCloud {
                 .build();
     }
 
+    // for online devices when listing lazily: the list doesn't include the functions and
+    // variables, or the other fields only a CompleteDevice has, so keep any we already know
+    private DeviceState fromListedDeviceModel(Models.SimpleDevice listedDevice,
+                                              @Nullable DeviceState knownState) {
+        boolean hydrated = knownState != null && knownState.hydrated;
+        Set<String> functions = hydrated ? knownState.functions : new HashSet<>();
+        Map<String, VariableType> variables = hydrated
+                ? knownState.variables
+                : new ArrayMap<>();
+
+        return new DeviceState.DeviceStateBuilder(listedDevice.id, functions, variables)
+                .name(listedDevice.name)
+                .cellular(listedDevice.cellular)
+                .connected(listedDevice.isConnected)
+                .version(hydrated ? knownState.version : "")
+                .deviceType(ParticleDeviceType.fromInt(listedDevice.productId))
+                .platformId(listedDevice.platformId)
+                .productId(listedDevice.productId)
+                .imei(listedDevice.imei)
+                .iccid(listedDevice.lastIccid)
+                .currentBuild(listedDevice.currentBuild)
+                .defaultBuild(listedDevice.defaultBuild)
+                .ipAddress(listedDevice.ipAddress)
+                .lastAppName(hydrated ? knownState.lastAppName : "")
+                .status(listedDevice.status)
+                .requiresUpdate(hydrated ? knownState.requiresUpdate : Boolean.FALSE)
+                .lastHeard(listedDevice.lastHeard)
+                .hydrated(hydrated)
+                .build();
+    }
+
 
     private static Map<String, VariableType> transformVariables(CompleteDevice completeDevice) {
         if (completeDevice.variables == null) {
@@ -866,6 +1498,7 @@ public class ParticleCloud {
             Set<String> toRemove = currentDeviceIds.getDifference(newDeviceIds);
             for (String deviceId : toRemove) {
                 devices.remove(deviceId);
+                deviceRepository.forget(deviceId);
             }
         }
     }
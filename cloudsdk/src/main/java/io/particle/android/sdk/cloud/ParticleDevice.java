@@ -19,7 +19,6 @@ import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.CopyOnWriteArrayList;
 
 import javax.annotation.ParametersAreNonnullByDefault;
 
@@ -140,7 +139,6 @@ public class ParticleDevice implements Parcelable {
 
     private static final TLog log = TLog.get(ParticleDevice.class);
 
-    private final CopyOnWriteArrayList<Long> subscriptions = new CopyOnWriteArrayList<>();
     private final ApiDefs.CloudApi mainApi;
     private final ParticleCloud cloud;
 
@@ -184,6 +182,9 @@ public class ParticleDevice implements Parcelable {
 
     /**
      * Get an immutable set of all the function names exposed by device
+     * <p>
+     * If the device hasn't been {@link #isHydrated() hydrated} yet, the set is empty; call
+     * {@link #hydrate()} from a worker thread first.
      */
     public Set<String> getFunctions() {
         // no need for a defensive copy, this is an immutable set
@@ -192,12 +193,36 @@ public class ParticleDevice implements Parcelable {
 
     /**
      * Get an immutable map of exposed variables on device with their respective types.
+     * <p>
+     * If the device hasn't been {@link #isHydrated() hydrated} yet, the map is empty; call
+     * {@link #hydrate()} from a worker thread first.
      */
     public Map<String, VariableType> getVariables() {
         // no need for a defensive copy, this is an immutable set
         return deviceState.variables;
     }
 
+    /**
+     * Whether the device's functions and variables are known.  Only devices listed by
+     * {@link ParticleCloud#getDevices()} with
+     * {@link ParticleCloud#setLazyDeviceHydrationEnabled(boolean) lazy hydration} enabled start
+     * out without them.
+     */
+    public boolean isHydrated() {
+        return deviceState.hydrated;
+    }
+
+    /**
+     * Fetch the device's functions and variables, if they aren't known yet.  See also
+     * {@link ParticleCloud#hydrate(java.util.Collection)}, for hydrating many devices at once.
+     */
+    @WorkerThread
+    public void hydrate() throws ParticleCloudException {
+        if (!deviceState.hydrated) {
+            refresh();
+        }
+    }
+
     /**
      * Device firmware version string
      */
@@ -293,7 +318,8 @@ public class ParticleDevice implements Parcelable {
             throws ParticleCloudException, IOException, VariableDoesNotExistException {
 
         VariableRequester<Object, ReadObjectVariableResponse> requester =
-                new VariableRequester<Object, ReadObjectVariableResponse>(this) {
+                new VariableRequester<Object, ReadObjectVariableResponse>(this,
+                        ReadObjectVariableResponse.class) {
                     @Override
                     ReadObjectVariableResponse callApi(String variableName) {
                         return mainApi.getVariable(deviceState.deviceId, variableName);
@@ -314,7 +340,8 @@ public class ParticleDevice implements Parcelable {
             IOException, VariableDoesNotExistException, ClassCastException {
 
         VariableRequester<Integer, ReadIntVariableResponse> requester =
-                new VariableRequester<Integer, ReadIntVariableResponse>(this) {
+                new VariableRequester<Integer, ReadIntVariableResponse>(this,
+                        ReadIntVariableResponse.class) {
                     @Override
                     ReadIntVariableResponse callApi(String variableName) {
                         return mainApi.getIntVariable(deviceState.deviceId, variableName);
@@ -335,7 +362,8 @@ public class ParticleDevice implements Parcelable {
             IOException, VariableDoesNotExistException, ClassCastException {
 
         VariableRequester<String, ReadStringVariableResponse> requester =
-                new VariableRequester<String, ReadStringVariableResponse>(this) {
+                new VariableRequester<String, ReadStringVariableResponse>(this,
+                        ReadStringVariableResponse.class) {
                     @Override
                     ReadStringVariableResponse callApi(String variableName) {
                         return mainApi.getStringVariable(deviceState.deviceId, variableName);
@@ -356,7 +384,8 @@ public class ParticleDevice implements Parcelable {
             IOException, VariableDoesNotExistException, ClassCastException {
 
         VariableRequester<Double, ReadDoubleVariableResponse> requester =
-                new VariableRequester<Double, ReadDoubleVariableResponse>(this) {
+                new VariableRequester<Double, ReadDoubleVariableResponse>(this,
+                        ReadDoubleVariableResponse.class) {
                     @Override
                     ReadDoubleVariableResponse callApi(String variableName) {
                         return mainApi.getDoubleVariable(deviceState.deviceId, variableName);
@@ -379,6 +408,7 @@ public class ParticleDevice implements Parcelable {
     @WorkerThread
     public int callFunction(String functionName, @Nullable List<String> args)
             throws ParticleCloudException, IOException, FunctionDoesNotExistException {
+        hydrate();
         // TODO: check response of calling a non-existent function
         if (!deviceState.functions.contains(functionName)) {
             throw new FunctionDoesNotExistException(functionName);
@@ -438,6 +468,33 @@ public class ParticleDevice implements Parcelable {
         return cloud.subscribeToDeviceEvents(eventNamePrefix, deviceState.deviceId, handler);
     }
 
+    /**
+     * Subscribe to events from this device, with the given queue policy
+     * (see {@link ParticleCloud#subscribeToAllEvents(String, ParticleEventHandler, ParticleEventQueuePolicy)}
+     * for more info)
+     */
+    public long subscribeToEvents(@Nullable String eventNamePrefix,
+                                  ParticleEventHandler handler,
+                                  ParticleEventQueuePolicy queuePolicy)
+            throws IOException {
+        return cloud.subscribeToDeviceEvents(eventNamePrefix, deviceState.deviceId, handler,
+                queuePolicy);
+    }
+
+    /**
+     * Subscribe to events from this device, delivered in batches
+     * (see {@link ParticleCloud#subscribeToAllEvents(String, ParticleBatchEventHandler, int, long, ParticleEventQueuePolicy)}
+     * for more info)
+     */
+    public long subscribeToEvents(@Nullable String eventNamePrefix,
+                                  ParticleBatchEventHandler handler,
+                                  int maxBatchSize, long maxBatchDelayMillis,
+                                  ParticleEventQueuePolicy queuePolicy)
+            throws IOException {
+        return cloud.subscribeToDeviceEvents(eventNamePrefix, deviceState.deviceId, handler,
+                maxBatchSize, maxBatchDelayMillis, queuePolicy);
+    }
+
     /**
      * Unsubscribe from events.
      *
@@ -510,7 +567,7 @@ public class ParticleDevice implements Parcelable {
     @WorkerThread
     public void refresh() throws ParticleCloudException {
         // just calling this get method will update everything as expected.
-        cloud.getDevice(deviceState.deviceId);
+        cloud.getDevice(deviceState.deviceId, true);
     }
 
     private interface FlashingChange {
@@ -549,31 +606,16 @@ public class ParticleDevice implements Parcelable {
 
     /**
      * Subscribes to system events of current device. Events emitted to EventBus listener.
+     * <p>
+     * The system events of all subscribed devices are received over a single connection to
+     * the cloud, which is shared with other devices and opened as needed.
      *
      * @throws ParticleCloudException Failure to subscribe to system events.
      * @see <a href="https://github.com/greenrobot/EventBus">EventBus</a>
      */
     @MainThread
     public void subscribeToSystemEvents() throws ParticleCloudException {
-        try {
-            EventBus eventBus = EventBus.getDefault();
-            subscriptions.add(subscribeToSystemEvent("spark/status", (eventName, particleEvent) ->
-                    sendUpdateStatusChange(eventBus, particleEvent.dataPayload)));
-            subscriptions.add(subscribeToSystemEvent("spark/flash/status", (eventName, particleEvent) ->
-                    sendUpdateFlashChange(eventBus, particleEvent.dataPayload)));
-            subscriptions.add(subscribeToSystemEvent("spark/device/app-hash", (eventName, particleEvent) ->
-                    sendSystemEventBroadcast(new DeviceStateChange(ParticleDevice.this,
-                            ParticleDeviceState.APP_HASH_UPDATED), eventBus)));
-            subscriptions.add(subscribeToSystemEvent("spark/status/safe-mode", (eventName, particleEvent) ->
-                    sendSystemEventBroadcast(new DeviceStateChange(ParticleDevice.this,
-                            ParticleDeviceState.SAFE_MODE_UPDATER), eventBus)));
-            subscriptions.add(subscribeToSystemEvent("spark/safe-mode-updater/updating", (eventName, particleEvent) ->
-                    sendSystemEventBroadcast(new DeviceStateChange(ParticleDevice.this,
-                            ParticleDeviceState.ENTERED_SAFE_MODE), eventBus)));
-        } catch (IOException e) {
-            log.d("Failed to auto-subscribe to system events");
-            throw new ParticleCloudException(e);
-        }
+        cloud.getSystemEventRouter().register(this);
     }
 
     private void sendSystemEventBroadcast(DeviceStateChange deviceStateChange, EventBus eventBus) {
@@ -587,8 +629,32 @@ public class ParticleDevice implements Parcelable {
      * @throws ParticleCloudException Failure to unsubscribe from system events.
      */
     public void unsubscribeFromSystemEvents() throws ParticleCloudException {
-        for (Long subscriptionId : subscriptions) {
-            unsubscribeFromEvents(subscriptionId);
+        cloud.getSystemEventRouter().unregister(this);
+    }
+
+    // called by SystemEventRouter with this device's "spark/" events
+    void onSystemEvent(String eventName, ParticleEvent particleEvent) {
+        EventBus eventBus = EventBus.getDefault();
+        String data = (particleEvent.dataPayload == null) ? "" : particleEvent.dataPayload;
+        switch (eventName) {
+            case "spark/status":
+                sendUpdateStatusChange(eventBus, data);
+                break;
+            case "spark/flash/status":
+                sendUpdateFlashChange(eventBus, data);
+                break;
+            case "spark/device/app-hash":
+                sendSystemEventBroadcast(new DeviceStateChange(ParticleDevice.this,
+                        ParticleDeviceState.APP_HASH_UPDATED), eventBus);
+                break;
+            case "spark/status/safe-mode":
+                sendSystemEventBroadcast(new DeviceStateChange(ParticleDevice.this,
+                        ParticleDeviceState.SAFE_MODE_UPDATER), eventBus);
+                break;
+            case "spark/safe-mode-updater/updating":
+                sendSystemEventBroadcast(new DeviceStateChange(ParticleDevice.this,
+                        ParticleDeviceState.ENTERED_SAFE_MODE), eventBus);
+                break;
         }
     }
 
@@ -706,9 +772,12 @@ public class ParticleDevice implements Parcelable {
 
 
         private final ParticleDevice device;
+        // the same variable read as a different type gets a different reply
+        private final Class<R> responseClass;
 
-        VariableRequester(ParticleDevice device) {
+        VariableRequester(ParticleDevice device, Class<R> responseClass) {
             this.device = device;
+            this.responseClass = responseClass;
         }
 
 
@@ -716,13 +785,18 @@ public class ParticleDevice implements Parcelable {
         T getVariable(String variableName)
                 throws ParticleCloudException, IOException, VariableDoesNotExistException {
 
+            device.hydrate();
             if (!device.deviceState.variables.containsKey(variableName)) {
                 throw new VariableDoesNotExistException(variableName);
             }
 
             R reply;
             try {
-                reply = callApi(variableName);
+                // concurrent reads of the same variable share one request
+                String key = "GET /v1/devices/" + device.deviceState.deviceId + "/"
+                        + variableName + " " + responseClass.getName();
+                reply = device.cloud.getRequestCoalescer().execute(key,
+                        () -> callApi(variableName));
             } catch (RetrofitError e) {
                 throw new ParticleCloudException(e);
             }
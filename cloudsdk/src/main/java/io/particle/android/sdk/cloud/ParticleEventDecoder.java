@@ -0,0 +1,376 @@
+package io.particle.android.sdk.cloud;
+
+import android.support.annotation.Nullable;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Date;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+
+/**
+ * Decodes the JSON payload of an SSE event into a {@link ParticleEvent}.
+ * <p>
+ * This does the same job as <code>gson.fromJson(data, ParticleEvent.class)</code>, but reads the
+ * fields straight off a {@link JsonReader} instead of going through Gson's reflective adapter,
+ * and parses <code>published_at</code> with a hand-written ISO-8601 parser which doesn't
+ * allocate anything but the resulting Date.  Timestamps in any other format are still handed to
+ * Gson's Date adapter, so the results are the same as before.
+ * <p>
+ * Stateless, and therefore safe to share between event streams.
+ */
+@ParametersAreNonnullByDefault
+class ParticleEventDecoder {
+
+    static final long INVALID_TIMESTAMP = Long.MIN_VALUE;
+    static final long FIELD_NOT_FOUND = -1;
+
+    private final Gson gson;
+
+    ParticleEventDecoder(Gson gson) {
+        this.gson = gson;
+    }
+
+    ParticleEvent decode(String json) throws JsonParseException {
+        try {
+            return read(new JsonReader(new StringReader(json)));
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            // IOExceptions can only be syntax errors, since the input is a String
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    private ParticleEvent read(JsonReader reader) throws IOException {
+        String deviceId = null;
+        String data = null;
+        Date publishedAt = null;
+        int ttl = 0;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "coreid":
+                    deviceId = reader.nextString();
+                    break;
+                case "data":
+                    data = reader.nextString();
+                    break;
+                case "ttl":
+                    ttl = reader.nextInt();
+                    break;
+                case "published_at":
+                    publishedAt = parseDate(reader.nextString());
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        return new ParticleEvent(deviceId, data, publishedAt, ttl);
+    }
+
+    @Nullable
+    private Date parseDate(String value) {
+        long millis = parseIso8601(value);
+        if (millis != INVALID_TIMESTAMP) {
+            return new Date(millis);
+        }
+        // not a format we handle here, let Gson take a shot at it
+        return gson.getAdapter(Date.class).fromJsonTree(new JsonPrimitive(value));
+    }
+
+    /**
+     * Parse an ISO-8601 timestamp of the form <code>yyyy-MM-ddTHH:mm:ss[.SSS...]</code>, followed
+     * by either "Z" or an offset of the form <code>+hh[[:]mm]</code> / <code>-hh[[:]mm]</code>,
+     * which is what the cloud sends.
+     *
+     * @return milliseconds since the epoch, or {@link #INVALID_TIMESTAMP} if the value isn't in
+     * that form
+     */
+    static long parseIso8601(String value) {
+        int length = value.length();
+        if (length < 20
+                || value.charAt(4) != '-' || value.charAt(7) != '-'
+                || value.charAt(10) != 'T'
+                || value.charAt(13) != ':' || value.charAt(16) != ':') {
+            return INVALID_TIMESTAMP;
+        }
+
+        int year = parseDigits(value, 0, 4);
+        int month = parseDigits(value, 5, 2);
+        int day = parseDigits(value, 8, 2);
+        int hour = parseDigits(value, 11, 2);
+        int minute = parseDigits(value, 14, 2);
+        int second = parseDigits(value, 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59
+                || second < 0 || second > 59) {
+            return INVALID_TIMESTAMP;
+        }
+
+        // fraction of a second; only milliseconds are kept
+        int pos = 19;
+        int millis = 0;
+        if (value.charAt(pos) == '.') {
+            pos++;
+            int fractionStart = pos;
+            while (pos < length && isDigit(value.charAt(pos))) {
+                if (pos - fractionStart < 3) {
+                    millis = millis * 10 + (value.charAt(pos) - '0');
+                }
+                pos++;
+            }
+            int fractionDigits = pos - fractionStart;
+            if (fractionDigits == 0) {
+                return INVALID_TIMESTAMP;
+            }
+            for (int i = fractionDigits; i < 3; i++) {
+                millis *= 10;
+            }
+        }
+
+        if (pos >= length) {
+            return INVALID_TIMESTAMP;
+        }
+        int offsetMinutes;
+        char zone = value.charAt(pos);
+        if (zone == 'Z') {
+            offsetMinutes = 0;
+            pos++;
+        } else if (zone == '+' || zone == '-') {
+            int offsetHours = parseDigits(value, pos + 1, 2);
+            pos += 3;
+            if (pos < length && value.charAt(pos) == ':') {
+                pos++;
+            }
+            int offsetMins = 0;
+            if (pos < length) {
+                offsetMins = parseDigits(value, pos, 2);
+                pos += 2;
+            }
+            if (offsetHours < 0 || offsetMins < 0) {
+                return INVALID_TIMESTAMP;
+            }
+            offsetMinutes = (offsetHours * 60 + offsetMins) * (zone == '-' ? -1 : 1);
+        } else {
+            return INVALID_TIMESTAMP;
+        }
+        if (pos != length) {
+            return INVALID_TIMESTAMP;
+        }
+
+        long epochDay = daysSinceEpoch(year, month, day);
+        long seconds = ((epochDay * 24 + hour) * 60 + minute - offsetMinutes) * 60 + second;
+        return seconds * 1000 + millis;
+    }
+
+    // returns -1 if the range isn't all digits, or runs past the end of the value
+    private static int parseDigits(String value, int start, int count) {
+        if (start + count > value.length()) {
+            return -1;
+        }
+        int result = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = value.charAt(i);
+            if (!isDigit(c)) {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                boolean leap = (year % 4 == 0) && (year % 100 != 0 || year % 400 == 0);
+                return leap ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    // Days from 1970-01-01 to the given date in the proleptic Gregorian calendar, based on the
+    // well-known "days_from_civil" algorithm by Howard Hinnant
+    private static long daysSinceEpoch(int year, int month, int day) {
+        int y = (month <= 2) ? year - 1 : year;
+        int era = y / 400;  // the year is never negative here
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+
+
+    /**
+     * Find a top-level string field in an event's JSON without decoding it, e.g.: to filter
+     * events before paying for the full decode.  Nested values are skipped over, not parsed.
+     *
+     * @return the range of the field's raw (still escaped) value, between the quotes, packed as
+     * <code>start &lt;&lt; 32 | end</code>; or {@link #FIELD_NOT_FOUND} if the field isn't there,
+     * isn't a string (e.g.: it's null), or the JSON is malformed
+     */
+    static long findStringField(String json, String fieldName) {
+        int length = json.length();
+        int pos = skipWhitespace(json, 0);
+        if (pos >= length || json.charAt(pos) != '{') {
+            return FIELD_NOT_FOUND;
+        }
+        pos++;
+        while (true) {
+            pos = skipWhitespace(json, pos);
+            if (pos >= length || json.charAt(pos) == '}') {
+                return FIELD_NOT_FOUND;
+            }
+            if (json.charAt(pos) == ',') {
+                pos++;
+                continue;
+            }
+            if (json.charAt(pos) != '"') {
+                return FIELD_NOT_FOUND;
+            }
+            int nameStart = pos + 1;
+            int nameEnd = findClosingQuote(json, pos);
+            if (nameEnd < 0) {
+                return FIELD_NOT_FOUND;
+            }
+            boolean isField = (nameEnd - nameStart == fieldName.length())
+                    && json.regionMatches(nameStart, fieldName, 0, fieldName.length());
+
+            pos = skipWhitespace(json, nameEnd + 1);
+            if (pos >= length || json.charAt(pos) != ':') {
+                return FIELD_NOT_FOUND;
+            }
+            pos = skipWhitespace(json, pos + 1);
+            if (pos >= length) {
+                return FIELD_NOT_FOUND;
+            }
+
+            if (isField) {
+                if (json.charAt(pos) != '"') {
+                    return FIELD_NOT_FOUND;
+                }
+                int valueEnd = findClosingQuote(json, pos);
+                return (valueEnd < 0) ? FIELD_NOT_FOUND : ((long) (pos + 1) << 32) | valueEnd;
+            }
+            pos = skipValue(json, pos);
+            if (pos < 0) {
+                return FIELD_NOT_FOUND;
+            }
+        }
+    }
+
+    static int rangeStart(long range) {
+        return (int) (range >>> 32);
+    }
+
+    static int rangeEnd(long range) {
+        return (int) range;
+    }
+
+    /**
+     * @return the value of a string found with {@link #findStringField(String, String)}, with
+     * any escapes decoded
+     */
+    static String decodeStringField(String json, long range) throws JsonParseException {
+        int start = rangeStart(range);
+        int end = rangeEnd(range);
+        int firstEscape = json.indexOf('\\', start);
+        if (firstEscape < 0 || firstEscape >= end) {
+            return json.substring(start, end);
+        }
+        try {
+            // include the quotes, so that the reader sees a string
+            String quoted = json.substring(start - 1, end + 1);
+            JsonReader reader = new JsonReader(new StringReader(quoted));
+            reader.setLenient(true);
+            return reader.nextString();
+        } catch (IOException | IllegalStateException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    private static int skipWhitespace(String json, int pos) {
+        while (pos < json.length() && json.charAt(pos) <= ' ') {
+            pos++;
+        }
+        return pos;
+    }
+
+    // returns the position of the quote which ends the string starting at "openingQuote", or -1
+    private static int findClosingQuote(String json, int openingQuote) {
+        int length = json.length();
+        for (int pos = openingQuote + 1; pos < length; pos++) {
+            char c = json.charAt(pos);
+            if (c == '\\') {
+                pos++;
+            } else if (c == '"') {
+                return pos;
+            }
+        }
+        return -1;
+    }
+
+    // returns the position just after the value starting at "pos", or -1 if it's malformed
+    private static int skipValue(String json, int pos) {
+        int length = json.length();
+        char first = json.charAt(pos);
+        if (first == '"') {
+            int end = findClosingQuote(json, pos);
+            return (end < 0) ? -1 : end + 1;
+        }
+        if (first == '{' || first == '[') {
+            int depth = 0;
+            for (; pos < length; pos++) {
+                char c = json.charAt(pos);
+                if (c == '"') {
+                    pos = findClosingQuote(json, pos);
+                    if (pos < 0) {
+                        return -1;
+                    }
+                } else if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    depth--;
+                    if (depth == 0) {
+                        return pos + 1;
+                    }
+                }
+            }
+            return -1;
+        }
+        // a number, true, false, or null
+        while (pos < length) {
+            char c = json.charAt(pos);
+            if (c == ',' || c == '}' || c == ']' || c <= ' ') {
+                break;
+            }
+            pos++;
+        }
+        return pos;
+    }
+}
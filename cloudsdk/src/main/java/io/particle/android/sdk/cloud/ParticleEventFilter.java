@@ -0,0 +1,229 @@
+package io.particle.android.sdk.cloud;
+
+import android.support.annotation.Nullable;
+
+import com.google.gson.JsonParseException;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import static io.particle.android.sdk.cloud.ParticleEventDecoder.FIELD_NOT_FOUND;
+import static io.particle.android.sdk.utils.Py.list;
+import static io.particle.android.sdk.utils.Py.set;
+
+
+/**
+ * Narrows down which events reach a subscription's handler, beyond the event name prefix
+ * (which is filtered by the cloud).
+ * <p>
+ * Filters are checked on the transport thread as each event arrives, against the raw event
+ * name and a quick scan of the event's JSON, <em>before</em> the event is decoded; events which
+ * don't match are never decoded, queued, or recorded in the
+ * {@link ParticleEventJournal journal}, and no {@link ParticleEvent} is created for them.
+ * <p>
+ * All the conditions given must hold for an event to match, e.g.:
+ * <pre>
+ *   ParticleEventFilter.builder()
+ *           .deviceIds(kitchenDeviceIds)
+ *           .eventNameGlob("sensor/*&#47;temperature")
+ *           .dataNumberBetween(-40, 125)
+ *           .build();
+ * </pre>
+ */
+@ParametersAreNonnullByDefault
+public final class ParticleEventFilter {
+
+    /**
+     * A condition on an event's data.  Called on transport threads, so it should be quick.
+     */
+    public interface DataPredicate {
+
+        boolean test(String data);
+    }
+
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+
+    @Nullable private final Set<String> deviceIds;
+    @Nullable private final String eventNameGlob;
+    @Nullable private final Pattern eventNameRegex;
+    private final List<DataPredicate> dataPredicates;
+
+    private ParticleEventFilter(Builder builder) {
+        this.deviceIds = (builder.deviceIds == null)
+                ? null
+                : Collections.unmodifiableSet(set(builder.deviceIds));
+        this.eventNameGlob = builder.eventNameGlob;
+        this.eventNameRegex = builder.eventNameRegex;
+        this.dataPredicates = Collections.unmodifiableList(list(builder.dataPredicates));
+    }
+
+    /**
+     * @param eventName the event name from the SSE <code>event:</code> field
+     * @param json      the undecoded event, from the SSE <code>data:</code> field
+     */
+    boolean matches(String eventName, String json) {
+        if (eventNameGlob != null && !globMatches(eventNameGlob, eventName)) {
+            return false;
+        }
+        if (eventNameRegex != null && !eventNameRegex.matcher(eventName).matches()) {
+            return false;
+        }
+
+        try {
+            if (deviceIds != null) {
+                long range = ParticleEventDecoder.findStringField(json, "coreid");
+                if (range == FIELD_NOT_FOUND || !deviceIds.contains(
+                        ParticleEventDecoder.decodeStringField(json, range))) {
+                    return false;
+                }
+            }
+            if (!dataPredicates.isEmpty()) {
+                long range = ParticleEventDecoder.findStringField(json, "data");
+                if (range == FIELD_NOT_FOUND) {
+                    return false;
+                }
+                String data = ParticleEventDecoder.decodeStringField(json, range);
+                for (DataPredicate predicate : dataPredicates) {
+                    if (!predicate.test(data)) {
+                        return false;
+                    }
+                }
+            }
+        } catch (JsonParseException e) {
+            // let it through, so that decoding it reports the error to the handler
+            return true;
+        }
+        return true;
+    }
+
+    // '*' matches any run of characters (including none), and '?' matches any one character
+    static boolean globMatches(String glob, String value) {
+        int g = 0;
+        int v = 0;
+        // where to resume from if the current attempt after the last '*' fails
+        int starGlob = -1;
+        int starValue = 0;
+        while (v < value.length()) {
+            if (g < glob.length()
+                    && (glob.charAt(g) == '?' || glob.charAt(g) == value.charAt(v))) {
+                g++;
+                v++;
+            } else if (g < glob.length() && glob.charAt(g) == '*') {
+                starGlob = g++;
+                starValue = v;
+            } else if (starGlob >= 0) {
+                // let the last '*' swallow one more character, and try again
+                g = starGlob + 1;
+                v = ++starValue;
+            } else {
+                return false;
+            }
+        }
+        while (g < glob.length() && glob.charAt(g) == '*') {
+            g++;
+        }
+        return g == glob.length();
+    }
+
+    @Override
+    public String toString() {
+        return "ParticleEventFilter{" +
+                "deviceIds=" + deviceIds +
+                ", eventNameGlob=" + eventNameGlob +
+                ", eventNameRegex=" + eventNameRegex +
+                ", dataPredicates=" + dataPredicates.size() +
+                '}';
+    }
+
+
+    public static class Builder {
+
+        @Nullable private Set<String> deviceIds;
+        @Nullable private String eventNameGlob;
+        @Nullable private Pattern eventNameRegex;
+        private final List<DataPredicate> dataPredicates = list();
+
+        private Builder() {
+        }
+
+        /**
+         * Only events from these devices; may be called more than once to add more devices.
+         */
+        public Builder deviceIds(Collection<String> ids) {
+            if (deviceIds == null) {
+                deviceIds = set();
+            }
+            deviceIds.addAll(ids);
+            return this;
+        }
+
+        public Builder deviceId(String id) {
+            return deviceIds(Collections.singleton(id));
+        }
+
+        /**
+         * Only events whose whole name matches the glob, where '*' matches any run of
+         * characters, and '?' matches any single character, e.g.: "sensor/*".
+         */
+        public Builder eventNameGlob(String glob) {
+            eventNameGlob = glob;
+            return this;
+        }
+
+        /**
+         * Only events whose whole name matches the regular expression.
+         */
+        public Builder eventNameRegex(String regex) {
+            eventNameRegex = Pattern.compile(regex);
+            return this;
+        }
+
+        public Builder dataEquals(String value) {
+            return data(data -> data.equals(value));
+        }
+
+        public Builder dataContains(String value) {
+            return data(data -> data.contains(value));
+        }
+
+        /**
+         * Only events whose whole data matches the regular expression.
+         */
+        public Builder dataMatches(String regex) {
+            Pattern pattern = Pattern.compile(regex);
+            return data(data -> pattern.matcher(data).matches());
+        }
+
+        /**
+         * Only events whose data is a plain decimal number between <code>min</code> and
+         * <code>max</code>, inclusive.
+         */
+        public Builder dataNumberBetween(double min, double max) {
+            return data(data -> {
+                double value = NumericEventStore.parseNumber(data);
+                return value >= min && value <= max;
+            });
+        }
+
+        /**
+         * Only events whose data satisfies the predicate.  Events without data never match.
+         */
+        public Builder data(DataPredicate predicate) {
+            dataPredicates.add(predicate);
+            return this;
+        }
+
+        public ParticleEventFilter build() {
+            return new ParticleEventFilter(this);
+        }
+    }
+}
@@ -0,0 +1,562 @@
+package io.particle.android.sdk.cloud;
+
+import android.support.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import io.particle.android.sdk.utils.EZ;
+import io.particle.android.sdk.utils.Preconditions;
+import io.particle.android.sdk.utils.TLog;
+
+
+/**
+ * Append-only record of events on disk, so that events survive handlers which can't keep up
+ * (or an app which is in the background), and can be read back later, e.g.: for history views
+ * while offline.
+ * <p>
+ * Set the journal with {@link ParticleCloud#setEventJournal(ParticleEventJournal)}, and every
+ * event is appended as soon as it arrives from the cloud, before it's queued for its handler.
+ * Each stream records the events it receives, so subscriptions with overlapping scopes record
+ * the same event more than once; turning on
+ * {@link ParticleCloud#setEventMultiplexingEnabled(boolean) multiplexing} avoids this for
+ * subscriptions on the same scope.
+ * <p>
+ * Events are written to fixed-size segment files through a memory-mapped buffer, in a compact
+ * binary format.  When a segment is full, a new one is started, and the oldest segments are
+ * deleted to keep to the configured number of segments and maximum age.  Every event has an
+ * offset in the journal; {@link #readFrom(long)} and {@link #readSince(long)} return a
+ * {@link Cursor} which reads entries one at a time, from a memory-mapped view of one segment at
+ * a time, so replaying never loads whole files onto the heap.
+ * <p>
+ * Only one journal should be open on a directory at a time.
+ */
+@ParametersAreNonnullByDefault
+public class ParticleEventJournal implements Closeable {
+
+    /**
+     * An event read back from the journal.
+     */
+    public static final class Entry {
+
+        /**
+         * The position of this entry in the journal
+         */
+        public final long offset;
+        /**
+         * The offset of the next entry, i.e.: where to carry on reading from later
+         */
+        public final long nextOffset;
+        public final String eventName;
+        public final ParticleEvent event;
+
+        Entry(long offset, long nextOffset, String eventName, ParticleEvent event) {
+            this.offset = offset;
+            this.nextOffset = nextOffset;
+            this.eventName = eventName;
+            this.event = event;
+        }
+
+        @Override
+        public String toString() {
+            return "Entry{" +
+                    "offset=" + offset +
+                    ", eventName=" + eventName +
+                    ", deviceId=" + event.deviceId +
+                    '}';
+        }
+    }
+
+
+    public static final long DEFAULT_SEGMENT_SIZE_BYTES = 1024 * 1024;
+    public static final int DEFAULT_MAX_SEGMENT_COUNT = 16;
+    public static final long DEFAULT_MAX_AGE_MILLIS = 7 * 24 * 60 * 60 * 1000L;
+
+    private static final TLog log = TLog.get(ParticleEventJournal.class);
+
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // Segment layout: a header of magic number, format version, and the newest event timestamp
+    // in the segment, followed by records of:
+    //   int length (of the rest of the record; 0 = nothing written yet, -1 = end of segment)
+    //   long timestamp, int TTL, then event name, device ID, and data, each as
+    //   an unsigned short length (0xFFFF = null) plus UTF-8 bytes
+    // The length is written last, so a record is only ever seen once it's complete.
+    private static final int MAGIC = 0x50454A4E;
+    private static final int FORMAT_VERSION = 1;
+    private static final int MAX_TIMESTAMP_POSITION = 8;
+    private static final int HEADER_SIZE = 16;
+    private static final int END_OF_SEGMENT = -1;
+    private static final int NULL_STRING = 0xFFFF;
+    private static final int FIXED_RECORD_SIZE = 8 + 4 + 3 * 2;
+    private static final long MIN_SEGMENT_SIZE_BYTES = 4 * 1024;
+
+    private final File directory;
+    private final long segmentSizeBytes;
+    private final int maxSegmentCount;
+    private final long maxAgeMillis;
+
+    // everything below is guarded by "this"
+    // by base offset; the last one is the one being written to
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private Segment active;
+    private MappedByteBuffer activeBuffer;
+    private boolean closed = false;
+
+    /**
+     * Open the journal in the given directory with the default limits: 1 MB segments, up to 16
+     * of them, for up to 7 days.
+     */
+    public ParticleEventJournal(File directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE_BYTES, DEFAULT_MAX_SEGMENT_COUNT,
+                DEFAULT_MAX_AGE_MILLIS);
+    }
+
+    /**
+     * Open the journal in the given directory, creating it if needed, and carry on from any
+     * events already in it.
+     *
+     * @param segmentSizeBytes the size of each segment file; at least 4 KB
+     * @param maxSegmentCount  the maximum number of segment files to keep
+     * @param maxAgeMillis     segments whose newest event is older than this are deleted; 0 to
+     *                         keep them regardless of age
+     */
+    public ParticleEventJournal(File directory, long segmentSizeBytes, int maxSegmentCount,
+                                long maxAgeMillis) throws IOException {
+        Preconditions.checkArgument(segmentSizeBytes >= MIN_SEGMENT_SIZE_BYTES
+                        && segmentSizeBytes <= Integer.MAX_VALUE,
+                "Segment size must be between 4 KB and 2 GB");
+        Preconditions.checkArgument(maxSegmentCount > 0,
+                "Max segment count must be greater than 0");
+        Preconditions.checkArgument(maxAgeMillis >= 0, "Max age must not be negative");
+        this.directory = directory;
+        this.segmentSizeBytes = segmentSizeBytes;
+        this.maxSegmentCount = maxSegmentCount;
+        this.maxAgeMillis = maxAgeMillis;
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create journal directory " + directory);
+        }
+        synchronized (this) {
+            loadSegments();
+            if (segments.isEmpty()) {
+                startSegment(0);
+            } else {
+                resumeLastSegment();
+            }
+            applyRetention();
+        }
+    }
+
+    /**
+     * Append an event to the journal.  Called automatically for every event received, once the
+     * journal has been set with {@link ParticleCloud#setEventJournal(ParticleEventJournal)}.
+     */
+    public synchronized void append(String eventName, ParticleEvent event) throws IOException {
+        if (closed) {
+            throw new IOException("Journal is closed");
+        }
+        byte[] name = encode(eventName);
+        byte[] deviceId = encode(event.deviceId);
+        byte[] data = encode(event.dataPayload);
+        long timestamp = (event.publishedAt != null)
+                ? event.publishedAt.getTime()
+                : System.currentTimeMillis();
+
+        int length = FIXED_RECORD_SIZE + encodedSize(name) + encodedSize(deviceId)
+                + encodedSize(data);
+        // always leave room for the end-of-segment marker
+        int spaceNeeded = 4 + length + 4;
+        if (HEADER_SIZE + spaceNeeded > segmentSizeBytes) {
+            throw new IOException("Event too large for the journal: " + length + " bytes");
+        }
+        if (activeBuffer.remaining() < spaceNeeded) {
+            roll();
+        }
+
+        MappedByteBuffer buffer = activeBuffer;
+        int start = buffer.position();
+        buffer.position(start + 4);
+        buffer.putLong(timestamp);
+        buffer.putInt(event.timeToLive);
+        putString(buffer, name);
+        putString(buffer, deviceId);
+        putString(buffer, data);
+        buffer.putInt(start, length);
+
+        if (timestamp > active.maxTimestamp) {
+            active.maxTimestamp = timestamp;
+            buffer.putLong(MAX_TIMESTAMP_POSITION, timestamp);
+        }
+    }
+
+    /**
+     * @return a cursor which reads every entry from the given offset onwards, e.g.: the
+     * {@link Entry#nextOffset} of the last entry read earlier.  If the offset is older than
+     * anything left in the journal, reading starts from the oldest entry.
+     */
+    public synchronized Cursor readFrom(long offset) {
+        Map.Entry<Long, Segment> floor = segments.floorEntry(offset);
+        if (floor == null) {
+            return new Cursor(segments.firstEntry().getValue(), HEADER_SIZE, Long.MIN_VALUE);
+        }
+        Segment segment = floor.getValue();
+        long position = HEADER_SIZE + (offset - segment.baseOffset);
+        return new Cursor(segment, (int) Math.min(position, Integer.MAX_VALUE), Long.MIN_VALUE);
+    }
+
+    /**
+     * @return a cursor which reads every entry for an event published at or after the given
+     * time, skipping whole segments which only hold older events
+     */
+    public synchronized Cursor readSince(long timeMillis) {
+        for (Segment segment : segments.values()) {
+            if (segment.maxTimestamp >= timeMillis || segment == active) {
+                return new Cursor(segment, HEADER_SIZE, timeMillis);
+            }
+        }
+        // not reached; the active segment is always there
+        return new Cursor(active, HEADER_SIZE, timeMillis);
+    }
+
+    /**
+     * @return the offset the next event will be written at
+     */
+    public synchronized long getEndOffset() {
+        return active.baseOffset + (activeBuffer.position() - HEADER_SIZE);
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Write everything appended so far out to storage.  Without this, events are still kept if
+     * the app's process dies, but not necessarily if the whole device does.
+     */
+    public synchronized void flush() {
+        if (!closed) {
+            activeBuffer.force();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        activeBuffer.force();
+        closed = true;
+    }
+
+    // must be called while holding the lock on "this"
+    private void loadSegments() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String fileName = file.getName();
+            if (!fileName.endsWith(SEGMENT_SUFFIX)) {
+                continue;
+            }
+            long baseOffset;
+            try {
+                baseOffset = Long.parseLong(
+                        fileName.substring(0, fileName.length() - SEGMENT_SUFFIX.length()));
+            } catch (NumberFormatException e) {
+                continue;
+            }
+
+            RandomAccessFile raf = null;
+            try {
+                raf = new RandomAccessFile(file, "r");
+                if (raf.length() < HEADER_SIZE || raf.readInt() != MAGIC
+                        || raf.readInt() != FORMAT_VERSION) {
+                    log.w("Ignoring unrecognized journal segment " + file);
+                    continue;
+                }
+                Segment segment = new Segment(baseOffset, file);
+                segment.maxTimestamp = raf.readLong();
+                segments.put(baseOffset, segment);
+            } catch (IOException e) {
+                log.w("Ignoring unreadable journal segment " + file, e);
+            } finally {
+                EZ.closeThisThingOrMaybeDont(raf);
+            }
+        }
+    }
+
+    // must be called while holding the lock on "this"
+    private void resumeLastSegment() throws IOException {
+        Segment last = segments.lastEntry().getValue();
+        MappedByteBuffer buffer = map(last.file, FileChannel.MapMode.READ_WRITE, 0);
+
+        // find the end of what was written before
+        int position = HEADER_SIZE;
+        boolean sealed = false;
+        while (position + 4 <= buffer.limit()) {
+            int length = buffer.getInt(position);
+            if (length == 0) {
+                break;
+            } else if (length < 0 || position + 4 + length > buffer.limit()) {
+                // ended, or cut short; either way, nothing more goes in this segment
+                sealed = true;
+                break;
+            }
+            position += 4 + length;
+        }
+
+        active = last;
+        activeBuffer = buffer;
+        buffer.position(position);
+        if (sealed || buffer.remaining() < 8) {
+            roll();
+        }
+    }
+
+    // must be called while holding the lock on "this"
+    private void roll() throws IOException {
+        int end = activeBuffer.position();
+        if (activeBuffer.remaining() >= 4) {
+            activeBuffer.putInt(end, END_OF_SEGMENT);
+        }
+        activeBuffer.force();
+        startSegment(active.baseOffset + (end - HEADER_SIZE));
+        applyRetention();
+    }
+
+    // must be called while holding the lock on "this"
+    private void startSegment(long baseOffset) throws IOException {
+        File file = new File(directory,
+                String.format(Locale.US, "%019d%s", baseOffset, SEGMENT_SUFFIX));
+        MappedByteBuffer buffer = map(file, FileChannel.MapMode.READ_WRITE, segmentSizeBytes);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, FORMAT_VERSION);
+        buffer.putLong(MAX_TIMESTAMP_POSITION, Long.MIN_VALUE);
+        buffer.position(HEADER_SIZE);
+
+        Segment segment = new Segment(baseOffset, file);
+        segments.put(baseOffset, segment);
+        active = segment;
+        activeBuffer = buffer;
+    }
+
+    // must be called while holding the lock on "this"
+    private void applyRetention() {
+        long cutoff = (maxAgeMillis > 0)
+                ? System.currentTimeMillis() - maxAgeMillis
+                : Long.MIN_VALUE;
+        // the active segment is always the last one, and is never deleted
+        while (segments.size() > 1) {
+            Segment oldest = segments.firstEntry().getValue();
+            if (segments.size() <= maxSegmentCount && oldest.maxTimestamp >= cutoff) {
+                break;
+            }
+            segments.remove(oldest.baseOffset);
+            // cursors which already mapped it can carry on reading it
+            if (!oldest.file.delete()) {
+                log.w("Unable to delete journal segment " + oldest.file);
+            }
+        }
+    }
+
+    private static MappedByteBuffer map(File file, FileChannel.MapMode mode, long size)
+            throws IOException {
+        String fileMode = (mode == FileChannel.MapMode.READ_ONLY) ? "r" : "rw";
+        RandomAccessFile raf = new RandomAccessFile(file, fileMode);
+        try {
+            long length = (size > 0) ? size : raf.length();
+            // the mapping stays valid after the file is closed
+            return raf.getChannel().map(mode, 0, length);
+        } finally {
+            EZ.closeThisThingOrMaybeDont(raf);
+        }
+    }
+
+    @Nullable
+    private static byte[] encode(@Nullable String value) throws IOException {
+        if (value == null) {
+            return null;
+        }
+        byte[] bytes = value.getBytes(UTF_8);
+        if (bytes.length >= NULL_STRING) {
+            throw new IOException("String too long for the journal: " + bytes.length + " bytes");
+        }
+        return bytes;
+    }
+
+    private static int encodedSize(@Nullable byte[] bytes) {
+        return (bytes == null) ? 0 : bytes.length;
+    }
+
+    private static void putString(MappedByteBuffer buffer, @Nullable byte[] bytes) {
+        if (bytes == null) {
+            buffer.putChar((char) NULL_STRING);
+        } else {
+            buffer.putChar((char) bytes.length);
+            buffer.put(bytes);
+        }
+    }
+
+
+    private static class Segment {
+
+        final long baseOffset;
+        final File file;
+        // the newest event timestamp in the segment; guarded by the journal
+        long maxTimestamp = Long.MIN_VALUE;
+
+        Segment(long baseOffset, File file) {
+            this.baseOffset = baseOffset;
+            this.file = file;
+        }
+    }
+
+
+    /**
+     * Reads entries from the journal in order, one at a time.  When {@link #next()} returns
+     * null, the cursor has caught up with the journal; it can be called again later to read
+     * events appended since.
+     * <p>
+     * Not thread safe.  Close the cursor when done with it, so that it releases its view of
+     * the current segment.
+     */
+    public final class Cursor implements Closeable {
+
+        private final long minTimestamp;
+        @Nullable private Segment segment;
+        @Nullable private MappedByteBuffer buffer;
+        private int position;
+
+        private Cursor(Segment segment, int position, long minTimestamp) {
+            this.segment = segment;
+            this.position = position;
+            this.minTimestamp = minTimestamp;
+        }
+
+        /**
+         * @return the next entry, or null if there are no more for now
+         */
+        @Nullable
+        public Entry next() throws IOException {
+            while (segment != null) {
+                if (buffer == null && !mapSegment()) {
+                    continue;
+                }
+
+                int limit;
+                Segment nextSegment;
+                synchronized (ParticleEventJournal.this) {
+                    // the write position is only read under the journal's lock, so everything
+                    // before it has been fully written
+                    limit = (segment == active && !closed)
+                            ? activeBuffer.position()
+                            : buffer.limit();
+                    Map.Entry<Long, Segment> higher = segments.higherEntry(segment.baseOffset);
+                    nextSegment = (higher == null) ? null : higher.getValue();
+                }
+
+                while (position + 4 <= limit) {
+                    int length = buffer.getInt(position);
+                    if (length <= 0) {
+                        break;
+                    } else if (position + 4 + length > limit) {
+                        throw new IOException("Corrupt journal record at offset " + offset());
+                    }
+                    Entry entry = readEntry(length);
+                    if (entry.event.publishedAt.getTime() >= minTimestamp) {
+                        return entry;
+                    }
+                }
+
+                if (nextSegment == null) {
+                    // caught up with the writer
+                    return null;
+                }
+                segment = nextSegment;
+                buffer = null;
+                position = HEADER_SIZE;
+            }
+            return null;
+        }
+
+        /**
+         * @return the offset of the next entry this cursor will read
+         */
+        public long offset() {
+            return (segment == null) ? 0 : segment.baseOffset + (position - HEADER_SIZE);
+        }
+
+        @Override
+        public void close() {
+            segment = null;
+            buffer = null;
+        }
+
+        // returns false if the segment is gone, after moving on to the next one
+        private boolean mapSegment() {
+            try {
+                buffer = map(segment.file, FileChannel.MapMode.READ_ONLY, 0);
+                return true;
+            } catch (IOException e) {
+                // deleted by retention before we got to it
+                synchronized (ParticleEventJournal.this) {
+                    Map.Entry<Long, Segment> higher = segments.higherEntry(segment.baseOffset);
+                    segment = (higher == null) ? null : higher.getValue();
+                }
+                position = HEADER_SIZE;
+                return false;
+            }
+        }
+
+        private Entry readEntry(int length) throws IOException {
+            long offset = offset();
+            buffer.position(position + 4);
+            long timestamp;
+            int timeToLive;
+            String eventName;
+            String deviceId;
+            String data;
+            try {
+                timestamp = buffer.getLong();
+                timeToLive = buffer.getInt();
+                eventName = getString();
+                deviceId = getString();
+                data = getString();
+            } catch (BufferUnderflowException e) {
+                throw new IOException("Corrupt journal record at offset " + offset);
+            }
+            if (eventName == null || buffer.position() != position + 4 + length) {
+                throw new IOException("Corrupt journal record at offset " + offset);
+            }
+            position += 4 + length;
+            return new Entry(offset, offset(), eventName,
+                    new ParticleEvent(deviceId, data, new Date(timestamp), timeToLive));
+        }
+
+        @Nullable
+        private String getString() {
+            int length = buffer.getChar();
+            if (length == NULL_STRING) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            return new String(bytes, UTF_8);
+        }
+    }
+}
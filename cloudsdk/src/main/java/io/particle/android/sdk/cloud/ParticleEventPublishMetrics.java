@@ -0,0 +1,60 @@
+package io.particle.android.sdk.cloud;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+
+/**
+ * Snapshot of the events published with
+ * {@link ParticleCloud#publishEventAsync(String, String, int, int)}.
+ * <p>
+ * Queued and in-flight counts are as of the snapshot; the rest are totals.
+ */
+@ParametersAreNonnullByDefault
+public class ParticleEventPublishMetrics {
+
+    /**
+     * Events waiting to be sent
+     */
+    public final int queuedEventCount;
+    /**
+     * Events whose publish requests are in progress
+     */
+    public final int inFlightEventCount;
+
+    public final long publishedEventCount;
+    /**
+     * Events whose publish requests failed, e.g.: because of a network error
+     */
+    public final long failedEventCount;
+    /**
+     * Events turned away because the queue was full
+     */
+    public final long rejectedEventCount;
+    /**
+     * Events identical to one already waiting to be sent, and so sent along with it instead
+     */
+    public final long coalescedEventCount;
+
+    ParticleEventPublishMetrics(int queuedEventCount, int inFlightEventCount,
+                                long publishedEventCount, long failedEventCount,
+                                long rejectedEventCount, long coalescedEventCount) {
+        this.queuedEventCount = queuedEventCount;
+        this.inFlightEventCount = inFlightEventCount;
+        this.publishedEventCount = publishedEventCount;
+        this.failedEventCount = failedEventCount;
+        this.rejectedEventCount = rejectedEventCount;
+        this.coalescedEventCount = coalescedEventCount;
+    }
+
+    @Override
+    public String toString() {
+        return "ParticleEventPublishMetrics{" +
+                "queuedEventCount=" + queuedEventCount +
+                ", inFlightEventCount=" + inFlightEventCount +
+                ", publishedEventCount=" + publishedEventCount +
+                ", failedEventCount=" + failedEventCount +
+                ", rejectedEventCount=" + rejectedEventCount +
+                ", coalescedEventCount=" + coalescedEventCount +
+                '}';
+    }
+}
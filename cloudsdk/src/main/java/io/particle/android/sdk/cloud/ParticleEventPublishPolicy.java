@@ -0,0 +1,82 @@
+package io.particle.android.sdk.cloud;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import io.particle.android.sdk.utils.Preconditions;
+
+
+/**
+ * Controls how events published with
+ * {@link ParticleCloud#publishEventAsync(String, String, int, int)} are sent: how many may be
+ * waiting to be sent, how many requests may be in flight at once, and how fast they may be sent.
+ * <p>
+ * The rate limit is a token bucket: up to <code>burstSize</code> events may be sent at once,
+ * after which events are sent at <code>eventsPerSecond</code> on average.  The defaults match the
+ * cloud's own limit of 1 event per second with bursts of up to 4, beyond which the cloud rejects
+ * events.
+ */
+@ParametersAreNonnullByDefault
+public class ParticleEventPublishPolicy {
+
+    public static final int DEFAULT_CAPACITY = 64;
+    public static final int DEFAULT_MAX_IN_FLIGHT = 4;
+    public static final double DEFAULT_EVENTS_PER_SECOND = 1;
+    public static final int DEFAULT_BURST_SIZE = 4;
+
+    public static ParticleEventPublishPolicy defaultPolicy() {
+        return new ParticleEventPublishPolicy(DEFAULT_CAPACITY, DEFAULT_MAX_IN_FLIGHT,
+                DEFAULT_EVENTS_PER_SECOND, DEFAULT_BURST_SIZE);
+    }
+
+
+    private final int capacity;
+    private final int maxInFlight;
+    private final double eventsPerSecond;
+    private final int burstSize;
+
+    /**
+     * @param capacity        how many events may be waiting to be sent; events published while
+     *                        this many are waiting are rejected
+     * @param maxInFlight     how many publish requests may be in progress at once
+     * @param eventsPerSecond the average rate at which events are sent
+     * @param burstSize       how many events may be sent at once, after a quiet period
+     */
+    public ParticleEventPublishPolicy(int capacity, int maxInFlight, double eventsPerSecond,
+                                      int burstSize) {
+        Preconditions.checkArgument(capacity > 0, "Capacity must be greater than 0");
+        Preconditions.checkArgument(maxInFlight > 0, "Max in flight must be greater than 0");
+        Preconditions.checkArgument(eventsPerSecond > 0,
+                "Events per second must be greater than 0");
+        Preconditions.checkArgument(burstSize > 0, "Burst size must be greater than 0");
+        this.capacity = capacity;
+        this.maxInFlight = maxInFlight;
+        this.eventsPerSecond = eventsPerSecond;
+        this.burstSize = burstSize;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public double getEventsPerSecond() {
+        return eventsPerSecond;
+    }
+
+    public int getBurstSize() {
+        return burstSize;
+    }
+
+    @Override
+    public String toString() {
+        return "ParticleEventPublishPolicy{" +
+                "capacity=" + capacity +
+                ", maxInFlight=" + maxInFlight +
+                ", eventsPerSecond=" + eventsPerSecond +
+                ", burstSize=" + burstSize +
+                '}';
+    }
+}
@@ -0,0 +1,129 @@
+package io.particle.android.sdk.cloud;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import io.particle.android.sdk.utils.Preconditions;
+
+
+/**
+ * Controls how many events may be waiting for a subscription's handler, and what happens to
+ * new events when that many are already waiting.
+ * <p>
+ * Each policy keeps counters of the events it has dropped or conflated.  If the same policy
+ * instance is used for several subscriptions, its counters are the totals for all of them.
+ */
+@ParametersAreNonnullByDefault
+public class ParticleEventQueuePolicy {
+
+    public enum OverflowStrategy {
+
+        /**
+         * Wait for the handler to catch up.  Nothing is lost, but while the queue is full no
+         * more events are read from the network, and a cloud connection which stalls for too
+         * long may be dropped by the server.  With
+         * {@link ParticleCloud#setEventMultiplexingEnabled(boolean) multiplexing}, the
+         * connection is shared, so that holds up every subscription on it.
+         */
+        BLOCK,
+
+        /**
+         * Discard the oldest waiting event to make room for the new one.
+         */
+        DROP_OLDEST,
+
+        /**
+         * Discard the new event.
+         */
+        DROP_NEWEST,
+
+        /**
+         * Keep only the latest event for each (device ID, event name) pair: a new event replaces
+         * any waiting event with the same device ID and event name, and keeps its place in the
+         * queue.  This happens whether or not the queue is full.  When the queue is full of
+         * events for other pairs, the oldest one is discarded.
+         */
+        CONFLATE_LATEST
+    }
+
+
+    public static final int DEFAULT_CAPACITY = 32;
+
+    /**
+     * The policy used by subscriptions which don't specify one: a queue of 32 events which
+     * blocks when full, which is how subscriptions have always behaved.
+     */
+    public static ParticleEventQueuePolicy defaultPolicy() {
+        return block(DEFAULT_CAPACITY);
+    }
+
+    public static ParticleEventQueuePolicy block(int capacity) {
+        return new ParticleEventQueuePolicy(capacity, OverflowStrategy.BLOCK);
+    }
+
+    public static ParticleEventQueuePolicy dropOldest(int capacity) {
+        return new ParticleEventQueuePolicy(capacity, OverflowStrategy.DROP_OLDEST);
+    }
+
+    public static ParticleEventQueuePolicy dropNewest(int capacity) {
+        return new ParticleEventQueuePolicy(capacity, OverflowStrategy.DROP_NEWEST);
+    }
+
+    public static ParticleEventQueuePolicy conflateLatest(int capacity) {
+        return new ParticleEventQueuePolicy(capacity, OverflowStrategy.CONFLATE_LATEST);
+    }
+
+
+    private final int capacity;
+    private final OverflowStrategy overflowStrategy;
+    private final AtomicLong droppedEventCount = new AtomicLong();
+    private final AtomicLong conflatedEventCount = new AtomicLong();
+
+    public ParticleEventQueuePolicy(int capacity, OverflowStrategy overflowStrategy) {
+        Preconditions.checkArgument(capacity > 0, "Capacity must be greater than 0");
+        this.capacity = capacity;
+        this.overflowStrategy = overflowStrategy;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public OverflowStrategy getOverflowStrategy() {
+        return overflowStrategy;
+    }
+
+    /**
+     * @return the number of events discarded because the queue was full
+     */
+    public long getDroppedEventCount() {
+        return droppedEventCount.get();
+    }
+
+    /**
+     * @return the number of waiting events replaced by a newer event for the same device and
+     * event name
+     */
+    public long getConflatedEventCount() {
+        return conflatedEventCount.get();
+    }
+
+    void onEventDropped() {
+        droppedEventCount.incrementAndGet();
+    }
+
+    void onEventConflated() {
+        conflatedEventCount.incrementAndGet();
+    }
+
+    @Override
+    public String toString() {
+        return "ParticleEventQueuePolicy{" +
+                "capacity=" + capacity +
+                ", overflowStrategy=" + overflowStrategy +
+                ", droppedEventCount=" + droppedEventCount +
+                ", conflatedEventCount=" + conflatedEventCount +
+                '}';
+    }
+}
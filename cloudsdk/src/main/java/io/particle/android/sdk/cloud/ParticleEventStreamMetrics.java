@@ -0,0 +1,131 @@
+package io.particle.android.sdk.cloud;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+
+/**
+ * Snapshot of how one event subscription is performing.
+ * <p>
+ * Totals count from when the subscription was created.  Rates, averages, and maximums cover
+ * {@link #intervalMillis}: for snapshots from {@link ParticleCloud#getEventStreamMetrics()},
+ * the whole life of the subscription; for reports to a
+ * {@link ParticleCloud#setEventStreamMetricsListener(ParticleEventStreamMetricsListener, long)
+ * metrics listener}, the time since its previous report.  Taking snapshots doesn't affect the
+ * listener's reports.
+ * <p>
+ * The byte count, parse time, filtered event count, reconnect count, and stall count belong to
+ * the subscription's stream; when
+ * {@link ParticleCloud#setEventMultiplexingEnabled(boolean) multiplexing} is on, they're shared
+ * by every subscription on the same scope.
+ */
+@ParametersAreNonnullByDefault
+public class ParticleEventStreamMetrics {
+
+    public final long subscriptionId;
+    public final String streamUri;
+    /**
+     * The time covered by the rates, averages, and maximums
+     */
+    public final long intervalMillis;
+
+    /**
+     * Events which reached the subscription's queue, including any dropped from it
+     */
+    public final long eventCount;
+    public final long deliveredEventCount;
+    public final double eventsPerSecond;
+
+    /**
+     * Size of the event data received on the stream, in bytes as sent (UTF-8), not counting the
+     * SSE framing around it
+     */
+    public final long byteCount;
+    public final double bytesPerSecond;
+    public final double meanParseMicros;
+    /**
+     * Events received on the stream but skipped without being decoded, because no
+     * {@link ParticleEventFilter} on the stream matched them
+     */
+    public final long filteredEventCount;
+
+    public final int queueDepth;
+    public final int queueCapacity;
+    public final long droppedEventCount;
+    public final long conflatedEventCount;
+
+    /**
+     * Time spent in the handler, per call (i.e.: per batch, for batch handlers)
+     */
+    public final double meanHandlerMicros;
+    public final double maxHandlerMicros;
+
+    /**
+     * Time from an event being published (according to the cloud) to its delivery to the
+     * handler; differences between the device's clock and the cloud's affect these
+     */
+    public final double meanLagMillis;
+    public final long maxLagMillis;
+
+    public final long reconnectCount;
+    /**
+     * Connections dropped (and re-established) because nothing at all was received for longer
+     * than the stall timeout
+     */
+    public final long stallCount;
+
+    ParticleEventStreamMetrics(long subscriptionId, String streamUri, long intervalMillis,
+                               long eventCount, long deliveredEventCount, double eventsPerSecond,
+                               long byteCount, double bytesPerSecond, double meanParseMicros,
+                               long filteredEventCount, int queueDepth, int queueCapacity,
+                               long droppedEventCount, long conflatedEventCount,
+                               double meanHandlerMicros,
+                               double maxHandlerMicros, double meanLagMillis, long maxLagMillis,
+                               long reconnectCount, long stallCount) {
+        this.subscriptionId = subscriptionId;
+        this.streamUri = streamUri;
+        this.intervalMillis = intervalMillis;
+        this.eventCount = eventCount;
+        this.deliveredEventCount = deliveredEventCount;
+        this.eventsPerSecond = eventsPerSecond;
+        this.byteCount = byteCount;
+        this.bytesPerSecond = bytesPerSecond;
+        this.meanParseMicros = meanParseMicros;
+        this.filteredEventCount = filteredEventCount;
+        this.queueDepth = queueDepth;
+        this.queueCapacity = queueCapacity;
+        this.droppedEventCount = droppedEventCount;
+        this.conflatedEventCount = conflatedEventCount;
+        this.meanHandlerMicros = meanHandlerMicros;
+        this.maxHandlerMicros = maxHandlerMicros;
+        this.meanLagMillis = meanLagMillis;
+        this.maxLagMillis = maxLagMillis;
+        this.reconnectCount = reconnectCount;
+        this.stallCount = stallCount;
+    }
+
+    @Override
+    public String toString() {
+        return "ParticleEventStreamMetrics{" +
+                "subscriptionId=" + subscriptionId +
+                ", streamUri=" + streamUri +
+                ", intervalMillis=" + intervalMillis +
+                ", eventCount=" + eventCount +
+                ", deliveredEventCount=" + deliveredEventCount +
+                ", eventsPerSecond=" + eventsPerSecond +
+                ", byteCount=" + byteCount +
+                ", bytesPerSecond=" + bytesPerSecond +
+                ", meanParseMicros=" + meanParseMicros +
+                ", filteredEventCount=" + filteredEventCount +
+                ", queueDepth=" + queueDepth +
+                ", queueCapacity=" + queueCapacity +
+                ", droppedEventCount=" + droppedEventCount +
+                ", conflatedEventCount=" + conflatedEventCount +
+                ", meanHandlerMicros=" + meanHandlerMicros +
+                ", maxHandlerMicros=" + maxHandlerMicros +
+                ", meanLagMillis=" + meanLagMillis +
+                ", maxLagMillis=" + maxLagMillis +
+                ", reconnectCount=" + reconnectCount +
+                ", stallCount=" + stallCount +
+                '}';
+    }
+}
@@ -0,0 +1,17 @@
+package io.particle.android.sdk.cloud;
+
+import java.util.List;
+
+
+/**
+ * Receives the metrics of every live event subscription at a fixed interval, e.g.: to forward
+ * them to an app's own telemetry.
+ * <p>
+ * Called on an event dispatcher thread; implementations should return quickly.
+ *
+ * @see ParticleCloud#setEventStreamMetricsListener(ParticleEventStreamMetricsListener, long)
+ */
+public interface ParticleEventStreamMetricsListener {
+
+    void onMetrics(List<ParticleEventStreamMetrics> metrics);
+}
@@ -0,0 +1,42 @@
+package io.particle.android.sdk.cloud;
+
+import android.support.annotation.Nullable;
+
+
+/**
+ * Observes event streams reconnecting after losing their connection to the cloud, e.g.: to
+ * track the reconnect rate in production.
+ * <p>
+ * Streams resume where they left off when reconnecting, so subscribers normally don't notice
+ * a lost connection at all, unless all attempts fail, in which case the error is also passed on
+ * to each subscriber's <code>onEventError()</code>.
+ * <p>
+ * Called on transport threads; implementations should return quickly.
+ *
+ * @see ParticleCloud#setEventStreamReconnectListener(ParticleEventStreamReconnectListener)
+ */
+public interface ParticleEventStreamReconnectListener {
+
+    /**
+     * @param streamUri   the URI of the event stream
+     * @param attempt     the number of this attempt since the connection was lost, starting at 1
+     * @param delayMillis how long until the attempt is made
+     * @param cause       the error which ended the previous connection, or null if the cloud
+     *                    closed it
+     */
+    void onReconnectScheduled(String streamUri, int attempt, long delayMillis,
+                              @Nullable Exception cause);
+
+    /**
+     * @param streamUri the URI of the event stream
+     * @param attempts  how many attempts it took
+     */
+    void onReconnected(String streamUri, int attempts);
+
+    /**
+     * @param streamUri the URI of the event stream
+     * @param attempts  how many attempts were made
+     * @param cause     the error which is reported to the stream's subscribers
+     */
+    void onReconnectAbandoned(String streamUri, int attempts, Exception cause);
+}
@@ -0,0 +1,58 @@
+package io.particle.android.sdk.cloud;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+
+/**
+ * Snapshot of how the cloud API's HTTP response cache is doing.  All counts are totals since
+ * the SDK was initialized.  A request which the HTTP client retries (e.g.: after finding a
+ * pooled connection closed) is counted once per attempt.
+ *
+ * @see ParticleCloud#getHttpCacheMetrics()
+ */
+@ParametersAreNonnullByDefault
+public class ParticleHttpCacheMetrics {
+
+    /**
+     * HTTP requests made by the API clients, cacheable or not
+     */
+    public final long requestCount;
+    /**
+     * Responses served from the cache, whether or not the cloud was asked first if they were
+     * still current
+     */
+    public final long hitCount;
+    /**
+     * Responses to cacheable requests (i.e.: GETs which aren't "no-store") whose body came from
+     * the cloud
+     */
+    public final long missCount;
+    /**
+     * Conditional requests sent, to check whether a cached response was still current
+     */
+    public final long revalidationCount;
+    /**
+     * Conditional requests answered with "304 Not Modified", i.e.: without a body
+     */
+    public final long notModifiedCount;
+
+    ParticleHttpCacheMetrics(long requestCount, long hitCount, long missCount,
+                             long revalidationCount, long notModifiedCount) {
+        this.requestCount = requestCount;
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.revalidationCount = revalidationCount;
+        this.notModifiedCount = notModifiedCount;
+    }
+
+    @Override
+    public String toString() {
+        return "ParticleHttpCacheMetrics{" +
+                "requestCount=" + requestCount +
+                ", hitCount=" + hitCount +
+                ", missCount=" + missCount +
+                ", revalidationCount=" + revalidationCount +
+                ", notModifiedCount=" + notModifiedCount +
+                '}';
+    }
+}
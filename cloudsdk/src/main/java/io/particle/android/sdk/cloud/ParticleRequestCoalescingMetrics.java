@@ -0,0 +1,38 @@
+package io.particle.android.sdk.cloud;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+
+/**
+ * Snapshot of how many identical read calls (e.g.: {@link ParticleCloud#getDevice(String)},
+ * {@link ParticleCloud#getDevices()}, {@link ParticleDevice#getVariable(String)}) were made at
+ * the same moment, and shared a single request to the cloud instead of each making their own.
+ * All counts are totals since the SDK was initialized.
+ *
+ * @see ParticleCloud#getRequestCoalescingMetrics()
+ */
+@ParametersAreNonnullByDefault
+public class ParticleRequestCoalescingMetrics {
+
+    /**
+     * Requests actually made to the cloud by calls which can be coalesced
+     */
+    public final long requestCount;
+    /**
+     * Calls which didn't make a request, and got the result of one already in progress
+     */
+    public final long coalescedCount;
+
+    ParticleRequestCoalescingMetrics(long requestCount, long coalescedCount) {
+        this.requestCount = requestCount;
+        this.coalescedCount = coalescedCount;
+    }
+
+    @Override
+    public String toString() {
+        return "ParticleRequestCoalescingMetrics{" +
+                "requestCount=" + requestCount +
+                ", coalescedCount=" + coalescedCount +
+                '}';
+    }
+}
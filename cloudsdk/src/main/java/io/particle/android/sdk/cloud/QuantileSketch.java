@@ -0,0 +1,211 @@
+package io.particle.android.sdk.cloud;
+
+import java.util.Arrays;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+
+/**
+ * Mergeable sketch for estimating quantiles in a fixed amount of memory.
+ * <p>
+ * Values are counted in logarithmically-sized buckets, so that any quantile can be estimated
+ * to within {@link #RELATIVE_ACCURACY} of the true value (the same idea as DDSketch).  Each
+ * sign has at most {@link #MAX_BUCKETS} buckets, which cover values spanning a factor of about
+ * 28,000 at full accuracy.  Beyond that range, the buckets for the smallest magnitudes are merged,
+ * so only the estimates for the lowest quantiles (of positive values) lose accuracy.
+ * <p>
+ * Not thread safe.
+ */
+@ParametersAreNonnullByDefault
+class QuantileSketch {
+
+    static final double RELATIVE_ACCURACY = 0.02;
+    static final int MAX_BUCKETS = 256;
+
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+    // values smaller than this in magnitude are counted as zero
+    private static final double MIN_MAGNITUDE = 1e-9;
+
+    private final BucketStore positive = new BucketStore();
+    private final BucketStore negative = new BucketStore();
+    private long zeroCount = 0;
+    private long count = 0;
+
+    void add(double value) {
+        if (value >= MIN_MAGNITUDE) {
+            positive.add(bucketIndex(value), 1);
+        } else if (value <= -MIN_MAGNITUDE) {
+            negative.add(bucketIndex(-value), 1);
+        } else {
+            zeroCount++;
+        }
+        count++;
+    }
+
+    void mergeFrom(QuantileSketch other) {
+        positive.mergeFrom(other.positive);
+        negative.mergeFrom(other.negative);
+        zeroCount += other.zeroCount;
+        count += other.count;
+    }
+
+    void clear() {
+        positive.clear();
+        negative.clear();
+        zeroCount = 0;
+        count = 0;
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    /**
+     * @param quantile between 0 and 1, e.g.: 0.5 for the median
+     * @return the estimated value at the given quantile, or NaN if the sketch is empty
+     */
+    double getQuantile(double quantile) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) (Math.max(0, Math.min(1, quantile)) * (count - 1));
+
+        // from the most negative value to the most positive one
+        if (rank < negative.total) {
+            return -bucketValue(negative.indexOfRankFromTop(rank));
+        }
+        rank -= negative.total;
+        if (rank < zeroCount) {
+            return 0;
+        }
+        rank -= zeroCount;
+        return bucketValue(positive.indexOfRankFromBottom(rank));
+    }
+
+    private static int bucketIndex(double magnitude) {
+        return (int) Math.ceil(Math.log(magnitude) / LOG_GAMMA);
+    }
+
+    // the value in the bucket with the lowest worst-case relative error
+    private static double bucketValue(int index) {
+        return 2 * Math.pow(GAMMA, index) / (GAMMA + 1);
+    }
+
+
+    // Counts per bucket index, for a sliding range of MAX_BUCKETS consecutive indexes
+    private static class BucketStore {
+
+        // allocated on first use, since many series never go negative
+        private int[] counts;
+        // the bucket index of counts[0]
+        private int offset;
+        // lowest and highest indexes with a non-zero count
+        private int minIndex = Integer.MAX_VALUE;
+        private int maxIndex = Integer.MIN_VALUE;
+        long total = 0;
+
+        void add(int index, int n) {
+            if (counts == null) {
+                counts = new int[MAX_BUCKETS];
+                offset = index - MAX_BUCKETS / 2;
+            }
+
+            if (total == 0) {
+                offset = index - MAX_BUCKETS / 2;
+            } else if (index >= offset + MAX_BUCKETS) {
+                shiftTo(Math.min(index - MAX_BUCKETS + 1, minIndex));
+                if (index >= offset + MAX_BUCKETS) {
+                    collapseBelow(index - MAX_BUCKETS + 1);
+                }
+            } else if (index < offset) {
+                // as far down as the largest values allow; if it's too small to fit alongside
+                // them, count it in the lowest bucket
+                shiftTo(Math.max(index, maxIndex - MAX_BUCKETS + 1));
+                index = offset;
+            }
+
+            counts[index - offset] += n;
+            minIndex = Math.min(minIndex, index);
+            maxIndex = Math.max(maxIndex, index);
+            total += n;
+        }
+
+        void mergeFrom(BucketStore other) {
+            if (other.total == 0) {
+                return;
+            }
+            // highest first, so that collapsing happens at most once
+            for (int index = other.maxIndex; index >= other.minIndex; index--) {
+                int n = other.counts[index - other.offset];
+                if (n != 0) {
+                    add(index, n);
+                }
+            }
+        }
+
+        void clear() {
+            if (counts != null) {
+                Arrays.fill(counts, 0);
+            }
+            minIndex = Integer.MAX_VALUE;
+            maxIndex = Integer.MIN_VALUE;
+            total = 0;
+        }
+
+        int indexOfRankFromBottom(long rank) {
+            long seen = 0;
+            for (int index = minIndex; index <= maxIndex; index++) {
+                seen += counts[index - offset];
+                if (seen > rank) {
+                    return index;
+                }
+            }
+            return maxIndex;
+        }
+
+        int indexOfRankFromTop(long rank) {
+            long seen = 0;
+            for (int index = maxIndex; index >= minIndex; index--) {
+                seen += counts[index - offset];
+                if (seen > rank) {
+                    return index;
+                }
+            }
+            return minIndex;
+        }
+
+        // move the window of indexes so that it starts at newOffset; everything in use must fit
+        private void shiftTo(int newOffset) {
+            int shift = newOffset - offset;
+            if (shift == 0) {
+                return;
+            }
+            int[] shifted = new int[MAX_BUCKETS];
+            for (int index = minIndex; index <= maxIndex; index++) {
+                int position = index - newOffset;
+                if (position >= 0 && position < MAX_BUCKETS) {
+                    shifted[position] = counts[index - offset];
+                }
+            }
+            System.arraycopy(shifted, 0, counts, 0, MAX_BUCKETS);
+            offset = newOffset;
+        }
+
+        // merge the counts of every bucket below newMinIndex into newMinIndex, then make
+        // newMinIndex the start of the window
+        private void collapseBelow(int newMinIndex) {
+            int collapsed = 0;
+            for (int index = minIndex; index < newMinIndex && index <= maxIndex; index++) {
+                collapsed += counts[index - offset];
+                counts[index - offset] = 0;
+            }
+            minIndex = Math.max(minIndex, newMinIndex);
+            shiftTo(newMinIndex);
+            counts[0] += collapsed;
+            if (collapsed > 0) {
+                minIndex = newMinIndex;
+            }
+        }
+    }
+}
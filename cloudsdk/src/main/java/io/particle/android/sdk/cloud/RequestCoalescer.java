@@ -0,0 +1,108 @@
+package io.particle.android.sdk.cloud;
+
+import android.support.annotation.Nullable;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+
+/**
+ * Lets concurrent identical read calls share one request to the cloud ("single flight").
+ * <p>
+ * The first caller with a given key makes the request on its own thread; anyone calling with
+ * the same key while that's in progress waits for it, and gets the same result, or has the
+ * same exception thrown.  Once the request is done, the next call with that key makes a new
+ * one; nothing is cached here.
+ * <p>
+ * Only use this for requests without side effects, and key them on everything which makes
+ * their results differ.
+ */
+@ParametersAreNonnullByDefault
+class RequestCoalescer {
+
+    interface Request<T, E extends Exception> {
+
+        T execute() throws E;
+    }
+
+
+    private final ConcurrentMap<String, InFlightRequest> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+
+    /**
+     * Execute the request, or wait for the identical one already in progress.
+     */
+    <T, E extends Exception> T execute(String key, Request<T, E> request) throws E {
+        InFlightRequest ours = new InFlightRequest();
+        InFlightRequest existing = inFlight.putIfAbsent(key, ours);
+        if (existing != null) {
+            coalescedCount.incrementAndGet();
+            return existing.awaitResult();
+        }
+
+        requestCount.incrementAndGet();
+        try {
+            T result = request.execute();
+            ours.complete(result, null);
+            return result;
+        } catch (Throwable error) {
+            ours.complete(null, error);
+            throw error;
+        } finally {
+            inFlight.remove(key, ours);
+        }
+    }
+
+    ParticleRequestCoalescingMetrics getMetrics() {
+        return new ParticleRequestCoalescingMetrics(requestCount.get(), coalescedCount.get());
+    }
+
+
+    private static class InFlightRequest {
+
+        private final CountDownLatch done = new CountDownLatch(1);
+        // written before the latch is released, and only read after waiting on it
+        @Nullable private Object result;
+        @Nullable private Throwable error;
+
+        void complete(@Nullable Object result, @Nullable Throwable error) {
+            this.result = result;
+            this.error = error;
+            done.countDown();
+        }
+
+        @SuppressWarnings("unchecked")
+        <T, E extends Exception> T awaitResult() throws E {
+            // the request is bounded by the HTTP client's timeouts, so rather than invent a
+            // result for an interrupted waiter, finish waiting and restore the interrupt
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    done.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+
+            if (error == null) {
+                return (T) result;
+            } else if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
+            } else if (error instanceof Error) {
+                throw (Error) error;
+            } else {
+                // a checked exception, so one the request declared as E
+                throw (E) error;
+            }
+        }
+    }
+}
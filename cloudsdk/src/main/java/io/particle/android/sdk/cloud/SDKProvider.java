@@ -28,7 +28,6 @@ class SDKProvider {
 
     private final Context ctx;
     private final CloudApi cloudApi;
-    private final CloudApi fastTimeoutCloudApi;
     private final IdentityApi identityApi;
     private final ParticleCloud particleCloud;
     private final TokenGetterDelegateImpl tokenGetter;
@@ -47,7 +46,6 @@ class SDKProvider {
         ApiFactory apiFactory = new ApiFactory(ctx, tokenGetter, oAuthCredentialsProvider);
         cloudApi = apiFactory.buildNewCloudApi();
         identityApi = apiFactory.buildNewIdentityApi();
-        fastTimeoutCloudApi = apiFactory.buildNewFastTimeoutCloudApi();
         particleCloud = buildCloud(apiFactory);
     }
 
@@ -70,9 +68,9 @@ class SDKProvider {
 
         // FIXME: see if this TokenGetterDelegate setter issue can be resolved reasonably
         ParticleCloud cloud = new ParticleCloud(
-                apiFactory.getApiUri(), cloudApi, identityApi, fastTimeoutCloudApi,
+                apiFactory.getApiUri(), cloudApi, identityApi,
                 SDKGlobals.getAppDataStorage(), LocalBroadcastManager.getInstance(ctx),
-                apiFactory.getGsonInstance(), buildExecutor());
+                apiFactory.getGsonInstance(), apiFactory.getResponseCache(), buildExecutor());
         // FIXME: gross circular dependency
         tokenGetter.cloud = cloud;
 
@@ -0,0 +1,127 @@
+package io.particle.android.sdk.cloud;
+
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import io.particle.android.sdk.cloud.exceptions.ParticleCloudException;
+import io.particle.android.sdk.utils.TLog;
+
+
+/**
+ * Delivers system events (<code>spark/status</code>, <code>spark/flash/status</code>, etc.) to
+ * every device which has opted in via {@link ParticleDevice#subscribeToSystemEvents()}.
+ * <p>
+ * Rather than opening a handful of event streams for each device, this keeps a single
+ * subscription to the "spark/" events of all the user's devices, and routes each event to the
+ * right device by its <code>coreid</code>.  The subscription is opened when the first device
+ * opts in, and closed when the last one opts out, so opting in only costs a map entry.
+ */
+@ParametersAreNonnullByDefault
+class SystemEventRouter {
+
+    private static final TLog log = TLog.get(SystemEventRouter.class);
+
+    private static final String SYSTEM_EVENT_PREFIX = "spark/";
+
+    private static final long NOT_SUBSCRIBED = -1;
+
+    private final ParticleCloud cloud;
+    // opted-in devices, by device ID
+    private final ConcurrentMap<String, ParticleDevice> devices = new ConcurrentHashMap<>();
+    // so that devices opting in at the same time wait for one subscribe call
+    private final RequestCoalescer subscribeCoalescer = new RequestCoalescer();
+
+    // guarded by "this", which is never held across calls to the cloud
+    private long subscriptionId = NOT_SUBSCRIBED;
+
+    SystemEventRouter(ParticleCloud cloud) {
+        this.cloud = cloud;
+    }
+
+    @WorkerThread
+    void register(ParticleDevice device) throws ParticleCloudException {
+        synchronized (this) {
+            devices.put(device.getID(), device);
+            if (subscriptionId != NOT_SUBSCRIBED) {
+                return;
+            }
+        }
+
+        try {
+            subscribeCoalescer.execute(SYSTEM_EVENT_PREFIX, this::subscribe);
+        } catch (IOException e) {
+            devices.remove(device.getID(), device);
+            log.d("Failed to subscribe to system events");
+            throw new ParticleCloudException(e);
+        }
+    }
+
+    @WorkerThread
+    void unregister(ParticleDevice device) throws ParticleCloudException {
+        long oldSubscriptionId;
+        synchronized (this) {
+            devices.remove(device.getID(), device);
+            // if a subscribe call is still in progress, subscribe() will see there's no-one left
+            if (!devices.isEmpty() || subscriptionId == NOT_SUBSCRIBED) {
+                return;
+            }
+            oldSubscriptionId = subscriptionId;
+            subscriptionId = NOT_SUBSCRIBED;
+        }
+        cloud.unsubscribeFromEventWithID(oldSubscriptionId);
+    }
+
+    @Nullable
+    private Void subscribe() throws IOException {
+        synchronized (this) {
+            // an earlier call finished between register() checking and this one starting
+            if (subscriptionId != NOT_SUBSCRIBED) {
+                return null;
+            }
+        }
+
+        long newSubscriptionId = cloud.subscribeToMyDevicesEvents(SYSTEM_EVENT_PREFIX,
+                new ParticleEventHandler() {
+                    @Override
+                    public void onEvent(String eventName, ParticleEvent particleEvent) {
+                        route(eventName, particleEvent);
+                    }
+
+                    @Override
+                    public void onEventError(Exception e) {
+                        log.d("Event error in system event router", e);
+                    }
+                });
+
+        synchronized (this) {
+            if (!devices.isEmpty()) {
+                subscriptionId = newSubscriptionId;
+                return null;
+            }
+        }
+        // every device opted out while the call was in progress
+        try {
+            cloud.unsubscribeFromEventWithID(newSubscriptionId);
+        } catch (ParticleCloudException e) {
+            log.d("Failed to unsubscribe from system events", e);
+        }
+        return null;
+    }
+
+    // called on the event dispatcher, in the order the events were received
+    private void route(String eventName, ParticleEvent particleEvent) {
+        if (particleEvent.deviceId == null) {
+            return;
+        }
+        ParticleDevice device = devices.get(particleEvent.deviceId);
+        if (device != null) {
+            device.onSystemEvent(eventName, particleEvent);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package io.particle.android.sdk.cloud;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+
+/**
+ * Summary of the numeric values of one series of events (one event name from one device)
+ * within one time window, as emitted by {@link EventWindowAggregator}.
+ */
+@ParametersAreNonnullByDefault
+public class WindowAggregate {
+
+    public final String deviceId;
+    public final String eventName;
+    /**
+     * Start of the window (inclusive), in milliseconds since the epoch
+     */
+    public final long windowStartMillis;
+    /**
+     * End of the window (exclusive), in milliseconds since the epoch
+     */
+    public final long windowEndMillis;
+    public final long count;
+    public final double min;
+    public final double max;
+    public final double mean;
+
+    private final QuantileSketch sketch;
+
+    WindowAggregate(String deviceId, String eventName, long windowStartMillis,
+                    long windowEndMillis, long count, double min, double max, double sum,
+                    QuantileSketch sketch) {
+        this.deviceId = deviceId;
+        this.eventName = eventName;
+        this.windowStartMillis = windowStartMillis;
+        this.windowEndMillis = windowEndMillis;
+        this.count = count;
+        this.min = min;
+        this.max = max;
+        this.mean = sum / count;
+        this.sketch = sketch;
+    }
+
+    /**
+     * Estimate a percentile of the values in the window, to within 2% of the true value.
+     *
+     * @param percentile between 0 and 100, e.g.: 50 for the median, or 99
+     */
+    public double getPercentile(double percentile) {
+        // the extremes are known exactly
+        if (percentile <= 0) {
+            return min;
+        } else if (percentile >= 100) {
+            return max;
+        }
+        double estimate = sketch.getQuantile(percentile / 100);
+        return Math.max(min, Math.min(max, estimate));
+    }
+
+    @Override
+    public String toString() {
+        return "WindowAggregate{" +
+                "deviceId=" + deviceId +
+                ", eventName=" + eventName +
+                ", windowStartMillis=" + windowStartMillis +
+                ", windowEndMillis=" + windowEndMillis +
+                ", count=" + count +
+                ", min=" + min +
+                ", max=" + max +
+                ", mean=" + mean +
+                '}';
+    }
+}
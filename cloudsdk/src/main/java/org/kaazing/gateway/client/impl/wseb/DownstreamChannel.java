@@ -25,12 +25,12 @@ import org.kaazing.gateway.client.impl.Channel;
 import org.kaazing.gateway.client.impl.http.HttpRequest;
 import org.kaazing.gateway.client.util.HttpURI;
 import org.kaazing.gateway.client.util.WrappedByteBuffer;
+import org.kaazing.net.impl.util.SharedScheduler;
 
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.Queue;
 import java.util.Set;
-import java.util.Timer;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -49,7 +49,7 @@ class DownstreamChannel extends Channel {
     //--------Idle Timeout-------------//
     final AtomicInteger idleTimeout = new AtomicInteger();
     final AtomicLong lastMessageTimestamp = new AtomicLong();
-    Timer idleTimer = null;
+    SharedScheduler.Task idleTimer = null;
     
     /** Cookie required for auth credentials */
     String cookie;
@@ -32,11 +32,10 @@ import org.kaazing.gateway.client.impl.ws.CloseCommandMessage;
 import org.kaazing.gateway.client.impl.ws.WebSocketReAuthenticateHandler;
 import org.kaazing.gateway.client.util.HttpURI;
 import org.kaazing.gateway.client.util.WrappedByteBuffer;
+import org.kaazing.net.impl.util.SharedScheduler;
 
 import java.net.URISyntaxException;
 import java.nio.charset.Charset;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -104,15 +103,8 @@ class DownstreamHandlerImpl implements DownstreamHandler {
             // since attempting detection for HTTPS can also lead to problems if SSL handshake
             // takes more than 5 seconds to complete
             if (!DISABLE_FALLBACK && channel.attemptProxyModeFallback.get()) {
-                TimerTask timerTask = new TimerTask() {
-
-                    @Override
-                    public void run() {
-                        fallbackToProxyMode(channel);
-                    }
-                };
-                Timer t = new Timer("ProxyModeFallback", true);
-                t.schedule(timerTask, PROXY_MODE_TIMEOUT_MILLIS);
+                SharedScheduler.schedule(() -> fallbackToProxyMode(channel),
+                        PROXY_MODE_TIMEOUT_MILLIS);
             }
         } catch (Exception e) {
             LOG.log(Level.FINE, e.getMessage(), e);
@@ -165,15 +157,8 @@ class DownstreamHandlerImpl implements DownstreamHandler {
             downstreamChannel.idleTimer = null;
         }
         
-        downstreamChannel.idleTimer = new Timer();
-        downstreamChannel.idleTimer.schedule(new TimerTask() {
-            
-            @Override
-            public void run() {
-                idleTimerHandler(downstreamChannel);
-            }
-            
-        }, delayInMilliseconds);
+        downstreamChannel.idleTimer = SharedScheduler.schedule(
+                () -> idleTimerHandler(downstreamChannel), delayInMilliseconds);
     }
     
     private void idleTimerHandler(DownstreamChannel downstreamChannel) {
@@ -28,6 +28,7 @@ import org.kaazing.gateway.client.transport.LoadEvent;
 import org.kaazing.gateway.client.transport.OpenEvent;
 import org.kaazing.gateway.client.transport.ProgressEvent;
 import org.kaazing.gateway.client.transport.ReadyStateChangedEvent;
+import org.kaazing.net.impl.util.SharedScheduler;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -101,6 +102,14 @@ public class HttpRequestDelegateImpl implements HttpRequestDelegate {
             reader.stop();
             reader = null;
         }
+        // stopping the reader isn't enough if it's blocked reading from a connection which has
+        // gone quiet; closing the connection fails the read, and frees the thread and socket.
+        // Some HttpURLConnection implementations only close once the read in progress returns,
+        // so don't make the caller wait for that.
+        final HttpURLConnection toClose = connection;
+        if (toClose != null) {
+            SharedScheduler.execute(toClose::disconnect);
+        }
     }
 
     public String getAllResponseHeaders() {
@@ -261,11 +270,15 @@ public class HttpRequestDelegateImpl implements HttpRequestDelegate {
 
             } catch (IOException e) {
                 LOG.severe(e.toString());
-                listener.errorOccurred(new ErrorEvent(e));
+                if (!stopped.get()) {
+                    listener.errorOccurred(new ErrorEvent(e));
+                }
                 return;
             } catch (Exception ex) {
                 LOG.log(Level.FINE, ex.getMessage(), ex);
-                listener.errorOccurred(new ErrorEvent(ex));
+                if (!stopped.get()) {
+                    listener.errorOccurred(new ErrorEvent(ex));
+                }
                 return;
             }
 
@@ -285,8 +298,8 @@ public class HttpRequestDelegateImpl implements HttpRequestDelegate {
                 byte[] payloadBuffer = new byte[4096]; // read in chunks
                 while (!stopped.get()) {
                     int numberOfBytesRead = in.read(payloadBuffer, 0, payloadBuffer.length);
-                    if (numberOfBytesRead == -1) {
-                        // end of stream, break from loop
+                    if (numberOfBytesRead == -1 || stopped.get()) {
+                        // end of stream, or aborted while reading: break from loop
                         break;
                     }
                     ByteBuffer payload = ByteBuffer.wrap(payloadBuffer, 0, numberOfBytesRead);
@@ -327,13 +340,20 @@ public class HttpRequestDelegateImpl implements HttpRequestDelegate {
                     }
                 }
             } catch (IOException e) {
+                // aborting closes the connection, which fails any read in progress
+                if (stopped.get()) {
+                    LOG.fine(e.toString());
+                    return;
+                }
                 LOG.severe(e.toString());
                 if (!requestCompleted.get()) {
                     listener.errorOccurred(new ErrorEvent(e));
                 }
             } catch (Exception ex) {
                 LOG.log(Level.FINE, ex.getMessage(), ex);
-                listener.errorOccurred(new ErrorEvent(ex));
+                if (!stopped.get()) {
+                    listener.errorOccurred(new ErrorEvent(ex));
+                }
             }
         }
 
@@ -36,6 +36,7 @@ import org.kaazing.gateway.client.transport.http.HttpRequestDelegateFactory;
 import org.kaazing.gateway.client.transport.http.HttpRequestDelegateImpl;
 import org.kaazing.gateway.client.transport.http.HttpRequestDelegateListener;
 import org.kaazing.gateway.client.transport.ws.WsMessage.Kind;
+import org.kaazing.net.impl.util.SharedScheduler;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -53,8 +54,6 @@ import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -121,7 +120,7 @@ public class WebSocketDelegateImpl implements WebSocketDelegate {
     //--------Idle Timeout-------------//
     private final AtomicInteger idleTimeout = new AtomicInteger();
     private final AtomicLong lastMessageTimestamp = new AtomicLong();
-    private Timer idleTimer = null;
+    private SharedScheduler.Task idleTimer = null;
     
     //WebSocket rfc6455 properties
     private ReadyState readyState = ReadyState.CONNECTING; 
@@ -202,15 +201,7 @@ public class WebSocketDelegateImpl implements WebSocketDelegate {
             idleTimer = null;
         }
         
-        idleTimer = new Timer("IdleTimer", true);
-        idleTimer.schedule(new TimerTask() {
-            
-            @Override
-            public void run() {
-                idleTimerHandler();
-            }
-            
-        }, delayInMilliseconds);
+        idleTimer = SharedScheduler.schedule(this::idleTimerHandler, delayInMilliseconds);
     }
     
     private void idleTimerHandler() {
@@ -676,22 +667,12 @@ public class WebSocketDelegateImpl implements WebSocketDelegate {
         // connection closed and MUST close the underlying TCP connection.
         // Schedule a timer to close the underlying Socket connection if the CLOSE frame is not 
         // received from the Gateway within 5 seconds.
-        Timer t = new Timer("SocketCloseTimer", true);
-        t.schedule(new TimerTask() {
-			
-			@Override
-			public void run() {
-			    try {
-    				if (WebSocketDelegateImpl.this.readyState != ReadyState.CLOSED) {
-    				    stopIdleTimer();
-    					closeSocket();	
-    				}
-			    }
-			    finally {
-				    cancel();
-			    }
-			}
-		}, 5000);
+        SharedScheduler.schedule(() -> {
+            if (WebSocketDelegateImpl.this.readyState != ReadyState.CLOSED) {
+                stopIdleTimer();
+                closeSocket();
+            }
+        }, 5000);
         
         //else do nothing for CLOSING and CLOSED
     }
@@ -21,8 +21,6 @@
 
 package org.kaazing.net.impl.util;
 
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.concurrent.atomic.AtomicLong;
 
 public class ResumableTimer {
@@ -33,7 +31,7 @@ public class ResumableTimer {
 
     private AtomicLong           delay;      // milliseconds
     private AtomicLong           startTime;  // milliseconds since epoch
-    private Timer                timer;
+    private SharedScheduler.Task timer;
     private boolean              updateDelayWhenPaused;
     
     public ResumableTimer(Runnable runnable, long delay, boolean updateDelayWhenPaused) {
@@ -99,9 +97,8 @@ public class ResumableTimer {
             throw new IllegalStateException("Timer delay cannot be negative");
         }
 
-        timer = new Timer("ResumableTimer", true);
         startTime.compareAndSet(startTime.get(), System.currentTimeMillis());
-        timer.schedule(new RunnableTask(runnable), delay.get());
+        timer = SharedScheduler.schedule(new RunnableTask(runnable), delay.get());
     }
     
     public synchronized void start() {
@@ -114,7 +111,7 @@ public class ResumableTimer {
         timer = null;
     }
 
-    private class RunnableTask extends TimerTask {
+    private class RunnableTask implements Runnable {
         private final Runnable runnable;
         
         public RunnableTask(Runnable runnable) {
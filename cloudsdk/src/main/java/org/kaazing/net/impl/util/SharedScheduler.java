@@ -0,0 +1,167 @@
+/**
+ * Parts of this code copyright (c) 2007-2014 Kaazing Corporation. All rights reserved.
+ * <p/>
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.kaazing.net.impl.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Process-wide scheduler for the timers used by the SSE and WebSocket transports: reconnects,
+ * idle timeouts, close timeouts, and {@link ResumableTimer}.  Replaces the java.util.Timer
+ * instances which were created per connection (each with its own thread).  Its workers also
+ * run one-off blocking work handed to {@link #execute(Runnable)}.
+ * <p>
+ * A single timer thread keeps track of when tasks are due.  Due tasks are handed off to a
+ * pool of reusable worker threads, since several of them do blocking network I/O (e.g.:
+ * reconnecting) and must not hold up other timers.  All threads are daemon threads, and exit
+ * after a period of inactivity.
+ */
+public final class SharedScheduler {
+
+    private static final int KEEP_ALIVE_SECONDS = 10;
+
+    // Cancelled tasks stay in the timer queue until they're due; purge them every so often,
+    // since idle timers are cancelled and rescheduled frequently.  (setRemoveOnCancelPolicy()
+    // would avoid this, but isn't available before Android 5.0.)
+    private static final int CANCELLATIONS_BETWEEN_PURGES = 64;
+
+    private static final ScheduledThreadPoolExecutor TIMER;
+    private static final ExecutorService WORKERS;
+
+    private static final AtomicInteger pendingTaskCount = new AtomicInteger();
+    private static final AtomicInteger cancellationsSincePurge = new AtomicInteger();
+
+    static {
+        TIMER = new ScheduledThreadPoolExecutor(1, newThreadFactory("SharedScheduler timer"));
+        TIMER.setKeepAliveTime(KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+        TIMER.allowCoreThreadTimeOut(true);
+
+        WORKERS = new ThreadPoolExecutor(0, Integer.MAX_VALUE,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                newThreadFactory("SharedScheduler worker"));
+    }
+
+    private SharedScheduler() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Run <code>runnable</code> once, after <code>delayMillis</code> milliseconds.
+     */
+    public static Task schedule(Runnable runnable, long delayMillis) {
+        if (runnable == null) {
+            throw new NullPointerException("runnable is null");
+        }
+
+        Task task = new Task(runnable);
+        pendingTaskCount.incrementAndGet();
+        task.future = TIMER.schedule(task::dispatch, Math.max(0, delayMillis),
+                TimeUnit.MILLISECONDS);
+        return task;
+    }
+
+    /**
+     * Run <code>runnable</code> on a worker thread as soon as possible, for short blocking work
+     * which shouldn't hold up the caller, e.g.: closing a connection.
+     */
+    public static void execute(Runnable runnable) {
+        if (runnable == null) {
+            throw new NullPointerException("runnable is null");
+        }
+        WORKERS.execute(runnable);
+    }
+
+    /**
+     * @return the number of tasks which have been scheduled, but have neither run nor been
+     * cancelled yet
+     */
+    public static int getPendingTimerCount() {
+        return pendingTaskCount.get();
+    }
+
+
+    /**
+     * Handle on a scheduled task.
+     */
+    public static final class Task {
+
+        private final Runnable runnable;
+        private final AtomicBoolean finished = new AtomicBoolean(false);
+        private volatile ScheduledFuture<?> future;
+
+        private Task(Runnable runnable) {
+            this.runnable = runnable;
+        }
+
+        /**
+         * Prevent the task from running, if it hasn't started yet.
+         *
+         * @return true if the task was cancelled, false if it had already started or been
+         * cancelled
+         */
+        public boolean cancel() {
+            if (!finished.compareAndSet(false, true)) {
+                return false;
+            }
+            pendingTaskCount.decrementAndGet();
+
+            ScheduledFuture<?> f = future;
+            if (f != null) {
+                f.cancel(false);
+            }
+            if (cancellationsSincePurge.incrementAndGet() >= CANCELLATIONS_BETWEEN_PURGES) {
+                cancellationsSincePurge.set(0);
+                TIMER.purge();
+            }
+            return true;
+        }
+
+        public boolean isPending() {
+            return !finished.get();
+        }
+
+        // called on the timer thread
+        private void dispatch() {
+            if (finished.compareAndSet(false, true)) {
+                pendingTaskCount.decrementAndGet();
+                WORKERS.execute(runnable);
+            }
+        }
+    }
+
+
+    private static ThreadFactory newThreadFactory(final String namePrefix) {
+        final AtomicInteger threadCount = new AtomicInteger(1);
+        return runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + " #" + threadCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
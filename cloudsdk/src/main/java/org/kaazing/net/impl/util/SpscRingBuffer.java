@@ -0,0 +1,230 @@
+/**
+ * Parts of this code copyright (c) 2007-2014 Kaazing Corporation. All rights reserved.
+ * <p/>
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.kaazing.net.impl.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded single-producer/single-consumer ring buffer, used to hand messages from the network
+ * thread (the producer) to the SseEventReader/WebSocketMessageReader (the consumer).
+ * <p>
+ * Replaces the old ArrayBlockingQueue-based BlockingQueueImpl, and keeps its end-of-stream
+ * semantics: after {@link #done()}, {@link #put(Object)} silently drops elements, and
+ * {@link #take()} returns whatever is left and then throws InterruptedException.
+ * {@link #reset()} clears the buffer and makes it usable again.
+ * <p>
+ * Neither side takes a lock: elements are published through the head and tail counters, and a
+ * side only parks when the buffer is empty (consumer) or full (producer).  There must be at
+ * most one producer and one consumer at any given time; callers which may switch threads
+ * (e.g.: a new network thread after reconnecting) must serialize access themselves.
+ *
+ * @param <E>   element type
+ */
+public class SpscRingBuffer<E> {
+
+    // ### TODO: Maybe expose an API on WebSocket/WsURLConnection for developers
+    //           to specify the number of incoming messages that can be held
+    //           before we start pushing on the network.
+    public static final int DEFAULT_CAPACITY = 32;
+
+    // how many times a side re-checks the buffer, yielding in between, before parking; the
+    // other side is usually just about to catch up, and parking and unparking is expensive
+    private static final int SPINS_BEFORE_PARKING = 64;
+
+    private static final String INTERRUPTED_MESSAGE =
+            "Reader has been interrupted maybe the connection is closed";
+
+    private final Object[] buffer;
+    private final int mask;
+
+    // index of the next element to take; only advanced by the consumer (or reset())
+    private final AtomicLong head = new AtomicLong();
+    // index of the next free slot; only advanced by the producer
+    private final AtomicLong tail = new AtomicLong();
+
+    // each side's last view of the other side's counter, to avoid re-reading it on every call
+    private long headCache = 0;
+    private long tailCache = 0;
+
+    private volatile Thread parkedProducer;
+    private volatile Thread parkedConsumer;
+    private volatile boolean done = false;
+
+    public SpscRingBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity  rounded up to the next power of two
+     */
+    public SpscRingBuffer(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        buffer = new Object[size];
+        mask = size - 1;
+    }
+
+    public int capacity() {
+        return buffer.length;
+    }
+
+    /**
+     * Add an element, waiting for space if the buffer is full.  Pushing back on the producer
+     * like this pushes back on the network, since the producer is the network reader.
+     * <p>
+     * Does nothing once {@link #done()} has been called.
+     */
+    public void put(E element) throws InterruptedException {
+        if (element == null) {
+            throw new NullPointerException();
+        }
+
+        long t = tail.get();
+        int spins = 0;
+        while (t - headCache >= buffer.length) {
+            headCache = head.get();
+            if (t - headCache < buffer.length) {
+                break;
+            }
+            if (done) {
+                return;
+            }
+            if (spins++ < SPINS_BEFORE_PARKING) {
+                Thread.yield();
+                continue;
+            }
+            parkedProducer = Thread.currentThread();
+            // re-check after advertising that we're about to park, so that a take() which
+            // happened in between can't be missed
+            if (t - head.get() >= buffer.length && !done) {
+                LockSupport.park(this);
+            }
+            parkedProducer = null;
+            if (Thread.interrupted()) {
+                throw new InterruptedException(INTERRUPTED_MESSAGE);
+            }
+        }
+
+        if (done) {
+            return;
+        }
+        buffer[(int) t & mask] = element;
+        tail.set(t + 1);
+        unpark(parkedConsumer);
+    }
+
+    /**
+     * Remove the oldest element, waiting for one to arrive if the buffer is empty.
+     *
+     * @throws InterruptedException if the buffer is empty and {@link #done()} has been called,
+     *                              or if the calling thread is interrupted while waiting
+     */
+    @SuppressWarnings("unchecked")
+    public E take() throws InterruptedException {
+        long h = head.get();
+        int spins = 0;
+        while (h >= tailCache) {
+            tailCache = tail.get();
+            if (h < tailCache) {
+                break;
+            }
+            if (done) {
+                throw new InterruptedException(INTERRUPTED_MESSAGE);
+            }
+            if (spins++ < SPINS_BEFORE_PARKING) {
+                Thread.yield();
+                continue;
+            }
+            parkedConsumer = Thread.currentThread();
+            // re-check after advertising that we're about to park, see put()
+            if (h >= tail.get() && !done) {
+                LockSupport.park(this);
+            }
+            parkedConsumer = null;
+            if (Thread.interrupted()) {
+                throw new InterruptedException(INTERRUPTED_MESSAGE);
+            }
+        }
+
+        int index = (int) h & mask;
+        E element = (E) buffer[index];
+        buffer[index] = null;
+        head.set(h + 1);
+        unpark(parkedProducer);
+        return element;
+    }
+
+    public int size() {
+        // read head first so that a concurrent take() can't make the result negative
+        long h = head.get();
+        long t = tail.get();
+        return (int) Math.max(0, Math.min(t - h, buffer.length));
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Mark the end of the stream, and wake up any waiting producer or consumer.
+     */
+    public void done() {
+        done = true;
+        unpark(parkedProducer);
+        unpark(parkedConsumer);
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * Discard any buffered elements and clear the {@link #done()} flag.  Must not be called
+     * while a producer or consumer is actively using the buffer.
+     */
+    public void reset() {
+        // Wake up threads that maybe blocked to retrieve data.
+        unpark(parkedProducer);
+        unpark(parkedConsumer);
+
+        long t = tail.get();
+        for (long i = head.get(); i < t; i++) {
+            buffer[(int) i & mask] = null;
+        }
+        head.set(t);
+        headCache = t;
+        tailCache = t;
+        done = false;
+    }
+
+    private static void unpark(Thread thread) {
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+}
@@ -22,8 +22,6 @@
 
 package org.kaazing.net.sse.impl;
 
-import org.kaazing.net.sse.SseEventSource;
-
 import java.net.URI;
 import java.net.URISyntaxException;
 
@@ -39,7 +37,7 @@ public class AuthenticatedEventSourceFactory extends DefaultEventSourceFactory {
     }
 
     @Override
-    public SseEventSource createEventSource(URI location) throws URISyntaxException {
+    public AuthenticatedSseEventSourceImpl createEventSource(URI location) throws URISyntaxException {
 
         String scheme = location.getScheme();
         if (!scheme.toLowerCase().equals("sse")  &&
@@ -49,7 +47,7 @@ public class AuthenticatedEventSourceFactory extends DefaultEventSourceFactory {
             throw new URISyntaxException(location.toString(), s);
         }
 
-        SseEventSourceImpl eventSource = new AuthenticatedSseEventSourceImpl(location, cloud);
+        AuthenticatedSseEventSourceImpl eventSource = new AuthenticatedSseEventSourceImpl(location, cloud);
 
         // Set up the defaults from the factory.
         eventSource.setFollowRedirect(getDefaultFollowRedirect());
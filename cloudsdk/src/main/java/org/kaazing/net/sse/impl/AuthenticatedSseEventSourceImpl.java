@@ -23,7 +23,7 @@
 package org.kaazing.net.sse.impl;
 
 import org.kaazing.net.http.HttpRedirectPolicy;
-import org.kaazing.net.impl.util.BlockingQueueImpl;
+import org.kaazing.net.impl.util.SpscRingBuffer;
 import org.kaazing.net.sse.SseEventReader;
 import org.kaazing.net.sse.SseException;
 
@@ -50,7 +50,7 @@ public class AuthenticatedSseEventSourceImpl extends SseEventSourceImpl {
     }
 
     private final SseEventReaderImpl _eventReader;
-    private final BlockingQueueImpl<Object> _sharedQueue;
+    private final SpscRingBuffer<Object> _sharedQueue;
     private final URI _location;
 
     private SseEventStream _eventStream;
@@ -59,6 +59,9 @@ public class AuthenticatedSseEventSourceImpl extends SseEventSourceImpl {
     private ReadyState _readyState;
     private SseException _exception;
     private ParticleCloud cloud;
+    private volatile SseEventStreamListener _pushListener;
+    private volatile SseReconnectListener _reconnectListener;
+    private volatile long _stallTimeout = AuthenticatedSseEventStream.DEFAULT_STALL_TIMEOUT_MILLIS;
 
     public AuthenticatedSseEventSourceImpl(URI location, ParticleCloud cloud) {
         super(location);
@@ -82,7 +85,7 @@ public class AuthenticatedSseEventSourceImpl extends SseEventSourceImpl {
 
         // Used by the producer(i.e. the eventSourceListener) and the
         // consumer(i.e. the SseEventReader).
-        _sharedQueue = new BlockingQueueImpl<>();
+        _sharedQueue = new SpscRingBuffer<>();
         _eventReader = new SseEventReaderImpl(this, _sharedQueue);
     }
 
@@ -111,9 +114,13 @@ public class AuthenticatedSseEventSourceImpl extends SseEventSourceImpl {
             throw new SseException(s);
         }
 
-        _eventStream = new AuthenticatedSseEventStream(_location.toString(), cloud);
-        _eventStream.setListener(_eventStreamListener);
-        _eventStream.setRetryTimeout(_retryTimeout);
+        AuthenticatedSseEventStream eventStream = new AuthenticatedSseEventStream(
+                _location.toString(), cloud);
+        eventStream.setListener(_eventStreamListener);
+        eventStream.setRetryTimeout(_retryTimeout);
+        eventStream.setReconnectListener(_reconnectListener);
+        eventStream.setStallTimeout(_stallTimeout);
+        _eventStream = eventStream;
 
         // Ensure that the reader is reset and ready to block the consumer
         // if no data has been produced.
@@ -170,6 +177,36 @@ public class AuthenticatedSseEventSourceImpl extends SseEventSourceImpl {
         }
     }
 
+    /**
+     * Deliver events straight to the given listener, on the transport thread, as soon as they
+     * are parsed, instead of queueing them up for the {@link SseEventReader}.  Errors which
+     * occur after the connection has been opened are also reported to the listener.
+     * <p>
+     * Must be called before {@link #connect()}.  Pass null to go back to the pull model.
+     */
+    public void setPushListener(SseEventStreamListener listener) {
+        _pushListener = listener;
+    }
+
+    /**
+     * Observe the stream reconnecting after it loses an established connection.
+     * <p>
+     * Must be called before {@link #connect()}.
+     */
+    public void setReconnectListener(SseReconnectListener listener) {
+        _reconnectListener = listener;
+    }
+
+    /**
+     * How long an open connection may go without receiving anything before it's dropped and
+     * re-established, or 0 to never drop it.
+     * <p>
+     * Must be called before {@link #connect()}.
+     */
+    public void setStallTimeout(long millis) {
+        _stallTimeout = millis;
+    }
+
     // ---------------------- Internal Implementation ------------------------
     public SseException getException() {
         return _exception;
@@ -187,7 +224,7 @@ public class AuthenticatedSseEventSourceImpl extends SseEventSourceImpl {
         return (_readyState == ReadyState.CLOSED);
     }
 
-    public BlockingQueueImpl<Object> getSharedQueue() {
+    public SpscRingBuffer<Object> getSharedQueue() {
         return _sharedQueue;
     }
 
@@ -206,12 +243,16 @@ public class AuthenticatedSseEventSourceImpl extends SseEventSourceImpl {
             return;
         }
 
-        synchronized (_sharedQueue) {
-            try {
-                _sharedQueue.put(new SsePayload(eventName, data));
-            } catch (InterruptedException ex) {
-                _LOG.i(ex.getMessage(), ex);
-            }
+        SseEventStreamListener pushListener = _pushListener;
+        if (pushListener != null) {
+            pushListener.messageReceived(eventName, data);
+            return;
+        }
+
+        try {
+            _sharedQueue.put(new SsePayload(eventName, data));
+        } catch (InterruptedException ex) {
+            _LOG.i(ex.getMessage(), ex);
         }
     }
 
@@ -235,12 +276,20 @@ public class AuthenticatedSseEventSourceImpl extends SseEventSourceImpl {
                 : new SseException(exception);
         setException(ex);
 
+        // Failures during connect() are thrown from connect() itself, so only report
+        // failures on an established connection to the push listener.
+        boolean wasOpen = (_readyState == ReadyState.OPEN);
         _readyState = ReadyState.CLOSED;
 
         cleanupAfterClose();
 
         // Unblock threads so that they can proceed.
         notifyAll();
+
+        SseEventStreamListener pushListener = _pushListener;
+        if (wasOpen && pushListener != null) {
+            pushListener.streamErrored(ex);
+        }
     }
 
     private synchronized void cleanupAfterClose() {
@@ -33,12 +33,11 @@ import org.kaazing.gateway.client.impl.http.HttpResponse;
 import org.kaazing.gateway.client.impl.ws.ReadyState;
 import org.kaazing.gateway.client.util.HttpURI;
 import org.kaazing.gateway.client.util.WrappedByteBuffer;
+import org.kaazing.net.impl.util.SharedScheduler;
 
 import java.io.IOException;
 import java.net.URI;
-import java.nio.charset.Charset;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.Random;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -47,16 +46,35 @@ import io.particle.android.sdk.cloud.ParticleCloud;
 
 /**
  * ServerSentEvent stream implementation.
+ * <p>
+ * Once a connection has been opened, losing it (whether the server closes it or it fails) is
+ * not reported as an error right away.  Instead the stream reconnects, sending the ID of the
+ * last event received in a Last-Event-ID header so that the server can resume from there.
+ * Attempts are spaced out using exponential backoff with full jitter, capped at
+ * {@link #MAX_RECONNECT_DELAY_MILLIS}, so that clients on a flapping network don't all hit the
+ * server in lockstep.  After {@link #MAX_RECONNECT_ATTEMPTS} consecutive failed attempts, the
+ * error is reported to the listener.
+ * <p>
+ * A half-open TCP connection can stop delivering anything without ever failing.  The server
+ * sends keep-alive comments regularly, so once a connection has been open for a while without
+ * receiving a single byte (see {@link #setStallTimeout(long)}), it's dropped, and the stream
+ * reconnects right away.
  */
 public class AuthenticatedSseEventStream extends SseEventStream {
 
-    private static final String MESSAGE = "message";
     private static final String CLASS_NAME = AuthenticatedSseEventStream.class.getName();
     private static final Logger LOG = Logger.getLogger(CLASS_NAME);
-    private static final Charset UTF_8 = Charset.forName("UTF-8");
 
-    private final StringBuffer dataBuffer = new StringBuffer();
-    private transient static final Timer timer = new Timer("reconnect", true);
+    private static final String HEADER_LAST_EVENT_ID = "Last-Event-ID";
+
+    // the retry timeout is the base of the backoff, but never less than this
+    static final long MIN_RECONNECT_DELAY_MILLIS = 1000;
+    static final long MAX_RECONNECT_DELAY_MILLIS = 60 * 1000;
+    static final int MAX_RECONNECT_ATTEMPTS = 10;
+
+    public static final long DEFAULT_STALL_TIMEOUT_MILLIS = 60 * 1000;
+
+    private static final Random random = new Random();
 
     static final HttpRequestHandlerFactory SSE_HANDLER_FACTORY = () -> {
         HttpRequestAuthenticationHandler authHandler = new HttpRequestAuthenticationHandler();
@@ -76,14 +94,26 @@ public class AuthenticatedSseEventStream extends SseEventStream {
     private String sseLocation;
     private long retry = 3000; // same as actionscript implementation
     private boolean immediateReconnect = false;
-    private String messageBuffer = "";
-    private HttpRequest sseSource;
+    private final SseEventParser parser = new SseEventParser(new EventStreamParserListener());
+    // the current connection; read by the reader threads of replaced ones too
+    private volatile HttpRequest sseSource;
     private AtomicBoolean progressEventReceived = new AtomicBoolean(false);
-    private AtomicBoolean reconnected = new AtomicBoolean(false);
     private HttpRequestHandler sseHandler;
     private SseEventStreamListener listener;
+    private SseReconnectListener reconnectListener;
     private final ParticleCloud cloud;
-    private String name = MESSAGE;
+
+    // set once a connection has been opened; only then are lost connections re-established
+    private boolean everOpened = false;
+    // consecutive reconnection attempts which haven't received anything yet
+    private int reconnectAttempts = 0;
+    private SharedScheduler.Task pendingReconnect;
+
+    private volatile long stallTimeoutMillis = DEFAULT_STALL_TIMEOUT_MILLIS;
+    // when anything was last received, or the current connection attempt started
+    private volatile long lastReceivedNanos = System.nanoTime();
+    // at most one per stream, rescheduled at most once per stall timeout
+    private SharedScheduler.Task stallCheck;
 
     public AuthenticatedSseEventStream(String sseLoc, ParticleCloud cloud) throws IOException {
         super(sseLoc);
@@ -108,54 +138,43 @@ public class AuthenticatedSseEventStream extends SseEventStream {
     public void stop() {
         LOG.entering(CLASS_NAME, "stop");
         readyState = ReadyState.CLOSED;
+        synchronized (this) {
+            if (pendingReconnect != null) {
+                pendingReconnect.cancel();
+                pendingReconnect = null;
+            }
+            if (stallCheck != null) {
+                stallCheck.cancel();
+                stallCheck = null;
+            }
+        }
         sseHandler.processAbort(sseSource);
         aborted = true;
     }
 
     public void connect() throws IOException {
         LOG.entering(CLASS_NAME, "connect");
-        if (lastEventId != null && (lastEventId.length() > 0)) {
-            sseLocation += (!sseLocation.contains("?") ? "?" : "&") + ".ka=" + lastEventId;
+
+        // drop any partial line or event left over from a previous connection
+        parser.reset();
+        lastReceivedNanos = System.nanoTime();
+        synchronized (this) {
+            if (stallCheck == null) {
+                scheduleStallCheck(stallTimeoutMillis);
+            }
         }
 
         try {
             HttpURI uri = new HttpURI(this.sseLocation);
             sseSource = new HttpRequest(Method.GET, uri, true);
             sseSource.setHeader("Authorization", "Bearer " + this.cloud.getAccessToken());
-            sseHandler.processOpen(sseSource);
-
-            if (!reconnected.get()) {
-                TimerTask timerTask = new TimerTask() {
-                    @Override
-                    public void run() {
-                        // TODO: Why is this commented out? - no fallback to long polling?
-
-                        // if (!SseEventStream.this.progressEventReceived.get() && readyState != ReadyState.CLOSED) {
-                        // if (sseLocation.indexOf("?") == -1) {
-                        // sseLocation += "?.ki=p";
-                        // }
-                        // else {
-                        // sseLocation += "&.ki=p";
-                        // }
-                        // listener.reconnectScheduled = true;
-                        // reconnected.set(true);
-                        // retry = 0;
-                        // try {
-                        // connect();
-                        // }
-                        // catch (IOException e) {
-                        // // TODO Auto-generated catch block
-                        // e.printStackTrace();
-                        // }
-                        // }
-                    }
-                };
-                Timer timer = new Timer();
-                timer.schedule(timerTask, 3000);
+            if (lastEventId != null && (lastEventId.length() > 0)) {
+                sseSource.setHeader(HEADER_LAST_EVENT_ID, lastEventId);
             }
+            sseHandler.processOpen(sseSource);
         } catch (Exception e) {
             LOG.log(Level.INFO, e.getMessage(), e);
-            doError(e);
+            connectionLost(e, false);
         }
     }
 
@@ -167,123 +186,171 @@ public class AuthenticatedSseEventStream extends SseEventStream {
         retry = millis;
     }
 
-    private synchronized void reconnect() {
-        LOG.entering(CLASS_NAME, "reconnect");
-        if (readyState != ReadyState.CLOSED) {
-            TimerTask task = new TimerTask() {
-                @Override
-                public void run() {
-                    try {
-                        connect();
-                    } catch (IOException e) {
-                        LOG.log(Level.INFO, e.getMessage(), e);
-                        throw new RuntimeException(e);
-                    }
-                }
-            };
-            timer.schedule(task, retry);
+    public void setReconnectListener(SseReconnectListener reconnectListener) {
+        this.reconnectListener = reconnectListener;
+    }
+
+    /**
+     * @param millis how long an open connection may go without receiving anything before it's
+     *               dropped and re-established; 0 to never drop it
+     */
+    public void setStallTimeout(long millis) {
+        stallTimeoutMillis = millis;
+    }
+
+    // must be called while holding the lock on "this"
+    private void scheduleStallCheck(long delayMillis) {
+        if (stallTimeoutMillis > 0) {
+            stallCheck = SharedScheduler.schedule(this::checkForStall, delayMillis);
         }
     }
 
-    private synchronized void processProgressEvent(String message) {
-        LOG.entering(CLASS_NAME, "processProgressEvent", message);
-        String line;
+    private void checkForStall() {
+        HttpRequest stalledRequest;
+        long quietMillis;
+        synchronized (this) {
+            stallCheck = null;
+            if (readyState == ReadyState.CLOSED || aborted || errored) {
+                return;
+            }
+            quietMillis = (System.nanoTime() - lastReceivedNanos) / 1000000;
+            if (!everOpened || pendingReconnect != null || quietMillis < stallTimeoutMillis) {
+                // not open yet, already reconnecting, or still alive
+                scheduleStallCheck(Math.max(stallTimeoutMillis - quietMillis, 1));
+                return;
+            }
+            stalledRequest = sseSource;
+        }
+
+        LOG.log(Level.INFO, "Nothing received for " + quietMillis + "ms, reconnecting");
+        if (reconnectListener != null) {
+            reconnectListener.streamStalled(quietMillis);
+        }
+        // schedule the reconnect first, so that errors from aborting don't add a backoff delay
+        connectionLost(new IOException("Event stream stalled, nothing received for "
+                + quietMillis + "ms"), true);
+        sseHandler.processAbort(stalledRequest);
+        synchronized (this) {
+            if (stallCheck == null && readyState != ReadyState.CLOSED && !aborted) {
+                scheduleStallCheck(stallTimeoutMillis);
+            }
+        }
+    }
+
+    // Reconnect if a connection has been opened before, otherwise report the error.  A null
+    // cause means the server closed the connection.
+    private synchronized void connectionLost(Exception cause, boolean reconnectImmediately) {
+        LOG.entering(CLASS_NAME, "connectionLost", cause);
+        if (readyState == ReadyState.CLOSED || aborted || pendingReconnect != null) {
+            return;
+        }
+
+        if (!everOpened) {
+            doError((cause != null) ? cause : new IOException("Event stream closed by server"));
+            return;
+        }
+
+        if (reconnectAttempts >= MAX_RECONNECT_ATTEMPTS) {
+            Exception error = (cause != null)
+                    ? cause
+                    : new IOException("Event stream closed by server, giving up after "
+                            + reconnectAttempts + " reconnection attempts");
+            if (reconnectListener != null) {
+                reconnectListener.reconnectAbandoned(reconnectAttempts, error);
+            }
+            doError(error);
+            return;
+        }
+
+        reconnectAttempts++;
+        long delay = reconnectImmediately ? 0 : getReconnectDelay(reconnectAttempts);
+        if (reconnectListener != null) {
+            reconnectListener.reconnectScheduled(reconnectAttempts, delay, cause);
+        }
+        pendingReconnect = SharedScheduler.schedule(this::reconnect, delay);
+    }
+
+    private void reconnect() {
+        LOG.entering(CLASS_NAME, "reconnect");
+        synchronized (this) {
+            pendingReconnect = null;
+            if (readyState == ReadyState.CLOSED || aborted) {
+                return;
+            }
+        }
         try {
-            messageBuffer = messageBuffer + message;
-            String field;
-            String value;
-            immediateReconnect = false;
-            while (!aborted && !errored) {
-                line = fetchLineFromBuffer();
-                if (line == null) {
-                    break;
-                }
-
-                if (line.length() == 0 && dataBuffer.length() > 0) {
-                    synchronized (dataBuffer) {
-                        int dataBufferlength = dataBuffer.length();
-                        if (dataBuffer.charAt(dataBufferlength - 1) == '\n') {
-                            dataBuffer.replace(dataBufferlength - 1, dataBufferlength, "");
-                        }
-                        doMessage(name, dataBuffer.toString());
-                        dataBuffer.setLength(0);
-                    }
-                }
-
-                int colonAt = line.indexOf(':');
-                if (colonAt == -1) {
-                    // no colon, line is field name with empty value
-                    field = line;
-                    value = "";
-                } else if (colonAt == 0) {
-                    // leading colon indicates comment line
-                    continue;
-                } else {
-                    field = line.substring(0, colonAt);
-                    int valueAt = colonAt + 1;
-                    if (line.length() > valueAt && line.charAt(valueAt) == ' ') {
-                        valueAt++;
-                    }
-                    value = line.substring(valueAt);
-                }
-                // process the field of completed event
-                switch (field) {
-                    case "event":
-                        name = value;
-                        break;
-                    case "id":
-                        this.lastEventId = value;
-                        break;
-                    case "retry":
-                        retry = Integer.parseInt(value);
-                        break;
-                    case "data":
-                        // deliver event if data is specified and non-empty, or name is specified and not "message"
-                        if (name != null && name.length() > 0 && !MESSAGE.equals(name)) {
-                            dataBuffer.append(value).append("\n");
-                        }
-                        break;
-                    case "location":
-                        if (value.length() > 0) {
-                            this.sseLocation = value;
-                        }
-                        break;
-                    case "reconnect":
-                        immediateReconnect = true;
-                        break;
-                }
+            connect();
+        } catch (IOException e) {
+            LOG.log(Level.INFO, e.getMessage(), e);
+            connectionLost(e, false);
+        }
+    }
+
+    // "Full jitter": a random delay between 0 and the exponential backoff for this attempt
+    private long getReconnectDelay(int attempt) {
+        long base = Math.max(retry, MIN_RECONNECT_DELAY_MILLIS);
+        long ceiling = Math.min(base << Math.min(attempt - 1, 16), MAX_RECONNECT_DELAY_MILLIS);
+        return (long) (random.nextDouble() * ceiling);
+    }
+
+    private synchronized void onDataReceived() {
+        if (reconnectAttempts > 0) {
+            if (reconnectListener != null) {
+                reconnectListener.reconnected(reconnectAttempts);
             }
+            reconnectAttempts = 0;
+        }
+    }
 
-            if (immediateReconnect) {
-                retry = 0;
-                // this will be done on the load
+    private synchronized void processProgressEvent(WrappedByteBuffer payload) {
+        LOG.entering(CLASS_NAME, "processProgressEvent", payload);
+        try {
+            immediateReconnect = false;
+            if (!aborted && !errored) {
+                parser.parse(payload.array(), payload.arrayOffset() + payload.position(),
+                        payload.remaining());
             }
+            // if the server asked us to reconnect, that will be done on the load
         } catch (Exception e) {
             LOG.log(Level.INFO, e.getMessage(), e);
             doError(e);
         }
     }
 
-    private String fetchLineFromBuffer() {
-        LOG.entering(CLASS_NAME, "fetchLineFromBuffer");
-        int lf = this.messageBuffer.indexOf("\n");
-        if (lf == -1) {
-            lf = this.messageBuffer.indexOf("\r");
+    private class EventStreamParserListener implements SseEventParser.Listener {
+
+        @Override
+        public void onEvent(String eventName, String data) {
+            if (!aborted && !errored) {
+                doMessage(eventName, data);
+            }
+        }
+
+        @Override
+        public void onId(String id) {
+            lastEventId = id;
+        }
+
+        @Override
+        public void onRetry(String retryValue) {
+            retry = Integer.parseInt(retryValue);
         }
-        if (lf != -1) {
-            String ret = messageBuffer.substring(0, lf);
-            messageBuffer = messageBuffer.substring(lf + 1);
-            return ret;
+
+        @Override
+        public void onLocation(String location) {
+            sseLocation = location;
+        }
+
+        @Override
+        public void onReconnect() {
+            immediateReconnect = true;
         }
-        return null;
     }
 
     private class EventStreamHttpRequestListener implements HttpRequestListener {
         private final String CLASS_NAME = EventStreamHttpRequestListener.class.getName();
         private final Logger LOG = Logger.getLogger(CLASS_NAME);
 
-        boolean reconnectScheduled = false;
-
         EventStreamHttpRequestListener() {
             LOG.entering(CLASS_NAME, "<init>");
         }
@@ -299,22 +366,23 @@ public class AuthenticatedSseEventStream extends SseEventStream {
 
         @Override
         public void requestProgressed(HttpRequest request, WrappedByteBuffer payload) {
+            // a connection dropped as stalled may still deliver what it had buffered; that
+            // mustn't be mixed into what the parser has from the current connection
+            if (request != sseSource) {
+                return;
+            }
+            // anything counts, including keep-alive comments which the parser skips
+            lastReceivedNanos = System.nanoTime();
             progressEventReceived.set(true);
-            String response = payload.getString(UTF_8);
-            processProgressEvent(response);
+            onDataReceived();
+            processProgressEvent(payload);
         }
 
         @Override
         public void requestLoaded(HttpRequest request, HttpResponse response) {
-            // for Long polling. If we get an onload we have to
-            // reconnect.
-            if (readyState != ReadyState.CLOSED) {
-                if (immediateReconnect) {
-                    retry = 0;
-                    if (!reconnectScheduled) {
-                        reconnect();
-                    }
-                }
+            // the server has closed the stream; reconnect, right away if it asked us to
+            if (request == sseSource && readyState != ReadyState.CLOSED) {
+                connectionLost(null, immediateReconnect);
             }
         }
 
@@ -328,7 +396,10 @@ public class AuthenticatedSseEventStream extends SseEventStream {
 
         @Override
         public void errorOccurred(HttpRequest request, Exception exception) {
-            doError(exception);
+            // ignore late errors from a connection which has already been replaced
+            if (request == sseSource) {
+                connectionLost(exception, false);
+            }
         }
     }
 
@@ -340,6 +411,9 @@ public class AuthenticatedSseEventStream extends SseEventStream {
          */
         if (readyState == ReadyState.CONNECTING) {
             readyState = ReadyState.OPEN;
+            synchronized (this) {
+                everOpened = true;
+            }
             listener.streamOpened();
         }
     }
@@ -0,0 +1,273 @@
+/**
+ * Parts of this code copyright (c) 2007-2014 Kaazing Corporation. All rights reserved.
+ * <p/>
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.kaazing.net.sse.impl;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Incremental Server-Sent Events parser which works directly on the bytes read from the network.
+ * <p>
+ * Partial lines are carried over between calls to {@link #parse(byte[], int, int)} in a reusable
+ * buffer, and lines may be terminated by LF, CR, or CRLF (including a CRLF split across two
+ * chunks).  The current event name and data are kept as bytes, and Strings are only built when
+ * an event is dispatched, or for the rarely-sent id/retry/location fields.  Because decoding
+ * happens per event instead of per network chunk, multi-byte UTF-8 sequences which straddle two
+ * chunks are decoded correctly.
+ * <p>
+ * Event dispatch semantics match the previous String-based implementation: data is only
+ * collected once an event name other than "message" has been seen, and the event name is
+ * carried over to following events until a new "event" field replaces it.
+ * <p>
+ * Not thread safe; callers are expected to feed a parser from one thread at a time.
+ */
+class SseEventParser {
+
+    interface Listener {
+
+        void onEvent(String eventName, String data);
+
+        void onId(String id);
+
+        void onRetry(String retry);
+
+        void onLocation(String location);
+
+        void onReconnect();
+    }
+
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final byte LF = '\n';
+    private static final byte CR = '\r';
+    private static final byte COLON = ':';
+    private static final byte SPACE = ' ';
+
+    private static final byte[] FIELD_EVENT = ascii("event");
+    private static final byte[] FIELD_DATA = ascii("data");
+    private static final byte[] FIELD_ID = ascii("id");
+    private static final byte[] FIELD_RETRY = ascii("retry");
+    private static final byte[] FIELD_LOCATION = ascii("location");
+    private static final byte[] FIELD_RECONNECT = ascii("reconnect");
+    private static final byte[] MESSAGE = ascii("message");
+
+    private final Listener listener;
+
+    // bytes of a line which has not been terminated yet
+    private byte[] lineBuffer = new byte[256];
+    private int lineLength = 0;
+
+    // data of the event being assembled, each data line followed by LF
+    private byte[] dataBuffer = new byte[1024];
+    private int dataLength = 0;
+
+    // name of the current event, plus a cache of the last String built from it, since the same
+    // handful of event names tend to repeat over and over
+    private byte[] nameBuffer = new byte[64];
+    private int nameLength = 0;
+    private String cachedName = "message";
+    private byte[] cachedNameBytes = MESSAGE;
+
+    private boolean skipNextLf = false;
+
+    SseEventParser(Listener listener) {
+        this.listener = listener;
+        setName(MESSAGE, 0, MESSAGE.length);
+    }
+
+    /**
+     * Parse the next chunk of the stream.
+     */
+    void parse(byte[] bytes, int offset, int length) {
+        int end = offset + length;
+        int lineStart = offset;
+        int i = offset;
+
+        if (skipNextLf && i < end) {
+            // the previous chunk ended with a CR, and this one starts with the LF of a CRLF
+            skipNextLf = false;
+            if (bytes[i] == LF) {
+                i++;
+                lineStart = i;
+            }
+        }
+
+        while (i < end) {
+            byte b = bytes[i];
+            if (b != LF && b != CR) {
+                i++;
+                continue;
+            }
+
+            if (lineLength == 0) {
+                // common case: the whole line is in this chunk, so parse it in place
+                processLine(bytes, lineStart, i - lineStart);
+            } else {
+                appendToLine(bytes, lineStart, i - lineStart);
+                processLine(lineBuffer, 0, lineLength);
+                lineLength = 0;
+            }
+
+            i++;
+            if (b == CR) {
+                if (i == end) {
+                    skipNextLf = true;
+                } else if (bytes[i] == LF) {
+                    i++;
+                }
+            }
+            lineStart = i;
+        }
+
+        if (lineStart < end) {
+            appendToLine(bytes, lineStart, end - lineStart);
+        }
+    }
+
+    /**
+     * Discard any partially received line or event, e.g.: when reconnecting.
+     */
+    void reset() {
+        lineLength = 0;
+        dataLength = 0;
+        skipNextLf = false;
+    }
+
+    private void processLine(byte[] line, int offset, int length) {
+        if (length == 0) {
+            if (dataLength > 0) {
+                dispatchEvent();
+            }
+            return;
+        }
+
+        int colonAt = -1;
+        for (int i = offset; i < offset + length; i++) {
+            if (line[i] == COLON) {
+                colonAt = i;
+                break;
+            }
+        }
+
+        int fieldLength;
+        int valueStart;
+        if (colonAt == -1) {
+            // no colon, line is field name with empty value
+            fieldLength = length;
+            valueStart = offset + length;
+        } else if (colonAt == offset) {
+            // leading colon indicates comment line
+            return;
+        } else {
+            fieldLength = colonAt - offset;
+            valueStart = colonAt + 1;
+            if (valueStart < offset + length && line[valueStart] == SPACE) {
+                valueStart++;
+            }
+        }
+        int valueLength = offset + length - valueStart;
+
+        if (fieldEquals(FIELD_DATA, line, offset, fieldLength)) {
+            // deliver event if data is specified and non-empty, or name is specified and not
+            // "message"
+            if (nameLength > 0 && !nameEquals(MESSAGE)) {
+                appendToData(line, valueStart, valueLength);
+            }
+        } else if (fieldEquals(FIELD_EVENT, line, offset, fieldLength)) {
+            setName(line, valueStart, valueLength);
+        } else if (fieldEquals(FIELD_ID, line, offset, fieldLength)) {
+            listener.onId(new String(line, valueStart, valueLength, UTF_8));
+        } else if (fieldEquals(FIELD_RETRY, line, offset, fieldLength)) {
+            listener.onRetry(new String(line, valueStart, valueLength, UTF_8));
+        } else if (fieldEquals(FIELD_LOCATION, line, offset, fieldLength)) {
+            if (valueLength > 0) {
+                listener.onLocation(new String(line, valueStart, valueLength, UTF_8));
+            }
+        } else if (fieldEquals(FIELD_RECONNECT, line, offset, fieldLength)) {
+            listener.onReconnect();
+        }
+    }
+
+    private void dispatchEvent() {
+        // drop the LF which follows the last data line
+        String data = new String(dataBuffer, 0, dataLength - 1, UTF_8);
+        dataLength = 0;
+        listener.onEvent(getName(), data);
+    }
+
+    private String getName() {
+        if (!nameEquals(cachedNameBytes)) {
+            cachedNameBytes = Arrays.copyOf(nameBuffer, nameLength);
+            cachedName = new String(nameBuffer, 0, nameLength, UTF_8);
+        }
+        return cachedName;
+    }
+
+    private void setName(byte[] bytes, int offset, int length) {
+        if (length > nameBuffer.length) {
+            nameBuffer = new byte[Math.max(length, nameBuffer.length * 2)];
+        }
+        System.arraycopy(bytes, offset, nameBuffer, 0, length);
+        nameLength = length;
+    }
+
+    private boolean nameEquals(byte[] other) {
+        return fieldEquals(other, nameBuffer, 0, nameLength);
+    }
+
+    private void appendToLine(byte[] bytes, int offset, int length) {
+        lineBuffer = ensureCapacity(lineBuffer, lineLength + length);
+        System.arraycopy(bytes, offset, lineBuffer, lineLength, length);
+        lineLength += length;
+    }
+
+    private void appendToData(byte[] bytes, int offset, int length) {
+        dataBuffer = ensureCapacity(dataBuffer, dataLength + length + 1);
+        System.arraycopy(bytes, offset, dataBuffer, dataLength, length);
+        dataLength += length;
+        dataBuffer[dataLength++] = LF;
+    }
+
+    private static byte[] ensureCapacity(byte[] buffer, int required) {
+        if (required <= buffer.length) {
+            return buffer;
+        }
+        return Arrays.copyOf(buffer, Math.max(required, buffer.length * 2));
+    }
+
+    private static boolean fieldEquals(byte[] expected, byte[] bytes, int offset, int length) {
+        if (expected.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (expected[i] != bytes[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(UTF_8);
+    }
+}
@@ -21,7 +21,7 @@
 
 package org.kaazing.net.sse.impl;
 
-import org.kaazing.net.impl.util.BlockingQueueImpl;
+import org.kaazing.net.impl.util.SpscRingBuffer;
 import org.kaazing.net.sse.SseEventReader;
 import org.kaazing.net.sse.SseEventType;
 import org.kaazing.net.sse.SseException;
@@ -34,7 +34,7 @@ public class SseEventReaderImpl extends SseEventReader {
     private static final String _CLASS_NAME = SseEventReaderImpl.class.getName();
     private static final Logger _LOG = Logger.getLogger(_CLASS_NAME);
 
-    private final BlockingQueueImpl<Object>    _sharedQueue;
+    private final SpscRingBuffer<Object>    _sharedQueue;
     private final SseEventSourceImpl           _eventSource;
     
     private SsePayload                         _payload;
@@ -43,7 +43,7 @@ public class SseEventReaderImpl extends SseEventReader {
     private String                             _data;
 
     public SseEventReaderImpl(SseEventSourceImpl        eventSource,
-                              BlockingQueueImpl<Object> sharedQueue) {
+                              SpscRingBuffer<Object> sharedQueue) {
         _eventSource = eventSource;
         _sharedQueue = sharedQueue;
         
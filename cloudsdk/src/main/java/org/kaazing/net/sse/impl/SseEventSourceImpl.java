@@ -22,7 +22,7 @@
 package org.kaazing.net.sse.impl;
 
 import org.kaazing.net.http.HttpRedirectPolicy;
-import org.kaazing.net.impl.util.BlockingQueueImpl;
+import org.kaazing.net.impl.util.SpscRingBuffer;
 import org.kaazing.net.sse.SseEventReader;
 import org.kaazing.net.sse.SseEventSource;
 import org.kaazing.net.sse.SseException;
@@ -47,7 +47,7 @@ public class SseEventSourceImpl extends SseEventSource {
     private ReadyState                   _readyState;
     private SseException                 _exception;
     private SseEventReaderImpl           _eventReader;
-    private BlockingQueueImpl<Object>    _sharedQueue;
+    private SpscRingBuffer<Object>    _sharedQueue;
     private URI                          _location;
     private HttpRedirectPolicy           _redirectOption;
     private long                         _retryTimeout = 3000;
@@ -71,7 +71,7 @@ public class SseEventSourceImpl extends SseEventSource {
         
         // Used by the producer(i.e. the eventSourceListener) and the 
         // consumer(i.e. the SseEventReader).
-        _sharedQueue = new BlockingQueueImpl<>();
+        _sharedQueue = new SpscRingBuffer<>();
 
     }
 
@@ -192,7 +192,7 @@ public class SseEventSourceImpl extends SseEventSource {
         return (_readyState == ReadyState.CLOSED);
     }
     
-    public BlockingQueueImpl<Object> getSharedQueue() {
+    public SpscRingBuffer<Object> getSharedQueue() {
         return _sharedQueue;
     }
     
@@ -211,13 +211,11 @@ public class SseEventSourceImpl extends SseEventSource {
             return;
         }
         
-        synchronized (_sharedQueue) {
-            try {
-                _sharedQueue.put(new SsePayload(eventName, data));
-            } 
-            catch (InterruptedException ex) {
-                _LOG.log(Level.INFO, ex.getMessage(), ex);
-            }
+        try {
+            _sharedQueue.put(new SsePayload(eventName, data));
+        } 
+        catch (InterruptedException ex) {
+            _LOG.log(Level.INFO, ex.getMessage(), ex);
         }
     }
     
@@ -33,12 +33,10 @@ import org.kaazing.gateway.client.impl.http.HttpResponse;
 import org.kaazing.gateway.client.impl.ws.ReadyState;
 import org.kaazing.gateway.client.util.HttpURI;
 import org.kaazing.gateway.client.util.WrappedByteBuffer;
+import org.kaazing.net.impl.util.SharedScheduler;
 
 import java.io.IOException;
 import java.net.URI;
-import java.nio.charset.Charset;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -47,14 +45,8 @@ import java.util.logging.Logger;
  * ServerSentEvent stream implementation.
  */
 public class SseEventStream {
-    private static final String MESSAGE = "message";
     private static final String CLASS_NAME = SseEventStream.class.getName();
     private static final Logger LOG = Logger.getLogger(CLASS_NAME);
-    private static final Charset UTF_8 = Charset.forName("UTF-8");
-    private final StringBuffer dataBuffer = new StringBuffer();
-    private String name = MESSAGE;
-
-    private transient static final Timer timer = new Timer("reconnect", true);
 
     static final HttpRequestHandlerFactory SSE_HANDLER_FACTORY = () -> {
         HttpRequestAuthenticationHandler authHandler = new HttpRequestAuthenticationHandler();
@@ -74,10 +66,9 @@ public class SseEventStream {
     private String sseLocation;
     private long retry = 3000; // same as actionscript implementation
     private boolean immediateReconnect = false;
-    private String messageBuffer = "";
+    private final SseEventParser parser = new SseEventParser(new EventStreamParserListener());
     private HttpRequest sseSource;
     private AtomicBoolean progressEventReceived = new AtomicBoolean(false);
-    private AtomicBoolean reconnected = new AtomicBoolean(false);
     private HttpRequestHandler sseHandler;
     private SseEventStreamListener listener;
 
@@ -112,40 +103,13 @@ public class SseEventStream {
             sseLocation += (!sseLocation.contains("?") ? "?" : "&") + ".ka=" + lastEventId;
         }
 
+        // drop any partial line or event left over from a previous connection
+        parser.reset();
+
         try {
             HttpURI uri = new HttpURI(this.sseLocation);
             sseSource = new HttpRequest(Method.GET, uri, true);
             sseHandler.processOpen(sseSource);
-
-            if (!reconnected.get()) {
-                TimerTask timerTask = new TimerTask() {
-                    @Override
-                    public void run() {
-                        // TODO: Why is this commented out? - no fallback to long polling?
-
-                        // if (!SseEventStream.this.progressEventReceived.get() && readyState != ReadyState.CLOSED) {
-                        // if (sseLocation.indexOf("?") == -1) {
-                        // sseLocation += "?.ki=p";
-                        // }
-                        // else {
-                        // sseLocation += "&.ki=p";
-                        // }
-                        // listener.reconnectScheduled = true;
-                        // reconnected.set(true);
-                        // retry = 0;
-                        // try {
-                        // connect();
-                        // }
-                        // catch (IOException e) {
-                        // // TODO Auto-generated catch block
-                        // e.printStackTrace();
-                        // }
-                        // }
-                    }
-                };
-                Timer timer = new Timer();
-                timer.schedule(timerTask, 3000);
-            }
         } catch (Exception e) {
             LOG.log(Level.INFO, e.getMessage(), e);
             doError(e);
@@ -163,88 +127,24 @@ public class SseEventStream {
     private synchronized void reconnect() {
         LOG.entering(CLASS_NAME, "reconnect");
         if (readyState != ReadyState.CLOSED) {
-            TimerTask task = new TimerTask() {
-                @Override
-                public void run() {
-                    try {
-                        connect();
-                    } catch (IOException e) {
-                        LOG.log(Level.INFO, e.getMessage(), e);
-                        throw new RuntimeException(e);
-                    }
+            SharedScheduler.schedule(() -> {
+                try {
+                    connect();
+                } catch (IOException e) {
+                    LOG.log(Level.INFO, e.getMessage(), e);
+                    throw new RuntimeException(e);
                 }
-            };
-            timer.schedule(task, retry);
+            }, retry);
         }
     }
 
-    private synchronized void processProgressEvent(String message) {
-        LOG.entering(CLASS_NAME, "processProgressEvent", message);
-        String line;
+    private synchronized void processProgressEvent(WrappedByteBuffer payload) {
+        LOG.entering(CLASS_NAME, "processProgressEvent", payload);
         try {
-            messageBuffer = messageBuffer + message;
-            String field;
-            String value;
             immediateReconnect = false;
-            while (!aborted && !errored) {
-                line = fetchLineFromBuffer();
-                if (line == null) {
-                    break;
-                }
-
-                if (line.length() == 0 && dataBuffer.length() > 0) {
-                    synchronized (dataBuffer) {
-                        int dataBufferlength = dataBuffer.length();
-                        if (dataBuffer.charAt(dataBufferlength - 1) == '\n') {
-                            dataBuffer.replace(dataBufferlength - 1, dataBufferlength, "");
-                        }
-                        doMessage(name, dataBuffer.toString());
-                        dataBuffer.setLength(0);
-                    }
-                }
-
-                int colonAt = line.indexOf(':');
-                if (colonAt == -1) {
-                    // no colon, line is field name with empty value
-                    field = line;
-                    value = "";
-                } else if (colonAt == 0) {
-                    // leading colon indicates comment line
-                    continue;
-                } else {
-                    field = line.substring(0, colonAt);
-                    int valueAt = colonAt + 1;
-                    if (line.length() > valueAt && line.charAt(valueAt) == ' ') {
-                        valueAt++;
-                    }
-                    value = line.substring(valueAt);
-                }
-                // process the field of completed event
-                switch (field) {
-                    case "event":
-                        name = value;
-                        break;
-                    case "id":
-                        this.lastEventId = value;
-                        break;
-                    case "retry":
-                        retry = Integer.parseInt(value);
-                        break;
-                    case "data":
-                        // deliver event if data is specified and non-empty, or name is specified and not "message"
-                        if (name != null && name.length() > 0 && !MESSAGE.equals(name)) {
-                            dataBuffer.append(value).append("\n");
-                        }
-                        break;
-                    case "location":
-                        if (value.length() > 0) {
-                            this.sseLocation = value;
-                        }
-                        break;
-                    case "reconnect":
-                        immediateReconnect = true;
-                        break;
-                }
+            if (!aborted && !errored) {
+                parser.parse(payload.array(), payload.arrayOffset() + payload.position(),
+                        payload.remaining());
             }
 
             if (immediateReconnect) {
@@ -257,18 +157,34 @@ public class SseEventStream {
         }
     }
 
-    private String fetchLineFromBuffer() {
-        LOG.entering(CLASS_NAME, "fetchLineFromBuffer");
-        int lf = this.messageBuffer.indexOf("\n");
-        if (lf == -1) {
-            lf = this.messageBuffer.indexOf("\r");
+    private class EventStreamParserListener implements SseEventParser.Listener {
+
+        @Override
+        public void onEvent(String eventName, String data) {
+            if (!aborted && !errored) {
+                doMessage(eventName, data);
+            }
+        }
+
+        @Override
+        public void onId(String id) {
+            lastEventId = id;
+        }
+
+        @Override
+        public void onRetry(String retryValue) {
+            retry = Integer.parseInt(retryValue);
         }
-        if (lf != -1) {
-            String ret = messageBuffer.substring(0, lf);
-            messageBuffer = messageBuffer.substring(lf + 1);
-            return ret;
+
+        @Override
+        public void onLocation(String location) {
+            sseLocation = location;
+        }
+
+        @Override
+        public void onReconnect() {
+            immediateReconnect = true;
         }
-        return null;
     }
 
     private class EventStreamHttpRequestListener implements HttpRequestListener {
@@ -293,8 +209,7 @@ public class SseEventStream {
         @Override
         public void requestProgressed(HttpRequest request, WrappedByteBuffer payload) {
             progressEventReceived.set(true);
-            String response = payload.getString(UTF_8);
-            processProgressEvent(response);
+            processProgressEvent(payload);
         }
 
         @Override
@@ -0,0 +1,53 @@
+/**
+ * Parts of this code copyright (c) 2007-2014 Kaazing Corporation. All rights reserved.
+ * <p/>
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.kaazing.net.sse.impl;
+
+/**
+ * Observes an SSE stream reconnecting after its connection was lost or stalled.  Called on
+ * transport and scheduler threads, so implementations should return quickly.
+ */
+public interface SseReconnectListener {
+
+    /**
+     * @param attempt     number of this attempt since the connection was lost, starting at 1
+     * @param delayMillis how long until the attempt is made
+     * @param cause       the error which ended the previous connection, or null if the server
+     *                    closed it
+     */
+    void reconnectScheduled(int attempt, long delayMillis, Exception cause);
+
+    /**
+     * @param attempts how many attempts it took
+     */
+    void reconnected(int attempts);
+
+    /**
+     * No more attempts will be made; the stream reports <code>cause</code> as an error.
+     */
+    void reconnectAbandoned(int attempts, Exception cause);
+
+    /**
+     * Nothing was received for <code>quietMillis</code>, so the connection is assumed to be
+     * dead; it's dropped, and a reconnect is scheduled.
+     */
+    void streamStalled(long quietMillis);
+}
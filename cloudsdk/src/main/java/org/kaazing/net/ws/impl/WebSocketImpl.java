@@ -32,7 +32,7 @@ import org.kaazing.gateway.client.impl.ws.WebSocketSelectedChannel;
 import org.kaazing.gateway.client.util.WrappedByteBuffer;
 import org.kaazing.net.auth.ChallengeHandler;
 import org.kaazing.net.http.HttpRedirectPolicy;
-import org.kaazing.net.impl.util.BlockingQueueImpl;
+import org.kaazing.net.impl.util.SpscRingBuffer;
 import org.kaazing.net.impl.util.ResumableTimer;
 import org.kaazing.net.ws.WebSocket;
 import org.kaazing.net.ws.WebSocketException;
@@ -99,7 +99,7 @@ public class WebSocketImpl extends WebSocket {
     private WsWriterImpl _writer;
     private WsMessageReaderImpl _messageReader;
     private WsMessageWriterImpl _messageWriter;
-    private BlockingQueueImpl<Object> _sharedQueue;
+    private SpscRingBuffer<Object> _sharedQueue;
     private HttpRedirectPolicy _followRedirect;
     private ChallengeHandler _challengeHandler;
     private int _connectTimeout = 0;
@@ -291,7 +291,7 @@ public class WebSocketImpl extends WebSocket {
             }
             // Used by the producer(i.e. the handlerListener) and the 
             // consumer(i.e. the WebSocketMessageReader).
-            _sharedQueue = new BlockingQueueImpl<>();
+            _sharedQueue = new SpscRingBuffer<>();
 
             // ### TODO: This might be temporary till we install extensions' 
             //           handler directly in the pipeline.
@@ -445,7 +445,7 @@ public class WebSocketImpl extends WebSocket {
             if (_sharedQueue == null) {
                 // Used by the producer(i.e. the handlerListener) and the 
                 // consumer(i.e. the WebSocketMessageReader).
-                _sharedQueue = new BlockingQueueImpl<>();
+                _sharedQueue = new SpscRingBuffer<>();
             }
 
             _messageReader = new WsMessageReaderImpl(this, _sharedQueue);
@@ -912,7 +912,7 @@ public class WebSocketImpl extends WebSocket {
         return buffer.toString();
     }
 
-    private BlockingQueueImpl<Object> getSharedQueue() {
+    private SpscRingBuffer<Object> getSharedQueue() {
         return _sharedQueue;
     }
 
@@ -1068,15 +1068,13 @@ public class WebSocketImpl extends WebSocket {
             WebSocketImpl webSocket = (WebSocketImpl) cc.getWebSocket();
 
             synchronized (webSocket) {
-                BlockingQueueImpl<Object> sharedQueue = webSocket.getSharedQueue();
+                SpscRingBuffer<Object> sharedQueue = webSocket.getSharedQueue();
                 if (sharedQueue != null) {
-                    synchronized (sharedQueue) {
-                        try {
-                            ByteBuffer payload = buf.getNioByteBuffer();
-                            sharedQueue.put(payload);
-                        } catch (InterruptedException ex) {
-                            _LOG.log(Level.INFO, ex.getMessage(), ex);
-                        }
+                    try {
+                        ByteBuffer payload = buf.getNioByteBuffer();
+                        sharedQueue.put(payload);
+                    } catch (InterruptedException ex) {
+                        _LOG.log(Level.INFO, ex.getMessage(), ex);
                     }
                 }
             }
@@ -1090,14 +1088,12 @@ public class WebSocketImpl extends WebSocket {
             WebSocketImpl webSocket = (WebSocketImpl) cc.getWebSocket();
 
             synchronized (webSocket) {
-                BlockingQueueImpl<Object> sharedQueue = webSocket.getSharedQueue();
+                SpscRingBuffer<Object> sharedQueue = webSocket.getSharedQueue();
                 if (sharedQueue != null) {
-                    synchronized (sharedQueue) {
-                        try {
-                            sharedQueue.put(text);
-                        } catch (InterruptedException ex) {
-                            _LOG.log(Level.INFO, ex.getMessage(), ex);
-                        }
+                    try {
+                        sharedQueue.put(text);
+                    } catch (InterruptedException ex) {
+                        _LOG.log(Level.INFO, ex.getMessage(), ex);
                     }
                 }
             }
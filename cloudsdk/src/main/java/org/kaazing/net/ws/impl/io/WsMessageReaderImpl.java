@@ -21,7 +21,7 @@
 
 package org.kaazing.net.ws.impl.io;
 
-import org.kaazing.net.impl.util.BlockingQueueImpl;
+import org.kaazing.net.impl.util.SpscRingBuffer;
 import org.kaazing.net.ws.WebSocketException;
 import org.kaazing.net.ws.WebSocketMessageReader;
 import org.kaazing.net.ws.WebSocketMessageType;
@@ -36,14 +36,14 @@ public class WsMessageReaderImpl extends WebSocketMessageReader {
     private static final String _CLASS_NAME = WsMessageReaderImpl.class.getName();
     private static final Logger _LOG = Logger.getLogger(_CLASS_NAME);
     
-    private final BlockingQueueImpl<Object>    _sharedQueue;
+    private final SpscRingBuffer<Object>    _sharedQueue;
     private final WebSocketImpl                _webSocket;
     private       Object                       _payload;
     private       WebSocketMessageType         _messageType;
     private       boolean                      _closed = false;
     
     public WsMessageReaderImpl(WebSocketImpl             webSocket,
-                               BlockingQueueImpl<Object> sharedQueue) {
+                               SpscRingBuffer<Object> sharedQueue) {
         if (webSocket == null) {
             String s = "Null webSocket passed in";
             throw new IllegalArgumentException(s);
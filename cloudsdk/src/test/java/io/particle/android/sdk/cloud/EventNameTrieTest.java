@@ -0,0 +1,133 @@
+package io.particle.android.sdk.cloud;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class EventNameTrieTest {
+
+    private EventNameTrie<String> trie;
+
+    @Before
+    public void setUp() {
+        trie = new EventNameTrie<>();
+    }
+
+    @Test
+    public void emptyTrieMatchesNothing() {
+        assertTrue(trie.isEmpty());
+        assertEquals(Collections.emptyList(), trie.findMatches("temperature"));
+        assertEquals(Collections.emptyList(), trie.findMatches(""));
+    }
+
+    @Test
+    public void matchesEveryPrefixFromShortestToLongest() {
+        trie.put("t", "t");
+        trie.put("temp", "temp");
+        trie.put("temperature", "temperature");
+        trie.put("temperatures", "temperatures");
+        trie.put("humidity", "humidity");
+
+        assertEquals(Arrays.asList("t", "temp", "temperature"), trie.findMatches("temperature"));
+        assertEquals(Arrays.asList("t", "temp"), trie.findMatches("tempo"));
+        assertEquals(Collections.singletonList("t"), trie.findMatches("t"));
+        assertEquals(Collections.emptyList(), trie.findMatches("hum"));
+        assertEquals(Collections.emptyList(), trie.findMatches("pressure"));
+    }
+
+    @Test
+    public void nullAndEmptyPrefixesMatchEverything() {
+        trie.put(null, "all");
+        trie.put("", "empty");
+        trie.put("a", "a");
+
+        assertEquals(Arrays.asList("all", "empty", "a"), trie.findMatches("abc"));
+        assertEquals(Arrays.asList("all", "empty"), trie.findMatches("xyz"));
+        assertEquals(Arrays.asList("all", "empty"), trie.findMatches(""));
+    }
+
+    @Test
+    public void keepsDuplicateRegistrationsUnderOnePrefix() {
+        String first = new String("sub");
+        String second = new String("sub");
+        trie.put("x", first);
+        trie.put("x", second);
+        assertEquals(2, trie.size());
+        assertEquals(2, trie.findMatches("x").size());
+
+        // removal is by identity, so only the given instance goes
+        assertTrue(trie.remove("x", second));
+        assertEquals(1, trie.size());
+        assertTrue(trie.findMatches("x").get(0) == first);
+        assertFalse(trie.remove("x", second));
+    }
+
+    @Test
+    public void removeReturnsFalseForUnknownPrefixOrValue() {
+        trie.put("abc", "abc");
+        assertFalse(trie.remove("ab", "abc"));
+        assertFalse(trie.remove("abcd", "abc"));
+        assertFalse(trie.remove("abc", new String("abc")));
+        assertFalse(trie.remove(null, "abc"));
+        assertEquals(1, trie.size());
+    }
+
+    @Test
+    public void removingALeafKeepsItsAncestors() {
+        trie.put("a", "a");
+        trie.put("abc", "abc");
+        assertTrue(trie.remove("abc", "abc"));
+
+        assertEquals(Collections.singletonList("a"), trie.findMatches("abc"));
+        assertTrue(trie.remove("a", "a"));
+        assertTrue(trie.isEmpty());
+        assertEquals(Collections.emptyList(), trie.findMatches("abc"));
+
+        // pruned branches can be added again
+        trie.put("abc", "abc2");
+        assertEquals(Collections.singletonList("abc2"), trie.findMatches("abcd"));
+    }
+
+    @Test
+    public void handlesWideFanOutInAnyInsertionOrder() {
+        // enough children at one node to grow the child arrays several times, inserted out of
+        // order so that they have to be shifted to stay sorted
+        String chars = "zyxwvutsrqponmlkjihgfedcbaZYXWVUTSRQPONMLKJIHGFEDCBA9876543210_-/";
+        String[] prefixes = new String[chars.length()];
+        for (int i = 0; i < prefixes.length; i++) {
+            prefixes[i] = "p" + chars.charAt(i);
+            trie.put(prefixes[i], prefixes[i]);
+        }
+        assertEquals(prefixes.length, trie.size());
+        for (String prefix : prefixes) {
+            assertEquals(Collections.singletonList(prefix), trie.findMatches(prefix + "suffix"));
+        }
+
+        // remove every other one, then check the rest are still found
+        for (int i = 0; i < prefixes.length; i += 2) {
+            assertTrue(trie.remove(prefixes[i], prefixes[i]));
+        }
+        for (int i = 0; i < prefixes.length; i++) {
+            int expected = (i % 2 == 0) ? 0 : 1;
+            assertEquals(prefixes[i], expected, trie.findMatches(prefixes[i]).size());
+        }
+    }
+
+    @Test
+    public void valuesReturnsEverything() {
+        trie.put(null, "all");
+        trie.put("a", "a");
+        trie.put("ab", "ab");
+        trie.put("b", "b");
+        assertEquals(new HashSet<>(Arrays.asList("all", "a", "ab", "b")),
+                new HashSet<>(trie.values()));
+    }
+}
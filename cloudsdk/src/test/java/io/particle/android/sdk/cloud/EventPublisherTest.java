@@ -0,0 +1,236 @@
+package io.particle.android.sdk.cloud;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.particle.android.sdk.cloud.ApiDefs.CloudApi;
+import io.particle.android.sdk.cloud.exceptions.ParticleCloudException;
+import retrofit.RetrofitError;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+public class EventPublisherTest {
+
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private CloudApi cloudApi;
+    // when each publish request was made, in the order they were made
+    private final List<Long> sendNanos = Collections.synchronizedList(new ArrayList<Long>());
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlightSeen = new AtomicInteger();
+    // publish requests block until this is released
+    private final CountDownLatch released = new CountDownLatch(1);
+
+    @Before
+    public void setUp() {
+        cloudApi = mock(CloudApi.class);
+        when(cloudApi.publishEvent(anyString(), anyString(), anyBoolean(), anyInt()))
+                .thenAnswer(invocation -> {
+                    sendNanos.add(System.nanoTime());
+                    int current = inFlight.incrementAndGet();
+                    maxInFlightSeen.accumulateAndGet(current, Math::max);
+                    try {
+                        assertTrue("Never released",
+                                released.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+                    } finally {
+                        inFlight.decrementAndGet();
+                    }
+                    return null;
+                });
+    }
+
+    @After
+    public void tearDown() {
+        released.countDown();
+    }
+
+    @Test
+    public void sendsABurstThenPacesTheRest() throws Exception {
+        released.countDown();
+        double eventsPerSecond = 5;
+        int burstSize = 3;
+        int eventCount = 7;
+        EventPublisher publisher = new EventPublisher(cloudApi,
+                new ParticleEventPublishPolicy(64, eventCount, eventsPerSecond, burstSize));
+
+        long startNanos = System.nanoTime();
+        List<Future<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < eventCount; i++) {
+            futures.add(publisher.publish("event" + i, "data", true, 60));
+        }
+        awaitAll(futures);
+
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / eventsPerSecond);
+        List<Long> sent = new ArrayList<>(sendNanos);
+        assertEquals(eventCount, sent.size());
+        // the burst goes out without waiting for the rate limit
+        for (int i = 0; i < burstSize; i++) {
+            assertTrue("event " + i, sent.get(i) - startNanos < intervalNanos);
+        }
+        // after that, one event per interval at most
+        for (int i = burstSize; i < eventCount; i++) {
+            long earliest = startNanos + (i - burstSize + 1) * intervalNanos;
+            assertTrue("event " + i + " sent " + (earliest - sent.get(i)) + "ns early",
+                    sent.get(i) >= earliest);
+        }
+        assertEquals(eventCount, publisher.getMetrics().publishedEventCount);
+    }
+
+    @Test
+    public void keepsWithinTheInFlightLimit() throws Exception {
+        EventPublisher publisher = new EventPublisher(cloudApi,
+                new ParticleEventPublishPolicy(64, 2, 1000, 100));
+        List<Future<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            futures.add(publisher.publish("event" + i, "data", true, 60));
+        }
+
+        awaitInFlight(2);
+        // give any request over the limit a chance to start
+        Thread.sleep(100);
+        assertEquals(2, inFlight.get());
+        ParticleEventPublishMetrics metrics = publisher.getMetrics();
+        assertEquals(2, metrics.inFlightEventCount);
+        assertEquals(4, metrics.queuedEventCount);
+
+        released.countDown();
+        awaitAll(futures);
+        assertEquals(2, maxInFlightSeen.get());
+        assertEquals(6, publisher.getMetrics().publishedEventCount);
+    }
+
+    @Test
+    public void duplicateOfAWaitingEventSharesItsFuture() throws Exception {
+        EventPublisher publisher = new EventPublisher(cloudApi,
+                new ParticleEventPublishPolicy(64, 1, 1000, 100));
+        Future<Void> sending = publisher.publish("event", "first", true, 60);
+        awaitInFlight(1);
+
+        Future<Void> waiting = publisher.publish("event", "second", true, 60);
+        assertSame(waiting, publisher.publish("event", "second", true, 60));
+        // not the same event unless everything matches
+        assertNotSame(waiting, publisher.publish("event", "second", false, 60));
+        assertNotSame(waiting, publisher.publish("event", "second", true, 30));
+        assertNotSame(waiting, publisher.publish("other", "second", true, 60));
+        // and one which is already being sent isn't waiting any more
+        Future<Void> resent = publisher.publish("event", "first", true, 60);
+        assertNotSame(sending, resent);
+        assertEquals(1, publisher.getMetrics().coalescedEventCount);
+
+        released.countDown();
+        awaitAll(list(sending, waiting, resent));
+        verify(cloudApi, times(2)).publishEvent("event", "first", true, 60);
+        verify(cloudApi, times(1)).publishEvent("event", "second", true, 60);
+    }
+
+    @Test
+    public void rejectsEventsAtCapacityRightAway() throws Exception {
+        EventPublisher publisher = new EventPublisher(cloudApi,
+                new ParticleEventPublishPolicy(2, 1, 1000, 100));
+        Future<Void> sending = publisher.publish("event0", "data", true, 60);
+        awaitInFlight(1);
+        Future<Void> first = publisher.publish("event1", "data", true, 60);
+        Future<Void> second = publisher.publish("event2", "data", true, 60);
+
+        Future<Void> rejected = publisher.publish("event3", "data", true, 60);
+        assertTrue(rejected.isDone());
+        Throwable error = getError(rejected);
+        assertTrue(error instanceof ParticleCloudException);
+        assertTrue(error.getCause() instanceof RejectedExecutionException);
+        // a duplicate of a waiting event still shares its future
+        assertSame(first, publisher.publish("event1", "data", true, 60));
+
+        ParticleEventPublishMetrics metrics = publisher.getMetrics();
+        assertEquals(1, metrics.rejectedEventCount);
+        assertEquals(2, metrics.queuedEventCount);
+
+        released.countDown();
+        awaitAll(list(sending, first, second));
+        verify(cloudApi, times(0)).publishEvent(eq("event3"), anyString(), anyBoolean(),
+                anyInt());
+
+        // and once there's room again, events are accepted
+        Future<Void> accepted = publisher.publish("event3", "data", true, 60);
+        assertNull(accepted.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void failedPublishFailsItsFuture() throws Exception {
+        RetrofitError networkError = RetrofitError.networkError("https://api.particle.io",
+                new IOException("connection reset"));
+        when(cloudApi.publishEvent(eq("broken"), anyString(), anyBoolean(), anyInt()))
+                .thenThrow(networkError);
+        released.countDown();
+        EventPublisher publisher = new EventPublisher(cloudApi,
+                ParticleEventPublishPolicy.defaultPolicy());
+
+        Throwable error = getError(publisher.publish("broken", "data", true, 60));
+        assertTrue(error instanceof ParticleCloudException);
+        assertSame(networkError, error.getCause());
+        assertNull(publisher.publish("working", "data", true, 60)
+                .get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        ParticleEventPublishMetrics metrics = publisher.getMetrics();
+        assertEquals(1, metrics.failedEventCount);
+        assertEquals(1, metrics.publishedEventCount);
+    }
+
+
+    private void awaitInFlight(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS);
+        while (inFlight.get() < count) {
+            assertTrue("Timed out waiting for " + count + " requests",
+                    System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    @SafeVarargs
+    private static List<Future<Void>> list(Future<Void>... futures) {
+        List<Future<Void>> list = new ArrayList<>();
+        Collections.addAll(list, futures);
+        return list;
+    }
+
+    private static void awaitAll(List<Future<Void>> futures) throws Exception {
+        for (Future<Void> future : futures) {
+            assertNull(future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        }
+    }
+
+    private static Throwable getError(Future<Void> future) throws Exception {
+        try {
+            future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            return e.getCause();
+        }
+        fail("Expected the publish to fail");
+        return null;
+    }
+}
@@ -0,0 +1,233 @@
+package io.particle.android.sdk.cloud;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class EventWindowAggregatorTest {
+
+    private static final String DEVICE_ID = "0123456789abcdef01234567";
+    private static final String EVENT_NAME = "temperature";
+
+    // a whole number of hours since the epoch, so that windows start on it
+    private static final long START = 1527854400000L;
+
+    private final List<WindowAggregate> emitted = new ArrayList<>();
+
+    @Test
+    public void tumblingWindowClosesWhenALaterEventArrives() {
+        EventWindowAggregator aggregator = EventWindowAggregator.tumbling(1000, emitted::add);
+        send(aggregator, START, "10");
+        send(aggregator, START + 500, "30");
+        send(aggregator, START + 999, "20");
+        assertEquals(0, emitted.size());
+
+        send(aggregator, START + 1000, "5");
+        assertEquals(1, emitted.size());
+        assertAggregate(emitted.get(0), START, START + 1000, 3, 10, 30, 20);
+        assertEquals(20, emitted.get(0).getPercentile(50), 20 * QuantileSketch.RELATIVE_ACCURACY);
+        assertEquals(10, emitted.get(0).getPercentile(0), 0);
+        assertEquals(30, emitted.get(0).getPercentile(100), 0);
+
+        aggregator.advanceTo(START + 2000);
+        assertEquals(2, emitted.size());
+        assertAggregate(emitted.get(1), START + 1000, START + 2000, 1, 5, 5, 5);
+        assertEquals(0, aggregator.getDroppedEventCount());
+    }
+
+    @Test
+    public void advanceToOnlyClosesWindowsWhichHaveEnded() {
+        EventWindowAggregator aggregator = EventWindowAggregator.tumbling(1000, emitted::add);
+        send(aggregator, START + 100, "1");
+        aggregator.advanceTo(START + 999);
+        assertEquals(0, emitted.size());
+
+        aggregator.advanceTo(START + 1000);
+        assertEquals(1, emitted.size());
+        // and only once
+        aggregator.advanceTo(START + 5000);
+        assertEquals(1, emitted.size());
+    }
+
+    @Test
+    public void slidingWindowsOverlap() {
+        EventWindowAggregator aggregator =
+                EventWindowAggregator.sliding(3000, 1000, emitted::add);
+        send(aggregator, START + 500, "1");
+        send(aggregator, START + 1500, "2");
+        send(aggregator, START + 2500, "3");
+        // closes the windows ending at START + 1000, 2000 and 3000
+        send(aggregator, START + 3500, "4");
+
+        assertEquals(3, emitted.size());
+        assertAggregate(emitted.get(0), START - 2000, START + 1000, 1, 1, 1, 1);
+        assertAggregate(emitted.get(1), START - 1000, START + 2000, 2, 1, 2, 1.5);
+        assertAggregate(emitted.get(2), START, START + 3000, 3, 1, 3, 2);
+
+        aggregator.advanceTo(START + 10000);
+        assertEquals(6, emitted.size());
+        assertAggregate(emitted.get(3), START + 1000, START + 4000, 3, 2, 4, 3);
+        assertAggregate(emitted.get(4), START + 2000, START + 5000, 2, 3, 4, 3.5);
+        assertAggregate(emitted.get(5), START + 3000, START + 6000, 1, 4, 4, 4);
+    }
+
+    @Test
+    public void tumblingGapLongerThanAWindowEmitsNoEmptyWindows() {
+        EventWindowAggregator aggregator = EventWindowAggregator.tumbling(1000, emitted::add);
+        send(aggregator, START + 100, "1");
+        send(aggregator, START + 100000, "2");
+
+        assertEquals(1, emitted.size());
+        assertAggregate(emitted.get(0), START, START + 1000, 1, 1, 1, 1);
+
+        aggregator.advanceTo(START + 101000);
+        assertEquals(2, emitted.size());
+        assertAggregate(emitted.get(1), START + 100000, START + 101000, 1, 2, 2, 2);
+    }
+
+    @Test
+    public void slidingGapLongerThanAWindowStartsAfresh() {
+        EventWindowAggregator aggregator =
+                EventWindowAggregator.sliding(3000, 1000, emitted::add);
+        send(aggregator, START + 500, "1");
+        send(aggregator, START + 2500, "2");
+        // far enough later that every pane has rolled over many times
+        send(aggregator, START + 1000500, "10");
+
+        // only the windows with an earlier event in them
+        assertEquals(5, emitted.size());
+        assertAggregate(emitted.get(0), START - 2000, START + 1000, 1, 1, 1, 1);
+        assertAggregate(emitted.get(1), START - 1000, START + 2000, 1, 1, 1, 1);
+        assertAggregate(emitted.get(2), START, START + 3000, 2, 1, 2, 1.5);
+        assertAggregate(emitted.get(3), START + 1000, START + 4000, 1, 2, 2, 2);
+        assertAggregate(emitted.get(4), START + 2000, START + 5000, 1, 2, 2, 2);
+
+        // and none of the earlier events are left in the later windows
+        aggregator.advanceTo(START + 1004000);
+        assertEquals(8, emitted.size());
+        for (int i = 5; i < 8; i++) {
+            assertEquals(1, emitted.get(i).count);
+            assertEquals(10, emitted.get(i).min, 0);
+        }
+        assertEquals(START + 1001000, emitted.get(5).windowEndMillis);
+        assertEquals(START + 1003000, emitted.get(7).windowEndMillis);
+    }
+
+    @Test
+    public void dropsEventsTooLateForAnyOpenWindow() {
+        EventWindowAggregator aggregator = EventWindowAggregator.tumbling(1000, emitted::add);
+        send(aggregator, START + 1500, "1");
+        // out of order, but within the open window
+        send(aggregator, START + 1200, "2");
+        // for a window which has already closed
+        send(aggregator, START + 999, "3");
+        send(aggregator, START - 50000, "4");
+        assertEquals(2, aggregator.getDroppedEventCount());
+
+        aggregator.advanceTo(START + 2000);
+        assertEquals(1, emitted.size());
+        assertAggregate(emitted.get(0), START + 1000, START + 2000, 2, 1, 2, 1.5);
+    }
+
+    @Test
+    public void slidingWindowsAcceptLateEventsWhileAnyWindowHoldingThemIsOpen() {
+        EventWindowAggregator aggregator =
+                EventWindowAggregator.sliding(3000, 1000, emitted::add);
+        send(aggregator, START + 5500, "1");
+        // two panes back, still part of the window ending at START + 6000
+        send(aggregator, START + 3500, "2");
+        // three panes back, so only in windows which have closed
+        send(aggregator, START + 2999, "3");
+        assertEquals(1, aggregator.getDroppedEventCount());
+
+        aggregator.advanceTo(START + 6000);
+        assertEquals(1, emitted.size());
+        assertAggregate(emitted.get(0), START + 3000, START + 6000, 2, 1, 2, 1.5);
+    }
+
+    @Test
+    public void keepsSeparateSeriesPerDeviceAndEventName() {
+        EventWindowAggregator aggregator = EventWindowAggregator.tumbling(1000, emitted::add);
+        send(aggregator, DEVICE_ID, EVENT_NAME, START, "1");
+        send(aggregator, "otherDevice", EVENT_NAME, START, "2");
+        send(aggregator, DEVICE_ID, "humidity", START, "3");
+        // only closes this series' window
+        send(aggregator, DEVICE_ID, EVENT_NAME, START + 1000, "4");
+        assertEquals(1, emitted.size());
+        assertEquals(1, emitted.get(0).count);
+
+        aggregator.advanceTo(START + 2000);
+        assertEquals(4, emitted.size());
+        for (WindowAggregate aggregate : emitted) {
+            assertEquals(1, aggregate.count);
+            if (aggregate.deviceId.equals("otherDevice")) {
+                assertEquals(2, aggregate.min, 0);
+            } else if (aggregate.eventName.equals("humidity")) {
+                assertEquals(3, aggregate.min, 0);
+            }
+        }
+    }
+
+    @Test
+    public void dropsEventsWhichArentNumbers() {
+        EventWindowAggregator aggregator = EventWindowAggregator.tumbling(1000, emitted::add);
+        send(aggregator, START, "warm");
+        send(aggregator, START, "");
+        aggregator.onEvent(EVENT_NAME, new ParticleEvent(DEVICE_ID, null, new Date(START), 60));
+        aggregator.onEvent(EVENT_NAME, new ParticleEvent(DEVICE_ID, "1", null, 60));
+        assertEquals(4, aggregator.getDroppedEventCount());
+
+        aggregator.advanceTo(START + 1000);
+        assertTrue(emitted.isEmpty());
+    }
+
+    @Test
+    public void listenerErrorsDontStopOtherWindows() {
+        EventWindowAggregator aggregator = EventWindowAggregator.sliding(2000, 1000,
+                aggregate -> {
+                    emitted.add(aggregate);
+                    throw new IllegalStateException("oops");
+                });
+        send(aggregator, START, "1");
+        aggregator.advanceTo(START + 2000);
+        assertEquals(2, emitted.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsWindowsWhichArentAMultipleOfTheSlide() {
+        EventWindowAggregator.sliding(2500, 1000, emitted::add);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsZeroSlide() {
+        EventWindowAggregator.sliding(1000, 0, emitted::add);
+    }
+
+
+    private static void send(EventWindowAggregator aggregator, long publishedAt, String data) {
+        send(aggregator, DEVICE_ID, EVENT_NAME, publishedAt, data);
+    }
+
+    private static void send(EventWindowAggregator aggregator, String deviceId, String eventName,
+                             long publishedAt, String data) {
+        aggregator.onEvent(eventName,
+                new ParticleEvent(deviceId, data, new Date(publishedAt), 60));
+    }
+
+    private static void assertAggregate(WindowAggregate aggregate, long windowStartMillis,
+                                        long windowEndMillis, long count, double min, double max,
+                                        double mean) {
+        assertEquals(windowStartMillis, aggregate.windowStartMillis);
+        assertEquals(windowEndMillis, aggregate.windowEndMillis);
+        assertEquals(count, aggregate.count);
+        assertEquals(min, aggregate.min, 0);
+        assertEquals(max, aggregate.max, 0);
+        assertEquals(mean, aggregate.mean, 1e-9);
+    }
+}
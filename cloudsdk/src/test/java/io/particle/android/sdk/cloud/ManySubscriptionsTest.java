@@ -0,0 +1,233 @@
+package io.particle.android.sdk.cloud;
+
+import com.google.gson.Gson;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.kaazing.net.sse.impl.AuthenticatedEventSourceFactory;
+import org.kaazing.net.sse.impl.AuthenticatedSseEventSourceImpl;
+import org.kaazing.net.sse.impl.SseEventStreamListener;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+
+/**
+ * Opens far more event subscriptions than there are dispatch threads, against a local stand-in
+ * for the cloud's SSE endpoint, and checks that every one of them receives its events.
+ * <p>
+ * This exercises the same path EventsDelegate.EventReader uses: authenticated event sources
+ * pushing parsed events straight from the transport, decoded and handed to a per-subscription
+ * {@link EventDispatcher.Channel}.
+ */
+public class ManySubscriptionsTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int SUBSCRIPTION_COUNT = 200;
+    private static final int EVENTS_PER_SUBSCRIPTION = 5;
+    private static final int DISPATCH_THREAD_COUNT = 2;
+    private static final long TIMEOUT_SECONDS = 30;
+
+    private LocalSseServer server;
+    private ScheduledThreadPoolExecutor dispatchExecutor;
+    private final List<AuthenticatedSseEventSourceImpl> eventSources = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        server = new LocalSseServer(EVENTS_PER_SUBSCRIPTION);
+        dispatchExecutor = new ScheduledThreadPoolExecutor(DISPATCH_THREAD_COUNT);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        for (AuthenticatedSseEventSourceImpl eventSource : eventSources) {
+            eventSource.close();
+        }
+        server.close();
+        dispatchExecutor.shutdownNow();
+    }
+
+    @Test
+    public void everySubscriptionReceivesItsEvents() throws Exception {
+        ParticleCloud cloud = mock(ParticleCloud.class);
+        when(cloud.getAccessToken()).thenReturn("test-token");
+        AuthenticatedEventSourceFactory factory = new AuthenticatedEventSourceFactory(cloud);
+        EventDispatcher dispatcher = new EventDispatcher(dispatchExecutor);
+        final ParticleEventDecoder decoder = new ParticleEventDecoder(new Gson());
+
+        final CountDownLatch allReceived =
+                new CountDownLatch(SUBSCRIPTION_COUNT * EVENTS_PER_SUBSCRIPTION);
+        final Set<Thread> handlerThreads =
+                Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+        final List<String> problems = Collections.synchronizedList(new ArrayList<String>());
+        List<AtomicInteger> receivedCounts = new ArrayList<>();
+
+        for (int i = 0; i < SUBSCRIPTION_COUNT; i++) {
+            final String path = "/v1/events/subscription" + i;
+            final AtomicInteger received = new AtomicInteger();
+            receivedCounts.add(received);
+
+            final EventDispatcher.Channel channel = dispatcher.newChannel(
+                    new ParticleEventHandler() {
+                        @Override
+                        public void onEvent(String eventName, ParticleEvent particleEvent) {
+                            handlerThreads.add(Thread.currentThread());
+                            String expected = path + "#" + received.getAndIncrement();
+                            if (!expected.equals(particleEvent.dataPayload)) {
+                                problems.add("expected " + expected + ", got "
+                                        + particleEvent.dataPayload);
+                            }
+                            allReceived.countDown();
+                        }
+
+                        @Override
+                        public void onEventError(Exception e) {
+                            problems.add(path + ": " + e);
+                        }
+                    },
+                    ParticleEventQueuePolicy.defaultPolicy());
+
+            AuthenticatedSseEventSourceImpl eventSource =
+                    factory.createEventSource(URI.create(server.getUrl(path)));
+            eventSource.setPushListener(new SseEventStreamListener() {
+                @Override
+                public void streamOpened() {
+                }
+
+                @Override
+                public void messageReceived(String eventName, String data) {
+                    try {
+                        channel.onEvent(eventName, decoder.decode(data));
+                    } catch (RuntimeException e) {
+                        channel.onEventError(e);
+                    }
+                }
+
+                @Override
+                public void streamErrored(Exception exception) {
+                    channel.onEventError(exception);
+                }
+            });
+            eventSources.add(eventSource);
+            eventSource.connect();
+        }
+
+        assertTrue("Timed out with " + allReceived.getCount() + " events outstanding",
+                allReceived.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(Collections.emptyList(), problems);
+        for (int i = 0; i < SUBSCRIPTION_COUNT; i++) {
+            assertEquals("subscription " + i, EVENTS_PER_SUBSCRIPTION,
+                    receivedCounts.get(i).get());
+        }
+        assertEquals(SUBSCRIPTION_COUNT, server.getConnectionCount());
+        assertTrue(handlerThreads.size() <= DISPATCH_THREAD_COUNT);
+    }
+
+
+    /**
+     * Answers every request with a few events whose data is the request path and a sequence
+     * number, then leaves the stream open, like the cloud does.
+     */
+    private static class LocalSseServer implements Closeable {
+
+        private final ServerSocket serverSocket;
+        private final int eventCount;
+        private final List<Socket> connections = Collections.synchronizedList(
+                new ArrayList<Socket>());
+
+        LocalSseServer(int eventCount) throws IOException {
+            this.serverSocket = new ServerSocket(0, SUBSCRIPTION_COUNT,
+                    InetAddress.getByName("127.0.0.1"));
+            this.eventCount = eventCount;
+            Thread acceptThread = new Thread(this::acceptConnections, "Local SSE server");
+            acceptThread.setDaemon(true);
+            acceptThread.start();
+        }
+
+        String getUrl(String path) {
+            return "http://127.0.0.1:" + serverSocket.getLocalPort() + path;
+        }
+
+        int getConnectionCount() {
+            return connections.size();
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+            synchronized (connections) {
+                for (Socket connection : connections) {
+                    connection.close();
+                }
+            }
+        }
+
+        private void acceptConnections() {
+            try {
+                while (true) {
+                    Socket connection = serverSocket.accept();
+                    connections.add(connection);
+                    try {
+                        respond(connection);
+                    } catch (IOException e) {
+                        connection.close();
+                    }
+                }
+            } catch (IOException e) {
+                // closed
+            }
+        }
+
+        private void respond(Socket connection) throws IOException {
+            BufferedReader in = new BufferedReader(
+                    new InputStreamReader(connection.getInputStream(), UTF_8));
+            // e.g.: "GET /v1/events/subscription7 HTTP/1.1"
+            String path = URI.create(in.readLine().split(" ")[1]).getPath();
+            String header;
+            do {
+                header = in.readLine();
+            } while (header != null && !header.isEmpty());
+
+            StringBuilder response = new StringBuilder()
+                    .append("HTTP/1.1 200 OK\r\n")
+                    .append("Content-Type: text/event-stream\r\n")
+                    .append("Cache-Control: no-cache\r\n")
+                    .append("Connection: close\r\n")
+                    .append("\r\n")
+                    .append(":ok\n\n");
+            for (int i = 0; i < eventCount; i++) {
+                response.append("event: test\n")
+                        .append("data: {\"data\":\"").append(path).append('#').append(i)
+                        .append("\",\"ttl\":60,\"published_at\":\"2018-06-01T12:00:00.000Z\",")
+                        .append("\"coreid\":\"0123456789abcdef01234567\"}\n\n");
+            }
+            OutputStream out = connection.getOutputStream();
+            out.write(response.toString().getBytes(UTF_8));
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package io.particle.android.sdk.cloud;
+
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class NumericEventStoreTest {
+
+    private static final String DEVICE_ID = "0123456789abcdef01234567";
+    private static final String EVENT_NAME = "temperature";
+
+    private static final int CAPACITY = 8;
+    private static final long SERIES_BYTES = CAPACITY * 16;
+
+    private final Random random = new Random(42);
+
+    @Test
+    public void parsesLikeParseDouble() {
+        String[] inputs = {
+                "0", "1", "-1", "+1", "23.5", "-12", "1.", ".5", "-.5", "+.5", "0.0", "-0",
+                "-0.0", "00012.50", "0.000123", "1e22", "1e23", "1e-22", "1e-23", "-1E5", "1e+5",
+                "1.5e3", "12345678901234.5", "123456789012345", "1234567890123456",
+                "12345678901234567890", "0.1234567890123456789", "9007199254740993",
+                "1.7976931348623157e308", "1e309", "4.9e-324", "1e-400", "2.2250738585072014E-308",
+                "100000000000000000000000", "0.30000000000000004", "  42  ", "\t-7.25\n",
+                "1e00000000000000000022", "0e999999"
+        };
+        for (String input : inputs) {
+            assertParsesLikeParseDouble(input);
+        }
+    }
+
+    @Test
+    public void parsesRandomNumbersLikeParseDouble() {
+        for (int i = 0; i < 100000; i++) {
+            assertParsesLikeParseDouble(randomDecimal());
+        }
+        // including everything Double.toString() produces, e.g.: "1.0E-5"
+        for (int i = 0; i < 100000; i++) {
+            double value = Double.longBitsToDouble(random.nextLong());
+            if (!Double.isNaN(value) && !Double.isInfinite(value)) {
+                assertParsesLikeParseDouble(Double.toString(value));
+            }
+            assertParsesLikeParseDouble(Double.toString(random.nextDouble() * 1000));
+        }
+    }
+
+    @Test
+    public void rejectsWhatIsntANumber() {
+        String[] inputs = {
+                "", " ", "+", "-", ".", "+.", "1e", "1e+", "1e-", "e5", "1.2.3", "--1", "+-1",
+                "1 2", "abc", "1a", "0x10", "1e5.5", "1,5", "twelve"
+        };
+        for (String input : inputs) {
+            assertTrue("\"" + input + "\"", Double.isNaN(NumericEventStore.parseNumber(input)));
+        }
+    }
+
+    @Test
+    public void rejectsWhatParseDoubleAcceptsButIsntPlainDecimal() {
+        String[] inputs = {"NaN", "Infinity", "-Infinity", "1d", "1f", "0x1p3"};
+        for (String input : inputs) {
+            assertTrue("\"" + input + "\"", Double.isNaN(NumericEventStore.parseNumber(input)));
+        }
+    }
+
+    @Test
+    public void queriesAcrossTheRingsWrapPoint() {
+        NumericEventStore store = new NumericEventStore(CAPACITY, SERIES_BYTES);
+        // 13 samples into 8 slots, so the oldest 5 are overwritten, and the ring has wrapped
+        for (int i = 1; i <= 13; i++) {
+            append(store, i * 10, i);
+        }
+        assertEquals(CAPACITY, store.size(DEVICE_ID, EVENT_NAME));
+
+        long[] expectedTimestamps = {60, 70, 80, 90, 100, 110, 120, 130};
+        for (long from = 0; from <= 140; from += 5) {
+            for (long to = 0; to <= 140; to += 5) {
+                assertQuery(store, expectedTimestamps, from, to);
+            }
+        }
+    }
+
+    @Test
+    public void queriesIncludeEveryDuplicateTimestamp() {
+        NumericEventStore store = new NumericEventStore(CAPACITY, SERIES_BYTES);
+        long[] timestamps = {10, 20, 20, 20, 30, 30, 40, 50, 50, 60, 60};
+        for (int i = 0; i < timestamps.length; i++) {
+            append(store, timestamps[i], i);
+        }
+
+        long[] kept = {20, 30, 30, 40, 50, 50, 60, 60};
+        for (long from = 0; from <= 70; from += 10) {
+            for (long to = 0; to <= 70; to += 10) {
+                assertQuery(store, kept, from, to);
+            }
+        }
+    }
+
+    @Test
+    public void queryIntoArraysKeepsTheNewestSamples() {
+        NumericEventStore store = new NumericEventStore(CAPACITY, SERIES_BYTES);
+        for (int i = 1; i <= 13; i++) {
+            append(store, i * 10, i);
+        }
+
+        long[] timestamps = new long[3];
+        double[] values = new double[3];
+        assertEquals(3, store.query(DEVICE_ID, EVENT_NAME, 0, 1000, timestamps, values));
+        assertArrayEquals(new long[]{110, 120, 130}, timestamps);
+        assertArrayEquals(new double[]{11, 12, 13}, values, 0);
+
+        // crossing the wrap point, which is between 80 and 90
+        assertEquals(3, store.query(DEVICE_ID, EVENT_NAME, 60, 100, timestamps, values));
+        assertArrayEquals(new long[]{70, 80, 90}, timestamps);
+        assertArrayEquals(new double[]{7, 8, 9}, values, 0);
+
+        assertEquals(0, store.query(DEVICE_ID, EVENT_NAME, 200, 300, timestamps, values));
+        assertEquals(0, store.query(DEVICE_ID, EVENT_NAME, 100, 50, timestamps, values));
+    }
+
+    @Test
+    public void skipsOutOfOrderAndNonNumericEvents() {
+        NumericEventStore store = new NumericEventStore(CAPACITY, SERIES_BYTES);
+        append(store, 100, 1);
+        append(store, 100, 2);
+        append(store, 99, 3);
+        store.onEvent(EVENT_NAME, new ParticleEvent(DEVICE_ID, "warm", new Date(200), 60));
+        store.onEvent(EVENT_NAME, new ParticleEvent(DEVICE_ID, null, new Date(200), 60));
+        store.onEvent(EVENT_NAME, new ParticleEvent(null, "1", new Date(200), 60));
+
+        assertEquals(4, store.getSkippedEventCount());
+        assertEquals(2, store.size(DEVICE_ID, EVENT_NAME));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedSeriesWithinTheMemoryBudget() {
+        // room for three series, but not four
+        long budget = 4 * SERIES_BYTES - 1;
+        NumericEventStore store = new NumericEventStore(CAPACITY, budget);
+        appendTo(store, "a", 1);
+        appendTo(store, "b", 2);
+        appendTo(store, "c", 3);
+        assertEquals(3, store.getSeriesCount());
+        assertEquals(3 * SERIES_BYTES, store.getMemoryUsageBytes());
+
+        // querying "a" and appending to "b" leaves "c" the least recently used
+        store.query("a", EVENT_NAME, 0, 1000);
+        appendTo(store, "b", 4);
+        appendTo(store, "d", 5);
+
+        assertEquals(3, store.getSeriesCount());
+        assertTrue(store.getMemoryUsageBytes() <= budget);
+        assertEquals(0, store.size("c", EVENT_NAME));
+        assertEquals(1, store.size("a", EVENT_NAME));
+        assertEquals(2, store.size("b", EVENT_NAME));
+        assertEquals(1, store.size("d", EVENT_NAME));
+
+        // and so on, as more series arrive
+        for (int i = 0; i < 100; i++) {
+            appendTo(store, "device" + i, i);
+            assertEquals(3, store.getSeriesCount());
+        }
+        assertEquals(1, store.size("device99", EVENT_NAME));
+        assertEquals(0, store.size("a", EVENT_NAME));
+    }
+
+    @Test
+    public void seriesAreKeyedOnDeviceAndEventName() {
+        NumericEventStore store = new NumericEventStore(CAPACITY, 10 * SERIES_BYTES);
+        store.onEvent("temperature", new ParticleEvent("a", "1", new Date(10), 60));
+        store.onEvent("humidity", new ParticleEvent("a", "2", new Date(10), 60));
+        store.onEvent("temperature", new ParticleEvent("b", "3", new Date(10), 60));
+
+        assertEquals(3, store.getSeriesCount());
+        assertArrayEquals(new double[]{2}, store.query("a", "humidity", 0, 100).values, 0);
+        assertArrayEquals(new double[]{3}, store.query("b", "temperature", 0, 100).values, 0);
+        assertEquals(0, store.query("b", "humidity", 0, 100).size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsABudgetTooSmallForOneSeries() {
+        new NumericEventStore(CAPACITY, SERIES_BYTES - 1);
+    }
+
+
+    private static void append(NumericEventStore store, long timestamp, double value) {
+        store.onEvent(EVENT_NAME,
+                new ParticleEvent(DEVICE_ID, Double.toString(value), new Date(timestamp), 60));
+    }
+
+    private static void appendTo(NumericEventStore store, String deviceId, int timestamp) {
+        store.onEvent(EVENT_NAME,
+                new ParticleEvent(deviceId, Integer.toString(timestamp), new Date(timestamp), 60));
+    }
+
+    // e.g.: "-0.0042", "31415926535897932384", or "7.5e-12"
+    private String randomDecimal() {
+        StringBuilder text = new StringBuilder();
+        switch (random.nextInt(4)) {
+            case 0:
+                text.append('-');
+                break;
+            case 1:
+                text.append('+');
+                break;
+            default:
+                break;
+        }
+        int digitCount = 1 + random.nextInt(20);
+        int pointPosition = random.nextInt(digitCount + 2) - 1;
+        for (int i = 0; i < digitCount; i++) {
+            if (i == pointPosition) {
+                text.append('.');
+            }
+            // plenty of zeros, which are only sometimes significant
+            text.append(random.nextInt(3) == 0 ? '0' : (char) ('0' + random.nextInt(10)));
+        }
+        if (pointPosition == digitCount) {
+            text.append('.');
+        }
+        if (random.nextBoolean()) {
+            text.append(random.nextBoolean() ? 'e' : 'E');
+            if (random.nextBoolean()) {
+                text.append(random.nextBoolean() ? '-' : '+');
+            }
+            text.append(random.nextInt(40));
+        }
+        return text.toString();
+    }
+
+    private static void assertParsesLikeParseDouble(String input) {
+        // boxed, so that 0.0 and -0.0 are told apart
+        assertEquals("\"" + input + "\"", Double.valueOf(Double.parseDouble(input)),
+                Double.valueOf(NumericEventStore.parseNumber(input)));
+    }
+
+    private static void assertQuery(NumericEventStore store, long[] allTimestamps, long from,
+                                    long to) {
+        int first = 0;
+        while (first < allTimestamps.length && allTimestamps[first] < from) {
+            first++;
+        }
+        int last = first;
+        while (last < allTimestamps.length && allTimestamps[last] < to) {
+            last++;
+        }
+        long[] expected = new long[Math.max(0, last - first)];
+        System.arraycopy(allTimestamps, first, expected, 0, expected.length);
+
+        NumericEventStore.Samples samples = store.query(DEVICE_ID, EVENT_NAME, from, to);
+        assertArrayEquals("[" + from + ", " + to + ")", expected, samples.timestamps);
+        assertEquals(expected.length, samples.values.length);
+
+        long[] timestamps = new long[CAPACITY];
+        double[] values = new double[CAPACITY];
+        int count = store.query(DEVICE_ID, EVENT_NAME, from, to, timestamps, values);
+        assertEquals(expected.length, count);
+        for (int i = 0; i < count; i++) {
+            assertEquals(expected[i], timestamps[i]);
+            assertEquals(samples.values[i], values[i], 0);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package io.particle.android.sdk.cloud;
+
+import com.google.gson.Gson;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Compares {@link ParticleEventDecoder} with decoding events the way EventsDelegate used to,
+ * i.e.: <code>gson.fromJson(data, ParticleEvent.class)</code>.
+ * <p>
+ * Meant to be run with JMH's GC profiler, which reports the bytes allocated per event as
+ * <code>gc.alloc.rate.norm</code>:
+ * <code>./gradlew :cloudsdk:jmh -PjmhArgs='ParticleEventDecoderBenchmark -prof gc'</code>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParticleEventDecoderBenchmark {
+
+    private static final String EVENT_DATA = "{\"data\":\"23.5\",\"ttl\":60,"
+            + "\"published_at\":\"2018-06-01T12:00:00.123Z\","
+            + "\"coreid\":\"0123456789abcdef01234567\"}";
+
+    private final Gson gson = new Gson();
+    private final ParticleEventDecoder decoder = new ParticleEventDecoder(gson);
+
+    @Benchmark
+    public ParticleEvent gsonReflective() {
+        return gson.fromJson(EVENT_DATA, ParticleEvent.class);
+    }
+
+    @Benchmark
+    public ParticleEvent streamingDecoder() {
+        return decoder.decode(EVENT_DATA);
+    }
+}
@@ -0,0 +1,193 @@
+package io.particle.android.sdk.cloud;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static io.particle.android.sdk.cloud.ParticleEventDecoder.FIELD_NOT_FOUND;
+import static io.particle.android.sdk.cloud.ParticleEventDecoder.INVALID_TIMESTAMP;
+import static io.particle.android.sdk.cloud.ParticleEventDecoder.decodeStringField;
+import static io.particle.android.sdk.cloud.ParticleEventDecoder.findStringField;
+import static io.particle.android.sdk.cloud.ParticleEventDecoder.parseIso8601;
+import static io.particle.android.sdk.cloud.ParticleEventDecoder.rangeEnd;
+import static io.particle.android.sdk.cloud.ParticleEventDecoder.rangeStart;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+
+public class ParticleEventDecoderTest {
+
+    // 2018-06-01T12:00:00Z
+    private static final long JUNE_FIRST_NOON = 1527854400000L;
+
+    private final Gson gson = new Gson();
+    private final ParticleEventDecoder decoder = new ParticleEventDecoder(gson);
+
+    @Test
+    public void parsesUtcTimestamps() {
+        assertEquals(0, parseIso8601("1970-01-01T00:00:00Z"));
+        assertEquals(0, parseIso8601("1970-01-01T00:00:00.000Z"));
+        assertEquals(JUNE_FIRST_NOON, parseIso8601("2018-06-01T12:00:00Z"));
+        assertEquals(JUNE_FIRST_NOON + 123, parseIso8601("2018-06-01T12:00:00.123Z"));
+        assertEquals(-1, parseIso8601("1969-12-31T23:59:59.999Z"));
+    }
+
+    @Test
+    public void keepsOnlyMillisecondsOfTheFraction() {
+        assertEquals(JUNE_FIRST_NOON + 500, parseIso8601("2018-06-01T12:00:00.5Z"));
+        assertEquals(JUNE_FIRST_NOON + 50, parseIso8601("2018-06-01T12:00:00.05Z"));
+        assertEquals(JUNE_FIRST_NOON + 123, parseIso8601("2018-06-01T12:00:00.123456789Z"));
+    }
+
+    @Test
+    public void appliesOffsets() {
+        long twoHours = 2 * 60 * 60 * 1000;
+        long fiveAndAHalfHours = (5 * 60 + 30) * 60 * 1000;
+        assertEquals(JUNE_FIRST_NOON - twoHours, parseIso8601("2018-06-01T12:00:00+02:00"));
+        assertEquals(JUNE_FIRST_NOON - twoHours, parseIso8601("2018-06-01T12:00:00+0200"));
+        assertEquals(JUNE_FIRST_NOON - twoHours, parseIso8601("2018-06-01T12:00:00+02"));
+        assertEquals(JUNE_FIRST_NOON + fiveAndAHalfHours,
+                parseIso8601("2018-06-01T12:00:00.000-05:30"));
+        assertEquals(JUNE_FIRST_NOON, parseIso8601("2018-06-01T12:00:00-00:00"));
+    }
+
+    @Test
+    public void validatesLeapDays() {
+        assertEquals(1456704000000L, parseIso8601("2016-02-29T00:00:00Z"));
+        assertEquals(951782400000L, parseIso8601("2000-02-29T00:00:00Z"));
+        assertEquals(INVALID_TIMESTAMP, parseIso8601("2018-02-29T00:00:00Z"));
+        assertEquals(INVALID_TIMESTAMP, parseIso8601("1900-02-29T00:00:00Z"));
+    }
+
+    @Test
+    public void rejectsOtherFormats() {
+        String[] invalid = {
+                "",
+                "2018-06-01",
+                "2018-06-01T12:00:00",
+                "2018-06-01 12:00:00Z",
+                "2018-06-01T12:00Z",
+                "2018-06-01T12:00:00.Z",
+                "2018-06-01T12:00:00ZZ",
+                "2018-06-01T12:00:00+2:00",
+                "2018-06-01T12:00:00+02:0",
+                "2018-00-01T12:00:00Z",
+                "2018-13-01T12:00:00Z",
+                "2018-04-31T12:00:00Z",
+                "2018-06-01T24:00:00Z",
+                "2018-06-01T12:60:00Z",
+                "2018-06-01T12:00:60Z",
+                "2O18-06-01T12:00:00Z",
+                "Jun 1, 2018 12:00:00 PM",
+        };
+        for (String value : invalid) {
+            assertEquals(value, INVALID_TIMESTAMP, parseIso8601(value));
+        }
+    }
+
+    @Test
+    public void agreesWithSimpleDateFormat() {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        Random random = new Random(42);
+        // 1970 to 2100
+        long range = 4102444800000L;
+        for (int i = 0; i < 10000; i++) {
+            long millis = (long) (random.nextDouble() * range);
+            String value = format.format(millis);
+            assertEquals(value, millis, parseIso8601(value));
+        }
+    }
+
+    @Test
+    public void decodesLikeGson() {
+        String[] payloads = {
+                "{\"data\":\"23.5\",\"ttl\":60,\"published_at\":\"2018-06-01T12:00:00.123Z\","
+                        + "\"coreid\":\"0123456789abcdef01234567\"}",
+                "{\"coreid\":\"particle-internal\",\"data\":null,\"ttl\":\"60\","
+                        + "\"published_at\":\"2018-06-01T12:00:00+02:00\",\"extra\":[1,{\"a\":2}]}",
+                "{\"data\":\"with \\\"escapes\\\" \\u00e9\",\"published_at\":null}",
+                "{}",
+        };
+        for (String payload : payloads) {
+            ParticleEvent expected = gson.fromJson(payload, ParticleEvent.class);
+            ParticleEvent actual = decoder.decode(payload);
+            assertEquals(payload, expected.deviceId, actual.deviceId);
+            assertEquals(payload, expected.dataPayload, actual.dataPayload);
+            assertEquals(payload, expected.publishedAt, actual.publishedAt);
+            assertEquals(payload, expected.timeToLive, actual.timeToLive);
+        }
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void rejectsMalformedPayloads() {
+        decoder.decode("{\"data\":");
+    }
+
+    @Test
+    public void findsTopLevelStringFields() {
+        String json = "{\"data\":\"23.5\",\"ttl\":60,\"coreid\":\"abc\"}";
+        assertEquals("23.5", find(json, "data"));
+        assertEquals("abc", find(json, "coreid"));
+    }
+
+    @Test
+    public void skipsNestedValuesAndLookalikes() {
+        String json = "{ \"name\" : \"data\","
+                + " \"nested\": {\"data\": \"no\", \"more\": [\"}\", {\"data\": \"no\"}]},"
+                + " \"list\": [\"data\", \"]\", 1, true, null],"
+                + " \"number\": -1.5e3,"
+                + " \"data\" : \"yes\" }";
+        assertEquals("yes", find(json, "data"));
+        assertEquals("data", find(json, "name"));
+    }
+
+    @Test
+    public void returnsRawValueWithEscapes() {
+        String json = "{\"data\":\"say \\\"hi\\\"\"}";
+        long range = findStringField(json, "data");
+        assertEquals("say \\\"hi\\\"", json.substring(rangeStart(range), rangeEnd(range)));
+        assertEquals("say \"hi\"", decodeStringField(json, range));
+    }
+
+    @Test
+    public void doesNotFindNonStringsOrMissingFields() {
+        assertEquals(FIELD_NOT_FOUND, findStringField("{\"data\":null}", "data"));
+        assertEquals(FIELD_NOT_FOUND, findStringField("{\"data\":42}", "data"));
+        assertEquals(FIELD_NOT_FOUND, findStringField("{\"data\":{\"x\":\"y\"}}", "data"));
+        assertEquals(FIELD_NOT_FOUND, findStringField("{\"ttl\":60}", "data"));
+        assertEquals(FIELD_NOT_FOUND, findStringField("{}", "data"));
+        assertEquals(FIELD_NOT_FOUND, findStringField("{\"dat\":\"x\"}", "data"));
+        assertEquals(FIELD_NOT_FOUND, findStringField("{\"datas\":\"x\"}", "data"));
+    }
+
+    @Test
+    public void doesNotFindFieldsInMalformedJson() {
+        String[] malformed = {
+                "",
+                "[\"data\",\"x\"]",
+                "{\"data\"",
+                "{\"data\":",
+                "{\"data\":\"unterminated",
+                "{\"other\":\"unterminated, \"data\":\"x\"",
+                "{\"other\":{\"data\":\"x\"",
+                "{data:\"x\"}",
+        };
+        for (String json : malformed) {
+            assertEquals(json, FIELD_NOT_FOUND, findStringField(json, "data"));
+        }
+    }
+
+
+    private static String find(String json, String fieldName) {
+        long range = findStringField(json, fieldName);
+        assertNotEquals(FIELD_NOT_FOUND, range);
+        return json.substring(rangeStart(range), rangeEnd(range));
+    }
+}
@@ -0,0 +1,132 @@
+package io.particle.android.sdk.cloud;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static io.particle.android.sdk.cloud.ParticleEventFilter.globMatches;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class ParticleEventFilterTest {
+
+    private static final String EVENT = "{\"data\":\"23.5\",\"ttl\":60,"
+            + "\"published_at\":\"2018-06-01T12:00:00.000Z\",\"coreid\":\"device1\"}";
+
+    @Test
+    public void globMatchesLiterals() {
+        assertTrue(globMatches("temperature", "temperature"));
+        assertTrue(globMatches("", ""));
+        assertFalse(globMatches("temperature", "temperatures"));
+        assertFalse(globMatches("temperatures", "temperature"));
+        assertFalse(globMatches("", "a"));
+        assertFalse(globMatches("a", ""));
+    }
+
+    @Test
+    public void globStarMatchesAnyRun() {
+        assertTrue(globMatches("*", ""));
+        assertTrue(globMatches("*", "anything/at/all"));
+        assertTrue(globMatches("sensor/*", "sensor/"));
+        assertTrue(globMatches("sensor/*", "sensor/kitchen/temperature"));
+        assertTrue(globMatches("sensor/*/temperature", "sensor/kitchen/temperature"));
+        assertTrue(globMatches("sensor/*/temperature", "sensor//temperature"));
+        assertTrue(globMatches("*temperature", "kitchen/temperature"));
+        assertTrue(globMatches("a*b*c", "abc"));
+        assertTrue(globMatches("a**c", "abbbc"));
+        assertFalse(globMatches("sensor/*", "sensors/kitchen"));
+        assertFalse(globMatches("sensor/*/temperature", "sensor/kitchen/humidity"));
+        assertFalse(globMatches("a*b*c", "acb"));
+    }
+
+    @Test
+    public void globStarBacktracks() {
+        // the first "/t" isn't the right one to stop at
+        assertTrue(globMatches("*/temperature", "sensor/tank/temperature"));
+        assertTrue(globMatches("*aab", "aaaab"));
+        assertTrue(globMatches("a*ab*b", "aaabab"));
+        assertFalse(globMatches("*aab", "aaaba"));
+    }
+
+    @Test
+    public void globQuestionMarkMatchesOneCharacter() {
+        assertTrue(globMatches("device?", "device1"));
+        assertTrue(globMatches("??", "ab"));
+        assertTrue(globMatches("?*", "a"));
+        assertFalse(globMatches("device?", "device"));
+        assertFalse(globMatches("device?", "device12"));
+        assertFalse(globMatches("?*", ""));
+    }
+
+    @Test
+    public void globAgreesWithEquivalentRegex() {
+        Random random = new Random(42);
+        char[] globChars = {'a', 'b', '/', '*', '?'};
+        char[] valueChars = {'a', 'b', '/'};
+        for (int i = 0; i < 20000; i++) {
+            String glob = randomString(random, globChars, 6);
+            String value = randomString(random, valueChars, 8);
+            Pattern regex = Pattern.compile(
+                    glob.replace("*", ".*").replace("?", "."), Pattern.DOTALL);
+            assertEquals(glob + " vs. " + value,
+                    regex.matcher(value).matches(), globMatches(glob, value));
+        }
+    }
+
+    @Test
+    public void emptyFilterMatchesEverything() {
+        ParticleEventFilter filter = ParticleEventFilter.builder().build();
+        assertTrue(filter.matches("anything", EVENT));
+        assertTrue(filter.matches("anything", "{}"));
+    }
+
+    @Test
+    public void matchesOnlyWhenEveryConditionHolds() {
+        ParticleEventFilter filter = ParticleEventFilter.builder()
+                .deviceIds(Arrays.asList("device1", "device2"))
+                .eventNameGlob("sensor/*")
+                .dataNumberBetween(20, 30)
+                .build();
+
+        assertTrue(filter.matches("sensor/temperature", EVENT));
+        assertFalse(filter.matches("status", EVENT));
+        assertFalse(filter.matches("sensor/temperature", EVENT.replace("device1", "device3")));
+        assertFalse(filter.matches("sensor/temperature", EVENT.replace("23.5", "35")));
+        assertFalse(filter.matches("sensor/temperature", EVENT.replace("\"23.5\"", "null")));
+    }
+
+    @Test
+    public void matchesEventNameRegexAndEscapedData() {
+        ParticleEventFilter filter = ParticleEventFilter.builder()
+                .eventNameRegex("sensor/(kitchen|hall)")
+                .dataEquals("say \"hi\"")
+                .build();
+        String event = "{\"data\":\"say \\\"hi\\\"\",\"coreid\":\"device1\"}";
+
+        assertTrue(filter.matches("sensor/kitchen", event));
+        assertFalse(filter.matches("sensor/kitchen/extra", event));
+        assertFalse(filter.matches("sensor/hall", EVENT));
+    }
+
+    @Test
+    public void letsMalformedEventsThroughToTheDecoder() {
+        ParticleEventFilter filter = ParticleEventFilter.builder()
+                .dataEquals("x")
+                .build();
+        // the escape is invalid, so decoding the data fails; the handler gets to hear about it
+        assertTrue(filter.matches("name", "{\"data\":\"bad \\q escape\"}"));
+    }
+
+
+    private static String randomString(Random random, char[] chars, int maxLength) {
+        char[] result = new char[random.nextInt(maxLength + 1)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = chars[random.nextInt(chars.length)];
+        }
+        return new String(result);
+    }
+}
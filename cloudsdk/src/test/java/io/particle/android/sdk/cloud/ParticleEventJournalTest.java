@@ -0,0 +1,282 @@
+package io.particle.android.sdk.cloud;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+public class ParticleEventJournalTest {
+
+    // the smallest segment size allowed, so that tests roll over quickly
+    private static final long SEGMENT_SIZE = 4 * 1024;
+
+    private static final long HOUR_MILLIS = 60 * 60 * 1000L;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+    private ParticleEventJournal journal;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = new File(folder.getRoot(), "journal");
+        journal = new ParticleEventJournal(directory, SEGMENT_SIZE, 100, 0);
+    }
+
+    @After
+    public void tearDown() {
+        journal.close();
+    }
+
+    @Test
+    public void replaysEventsInOrder() throws IOException {
+        Date publishedAt = new Date(1527854400000L);
+        journal.append("temperature", new ParticleEvent("device1", "23.5", publishedAt, 60));
+        journal.append("humidity", new ParticleEvent("device2", "40", publishedAt, 30));
+
+        ParticleEventJournal.Cursor cursor = journal.readFrom(0);
+        ParticleEventJournal.Entry first = cursor.next();
+        assertEquals(0, first.offset);
+        assertEquals("temperature", first.eventName);
+        assertEquals("device1", first.event.deviceId);
+        assertEquals("23.5", first.event.dataPayload);
+        assertEquals(publishedAt, first.event.publishedAt);
+        assertEquals(60, first.event.timeToLive);
+
+        ParticleEventJournal.Entry second = cursor.next();
+        assertEquals(first.nextOffset, second.offset);
+        assertEquals("humidity", second.eventName);
+        assertEquals("device2", second.event.deviceId);
+        assertEquals(30, second.event.timeToLive);
+
+        assertNull(cursor.next());
+        assertEquals(journal.getEndOffset(), second.nextOffset);
+        assertEquals(journal.getEndOffset(), cursor.offset());
+    }
+
+    @Test
+    public void cursorPicksUpLaterAppends() throws IOException {
+        ParticleEventJournal.Cursor cursor = journal.readFrom(0);
+        assertNull(cursor.next());
+
+        append(0);
+        assertEquals(eventName(0), cursor.next().eventName);
+        assertNull(cursor.next());
+
+        append(1);
+        assertEquals(eventName(1), cursor.next().eventName);
+    }
+
+    @Test
+    public void keepsNullFieldsAndStampsUndatedEvents() throws IOException {
+        long before = System.currentTimeMillis();
+        journal.append("ping", new ParticleEvent(null, null, null, 0));
+        long after = System.currentTimeMillis();
+
+        ParticleEventJournal.Entry entry = journal.readFrom(0).next();
+        assertNull(entry.event.deviceId);
+        assertNull(entry.event.dataPayload);
+        long publishedAt = entry.event.publishedAt.getTime();
+        assertTrue(publishedAt >= before && publishedAt <= after);
+    }
+
+    @Test
+    public void readsFromAnyEntryOffset() throws IOException {
+        List<Long> offsets = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            offsets.add(journal.getEndOffset());
+            append(i);
+        }
+
+        ParticleEventJournal.Cursor cursor = journal.readFrom(offsets.get(7));
+        assertEquals(eventName(7), cursor.next().eventName);
+        assertEquals(eventName(8), cursor.next().eventName);
+        assertEquals(eventName(9), cursor.next().eventName);
+        assertNull(cursor.next());
+
+        assertNull(journal.readFrom(journal.getEndOffset()).next());
+    }
+
+    @Test
+    public void rollsOverToNewSegments() throws IOException {
+        int count = 500;
+        for (int i = 0; i < count; i++) {
+            append(i);
+        }
+        assertTrue(journal.getSegmentCount() > 5);
+
+        // offsets carry on seamlessly from one segment to the next
+        List<ParticleEventJournal.Entry> entries = readAll(journal.readFrom(0));
+        assertEquals(count, entries.size());
+        long expectedOffset = 0;
+        for (int i = 0; i < count; i++) {
+            ParticleEventJournal.Entry entry = entries.get(i);
+            assertEquals(eventName(i), entry.eventName);
+            assertEquals(expectedOffset, entry.offset);
+            expectedOffset = entry.nextOffset;
+        }
+        assertEquals(journal.getEndOffset(), expectedOffset);
+    }
+
+    @Test
+    public void dropsOldestSegmentsBeyondMaxCount() throws IOException {
+        journal.close();
+        journal = new ParticleEventJournal(directory, SEGMENT_SIZE, 3, 0);
+        int count = 500;
+        for (int i = 0; i < count; i++) {
+            append(i);
+        }
+        assertEquals(3, journal.getSegmentCount());
+        assertEquals(3, listSegmentFiles().length);
+
+        // reading from an offset which is gone starts from the oldest entry left
+        List<ParticleEventJournal.Entry> entries = readAll(journal.readFrom(0));
+        assertTrue(entries.size() < count);
+        assertTrue(entries.get(0).offset > 0);
+        assertEquals(eventName(count - 1), entries.get(entries.size() - 1).eventName);
+    }
+
+    @Test
+    public void dropsSegmentsOlderThanMaxAge() throws IOException {
+        journal.close();
+        journal = new ParticleEventJournal(directory, SEGMENT_SIZE, 100, HOUR_MILLIS);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 200; i++) {
+            append(i, now - 2 * HOUR_MILLIS);
+        }
+        for (int i = 200; i < 400; i++) {
+            append(i, now);
+        }
+
+        // only the segment shared with the newer events may still hold older ones
+        List<ParticleEventJournal.Entry> entries = readAll(journal.readFrom(0));
+        int firstIndex = indexOf(entries.get(0));
+        long recordSize = entries.get(1).offset - entries.get(0).offset;
+        assertTrue(firstIndex > 0);
+        assertTrue(200 - firstIndex < SEGMENT_SIZE / recordSize);
+        for (int i = 0; i < entries.size(); i++) {
+            assertEquals(eventName(firstIndex + i), entries.get(i).eventName);
+        }
+        assertEquals(eventName(399), entries.get(entries.size() - 1).eventName);
+    }
+
+    @Test
+    public void readSinceSkipsOlderEvents() throws IOException {
+        long start = 1527854400000L;
+        for (int i = 0; i < 300; i++) {
+            append(i, start + i * 1000L);
+        }
+
+        List<ParticleEventJournal.Entry> entries = readAll(journal.readSince(start + 250 * 1000L));
+        assertEquals(50, entries.size());
+        assertEquals(eventName(250), entries.get(0).eventName);
+        assertEquals(eventName(299), entries.get(49).eventName);
+    }
+
+    @Test
+    public void resumesAfterReopening() throws IOException {
+        for (int i = 0; i < 100; i++) {
+            append(i);
+        }
+        long endOffset = journal.getEndOffset();
+        int segmentCount = journal.getSegmentCount();
+        journal.close();
+
+        journal = new ParticleEventJournal(directory, SEGMENT_SIZE, 100, 0);
+        assertEquals(endOffset, journal.getEndOffset());
+        assertEquals(segmentCount, journal.getSegmentCount());
+
+        for (int i = 100; i < 200; i++) {
+            append(i);
+        }
+        List<ParticleEventJournal.Entry> entries = readAll(journal.readFrom(0));
+        assertEquals(200, entries.size());
+        for (int i = 0; i < 200; i++) {
+            assertEquals(eventName(i), entries.get(i).eventName);
+        }
+    }
+
+    @Test
+    public void resumesFromAnEmptyJournal() throws IOException {
+        journal.close();
+        journal = new ParticleEventJournal(directory, SEGMENT_SIZE, 100, 0);
+        assertEquals(0, journal.getEndOffset());
+        append(0);
+        assertEquals(eventName(0), journal.readFrom(0).next().eventName);
+    }
+
+    @Test
+    public void rejectsEventsTooLargeForASegment() throws IOException {
+        StringBuilder data = new StringBuilder();
+        while (data.length() < SEGMENT_SIZE) {
+            data.append("0123456789");
+        }
+        try {
+            journal.append("big", new ParticleEvent("device1", data.toString(), new Date(), 60));
+            fail("Event should not fit");
+        } catch (IOException expected) {
+            // expected
+        }
+        // and nothing was written
+        assertEquals(0, journal.getEndOffset());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsAppendsOnceClosed() throws IOException {
+        journal.close();
+        append(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTinySegments() throws IOException {
+        new ParticleEventJournal(directory, 1024, 1, 0);
+    }
+
+
+    private void append(int i) throws IOException {
+        append(i, 1527854400000L);
+    }
+
+    private void append(int i, long publishedAt) throws IOException {
+        journal.append(eventName(i),
+                new ParticleEvent("0123456789abcdef01234567", Integer.toString(i),
+                        new Date(publishedAt), 60));
+    }
+
+    private static String eventName(int i) {
+        return "event" + i;
+    }
+
+    private static int indexOf(ParticleEventJournal.Entry entry) {
+        return Integer.parseInt(entry.eventName.substring("event".length()));
+    }
+
+    private static List<ParticleEventJournal.Entry> readAll(ParticleEventJournal.Cursor cursor)
+            throws IOException {
+        List<ParticleEventJournal.Entry> entries = new ArrayList<>();
+        ParticleEventJournal.Entry entry;
+        while ((entry = cursor.next()) != null) {
+            entries.add(entry);
+        }
+        cursor.close();
+        return entries;
+    }
+
+    private File[] listSegmentFiles() {
+        return directory.listFiles((dir, name) -> name.endsWith(".journal"));
+    }
+}
@@ -0,0 +1,232 @@
+package io.particle.android.sdk.cloud;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class QuantileSketchTest {
+
+    private static final double[] QUANTILES = {
+            0, 0.001, 0.01, 0.05, 0.1, 0.25, 0.5, 0.75, 0.9, 0.95, 0.99, 0.999, 1
+    };
+
+    // the ratio between the largest and smallest values which MAX_BUCKETS buckets cover, with
+    // a bucket to spare for rounding at either end
+    private static final double FULL_ACCURACY_RANGE = Math.pow(
+            (1 + QuantileSketch.RELATIVE_ACCURACY) / (1 - QuantileSketch.RELATIVE_ACCURACY),
+            QuantileSketch.MAX_BUCKETS - 2);
+
+    private final Random random = new Random(42);
+
+    @Test
+    public void emptySketchHasNoQuantiles() {
+        QuantileSketch sketch = new QuantileSketch();
+        assertEquals(0, sketch.getCount());
+        assertTrue(Double.isNaN(sketch.getQuantile(0.5)));
+    }
+
+    @Test
+    public void singleValue() {
+        QuantileSketch sketch = new QuantileSketch();
+        sketch.add(23.5);
+        for (double quantile : QUANTILES) {
+            assertWithinAccuracy(23.5, sketch.getQuantile(quantile));
+        }
+    }
+
+    @Test
+    public void estimatesWithinAccuracyAcrossFullRange() {
+        // spread over nearly all of the buckets, without needing to collapse any
+        List<Double> values = logUniform(10000, 1, FULL_ACCURACY_RANGE / 2);
+        QuantileSketch sketch = sketchOf(values);
+        assertEquals(values.size(), sketch.getCount());
+        assertAllQuantilesWithinAccuracy(values, sketch);
+    }
+
+    @Test
+    public void estimatesWithinAccuracyForNegativeAndZeroValues() {
+        List<Double> values = new ArrayList<>();
+        values.addAll(negate(logUniform(3000, 0.01, 1000)));
+        values.addAll(logUniform(3000, 0.5, 5000));
+        for (int i = 0; i < 500; i++) {
+            values.add(0.0);
+        }
+        Collections.shuffle(values, random);
+
+        QuantileSketch sketch = sketchOf(values);
+        assertAllQuantilesWithinAccuracy(values, sketch);
+        // the middle of the distribution falls among the zeros
+        assertEquals(0, sketch.getQuantile(0.5), 0);
+    }
+
+    @Test
+    public void keepsLargestMagnitudesAccurateBeyondMaxBuckets() {
+        // a factor of 1e12 needs about 700 buckets
+        List<Double> positives = logUniform(5000, 1e-6, 1e6);
+        List<Double> negatives = negate(logUniform(5000, 1e-6, 1e6));
+
+        // in increasing, decreasing, and random order, since each moves the buckets differently
+        List<Double> increasing = new ArrayList<>(positives);
+        Collections.sort(increasing);
+        List<Double> decreasing = new ArrayList<>(increasing);
+        Collections.reverse(decreasing);
+        List<Double> shuffled = new ArrayList<>(positives);
+        shuffled.addAll(negatives);
+        Collections.shuffle(shuffled, random);
+
+        assertLargestMagnitudesWithinAccuracy(increasing, sketchOf(increasing));
+        assertLargestMagnitudesWithinAccuracy(decreasing, sketchOf(decreasing));
+        assertLargestMagnitudesWithinAccuracy(shuffled, sketchOf(shuffled));
+    }
+
+    @Test
+    public void mergedSketchEstimatesTheCombinedValues() {
+        List<Double> first = logUniform(4000, 1, 100);
+        first.addAll(negate(logUniform(1000, 1, 10)));
+        List<Double> second = logUniform(4000, 50, 5000);
+
+        QuantileSketch merged = sketchOf(first);
+        merged.mergeFrom(sketchOf(second));
+
+        List<Double> all = new ArrayList<>(first);
+        all.addAll(second);
+        assertEquals(all.size(), merged.getCount());
+        assertAllQuantilesWithinAccuracy(all, merged);
+    }
+
+    @Test
+    public void mergeBeyondMaxBucketsKeepsLargestMagnitudesAccurate() {
+        List<Double> small = logUniform(3000, 1e-9 * 10, 1e-3);
+        small.addAll(negate(logUniform(3000, 1e-3, 1e3)));
+        List<Double> large = logUniform(3000, 1, 1e9);
+        large.addAll(negate(logUniform(3000, 1e2, 1e8)));
+
+        QuantileSketch merged = sketchOf(small);
+        merged.mergeFrom(sketchOf(large));
+
+        List<Double> all = new ArrayList<>(small);
+        all.addAll(large);
+        assertEquals(all.size(), merged.getCount());
+        assertLargestMagnitudesWithinAccuracy(all, merged);
+    }
+
+    @Test
+    public void mergingAnEmptySketchChangesNothing() {
+        List<Double> values = logUniform(1000, 1, 1000);
+        QuantileSketch sketch = sketchOf(values);
+        sketch.mergeFrom(new QuantileSketch());
+        assertEquals(values.size(), sketch.getCount());
+        assertAllQuantilesWithinAccuracy(values, sketch);
+    }
+
+    @Test
+    public void clearedSketchCanBeReused() {
+        QuantileSketch sketch = sketchOf(logUniform(1000, 1e-6, 1e6));
+        sketch.clear();
+        assertEquals(0, sketch.getCount());
+        assertTrue(Double.isNaN(sketch.getQuantile(0.5)));
+
+        // in a different range from before
+        List<Double> values = negate(logUniform(1000, 1e3, 1e5));
+        for (double value : values) {
+            sketch.add(value);
+        }
+        assertAllQuantilesWithinAccuracy(values, sketch);
+    }
+
+
+    private List<Double> logUniform(int count, double min, double max) {
+        List<Double> values = new ArrayList<>(count);
+        double logMin = Math.log(min);
+        double logRange = Math.log(max) - logMin;
+        for (int i = 0; i < count; i++) {
+            values.add(Math.exp(logMin + random.nextDouble() * logRange));
+        }
+        return values;
+    }
+
+    private static List<Double> negate(List<Double> values) {
+        List<Double> negated = new ArrayList<>(values.size());
+        for (double value : values) {
+            negated.add(-value);
+        }
+        return negated;
+    }
+
+    private static QuantileSketch sketchOf(List<Double> values) {
+        QuantileSketch sketch = new QuantileSketch();
+        for (double value : values) {
+            sketch.add(value);
+        }
+        return sketch;
+    }
+
+    // the value at the same rank getQuantile() uses
+    private static double exactQuantile(double[] sorted, double quantile) {
+        return sorted[(int) (quantile * (sorted.length - 1))];
+    }
+
+    private static double[] sorted(List<Double> values) {
+        double[] sorted = new double[values.size()];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = values.get(i);
+        }
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private static void assertAllQuantilesWithinAccuracy(List<Double> values,
+                                                         QuantileSketch sketch) {
+        double[] sorted = sorted(values);
+        for (double quantile : QUANTILES) {
+            assertWithinAccuracy("quantile " + quantile, exactQuantile(sorted, quantile),
+                    sketch.getQuantile(quantile));
+        }
+    }
+
+    /**
+     * Once values span more than the buckets can cover, only the values within
+     * FULL_ACCURACY_RANGE of the largest magnitude of each sign must be estimated accurately.
+     * The others are counted in the smallest bucket left, so their estimates can only be too far
+     * from zero.
+     */
+    private static void assertLargestMagnitudesWithinAccuracy(List<Double> values,
+                                                              QuantileSketch sketch) {
+        double[] sorted = sorted(values);
+        double largestPositive = sorted[sorted.length - 1];
+        double largestNegative = -sorted[0];
+        for (int i = 0; i <= 1000; i++) {
+            double quantile = i / 1000.0;
+            double exact = exactQuantile(sorted, quantile);
+            double estimate = sketch.getQuantile(quantile);
+            double largest = (exact < 0) ? largestNegative : largestPositive;
+            if (Math.abs(exact) * FULL_ACCURACY_RANGE >= largest) {
+                assertWithinAccuracy("quantile " + quantile, exact, estimate);
+            } else {
+                assertTrue("quantile " + quantile + ": " + estimate + " vs. " + exact,
+                        Math.abs(estimate)
+                                >= Math.abs(exact) * (1 - QuantileSketch.RELATIVE_ACCURACY));
+                assertEquals("quantile " + quantile, Math.signum(exact), Math.signum(estimate),
+                        0);
+            }
+        }
+    }
+
+    private static void assertWithinAccuracy(double expected, double actual) {
+        assertWithinAccuracy("", expected, actual);
+    }
+
+    private static void assertWithinAccuracy(String message, double expected, double actual) {
+        // plus a little for rounding in the logarithms
+        double tolerance = Math.abs(expected) * QuantileSketch.RELATIVE_ACCURACY * 1.000001;
+        assertEquals(message, expected, actual, tolerance);
+    }
+}
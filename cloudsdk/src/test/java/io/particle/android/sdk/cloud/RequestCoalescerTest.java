@@ -0,0 +1,230 @@
+package io.particle.android.sdk.cloud;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+public class RequestCoalescerTest {
+
+    private static final int CALLER_COUNT = 8;
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private final RequestCoalescer coalescer = new RequestCoalescer();
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown() {
+        callers.shutdownNow();
+    }
+
+    @Test
+    public void concurrentCallersShareOneResult() throws Exception {
+        final Object result = new Object();
+        BlockingRequest<Object, RuntimeException> request =
+                new BlockingRequest<>(() -> result);
+
+        List<Future<Object>> futures = callConcurrently("key", request);
+        request.release();
+
+        for (Future<Object> future : futures) {
+            assertSame(result, future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        }
+        assertEquals(1, request.executionCount.get());
+        assertMetrics(1, CALLER_COUNT - 1);
+    }
+
+    @Test
+    public void concurrentCallersShareOneCheckedException() throws Exception {
+        final IOException error = new IOException("no route to host");
+        BlockingRequest<Object, IOException> request = new BlockingRequest<>(() -> {
+            throw error;
+        });
+
+        List<Future<Object>> futures = callConcurrently("key", request);
+        request.release();
+
+        for (Future<Object> future : futures) {
+            assertSame(error, getError(future));
+        }
+        assertEquals(1, request.executionCount.get());
+    }
+
+    @Test
+    public void concurrentCallersShareOneUncheckedException() throws Exception {
+        final IllegalStateException error = new IllegalStateException("bad response");
+        BlockingRequest<Object, RuntimeException> request = new BlockingRequest<>(() -> {
+            throw error;
+        });
+
+        List<Future<Object>> futures = callConcurrently("key", request);
+        request.release();
+
+        for (Future<Object> future : futures) {
+            assertSame(error, getError(future));
+        }
+        assertEquals(1, request.executionCount.get());
+    }
+
+    @Test
+    public void interruptedWaiterStillGetsTheResult() throws Exception {
+        final Object result = new Object();
+        final BlockingRequest<Object, RuntimeException> request =
+                new BlockingRequest<>(() -> result);
+        Future<Object> first = callers.submit(() -> coalescer.execute("key", request));
+        request.awaitStarted();
+
+        final CountDownLatch waiterStarted = new CountDownLatch(1);
+        final Thread[] waiterThread = new Thread[1];
+        Future<Boolean> waiterWasInterrupted = callers.submit(() -> {
+            waiterThread[0] = Thread.currentThread();
+            waiterStarted.countDown();
+            assertSame(result, coalescer.execute("key", request));
+            return Thread.interrupted();
+        });
+        assertTrue(waiterStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        awaitWaiting(waiterThread[0]);
+        waiterThread[0].interrupt();
+
+        // keeps waiting, rather than giving up
+        Thread.sleep(100);
+        assertFalse(waiterWasInterrupted.isDone());
+
+        request.release();
+        assertTrue(waiterWasInterrupted.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertSame(result, first.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(1, request.executionCount.get());
+    }
+
+    @Test
+    public void callAfterCompletionMakesAFreshRequest() throws Exception {
+        final AtomicInteger executionCount = new AtomicInteger();
+        RequestCoalescer.Request<Integer, RuntimeException> request =
+                executionCount::incrementAndGet;
+
+        assertEquals(Integer.valueOf(1), coalescer.execute("key", request));
+        assertEquals(Integer.valueOf(2), coalescer.execute("key", request));
+
+        // and after an exception too
+        try {
+            coalescer.execute("key", () -> {
+                throw new IOException("timeout");
+            });
+            fail("Expected an IOException");
+        } catch (IOException expected) {
+            // expected
+        }
+        assertEquals(Integer.valueOf(3), coalescer.execute("key", request));
+        assertMetrics(4, 0);
+    }
+
+    @Test
+    public void differentKeysDontShareARequest() throws Exception {
+        BlockingRequest<String, RuntimeException> first = new BlockingRequest<>(() -> "first");
+        Future<String> firstResult = callers.submit(() -> coalescer.execute("first", first));
+        first.awaitStarted();
+
+        // doesn't wait for the first request
+        assertEquals("second", coalescer.execute("second", () -> "second"));
+
+        first.release();
+        assertEquals("first", firstResult.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertMetrics(2, 0);
+    }
+
+
+    // starts CALLER_COUNT calls with the same key, and returns once all but one are waiting
+    private <T, E extends Exception> List<Future<T>> callConcurrently(
+            final String key, final BlockingRequest<T, E> request) throws Exception {
+        List<Future<T>> futures = new ArrayList<>();
+        for (int i = 0; i < CALLER_COUNT; i++) {
+            futures.add(callers.submit(() -> coalescer.execute(key, request)));
+        }
+        request.awaitStarted();
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS);
+        while (coalescer.getMetrics().coalescedCount < CALLER_COUNT - 1) {
+            assertTrue("Timed out waiting for callers", System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+        return futures;
+    }
+
+    private void assertMetrics(long requestCount, long coalescedCount) {
+        ParticleRequestCoalescingMetrics metrics = coalescer.getMetrics();
+        assertEquals(requestCount, metrics.requestCount);
+        assertEquals(coalescedCount, metrics.coalescedCount);
+    }
+
+    private static Throwable getError(Future<?> future) throws Exception {
+        try {
+            future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            return e.getCause();
+        }
+        throw new AssertionError("Expected an exception");
+    }
+
+    private static void awaitWaiting(Thread thread) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS);
+        while (thread.getState() != Thread.State.WAITING) {
+            assertTrue("Timed out waiting for " + thread,
+                    System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+
+    /**
+     * Blocks until released, then returns or throws whatever the given request does.
+     */
+    private static class BlockingRequest<T, E extends Exception>
+            implements RequestCoalescer.Request<T, E> {
+
+        final AtomicInteger executionCount = new AtomicInteger();
+        private final RequestCoalescer.Request<T, E> outcome;
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch released = new CountDownLatch(1);
+
+        BlockingRequest(RequestCoalescer.Request<T, E> outcome) {
+            this.outcome = outcome;
+        }
+
+        @Override
+        public T execute() throws E {
+            executionCount.incrementAndGet();
+            started.countDown();
+            try {
+                if (!released.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    throw new AssertionError("Never released");
+                }
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+            return outcome.execute();
+        }
+
+        void awaitStarted() throws InterruptedException {
+            assertTrue("Request never started", started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        }
+
+        void release() {
+            released.countDown();
+        }
+    }
+}
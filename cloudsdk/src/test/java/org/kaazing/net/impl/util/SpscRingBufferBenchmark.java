@@ -0,0 +1,259 @@
+package org.kaazing.net.impl.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Compares {@link SpscRingBuffer} with the BlockingQueueImpl it replaced, which is reproduced
+ * below as {@link LegacyBlockingQueue}.  Both use the transports' default capacity of 32.
+ * <ul>
+ * <li>{@link #throughput(Stream)}: a producer thread puts as fast as it can, and the benchmark
+ * thread takes; the score is hand-offs per microsecond.</li>
+ * <li>{@link #roundTrip(PingPong)}: the benchmark thread puts one element, an echo thread takes
+ * it and puts it on a second queue, and the benchmark thread takes it back.  Sampled, so JMH
+ * reports latency percentiles for two hand-offs.</li>
+ * </ul>
+ * Run with: <code>./gradlew :cloudsdk:jmh -PjmhArgs=SpscRingBufferBenchmark</code>
+ */
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpscRingBufferBenchmark {
+
+    private static final int BATCH_SIZE = 10000;
+
+    private static final Long ELEMENT = 42L;
+
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @OperationsPerInvocation(BATCH_SIZE)
+    public long throughput(Stream stream) throws InterruptedException {
+        long sum = 0;
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            sum += stream.queue.take();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Long roundTrip(PingPong pingPong) throws InterruptedException {
+        pingPong.requests.put(ELEMENT);
+        return pingPong.responses.take();
+    }
+
+
+    @State(Scope.Thread)
+    public static class Stream {
+
+        @Param({"spsc", "legacy"})
+        public String queueType;
+
+        Handoff queue;
+        private Thread producer;
+        private volatile boolean running;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            queue = newHandoff(queueType);
+            running = true;
+            producer = startThread("producer", () -> {
+                try {
+                    while (running) {
+                        queue.put(ELEMENT);
+                    }
+                } catch (InterruptedException e) {
+                    // done
+                }
+            });
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws InterruptedException {
+            running = false;
+            queue.done();
+            producer.join();
+        }
+    }
+
+
+    @State(Scope.Thread)
+    public static class PingPong {
+
+        @Param({"spsc", "legacy"})
+        public String queueType;
+
+        Handoff requests;
+        Handoff responses;
+        private Thread echo;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            requests = newHandoff(queueType);
+            responses = newHandoff(queueType);
+            echo = startThread("echo", () -> {
+                try {
+                    while (true) {
+                        responses.put(requests.take());
+                    }
+                } catch (InterruptedException e) {
+                    // done
+                }
+            });
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws InterruptedException {
+            requests.done();
+            echo.join();
+        }
+    }
+
+
+    interface Handoff {
+
+        void put(Long element) throws InterruptedException;
+
+        Long take() throws InterruptedException;
+
+        void done();
+    }
+
+
+    private static Handoff newHandoff(String queueType) {
+        switch (queueType) {
+            case "spsc":
+                final SpscRingBuffer<Long> ringBuffer = new SpscRingBuffer<>();
+                return new Handoff() {
+                    @Override
+                    public void put(Long element) throws InterruptedException {
+                        ringBuffer.put(element);
+                    }
+
+                    @Override
+                    public Long take() throws InterruptedException {
+                        return ringBuffer.take();
+                    }
+
+                    @Override
+                    public void done() {
+                        ringBuffer.done();
+                    }
+                };
+
+            case "legacy":
+                final LegacyBlockingQueue<Long> blockingQueue = new LegacyBlockingQueue<>();
+                return new Handoff() {
+                    @Override
+                    public void put(Long element) throws InterruptedException {
+                        blockingQueue.put(element);
+                    }
+
+                    @Override
+                    public Long take() throws InterruptedException {
+                        return blockingQueue.take();
+                    }
+
+                    @Override
+                    public void done() {
+                        blockingQueue.done();
+                    }
+                };
+
+            default:
+                throw new IllegalArgumentException("Unknown queue type: " + queueType);
+        }
+    }
+
+    private static Thread startThread(String name, Runnable runnable) {
+        Thread thread = new Thread(runnable, "SpscRingBufferBenchmark " + name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+
+    /**
+     * BlockingQueueImpl's put(), take(), and done(), as they were before SpscRingBuffer: a fair
+     * ArrayBlockingQueue, with a monitor wait/notifyAll around every operation.
+     */
+    private static class LegacyBlockingQueue<E> extends ArrayBlockingQueue<E> {
+
+        private static final int QUEUE_CAPACITY = SpscRingBuffer.DEFAULT_CAPACITY;
+
+        private boolean done = false;
+
+        LegacyBlockingQueue() {
+            super(QUEUE_CAPACITY, true);
+        }
+
+        synchronized void done() {
+            done = true;
+            notifyAll();
+        }
+
+        boolean isDone() {
+            return done;
+        }
+
+        @Override
+        public void put(E el) throws InterruptedException {
+            synchronized (this) {
+                while ((size() == QUEUE_CAPACITY) && !isDone()) {
+                    wait();
+                }
+                if (isDone()) {
+                    notifyAll();
+                    return;
+                }
+            }
+
+            super.put(el);
+
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+
+        @Override
+        public E take() throws InterruptedException {
+            synchronized (this) {
+                while (isEmpty() && !isDone()) {
+                    wait();
+                }
+                if (isDone()) {
+                    notifyAll();
+                    if (size() == 0) {
+                        throw new InterruptedException("done");
+                    }
+                }
+            }
+
+            E el = super.take();
+
+            synchronized (this) {
+                notifyAll();
+            }
+            return el;
+        }
+    }
+}
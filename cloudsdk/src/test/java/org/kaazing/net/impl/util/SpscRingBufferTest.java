@@ -0,0 +1,195 @@
+package org.kaazing.net.impl.util;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+public class SpscRingBufferTest {
+
+    private static final long TIMEOUT_MILLIS = 10000;
+
+    @Test
+    public void roundsCapacityUpToAPowerOfTwo() {
+        assertEquals(1, new SpscRingBuffer<String>(1).capacity());
+        assertEquals(4, new SpscRingBuffer<String>(3).capacity());
+        assertEquals(32, new SpscRingBuffer<String>(32).capacity());
+        assertEquals(64, new SpscRingBuffer<String>(33).capacity());
+        assertEquals(SpscRingBuffer.DEFAULT_CAPACITY, new SpscRingBuffer<String>().capacity());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsZeroCapacity() {
+        new SpscRingBuffer<String>(0);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void rejectsNullElements() throws InterruptedException {
+        new SpscRingBuffer<String>().put(null);
+    }
+
+    @Test
+    public void takesElementsInOrderAcrossWrapAround() throws InterruptedException {
+        SpscRingBuffer<Integer> buffer = new SpscRingBuffer<>(4);
+        int next = 0;
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 3; i++) {
+                buffer.put(round * 3 + i);
+            }
+            assertEquals(3, buffer.size());
+            for (int i = 0; i < 3; i++) {
+                assertEquals(Integer.valueOf(next++), buffer.take());
+            }
+            assertTrue(buffer.isEmpty());
+        }
+    }
+
+    @Test
+    public void takeDrainsRemainingElementsAfterDone() throws InterruptedException {
+        SpscRingBuffer<String> buffer = new SpscRingBuffer<>(4);
+        buffer.put("a");
+        buffer.put("b");
+        buffer.done();
+        assertTrue(buffer.isDone());
+
+        assertEquals("a", buffer.take());
+        assertEquals("b", buffer.take());
+        try {
+            buffer.take();
+            fail("take() should fail once the buffer is done and empty");
+        } catch (InterruptedException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void putDropsElementsAfterDone() throws InterruptedException {
+        SpscRingBuffer<String> buffer = new SpscRingBuffer<>(4);
+        buffer.done();
+        buffer.put("dropped");
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    public void resetClearsElementsAndDone() throws InterruptedException {
+        SpscRingBuffer<String> buffer = new SpscRingBuffer<>(4);
+        buffer.put("stale");
+        buffer.put("stale");
+        buffer.done();
+        buffer.reset();
+
+        assertFalse(buffer.isDone());
+        assertTrue(buffer.isEmpty());
+        buffer.put("fresh");
+        assertEquals("fresh", buffer.take());
+    }
+
+    @Test
+    public void doneWakesWaitingConsumer() throws InterruptedException {
+        final SpscRingBuffer<String> buffer = new SpscRingBuffer<>(4);
+        final AtomicReference<Object> result = new AtomicReference<>();
+        Thread consumer = startThread(() -> {
+            try {
+                result.set(buffer.take());
+            } catch (InterruptedException e) {
+                result.set(e);
+            }
+        });
+
+        waitUntilParked(consumer);
+        buffer.done();
+        consumer.join(TIMEOUT_MILLIS);
+        assertFalse(consumer.isAlive());
+        assertTrue(result.get() instanceof InterruptedException);
+    }
+
+    @Test
+    public void doneWakesWaitingProducer() throws InterruptedException {
+        final SpscRingBuffer<String> buffer = new SpscRingBuffer<>(2);
+        buffer.put("a");
+        buffer.put("b");
+        final CountDownLatch putReturned = new CountDownLatch(1);
+        Thread producer = startThread(() -> {
+            try {
+                buffer.put("c");
+                putReturned.countDown();
+            } catch (InterruptedException e) {
+                // fails the test below
+            }
+        });
+
+        waitUntilParked(producer);
+        buffer.done();
+        assertTrue(putReturned.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        // the element put while full was dropped, the earlier ones are still there
+        assertEquals(2, buffer.size());
+    }
+
+    @Test
+    public void interruptingWaitingConsumerThrows() throws InterruptedException {
+        final SpscRingBuffer<String> buffer = new SpscRingBuffer<>(4);
+        final AtomicReference<Object> result = new AtomicReference<>();
+        Thread consumer = startThread(() -> {
+            try {
+                result.set(buffer.take());
+            } catch (InterruptedException e) {
+                result.set(e);
+            }
+        });
+
+        waitUntilParked(consumer);
+        consumer.interrupt();
+        consumer.join(TIMEOUT_MILLIS);
+        assertTrue(result.get() instanceof InterruptedException);
+        assertFalse(buffer.isDone());
+    }
+
+    @Test
+    public void handsOffEveryElementInOrderBetweenThreads() throws InterruptedException {
+        final int count = 200000;
+        // small, so that both sides regularly have to wait for each other
+        final SpscRingBuffer<Integer> buffer = new SpscRingBuffer<>(8);
+        final AtomicReference<Throwable> producerFailure = new AtomicReference<>();
+        Thread producer = startThread(() -> {
+            try {
+                for (int i = 0; i < count; i++) {
+                    buffer.put(i);
+                }
+            } catch (Throwable t) {
+                producerFailure.set(t);
+            }
+        });
+
+        for (int i = 0; i < count; i++) {
+            assertEquals(Integer.valueOf(i), buffer.take());
+        }
+        producer.join(TIMEOUT_MILLIS);
+        assertEquals(null, producerFailure.get());
+        assertTrue(buffer.isEmpty());
+    }
+
+
+    private static Thread startThread(Runnable runnable) {
+        Thread thread = new Thread(runnable);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private static void waitUntilParked(Thread thread) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (thread.getState() != Thread.State.WAITING) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Thread never blocked");
+            }
+            Thread.sleep(1);
+        }
+    }
+}
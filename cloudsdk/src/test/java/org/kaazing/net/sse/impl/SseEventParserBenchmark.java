@@ -0,0 +1,194 @@
+package org.kaazing.net.sse.impl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Compares {@link SseEventParser} with the String-based parsing which SseEventStream used to do,
+ * at 1k to 50k events/sec.
+ * <p>
+ * Each benchmark invocation parses one second's worth of a stream at the given event rate, so
+ * the score is the number of milliseconds of CPU time the parser needs per second of stream,
+ * i.e.: thousandths of a core.  The stream is split into reads the way the transport's stream
+ * reader sees it: one read per millisecond, capped at its 4 KiB read buffer, with read
+ * boundaries falling anywhere inside lines.
+ * <p>
+ * Run with: <code>./gradlew :cloudsdk:jmh -PjmhArgs=SseEventParserBenchmark</code>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SseEventParserBenchmark {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // the stream reader's buffer size, see HttpRequestDelegateImpl.StreamReader
+    private static final int MAX_READ_SIZE = 4096;
+
+    private static final String[] EVENT_NAMES = {"temperature", "humidity", "spark/status"};
+
+    @Param({"1000", "5000", "10000", "50000"})
+    public int eventsPerSecond;
+
+    private byte[][] reads;
+
+    private SseEventParser parser;
+    private StringSseParser stringParser;
+
+    @Setup
+    public void setUp(final Blackhole blackhole) {
+        StringBuilder stream = new StringBuilder();
+        for (int i = 0; i < eventsPerSecond; i++) {
+            stream.append("event: ").append(EVENT_NAMES[i % EVENT_NAMES.length]).append('\n')
+                    .append("data: {\"data\":\"").append(i)
+                    .append("\",\"ttl\":60,\"published_at\":\"2018-06-01T12:00:00.123Z\",")
+                    .append("\"coreid\":\"0123456789abcdef01234567\"}\n")
+                    .append('\n');
+        }
+        byte[] bytes = stream.toString().getBytes(UTF_8);
+
+        int readSize = Math.max(1, Math.min(MAX_READ_SIZE, bytes.length / 1000));
+        List<byte[]> chunks = new ArrayList<>();
+        for (int offset = 0; offset < bytes.length; offset += readSize) {
+            byte[] chunk = new byte[Math.min(readSize, bytes.length - offset)];
+            System.arraycopy(bytes, offset, chunk, 0, chunk.length);
+            chunks.add(chunk);
+        }
+        reads = chunks.toArray(new byte[chunks.size()][]);
+
+        parser = new SseEventParser(new SseEventParser.Listener() {
+            @Override
+            public void onEvent(String eventName, String data) {
+                blackhole.consume(eventName);
+                blackhole.consume(data);
+            }
+
+            @Override
+            public void onId(String id) {
+            }
+
+            @Override
+            public void onRetry(String retry) {
+            }
+
+            @Override
+            public void onLocation(String location) {
+            }
+
+            @Override
+            public void onReconnect() {
+            }
+        });
+        stringParser = new StringSseParser(blackhole);
+    }
+
+    @Benchmark
+    public void byteParser() {
+        for (byte[] read : reads) {
+            parser.parse(read, 0, read.length);
+        }
+    }
+
+    @Benchmark
+    public void stringParser() {
+        for (byte[] read : reads) {
+            stringParser.processProgressEvent(new String(read, UTF_8));
+        }
+    }
+
+
+    /**
+     * The parsing SseEventStream.processProgressEvent() did before SseEventParser, minus the
+     * logging and connection state.
+     */
+    private static class StringSseParser {
+
+        private static final String MESSAGE = "message";
+
+        private final Blackhole blackhole;
+        private final StringBuffer dataBuffer = new StringBuffer();
+        private String messageBuffer = "";
+        private String name = MESSAGE;
+
+        StringSseParser(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        void processProgressEvent(String message) {
+            messageBuffer = messageBuffer + message;
+            String line;
+            String field;
+            String value;
+            while ((line = fetchLineFromBuffer()) != null) {
+                if (line.length() == 0 && dataBuffer.length() > 0) {
+                    int dataBufferlength = dataBuffer.length();
+                    if (dataBuffer.charAt(dataBufferlength - 1) == '\n') {
+                        dataBuffer.replace(dataBufferlength - 1, dataBufferlength, "");
+                    }
+                    blackhole.consume(name);
+                    blackhole.consume(dataBuffer.toString());
+                    dataBuffer.setLength(0);
+                }
+
+                int colonAt = line.indexOf(':');
+                if (colonAt == -1) {
+                    field = line;
+                    value = "";
+                } else if (colonAt == 0) {
+                    continue;
+                } else {
+                    field = line.substring(0, colonAt);
+                    int valueAt = colonAt + 1;
+                    if (line.length() > valueAt && line.charAt(valueAt) == ' ') {
+                        valueAt++;
+                    }
+                    value = line.substring(valueAt);
+                }
+                switch (field) {
+                    case "event":
+                        name = value;
+                        break;
+                    case "data":
+                        if (name != null && name.length() > 0 && !MESSAGE.equals(name)) {
+                            dataBuffer.append(value).append("\n");
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+
+        private String fetchLineFromBuffer() {
+            int lf = messageBuffer.indexOf("\n");
+            if (lf == -1) {
+                lf = messageBuffer.indexOf("\r");
+            }
+            if (lf != -1) {
+                String ret = messageBuffer.substring(0, lf);
+                messageBuffer = messageBuffer.substring(lf + 1);
+                return ret;
+            }
+            return null;
+        }
+    }
+}